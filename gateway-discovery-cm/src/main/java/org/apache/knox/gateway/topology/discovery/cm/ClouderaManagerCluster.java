@@ -21,6 +21,7 @@ import org.apache.knox.gateway.topology.discovery.ServiceDiscovery;
 import org.apache.knox.gateway.topology.discovery.cm.collector.ServiceURLCollectors;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +43,16 @@ public class ClouderaManagerCluster implements ServiceDiscovery.Cluster {
     this.name = clusterName;
   }
 
+  /**
+   * Copies the given cluster, so that adding service models to the copy does not affect the original.
+   */
+  ClouderaManagerCluster(ClouderaManagerCluster cluster) {
+    this(cluster.name);
+    for (Map.Entry<String, List<ServiceModel>> entry : cluster.serviceModels.entrySet()) {
+      this.serviceModels.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    }
+  }
+
   @Override
   public String getName() {
     return name;
@@ -100,8 +111,15 @@ public class ClouderaManagerCluster implements ServiceDiscovery.Cluster {
     }
   }
 
+  /**
+   * @return An unmodifiable view of the service models, keyed by service name.
+   */
   public Map<String, List<ServiceModel>> getServiceModels() {
-    return serviceModels;
+    final Map<String, List<ServiceModel>> view = new HashMap<>();
+    for (Map.Entry<String, List<ServiceModel>> entry : serviceModels.entrySet()) {
+      view.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(view);
   }
 
 }
@@ -53,6 +53,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -99,6 +104,8 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery, Cluste
   private final int retrySleepSeconds = 3;  // It's been agreed that we not expose this config
   private int maxRetryAttempts = -1;
   private Collection<String> excludedServiceTypes = Collections.emptySet();
+  /* fetches service and role configurations concurrently, shared by all instances; null if they are fetched sequentially */
+  private ExecutorService fetchExecutor;
 
   ClouderaManagerServiceDiscovery(GatewayConfig gatewayConfig) {
     this(false, gatewayConfig);
@@ -124,6 +131,7 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery, Cluste
       repository.setCacheEntryTTL(gatewayConfig.getClouderaManagerServiceDiscoveryRepositoryEntryTTL());
       configureRetryParams(gatewayConfig);
       excludedServiceTypes = getLowercaseStringCollection(gatewayConfig.getClouderaManagerServiceDiscoveryExcludedServiceTypes());
+      fetchExecutor = repository.getFetchExecutor(gatewayConfig.getClouderaManagerServiceDiscoveryParallelism());
     }
   }
 
@@ -261,6 +269,13 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery, Cluste
   private ClouderaManagerCluster discoverCluster(GatewayConfig gatewayConfig, DiscoveryApiClient client,
                                                  String clusterName, Collection<String> includedServices)
       throws ApiException {
+    // descriptors referencing the same cluster share a single discovery and its result, within the repository TTL
+    return repository.getCluster(client.getConfig(), () -> loadCluster(gatewayConfig, client, clusterName, includedServices));
+  }
+
+  private ClouderaManagerCluster loadCluster(GatewayConfig gatewayConfig, DiscoveryApiClient client,
+                                             String clusterName, Collection<String> includedServices)
+      throws ApiException {
     ServicesResourceApi servicesResourceApi = new ServicesResourceApi(client);
     RolesResourceApi rolesResourceApi = new RolesResourceApi(client);
     ServiceRoleCollector roleCollector =
@@ -276,10 +291,18 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery, Cluste
       // if Legacy Cloudera Manager API Clients Compatibility is turned off, some HDFS settings are in CORE_SETTINGS
     ApiServiceConfig coreSettingsConfig = coreSettingsConfig(client, servicesResourceApi, serviceList);
 
-    Set<ServiceModel> serviceModels = new HashSet<>();
+    // the CM calls of the services are independent of each other; the models are generated sequentially afterwards
+    List<ServiceConfigurations> serviceConfigurations = new ArrayList<>();
     for (ApiService service : serviceList) {
-        serviceModels.addAll(
-          discoverService(client, clusterName, includedServices, service, servicesResourceApi, roleCollector, coreSettingsConfig));
+      serviceConfigurations.add(new ServiceConfigurations(service,
+          fetch(() -> hasServiceConfig(service) ? getServiceConfig(client.getConfig(), servicesResourceApi, service) : null),
+          fetch(() -> getAllServiceRoleConfigurations(client.getConfig(), roleCollector, clusterName, service))));
+    }
+
+    Set<ServiceModel> serviceModels = new HashSet<>();
+    for (ServiceConfigurations each : serviceConfigurations) {
+      serviceModels.addAll(discoverService(client, includedServices, each.service,
+          await(each.serviceConfig), await(each.roleConfigs), coreSettingsConfig));
     }
 
     ClouderaManagerCluster cluster = new ClouderaManagerCluster(clusterName);
@@ -288,10 +311,42 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery, Cluste
     return cluster;
   }
 
+  private <T> Future<T> fetch(Callable<T> call) {
+    final FutureTask<T> task = new FutureTask<>(call);
+    if (fetchExecutor == null) {
+      task.run();
+    } else {
+      fetchExecutor.execute(task);
+    }
+    return task;
+  }
+
+  private static <T> T await(Future<T> fetch) throws ApiException {
+    try {
+      return fetch.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ApiException(e.getCause());
+    }
+  }
+
+  /* no reason to check service config for CM or CORE_SETTINGS services */
+  private static boolean hasServiceConfig(ApiService service) {
+    return !CM_SERVICE_TYPE.equals(service.getType()) && !CORE_SETTINGS_TYPE.equals(service.getType());
+  }
+
   @SuppressWarnings("PMD.UnusedFormalParameter")
-  private Set<ServiceModel> discoverService(DiscoveryApiClient client, String clusterName, Collection<String> includedServices,
-                                            ApiService service, ServicesResourceApi servicesResourceApi,
-                                            ServiceRoleCollector roleCollector, ApiServiceConfig coreSettingsConfig) throws ApiException {
+  private Set<ServiceModel> discoverService(DiscoveryApiClient client, Collection<String> includedServices, ApiService service,
+                                            ApiServiceConfig serviceConfig, ApiRoleConfigList roleConfigList,
+                                            ApiServiceConfig coreSettingsConfig) throws ApiException {
     Set<ServiceModel> serviceModels = new HashSet<>();
     final List<ServiceModelGenerator> modelGenerators = serviceModelGeneratorsHolder.getServiceModelGenerators(service.getType());
     //if (shouldSkipServiceDiscovery(modelGenerators, includedServices)) {
@@ -299,12 +354,6 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery, Cluste
       //continue;
     //}
     log.discoveringService(service.getName(), service.getType());
-    ApiServiceConfig serviceConfig = null;
-    /* no reason to check service config for CM or CORE_SETTINGS services */
-    if (!CM_SERVICE_TYPE.equals(service.getType()) && !CORE_SETTINGS_TYPE.equals(service.getType())) {
-      serviceConfig = getServiceConfig(client.getConfig(), servicesResourceApi, service);
-    }
-    ApiRoleConfigList roleConfigList = getAllServiceRoleConfigurations(client.getConfig(), roleCollector, clusterName, service);
     if (roleConfigList != null && roleConfigList.getItems() != null) {
       List<ApiRole> allApiRoles = new ArrayList<>();
       for (ApiRoleConfig roleConfig : roleConfigList.getItems()) {
@@ -481,8 +530,19 @@ public class ClouderaManagerServiceDiscovery implements ServiceDiscovery, Cluste
 
   @Override
   public void onConfigurationChange(String source, String clusterName) {
-    log.clearServiceDiscoveryRepository();
-    repository.clear();
+    // the configuration monitor has already invalidated the repository entries of the changed cluster
+  }
+
+  private static class ServiceConfigurations {
+    private final ApiService service;
+    private final Future<ApiServiceConfig> serviceConfig;
+    private final Future<ApiRoleConfigList> roleConfigs;
+
+    ServiceConfigurations(ApiService service, Future<ApiServiceConfig> serviceConfig, Future<ApiRoleConfigList> roleConfigs) {
+      this.service = service;
+      this.serviceConfig = serviceConfig;
+      this.roleConfigs = roleConfigs;
+    }
   }
 
   private static class ServiceRoleDetails {
@@ -310,8 +310,8 @@ public interface ClouderaManagerServiceDiscoveryMessages {
   @Message(level = MessageLevel.DEBUG, text = "Looking up role configuration from the configured Cloudera Manager discovery endpoint...")
   void lookupRoleConfigsFromCM();
 
-  @Message(level = MessageLevel.DEBUG, text = "Clearing service discovery repository...")
-  void clearServiceDiscoveryRepository();
+  @Message(level = MessageLevel.DEBUG, text = "Clearing service discovery repository of cluster {1} at {0}...")
+  void clearServiceDiscoveryRepository(String address, String clusterName);
 
   @Message(level = MessageLevel.WARN, text = "The configured maximum retry attempts of {0} may overlap with the configured polling interval settings; using {1} retry attempts")
   void updateMaxRetryAttempts(int configured, int actual);
@@ -337,4 +337,9 @@ public interface ClouderaManagerServiceDiscoveryMessages {
   @Message(level = MessageLevel.ERROR, text = "Error while building CM dicovery ApiClient: {0}")
   void clouderaManagerApiClientBuildError(@StackTrace(level = MessageLevel.DEBUG) Exception e);
 
+  @Message(level = MessageLevel.DEBUG, text = "Using the recently discovered services of cluster {0}")
+  void usingClusterSnapshot(String clusterName);
+
+  @Message(level = MessageLevel.DEBUG, text = "Waiting for the discovery of cluster {0} which is already in progress")
+  void awaitingClusterDiscovery(String clusterName);
 }
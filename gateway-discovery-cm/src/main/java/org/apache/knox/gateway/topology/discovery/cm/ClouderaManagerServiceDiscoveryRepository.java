@@ -19,33 +19,50 @@ package org.apache.knox.gateway.topology.discovery.cm;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
 
+import com.cloudera.api.swagger.client.ApiException;
 import com.cloudera.api.swagger.model.ApiRoleConfigList;
 import com.cloudera.api.swagger.model.ApiService;
 import com.cloudera.api.swagger.model.ApiServiceConfig;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
-class ClouderaManagerServiceDiscoveryRepository {
+public final class ClouderaManagerServiceDiscoveryRepository {
 
+  private static final ClouderaManagerServiceDiscoveryMessages log = MessagesFactory.get(ClouderaManagerServiceDiscoveryMessages.class);
   private static final ClouderaManagerServiceDiscoveryRepository INSTANCE = new ClouderaManagerServiceDiscoveryRepository();
   private final Map<RepositoryKey, Cache<ApiService, ServiceDetails>> repository;
+  private final Map<RepositoryKey, ClusterSnapshot> clusters = new ConcurrentHashMap<>();
+  private final Map<RepositoryKey, CompletableFuture<ClouderaManagerCluster>> clusterDiscoveries = new ConcurrentHashMap<>();
+  /* incremented on each invalidation so that discoveries started before a configuration change are not cached */
+  private final AtomicLong generation = new AtomicLong();
   private long cacheEntryTTL = GatewayConfig.DEFAULT_CM_SERVICE_DISCOVERY_CACHE_ENTRY_TTL;
+  /* guarded by this; its idle threads time out, so it needs no shutdown */
+  private ThreadPoolExecutor fetchExecutor;
 
   private ClouderaManagerServiceDiscoveryRepository() {
     this.repository = new ConcurrentHashMap<>();
   }
 
-  static ClouderaManagerServiceDiscoveryRepository getInstance() {
+  public static ClouderaManagerServiceDiscoveryRepository getInstance() {
     return INSTANCE;
   }
 
@@ -53,8 +70,111 @@ class ClouderaManagerServiceDiscoveryRepository {
     this.cacheEntryTTL = cacheEntryTTL;
   }
 
+  /**
+   * Returns the executor that all discovery instances share to fetch service and role configurations concurrently,
+   * so the number of concurrent CM requests stays bounded however many descriptors are discovered at once.
+   *
+   * @param parallelism the number of configurations fetched concurrently
+   * @return the shared executor, or null if the parallelism is less than 2 and configurations are fetched sequentially
+   */
+  synchronized ExecutorService getFetchExecutor(int parallelism) {
+    if (parallelism < 2) {
+      return null;
+    }
+    if (fetchExecutor == null) {
+      fetchExecutor = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          new BasicThreadFactory.Builder().namingPattern("ClouderaManagerServiceDiscovery-%d").daemon(true).build());
+      fetchExecutor.allowCoreThreadTimeOut(true);
+    } else if (parallelism > fetchExecutor.getMaximumPoolSize()) {
+      fetchExecutor.setMaximumPoolSize(parallelism);
+      fetchExecutor.setCorePoolSize(parallelism);
+    } else if (parallelism < fetchExecutor.getMaximumPoolSize()) {
+      fetchExecutor.setCorePoolSize(parallelism);
+      fetchExecutor.setMaximumPoolSize(parallelism);
+    }
+    return fetchExecutor;
+  }
+
   void clear() {
+    generation.incrementAndGet();
     repository.clear();
+    clusters.clear();
+  }
+
+  /**
+   * Discards everything cached for the given cluster. The cluster configuration monitor calls this when it detects a
+   * configuration change, before any listener is notified, so the rediscoveries those listeners trigger see the change.
+   *
+   * @param address     The address of the ClouderaManager instance
+   * @param clusterName The name of the changed cluster
+   */
+  public void invalidate(String address, String clusterName) {
+    final RepositoryKey key = new RepositoryKey(address, clusterName);
+    generation.incrementAndGet();
+    repository.remove(key);
+    clusters.remove(key);
+  }
+
+  interface ClusterDiscovery {
+    ClouderaManagerCluster discover() throws ApiException;
+  }
+
+  /**
+   * Returns the cluster discovered within the entry TTL, if any. Otherwise runs the given discovery; callers asking for
+   * the same cluster while a discovery is in progress wait for, and share, its result instead of querying CM again.
+   * Every caller gets its own copy of the shared cluster.
+   */
+  ClouderaManagerCluster getCluster(ServiceDiscoveryConfig serviceDiscoveryConfig, ClusterDiscovery discovery) throws ApiException {
+    final RepositoryKey key = RepositoryKey.of(serviceDiscoveryConfig);
+    final ClusterSnapshot snapshot = clusters.get(key);
+    if (snapshot != null && !snapshot.isExpired()) {
+      log.usingClusterSnapshot(serviceDiscoveryConfig.getCluster());
+      return copyOf(snapshot.getCluster());
+    }
+
+    final CompletableFuture<ClouderaManagerCluster> ownDiscovery = new CompletableFuture<>();
+    final CompletableFuture<ClouderaManagerCluster> inProgress = clusterDiscoveries.putIfAbsent(key, ownDiscovery);
+    if (inProgress != null) {
+      log.awaitingClusterDiscovery(serviceDiscoveryConfig.getCluster());
+      return copyOf(await(inProgress));
+    }
+
+    final long discoveryGeneration = generation.get();
+    try {
+      final ClouderaManagerCluster cluster = discovery.discover();
+      if (cluster != null && cacheEntryTTL > 0 && discoveryGeneration == generation.get()) {
+        clusters.put(key, new ClusterSnapshot(copyOf(cluster), System.currentTimeMillis() + Duration.ofSeconds(cacheEntryTTL).toMillis()));
+      }
+      ownDiscovery.complete(copyOf(cluster));
+      return cluster;
+    } catch (ApiException | RuntimeException e) {
+      ownDiscovery.completeExceptionally(e);
+      throw e;
+    } finally {
+      clusterDiscoveries.remove(key, ownDiscovery);
+    }
+  }
+
+  private static ClouderaManagerCluster copyOf(ClouderaManagerCluster cluster) {
+    return cluster == null ? null : new ClouderaManagerCluster(cluster);
+  }
+
+  private static ClouderaManagerCluster await(CompletableFuture<ClouderaManagerCluster> discovery) throws ApiException {
+    try {
+      return discovery.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof ApiException) {
+        throw (ApiException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ApiException(e.getCause());
+    }
   }
 
   void addService(ServiceDiscoveryConfig serviceDiscoveryConfig, ApiService service) {
@@ -136,6 +256,24 @@ class ClouderaManagerServiceDiscoveryRepository {
     }
   }
 
+  private static final class ClusterSnapshot {
+    private final ClouderaManagerCluster cluster;
+    private final long expiresAt;
+
+    ClusterSnapshot(ClouderaManagerCluster cluster, long expiresAt) {
+      this.cluster = cluster;
+      this.expiresAt = expiresAt;
+    }
+
+    ClouderaManagerCluster getCluster() {
+      return cluster;
+    }
+
+    boolean isExpired() {
+      return System.currentTimeMillis() >= expiresAt;
+    }
+  }
+
   private static class ServiceDetails {
     private ApiServiceConfig serviceConfig;
     private ApiRoleConfigList roleConfigList;
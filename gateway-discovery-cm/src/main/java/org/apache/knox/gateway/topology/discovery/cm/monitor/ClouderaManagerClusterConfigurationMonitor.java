@@ -25,6 +25,7 @@ import org.apache.knox.gateway.topology.discovery.ClusterConfigurationMonitor;
 import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
 import org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerCluster;
 import org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerServiceDiscoveryMessages;
+import org.apache.knox.gateway.topology.discovery.cm.ClouderaManagerServiceDiscoveryRepository;
 import org.apache.knox.gateway.topology.discovery.cm.ServiceModel;
 
 import java.time.Instant;
@@ -209,6 +210,11 @@ public class ClouderaManagerClusterConfigurationMonitor implements ClusterConfig
 
   @Override
   public void onConfigurationChange(final String source, final String clusterName) {
+    // Discard the cached discovery results of the changed cluster first, so no listener
+    // can rediscover it from a stale snapshot, whatever the order the listeners run in
+    log.clearServiceDiscoveryRepository(source, clusterName);
+    ClouderaManagerServiceDiscoveryRepository.getInstance().invalidate(source, clusterName);
+
     // Respond to change notifications from the internal monitor by notifying
     // the listeners registered with this object
     notifyChangeListeners(source, clusterName);
@@ -16,14 +16,23 @@
  */
 package org.apache.knox.gateway.topology.discovery.cm;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.topology.discovery.ServiceDiscoveryConfig;
@@ -60,6 +69,24 @@ public class ClouderaManagerServiceDiscoveryRepositoryTest {
     assertTrue(repository.getServices(serviceDiscoveryConfig).isEmpty());
   }
 
+  @Test
+  public void testFetchExecutorIsShared() throws Exception {
+    assertNull(repository.getFetchExecutor(1));
+
+    final ExecutorService executor = repository.getFetchExecutor(4);
+    assertNotNull(executor);
+    assertSame(executor, repository.getFetchExecutor(4));
+    assertEquals(4, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+
+    // A different parallelism resizes the shared executor instead of creating another one
+    assertSame(executor, repository.getFetchExecutor(2));
+    assertEquals(2, ((ThreadPoolExecutor) executor).getCorePoolSize());
+    assertEquals(2, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+    assertSame(executor, repository.getFetchExecutor(8));
+    assertEquals(8, ((ThreadPoolExecutor) executor).getCorePoolSize());
+    assertEquals(8, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+  }
+
   @Test
   public void testRegisterCluster() throws Exception {
     assertTrue(repository.getServices(serviceDiscoveryConfig).isEmpty());
@@ -154,6 +181,142 @@ public class ClouderaManagerServiceDiscoveryRepositoryTest {
     assertFalse(containsService("HDFS-1"));
   }
 
+  @Test
+  public void testClusterSnapshotIsShared() throws Exception {
+    final AtomicInteger discoveries = new AtomicInteger();
+    final ClouderaManagerCluster cluster = repository.getCluster(serviceDiscoveryConfig, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-1");
+    });
+    final ClouderaManagerCluster shared = repository.getCluster(serviceDiscoveryConfig, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-2");
+    });
+    assertEquals(1, discoveries.get());
+    assertEquals(cluster.getServiceModels().keySet(), shared.getServiceModels().keySet());
+
+    repository.clear();
+    repository.getCluster(serviceDiscoveryConfig, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-1");
+    });
+    assertEquals(2, discoveries.get());
+  }
+
+  @Test
+  public void testClusterSnapshotIsCopiedForEachCaller() throws Exception {
+    final ClouderaManagerCluster discovered = newCluster("HDFS-1");
+    final ClouderaManagerCluster first = repository.getCluster(serviceDiscoveryConfig, () -> discovered);
+    final ClouderaManagerCluster second = repository.getCluster(serviceDiscoveryConfig, () -> newCluster("HDFS-2"));
+    assertNotSame(first, second);
+
+    // changing the instance one caller got leaves the snapshot the others get untouched
+    first.addServiceModels(Collections.singleton(newServiceModel("HIVE-1")));
+    discovered.addServiceModels(Collections.singleton(newServiceModel("HIVE-2")));
+    assertEquals(Collections.singleton("HDFS-1"), second.getServiceModels().keySet());
+    assertEquals(Collections.singleton("HDFS-1"),
+        repository.getCluster(serviceDiscoveryConfig, () -> newCluster("HDFS-2")).getServiceModels().keySet());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testServiceModelsAreUnmodifiable() throws Exception {
+    final ClouderaManagerCluster cluster = repository.getCluster(serviceDiscoveryConfig, () -> newCluster("HDFS-1"));
+    cluster.getServiceModels().get("HDFS-1").clear();
+  }
+
+  @Test
+  public void testInvalidateDiscardsOnlyTheChangedCluster() throws Exception {
+    final ServiceDiscoveryConfig otherCluster = EasyMock.createNiceMock(ServiceDiscoveryConfig.class);
+    EasyMock.expect(otherCluster.getAddress()).andReturn("https://cm_host:7183/cmf").anyTimes();
+    EasyMock.expect(otherCluster.getCluster()).andReturn("Cluster 2").anyTimes();
+    EasyMock.replay(otherCluster);
+    final AtomicInteger discoveries = new AtomicInteger();
+    repository.getCluster(serviceDiscoveryConfig, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-1");
+    });
+    repository.getCluster(otherCluster, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-1");
+    });
+    testAddService();
+
+    repository.invalidate("https://cm_host:7183/cmf", "Cluster 1");
+
+    assertFalse(containsService("HDFS-1"));
+    final ClouderaManagerCluster rediscovered = repository.getCluster(serviceDiscoveryConfig, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-2");
+    });
+    assertEquals(Collections.singleton("HDFS-2"), rediscovered.getServiceModels().keySet());
+    repository.getCluster(otherCluster, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-2");
+    });
+    assertEquals(3, discoveries.get());
+  }
+
+  @Test
+  public void testDiscoveryStartedBeforeAnInvalidationIsNotCached() throws Exception {
+    final AtomicInteger discoveries = new AtomicInteger();
+    repository.getCluster(serviceDiscoveryConfig, () -> {
+      discoveries.incrementAndGet();
+      repository.invalidate("https://cm_host:7183/cmf", "Cluster 1");
+      return newCluster("HDFS-1");
+    });
+    repository.getCluster(serviceDiscoveryConfig, () -> {
+      discoveries.incrementAndGet();
+      return newCluster("HDFS-2");
+    });
+    assertEquals(2, discoveries.get());
+  }
+
+  @Test
+  public void testConcurrentClusterDiscoveriesAreCoalesced() throws Exception {
+    repository.setCacheEntryTTL(0); // no snapshot, only the discovery in progress is shared
+    final AtomicInteger discoveries = new AtomicInteger();
+    final CountDownLatch discoveryStarted = new CountDownLatch(1);
+    final CountDownLatch releaseDiscovery = new CountDownLatch(1);
+    final ClouderaManagerCluster cluster = new ClouderaManagerCluster("Cluster 1");
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<ClouderaManagerCluster> first = executor.submit(() -> repository.getCluster(serviceDiscoveryConfig, () -> {
+        discoveries.incrementAndGet();
+        discoveryStarted.countDown();
+        try {
+          releaseDiscovery.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return cluster;
+      }));
+      assertTrue(discoveryStarted.await(10, TimeUnit.SECONDS));
+      final Future<ClouderaManagerCluster> second = executor.submit(() -> repository.getCluster(serviceDiscoveryConfig, () -> {
+        discoveries.incrementAndGet();
+        return new ClouderaManagerCluster("Cluster 1");
+      }));
+      // give the second caller the chance to join the discovery in progress
+      TimeUnit.MILLISECONDS.sleep(200);
+      releaseDiscovery.countDown();
+      assertSame(cluster, first.get(10, TimeUnit.SECONDS));
+      assertNotSame(cluster, second.get(10, TimeUnit.SECONDS));
+      assertEquals(cluster.getName(), second.get(10, TimeUnit.SECONDS).getName());
+      assertEquals(1, discoveries.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ClouderaManagerCluster newCluster(String serviceName) {
+    final ClouderaManagerCluster cluster = new ClouderaManagerCluster("Cluster 1");
+    cluster.addServiceModels(Collections.singleton(newServiceModel(serviceName)));
+    return cluster;
+  }
+
+  private static ServiceModel newServiceModel(String serviceName) {
+    return new ServiceModel(ServiceModel.Type.API, serviceName, serviceName, serviceName + "-ROLE", "http://host:8080");
+  }
+
   private boolean containsService(String serviceName) {
     final List<ApiService> services = repository.getServices(serviceDiscoveryConfig);
     if (services != null && !services.isEmpty()) {
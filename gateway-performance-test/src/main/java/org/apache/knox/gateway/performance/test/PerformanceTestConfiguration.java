@@ -32,6 +32,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.knox.gateway.performance.test.dispatch.DispatchUseCaseRunner;
 
 public class PerformanceTestConfiguration {
 
@@ -76,6 +77,9 @@ public class PerformanceTestConfiguration {
     knoxTokenDefaultTopologies.put("tokenbased", "tokenbased");
     defaultUseCaseMap = new HashMap<>();
     defaultUseCaseMap.put(USE_CASE_NAME, knoxTokenDefaultTopologies);
+    final Map<String, String> dispatchDefaultTopologies = new HashMap<>();
+    dispatchDefaultTopologies.put("gateway", "sandbox");
+    defaultUseCaseMap.put(DispatchUseCaseRunner.USE_CASE_NAME, dispatchDefaultTopologies);
   }
 
   /* Gateway connection */
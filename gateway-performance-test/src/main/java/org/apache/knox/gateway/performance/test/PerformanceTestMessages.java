@@ -71,6 +71,15 @@ public interface PerformanceTestMessages {
   @Message(level = MessageLevel.INFO, text = "There is no token to be used yet")
   void nothingToUse();
 
+  @Message(level = MessageLevel.INFO, text = "Running dispatch workers on {0} threads ...")
+  void runDispatchWorkers(int numOfThreads);
+
+  @Message(level = MessageLevel.ERROR, text = "Failed to run dispatch worker: {0}")
+  void failedToRunDispatchWorker(String errorMessage, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.ERROR, text = "Failed to dispatch request: {0}")
+  void failedToDispatch(String errorMessage, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
   @Message(level = MessageLevel.ERROR, text = "Error while generating {0} report: {1}")
   void failedToGenerateReport(String reportType, String errorMessage, @StackTrace(level = MessageLevel.DEBUG) Exception e);
 
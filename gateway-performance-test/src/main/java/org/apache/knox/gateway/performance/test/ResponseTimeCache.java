@@ -26,6 +26,7 @@ public class ResponseTimeCache {
 
   private final Queue<Long> acquireResponseTimes = new ConcurrentLinkedQueue<>();
   private final Queue<Long> renewResponseTimes = new ConcurrentLinkedQueue<>();
+  private final Queue<Long> dispatchResponseTimes = new ConcurrentLinkedQueue<>();
 
   public void saveAcquireResponseTime(long getResponseTime) {
     acquireResponseTimes.offer(getResponseTime);
@@ -35,6 +36,10 @@ public class ResponseTimeCache {
     renewResponseTimes.offer(renewResponseTime);
   }
 
+  public void saveDispatchResponseTime(long dispatchResponseTime) {
+    dispatchResponseTimes.offer(dispatchResponseTime);
+  }
+
   public List<Long> listAcquireResponseTimes() {
     return this.acquireResponseTimes.stream().collect(Collectors.toList());
   }
@@ -42,4 +47,8 @@ public class ResponseTimeCache {
   public List<Long> listRenewResponseTimes() {
     return this.renewResponseTimes.stream().collect(Collectors.toList());
   }
+
+  public List<Long> listDispatchResponseTimes() {
+    return this.dispatchResponseTimes.stream().collect(Collectors.toList());
+  }
 }
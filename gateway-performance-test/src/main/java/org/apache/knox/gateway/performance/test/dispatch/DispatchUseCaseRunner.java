@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.performance.test.dispatch;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.performance.test.ExecutorServiceUtils;
+import org.apache.knox.gateway.performance.test.PerformanceTestConfiguration;
+import org.apache.knox.gateway.performance.test.PerformanceTestLifeCyleListener;
+import org.apache.knox.gateway.performance.test.PerformanceTestMessages;
+import org.apache.knox.gateway.performance.test.ResponseTimeCache;
+import org.apache.knox.gateway.performance.test.UseCaseRunner;
+
+/**
+ * Keeps a configurable number of concurrent requests in flight against a proxied service to measure
+ * how the gateway's request handling scales, e.g. with <code>gateway.virtual.threads.enabled</code>
+ * turned off and on, and with more concurrent requests than <code>gateway.threadpool.max</code>.
+ */
+public class DispatchUseCaseRunner implements UseCaseRunner {
+
+  public static final String USE_CASE_NAME = "dispatch";
+
+  private static final PerformanceTestMessages LOG = MessagesFactory.get(PerformanceTestMessages.class);
+  private static final String PARAM_NUMBER_OF_THREADS = "numOfThreads";
+
+  private ResponseTimeCache responseTimeCache;
+
+  @Override
+  public void setResponseTimeCache(ResponseTimeCache responseTimeCache) {
+    this.responseTimeCache = responseTimeCache;
+  }
+
+  @Override
+  public void execute(PerformanceTestConfiguration configuration, List<PerformanceTestLifeCyleListener> lifeCyleListeners) {
+    final ThreadFactory threadFactory = new BasicThreadFactory.Builder().namingPattern("DispatchUseCaseRunner-%d").build();
+    final int numberOfThreads = Integer.parseInt(configuration.getUseCaseParam(getUseCaseName(), PARAM_NUMBER_OF_THREADS));
+    LOG.runDispatchWorkers(numberOfThreads);
+    final ExecutorService pool = Executors.newFixedThreadPool(numberOfThreads, threadFactory);
+    try {
+      for (int i = 0; i < numberOfThreads; i++) {
+        pool.submit(new DispatchWorkerThread(configuration, responseTimeCache));
+      }
+    } finally {
+      final long testDuration = Long.parseLong(configuration.getUseCaseParam(getUseCaseName(), DispatchWorkerThread.PARAM_DURATION_IN_SECONDS));
+      ExecutorServiceUtils.shutdownAndAwaitTermination(pool, testDuration + 10, TimeUnit.SECONDS);
+      lifeCyleListeners.forEach(lifeCyleListener -> lifeCyleListener.onFinish());
+    }
+  }
+
+  @Override
+  public String getUseCaseName() {
+    return USE_CASE_NAME;
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.performance.test.dispatch;
+
+import static org.apache.knox.gateway.performance.test.dispatch.DispatchUseCaseRunner.USE_CASE_NAME;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.performance.test.PerformanceTestConfiguration;
+import org.apache.knox.gateway.performance.test.PerformanceTestMessages;
+import org.apache.knox.gateway.performance.test.ResponseTimeCache;
+import org.apache.knox.gateway.shell.KnoxSession;
+import org.apache.knox.gateway.shell.hdfs.Hdfs;
+
+@SuppressWarnings("PMD.DoNotUseThreads")
+public class DispatchWorkerThread implements Runnable {
+  private static final PerformanceTestMessages LOG = MessagesFactory.get(PerformanceTestMessages.class);
+  static final String PARAM_DURATION_IN_SECONDS = "testDurationInSecs";
+
+  private final PerformanceTestConfiguration configuration;
+  private final ResponseTimeCache responseTimeCache;
+
+  public DispatchWorkerThread(PerformanceTestConfiguration configuration, ResponseTimeCache responseTimeCache) {
+    this.configuration = configuration;
+    this.responseTimeCache = responseTimeCache;
+  }
+
+  @Override
+  public void run() {
+    try (KnoxSession knoxSession = KnoxSession.login(configuration.getUseCaseUrl(USE_CASE_NAME, "gateway"), configuration.getGatewayUser(),
+        configuration.getGatewayPassword())) {
+      final long testDuration = Long.parseLong(configuration.getUseCaseParam(USE_CASE_NAME, PARAM_DURATION_IN_SECONDS));
+      final Instant startTime = Instant.now();
+      while (Duration.between(startTime, Instant.now()).getSeconds() < testDuration) {
+        try {
+          final long start = System.currentTimeMillis();
+          Hdfs.ls(knoxSession).dir("/").now();
+          responseTimeCache.saveDispatchResponseTime(System.currentTimeMillis() - start);
+        } catch (Exception e) {
+          LOG.failedToDispatch(e.getMessage(), e);
+        }
+      }
+    } catch (Exception e) {
+      LOG.failedToRunDispatchWorker(e.getMessage(), e);
+    }
+  }
+}
@@ -96,6 +96,7 @@ public class GatewayMetricsReporter implements PerformanceTestLifeCyleListener {
     final Map<String, Object> responseTimesMap = new HashMap<>();
     setReponseTimesMetrics(responseTimesMap, responseTimeCache.listAcquireResponseTimes(), "acquireResponseTimes");
     setReponseTimesMetrics(responseTimesMap, responseTimeCache.listRenewResponseTimes(), "renewResponseTimes");
+    setReponseTimesMetrics(responseTimesMap, responseTimeCache.listDispatchResponseTimes(), "dispatchResponseTimes");
     for (ReportEngine reportEngine : reportEngines) {
       reportEngine.generateReport("responseTimes", responseTimesMap);
     }
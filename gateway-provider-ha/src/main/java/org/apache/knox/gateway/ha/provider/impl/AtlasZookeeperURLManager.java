@@ -85,8 +85,13 @@ public class AtlasZookeeperURLManager extends DefaultURLManager {
     }
 
     @Override
-    public synchronized void markFailed(String url) {
-        setURLs(lookupURLs());
-        super.markFailed(url);
+    public void markFailed(String url) {
+        lock.lock();
+        try {
+            setURLs(lookupURLs());
+            super.markFailed(url);
+        } finally {
+            lock.unlock();
+        }
     }
 }
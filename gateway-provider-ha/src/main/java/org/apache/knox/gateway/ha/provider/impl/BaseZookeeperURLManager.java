@@ -22,6 +22,7 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.dispatch.KnoxSpnegoAuthSchemeFactory;
@@ -59,6 +60,9 @@ public abstract class BaseZookeeperURLManager implements URLManager {
 
   private final ConcurrentLinkedQueue<String> urls = new ConcurrentLinkedQueue<>();
 
+  /* Guards the URLs, which are looked up in ZooKeeper while holding it */
+  private final ReentrantLock lock = new ReentrantLock();
+
   private String zooKeeperEnsemble;
   private String zooKeeperNamespace;
 
@@ -84,35 +88,50 @@ public abstract class BaseZookeeperURLManager implements URLManager {
   }
 
   @Override
-  public synchronized String getActiveURL() {
-    // None available so refresh
-    if (urls.isEmpty()) {
-      setURLs(lookupURLs());
-    }
+  public String getActiveURL() {
+    lock.lock();
+    try {
+      // None available so refresh
+      if (urls.isEmpty()) {
+        setURLs(lookupURLs());
+      }
 
-    return this.urls.peek();
+      return this.urls.peek();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized void setActiveURL(String url) {
+  public void setActiveURL(String url) {
     throw new UnsupportedOperationException();
   }
 
   @Override
-  public synchronized List<String> getURLs() {
-    return new ArrayList<>(this.urls);
+  public List<String> getURLs() {
+    lock.lock();
+    try {
+      return new ArrayList<>(this.urls);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized void markFailed(String url) {
-    // Capture complete URL of active host
-    String topURL = getActiveURL();
+  public void markFailed(String url) {
+    lock.lock();
+    try {
+      // Capture complete URL of active host
+      String topURL = getActiveURL();
 
-    // Refresh URLs from ZooKeeper
-    setURLs(lookupURLs());
+      // Refresh URLs from ZooKeeper
+      setURLs(lookupURLs());
 
-    // Show failed URL and new URL
-    LOG.markedFailedUrl(topURL, getActiveURL());
+      // Show failed URL and new URL
+      LOG.markedFailedUrl(topURL, getActiveURL());
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
@@ -122,23 +141,33 @@ public abstract class BaseZookeeperURLManager implements URLManager {
   }
 
   @Override
-  public synchronized String getActiveURLAndAdvance() {
-    if (urls.isEmpty()) {
-      setURLs(lookupURLs());
-    }
-    String head = urls.poll();
-    if (head == null) {
-      return null;
+  public String getActiveURLAndAdvance() {
+    lock.lock();
+    try {
+      if (urls.isEmpty()) {
+        setURLs(lookupURLs());
+      }
+      String head = urls.poll();
+      if (head == null) {
+        return null;
+      }
+      urls.offer(head);
+      return head;
+    } finally {
+      lock.unlock();
     }
-    urls.offer(head);
-    return head;
   }
 
   @Override
-  public synchronized void setURLs(List<String> urls) {
-    if ((urls != null) && (!(urls.isEmpty()))) {
-      this.urls.clear();
-      this.urls.addAll(urls);
+  public void setURLs(List<String> urls) {
+    lock.lock();
+    try {
+      if ((urls != null) && (!(urls.isEmpty()))) {
+        this.urls.clear();
+        this.urls.addAll(urls);
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -26,6 +26,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DefaultURLManager implements URLManager {
 
@@ -33,6 +34,12 @@ public class DefaultURLManager implements URLManager {
 
   private final ConcurrentLinkedQueue<String> urls = new ConcurrentLinkedQueue<>();
 
+  /*
+   * Guards the order of the URLs. A lock rather than synchronized methods, so that subclasses looking up
+   * URLs remotely while holding it do not pin the carrier of a virtual thread.
+   */
+  protected final ReentrantLock lock = new ReentrantLock();
+
   @Override
   public boolean supportsConfig(HaServiceConfig config) {
     return true;
@@ -44,72 +51,107 @@ public class DefaultURLManager implements URLManager {
   }
 
   @Override
-  public synchronized String getActiveURL() {
-    return urls.peek();
+  public String getActiveURL() {
+    lock.lock();
+    try {
+      return urls.peek();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized void setActiveURL(String url) {
-    String top = urls.peek();
-    if (top.equalsIgnoreCase(url)) {
-      return;
-    }
-    if (urls.contains(url)) {
-      urls.remove(url);
-      List<String> remainingList = getURLs();
-      urls.clear();
-      urls.add(url);
-      urls.addAll(remainingList);
+  public void setActiveURL(String url) {
+    lock.lock();
+    try {
+      String top = urls.peek();
+      if (top.equalsIgnoreCase(url)) {
+        return;
+      }
+      if (urls.contains(url)) {
+        urls.remove(url);
+        List<String> remainingList = getURLs();
+        urls.clear();
+        urls.add(url);
+        urls.addAll(remainingList);
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized List<String> getURLs() {
-    return new ArrayList<>(urls);
+  public List<String> getURLs() {
+    lock.lock();
+    try {
+      return new ArrayList<>(urls);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized void setURLs(List<String> urls) {
-    if (urls != null && !urls.isEmpty()) {
-      this.urls.clear();
-      this.urls.addAll(urls);
+  public void setURLs(List<String> urls) {
+    lock.lock();
+    try {
+      if (urls != null && !urls.isEmpty()) {
+        this.urls.clear();
+        this.urls.addAll(urls);
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized void markFailed(String url) {
-    String top = urls.peek();
-    if (top != null) {
-      boolean pushToBottom = false;
-      URI topUri = URI.create(top);
-      URI incomingUri = URI.create(url);
-      String topHostPort = topUri.getHost() + ":" + topUri.getPort();
-      String incomingHostPort = incomingUri.getHost() + ":" + incomingUri.getPort();
-      if (topHostPort.equals(incomingHostPort)) {
-        pushToBottom = true;
-      }
-      //put the failed url at the bottom
-      if (pushToBottom) {
-        String failed = urls.poll();
-        urls.offer(failed);
-        LOG.markedFailedUrl(failed, urls.peek());
+  public void markFailed(String url) {
+    lock.lock();
+    try {
+      String top = urls.peek();
+      if (top != null) {
+        boolean pushToBottom = false;
+        URI topUri = URI.create(top);
+        URI incomingUri = URI.create(url);
+        String topHostPort = topUri.getHost() + ":" + topUri.getPort();
+        String incomingHostPort = incomingUri.getHost() + ":" + incomingUri.getPort();
+        if (topHostPort.equals(incomingHostPort)) {
+          pushToBottom = true;
+        }
+        //put the failed url at the bottom
+        if (pushToBottom) {
+          String failed = urls.poll();
+          urls.offer(failed);
+          LOG.markedFailedUrl(failed, urls.peek());
+        }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized void makeNextActiveURLAvailable() {
-    String head = urls.poll();
-    urls.offer(head);
+  public void makeNextActiveURLAvailable() {
+    lock.lock();
+    try {
+      String head = urls.poll();
+      urls.offer(head);
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized String getActiveURLAndAdvance() {
-    String head = urls.poll();
-    if (head == null) {
-      return null;
+  public String getActiveURLAndAdvance() {
+    lock.lock();
+    try {
+      String head = urls.poll();
+      if (head == null) {
+        return null;
+      }
+      urls.offer(head);
+      return head;
+    } finally {
+      lock.unlock();
     }
-    urls.offer(head);
-    return head;
   }
 }
@@ -126,13 +126,18 @@ public class HS2ZookeeperURLManager extends DefaultURLManager {
   }
 
   @Override
-  public synchronized void markFailed(String url) {
-    failedSet.add(url);
-    //refresh the list when we have hit all urls once
-    if (failedSet.size() >= getURLs().size()) {
-      failedSet.clear();
-      setURLs(lookupURLs());
+  public void markFailed(String url) {
+    lock.lock();
+    try {
+      failedSet.add(url);
+      //refresh the list when we have hit all urls once
+      if (failedSet.size() >= getURLs().size()) {
+        failedSet.clear();
+        setURLs(lookupURLs());
+      }
+      super.markFailed(url);
+    } finally {
+      lock.unlock();
     }
-    super.markFailed(url);
   }
 }
@@ -66,4 +66,7 @@ public interface IdentityAsserterMessages {
 
   @Message( level = MessageLevel.WARN, text = "Invalid result: {2}. Expected String when evaluating mapping: {1} for user: {0}.")
   void invalidAdvancedPrincipalMappingResult(String principalName, AbstractSyntaxTree mapping, Object result);
+
+  @Message( level = MessageLevel.WARN, text = "Invalid virtual group mapping cache size: {0}; the virtual groups are not cached.")
+  void invalidVirtualGroupCacheSize(String cacheSize);
 }
@@ -50,7 +50,8 @@ import org.apache.knox.gateway.IdentityAsserterMessages;
 import org.apache.knox.gateway.context.ContextAttributes;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.plang.AbstractSyntaxTree;
-import org.apache.knox.gateway.plang.Interpreter;
+import org.apache.knox.gateway.plang.Bindings;
+import org.apache.knox.gateway.plang.Expression;
 import org.apache.knox.gateway.plang.Parser;
 import org.apache.knox.gateway.plang.SyntaxException;
 import org.apache.knox.gateway.security.GroupPrincipal;
@@ -69,6 +70,8 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
     public static final String GROUP_PRINCIPAL_MAPPING = "group.principal.mapping";
     public static final String PRINCIPAL_MAPPING = "principal.mapping";
     public static final String ADVANCED_PRINCIPAL_MAPPING = "expression.principal.mapping";
+    /* number of users and group sets whose virtual groups are remembered, if the mapping doesn't depend on the request */
+    public static final String VIRTUAL_GROUP_CACHE_SIZE = "virtual.group.mapping.cache.size";
     private static final String PRINCIPAL_PARAM = "user.name";
     private static final String DOAS_PRINCIPAL_PARAM = "doAs";
     static final String IMPERSONATION_ENABLED_PARAM = AuthFilterUtils.PROXYUSER_PREFIX + ".impersonation.enabled";
@@ -79,7 +82,7 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
     /* List of all default and configured impersonation params */
     protected final List<String> impersonationParamsList = new ArrayList<>();
     protected boolean impersonationEnabled;
-    private AbstractSyntaxTree expressionPrincipalMapping;
+    private Expression expressionPrincipalMapping;
     private String topologyName;
     private boolean hasProxyGroupParams;
 
@@ -105,18 +108,31 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
 
         final List<String> initParameterNames = AuthFilterUtils.getInitParameterNamesAsList(filterConfig);
 
-        virtualGroupMapper = new VirtualGroupMapper(loadVirtualGroups(filterConfig, initParameterNames));
+        virtualGroupMapper = new VirtualGroupMapper(loadVirtualGroups(filterConfig, initParameterNames), virtualGroupCacheSize(filterConfig));
 
         initImpersonationParamsList(filterConfig);
         initProxyUserConfiguration(filterConfig, initParameterNames);
     }
 
-    private AbstractSyntaxTree parseAdvancedPrincipalMapping(FilterConfig filterConfig) {
+    private Expression parseAdvancedPrincipalMapping(FilterConfig filterConfig) {
         String expression = filterConfig.getInitParameter(ADVANCED_PRINCIPAL_MAPPING);
         if (StringUtils.isBlank(expression)) {
             expression = filterConfig.getServletContext().getInitParameter(ADVANCED_PRINCIPAL_MAPPING);
         }
-        return StringUtils.isBlank(expression) ? null : parser.parse(expression);
+        return StringUtils.isBlank(expression) ? null : Expression.compile(parser.parse(expression));
+    }
+
+    private static int virtualGroupCacheSize(FilterConfig filterConfig) {
+        final String cacheSize = filterConfig.getInitParameter(VIRTUAL_GROUP_CACHE_SIZE);
+        if (StringUtils.isBlank(cacheSize)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(cacheSize.trim());
+        } catch (NumberFormatException e) {
+            LOG.invalidVirtualGroupCacheSize(cacheSize);
+            return 0;
+        }
     }
 
     /*
@@ -278,15 +294,15 @@ public class CommonIdentityAssertionFilter extends AbstractIdentityAssertionFilt
     }
 
     private String evalAdvancedPrincipalMapping(ServletRequest request, Subject subject, String originalPrincipal) {
-        Interpreter interpreter = new Interpreter();
-        interpreter.addConstant("username", originalPrincipal);
-        interpreter.addConstant("groups", groups(subject));
-        addRequestFunctions(request, interpreter);
-        Object mappedPrincipal = interpreter.eval(expressionPrincipalMapping);
+        Bindings bindings = new Bindings()
+                .addVariable("username", originalPrincipal)
+                .addVariable("groups", new ArrayList<>(groups(subject)));
+        addRequestFunctions(request, bindings);
+        Object mappedPrincipal = expressionPrincipalMapping.eval(bindings);
         if (mappedPrincipal instanceof String) {
             return (String)mappedPrincipal;
         } else {
-            LOG.invalidAdvancedPrincipalMappingResult(originalPrincipal, expressionPrincipalMapping, mappedPrincipal);
+            LOG.invalidAdvancedPrincipalMappingResult(originalPrincipal, expressionPrincipalMapping.getAst(), mappedPrincipal);
             return null;
         }
     }
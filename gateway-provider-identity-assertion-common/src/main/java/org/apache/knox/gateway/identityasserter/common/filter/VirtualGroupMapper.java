@@ -18,8 +18,12 @@
 package org.apache.knox.gateway.identityasserter.common.filter;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
@@ -29,34 +33,63 @@ import org.apache.knox.gateway.IdentityAsserterMessages;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.plang.Arity;
 import org.apache.knox.gateway.plang.AbstractSyntaxTree;
-import org.apache.knox.gateway.plang.Interpreter;
+import org.apache.knox.gateway.plang.Bindings;
+import org.apache.knox.gateway.plang.Expression;
 
 public class VirtualGroupMapper {
     public static final String PRIMARY_GROUP = "$PRIMARY_GROUP";
     private final IdentityAsserterMessages LOG = MessagesFactory.get(IdentityAsserterMessages.class);
-    private final Map<String, AbstractSyntaxTree> virtualGroupToPredicateMap;
+    private final Map<String, Expression> virtualGroupToPredicateMap = new HashMap<>();
+    /* results by user and groups; only used if none of the predicates depend on the request */
+    private final Map<MemoKey, Set<String>> memo;
 
     public VirtualGroupMapper(Map<String, AbstractSyntaxTree> virtualGroupToPredicateMap) {
-        this.virtualGroupToPredicateMap = virtualGroupToPredicateMap;
+        this(virtualGroupToPredicateMap, 0);
+    }
+
+    /**
+     * @param memoSize the maximum number of users and group sets to remember the virtual groups of; 0 to disable
+     */
+    public VirtualGroupMapper(Map<String, AbstractSyntaxTree> virtualGroupToPredicateMap, int memoSize) {
+        virtualGroupToPredicateMap.forEach((group, predicate) ->
+                this.virtualGroupToPredicateMap.put(group, Expression.compile(predicate)));
+        final boolean deterministic = this.virtualGroupToPredicateMap.values().stream().allMatch(Expression::isDeterministic);
+        this.memo = memoSize > 0 && deterministic ? Collections.synchronizedMap(new LinkedHashMap<MemoKey, Set<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemoKey, Set<String>> eldest) {
+                return size() > memoSize;
+            }
+        }) : null;
     }
 
     /**
      *  @return all virtual groups where the corresponding predicate matches
      */
     public Set<String> mapGroups(String username, Set<String> groups, ServletRequest request) {
+        final MemoKey key = memo == null ? null : new MemoKey(username, groups);
+        final Set<String> memoized = key == null ? null : memo.get(key);
+        if (memoized != null) {
+            LOG.virtualGroups(username, groups, memoized);
+            return new HashSet<>(memoized);
+        }
+
         Set<String> virtualGroups = new HashSet<>();
-        for (Map.Entry<String, AbstractSyntaxTree> each : virtualGroupToPredicateMap.entrySet()) {
+        Bindings bindings = bindings(username, groups, request);
+        for (Map.Entry<String, Expression> each : virtualGroupToPredicateMap.entrySet()) {
             String virtualGroupName = each.getKey();
             // check for logical virtual groups - names to be dynamically created
             virtualGroupName = resolveLogicalGroupName(username, virtualGroupName);
 
-            AbstractSyntaxTree predicate = each.getValue();
-            if (evalPredicate(virtualGroupName, username, groups, predicate, request)) {
+            Expression predicate = each.getValue();
+            if (evalPredicate(virtualGroupName, username, groups, predicate, bindings)) {
                 virtualGroups.add(virtualGroupName);
-                LOG.addingUserToVirtualGroup(username, virtualGroupName, predicate);
+                LOG.addingUserToVirtualGroup(username, virtualGroupName, predicate.getAst());
             }
         }
         LOG.virtualGroups(username, groups, virtualGroups);
+        if (key != null) {
+            memo.put(new MemoKey(username, new HashSet<>(groups)), Collections.unmodifiableSet(new HashSet<>(virtualGroups)));
+        }
         return virtualGroups;
     }
 
@@ -67,32 +100,39 @@ public class VirtualGroupMapper {
         return virtualGroupName;
     }
 
+    /**
+     * @return the variables and request functions the predicates are evaluated with, shared by all predicates of a request
+     */
+    static Bindings bindings(String username, Set<String> groups, ServletRequest request) {
+        Bindings bindings = new Bindings()
+                .addVariable("username", username)
+                .addVariable("groups", Collections.unmodifiableList(new ArrayList<>(groups)));
+        addRequestFunctions(request, bindings);
+        return bindings;
+    }
+
     /**
      * @return true if the user should be added to the virtual group based on the given predicate
      */
-    private boolean evalPredicate(String virtualGroupName, String userName, Set<String> ldapGroups, AbstractSyntaxTree predicate, ServletRequest request) {
-        Interpreter interpreter = new Interpreter();
-        interpreter.addConstant("username", userName);
-        interpreter.addConstant("groups", new ArrayList<>(ldapGroups));
-        addRequestFunctions(request, interpreter);
-        LOG.checkingVirtualGroup(userName, ldapGroups, virtualGroupName, predicate);
-        Object result = interpreter.eval(predicate);
+    private boolean evalPredicate(String virtualGroupName, String userName, Set<String> ldapGroups, Expression predicate, Bindings bindings) {
+        LOG.checkingVirtualGroup(userName, ldapGroups, virtualGroupName, predicate.getAst());
+        Object result = predicate.eval(bindings);
         if (!(result instanceof Boolean)) {
-            LOG.invalidResult(virtualGroupName, predicate, result);
+            LOG.invalidResult(virtualGroupName, predicate.getAst(), result);
             return false;
         }
         return (boolean)result;
     }
 
-    public static void addRequestFunctions(ServletRequest req, Interpreter interpreter) {
+    public static void addRequestFunctions(ServletRequest req, Bindings bindings) {
         if (req instanceof HttpServletRequest) {
-            interpreter.addFunction("request-attribute", Arity.UNARY, params ->
+            bindings.addFunction("request-attribute", Arity.UNARY, params ->
                     ensureNotNull(req.getAttribute((String)params.get(0))));
-            interpreter.addFunction("request-parameter", Arity.UNARY, params ->
+            bindings.addFunction("request-parameter", Arity.UNARY, params ->
                     ensureNotNull(req.getParameter((String)params.get(0))));
-            interpreter.addFunction("request-header", Arity.UNARY, params ->
+            bindings.addFunction("request-header", Arity.UNARY, params ->
                     ensureNotNull(((HttpServletRequest) req).getHeader((String)params.get(0))));
-            interpreter.addFunction("session", Arity.UNARY, params ->
+            bindings.addFunction("session", Arity.UNARY, params ->
                     ensureNotNull(sessionAttribute((HttpServletRequest) req, (String)params.get(0))));
         }
     }
@@ -105,4 +145,37 @@ public class VirtualGroupMapper {
         HttpSession session = req.getSession(false);
         return session != null ? session.getAttribute(key) : "";
     }
+
+    /**
+     * Key of the memo; the hash of the group set is computed once, lookups compare the sets themselves
+     * so that colliding hashes never share a result.
+     */
+    private static final class MemoKey {
+        private final String username;
+        private final Set<String> groups;
+        private final int hash;
+
+        MemoKey(String username, Set<String> groups) {
+            this.username = username;
+            this.groups = groups;
+            this.hash = Objects.hash(username, groups);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MemoKey)) {
+                return false;
+            }
+            MemoKey other = (MemoKey) o;
+            return hash == other.hash && Objects.equals(username, other.username) && groups.equals(other.groups);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
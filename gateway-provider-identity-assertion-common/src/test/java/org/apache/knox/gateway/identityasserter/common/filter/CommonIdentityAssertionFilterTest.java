@@ -130,6 +130,9 @@ public class CommonIdentityAssertionFilterTest {
                 andReturn("(and (username 'lmccay') (and (member 'users') (member 'admin')))").anyTimes();
         EasyMock.expect(config.getInitParameter(CommonIdentityAssertionFilter.VIRTUAL_GROUP_MAPPING_PREFIX)).
                 andReturn("true").anyTimes();
+        // an invalid cache size is logged and leaves the virtual groups uncached
+        EasyMock.expect(config.getInitParameter(CommonIdentityAssertionFilter.VIRTUAL_GROUP_CACHE_SIZE)).
+                andReturn("many").anyTimes();
         EasyMock.replay( config );
 
         final HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
@@ -22,6 +22,7 @@ import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -32,6 +33,7 @@ import java.util.Locale;
 import java.util.Set;
 
 import org.apache.knox.gateway.plang.AbstractSyntaxTree;
+import org.apache.knox.gateway.plang.Expression;
 import org.apache.knox.gateway.plang.Parser;
 import org.easymock.EasyMock;
 import org.junit.Test;
@@ -147,6 +149,43 @@ public class VirtualGroupMapperTest {
         assertEquals(expectedGroups, virtualGroups("user1", emptyList(), request));
     }
 
+    @Test
+    public void testMemoizedGroups() {
+        mapper = new VirtualGroupMapper(new HashMap<String, AbstractSyntaxTree>(){{
+            put("admins", parser.parse("(match groups 'admin.*')"));
+            put(VirtualGroupMapper.PRIMARY_GROUP, parser.parse("(not (member username))"));
+        }}, 2);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(setOf("admins", "user1"), virtualGroups("user1", asList("admin1", "dev")));
+            assertEquals(setOf("admins"), virtualGroups("user2", asList("admin1", "user2")));
+            assertEquals(setOf("user1"), virtualGroups("user1", singletonList("dev")));
+        }
+        final Set<String> groups = virtualGroups("user1", asList("admin1", "dev"));
+        groups.clear();
+        assertEquals(setOf("admins", "user1"), virtualGroups("user1", asList("admin1", "dev")));
+    }
+
+    @Test
+    public void testRequestDependentGroupsAreNotMemoized() {
+        mapper = new VirtualGroupMapper(new HashMap<String, AbstractSyntaxTree>(){{
+            put("doas", parser.parse("(= (request-parameter 'doAs') 'impala')"));
+        }}, 10);
+        final HttpServletRequest doAs = EasyMock.createNiceMock(HttpServletRequest.class);
+        EasyMock.expect(doAs.getParameter("doAs")).andReturn("impala").anyTimes();
+        final HttpServletRequest plain = EasyMock.createNiceMock(HttpServletRequest.class);
+        EasyMock.replay(doAs, plain);
+        assertEquals(setOf("doas"), virtualGroups("user1", emptyList(), doAs));
+        assertEquals(emptySet(), virtualGroups("user1", emptyList(), plain));
+    }
+
+    @Test
+    public void testGroupsAreBoundAsAList() {
+        final Object groups = Expression.compile(parser.parse("groups"))
+                .eval(VirtualGroupMapper.bindings("user1", setOf("g1", "g2"), null));
+        assertTrue(groups instanceof List);
+        assertEquals(setOf("g1", "g2"), new HashSet<>((List<?>) groups));
+    }
+
     private Set<String> virtualGroups(String user1, List<String> ldapGroups) {
         return virtualGroups(user1, ldapGroups, null);
     }
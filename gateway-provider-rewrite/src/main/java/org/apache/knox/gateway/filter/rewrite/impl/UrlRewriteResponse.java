@@ -19,6 +19,7 @@ package org.apache.knox.gateway.filter.rewrite.impl;
 
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.knox.gateway.dispatch.PassthroughResponseStreamer;
 import org.apache.knox.gateway.filter.GatewayResponseWrapper;
 import org.apache.knox.gateway.filter.ResponseStreamer;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteFilterContentDescriptor;
@@ -93,6 +94,7 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   private String xForwardedPort;
   private String xForwardedScheme;
   private String contentEncoding;
+  private String contentLength;
 
   public UrlRewriteResponse( FilterConfig config, HttpServletRequest request, HttpServletResponse response ) {
     super( response );
@@ -112,6 +114,13 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
     return IGNORE_HEADER_NAMES.contains( name );
   }
 
+  // Remember the dispatch Content-Length so it can be restored when the body is passed through unmodified.
+  private void setContentLength( String name, String value ) {
+    if( "Content-Length".equalsIgnoreCase( name ) ) {
+      contentLength = value;
+    }
+  }
+
   private String rewriteValue( String value, String rule ) {
     try {
       Template input = Parser.parseLiteral( value );
@@ -134,6 +143,7 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   // Ignore the Content-Length from the dispatch respond since the respond body may be rewritten.
   @Override
   public void setHeader( String name, String value ) {
+    setContentLength( name, value );
     if( !ignoreHeader( name) ) {
       value = rewriteValue( value, pickFirstRuleWithEqualsIgnoreCasePathMatch( headersFilterConfig, name ) );
       setContentEncoding(name, value);
@@ -144,6 +154,7 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
   // Ignore the Content-Length from the dispatch respond since the respond body may be rewritten.
   @Override
   public void addHeader( String name, String value ) {
+    setContentLength( name, value );
     if( !ignoreHeader( name ) ) {
       String rule = pickFirstRuleWithEqualsIgnoreCasePathMatch( headersFilterConfig, name );
       value = rewriteValue( value, rule );
@@ -199,6 +210,13 @@ public class UrlRewriteResponse extends GatewayResponseWrapper implements Params
       }
       String charset = MimeTypes.getCharset( mimeType, StandardCharsets.UTF_8.name() );
       inStream = filter.filter( unFilteredStream, charset, rewriter, this, UrlRewriter.Direction.OUT, filterContentConfig );
+    } else if( PassthroughResponseStreamer.isEnabled( config.getServletContext() ) ) {
+      // The body is not rewritten so the dispatch Content-Length (and any Content-Range) still applies.
+      if( contentLength != null ) {
+        super.setHeader( "Content-Length", contentLength );
+      }
+      PassthroughResponseStreamer.stream( config.getServletContext(), input, output );
+      return;
     } else {
       inStream = input;
       outStream = output;
@@ -18,6 +18,7 @@
 package org.apache.knox.gateway.filter.rewrite.impl;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteProcessor;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteServletContextListener;
 import org.apache.knox.gateway.filter.rewrite.api.UrlRewriteServletFilter;
@@ -28,6 +29,8 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -204,6 +207,41 @@ public class UrlRewriteResponseTest {
     }
   }
 
+  @Test
+  public void testPassthroughStreamResponseKeepsContentLength() throws IOException {
+    UrlRewriteProcessor rewriter = EasyMock.createNiceMock( UrlRewriteProcessor.class );
+    EasyMock.expect( rewriter.getConfig() ).andReturn( null ).anyTimes();
+
+    GatewayConfig gatewayConfig = EasyMock.createNiceMock( GatewayConfig.class );
+    EasyMock.expect( gatewayConfig.isDispatchPassthroughStreamingEnabled() ).andReturn( true ).anyTimes();
+
+    ServletContext context = EasyMock.createNiceMock( ServletContext.class );
+    EasyMock.expect( context.getAttribute( UrlRewriteServletContextListener.PROCESSOR_ATTRIBUTE_NAME ) ).andReturn( rewriter ).anyTimes();
+    EasyMock.expect( context.getAttribute( GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE ) ).andReturn( gatewayConfig ).anyTimes();
+
+    FilterConfig config = EasyMock.createNiceMock( FilterConfig.class );
+    EasyMock.expect( config.getServletContext() ).andReturn( context ).anyTimes();
+
+    String content = "{\"passthrough\":true}";
+    HttpServletRequest request = EasyMock.createNiceMock( HttpServletRequest.class );
+    HttpServletResponse response = EasyMock.createMock( HttpServletResponse.class );
+    EasyMock.expect( response.getContentType() ).andReturn( "application/octet-stream" ).anyTimes();
+    EasyMock.expect( response.getCharacterEncoding() ).andReturn( null ).anyTimes();
+    response.setHeader( "Content-Length", String.valueOf( content.length() ) );
+    EasyMock.expectLastCall().once();
+
+    EasyMock.replay( rewriter, gatewayConfig, context, config, request, response );
+
+    UrlRewriteResponse rewriteResponse = new UrlRewriteResponse( config, request, response );
+    rewriteResponse.addHeader( "Content-Length", String.valueOf( content.length() ) );
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    rewriteResponse.streamResponse( new ByteArrayInputStream( content.getBytes( StandardCharsets.UTF_8 ) ), output );
+
+    EasyMock.verify( response );
+    assertThat( output.toString( StandardCharsets.UTF_8.name() ), is( content ) );
+  }
+
   private void testStreamResponse(String content, UrlRewriteResponse rewriteResponse, String contentType) throws IOException {
     Path inputFile = Files.createTempFile("input", "test");
     Path outputFile = Files.createTempFile("output", "test");
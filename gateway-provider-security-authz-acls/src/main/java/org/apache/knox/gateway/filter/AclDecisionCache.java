@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.knox.gateway.security.GroupPrincipal;
+
+import javax.security.auth.Subject;
+import javax.servlet.FilterConfig;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A bounded cache of ACL decisions keyed by the rule that was evaluated, the
+ * effective principal, the names of the group principals and the remote address.
+ * Every input to an ACL check is part of the key, so a cached decision is always
+ * the decision the check itself would make. The cache belongs to a single filter
+ * instance and is therefore discarded whenever the topology is redeployed.
+ */
+public class AclDecisionCache {
+  public static final String CACHE_SIZE_PARAM = "acl.decision.cache.size";
+  public static final long DEFAULT_CACHE_SIZE = 10000L;
+
+  private final Cache<Key, Boolean> decisions;
+
+  public AclDecisionCache(long maximumSize) {
+    decisions = maximumSize > 0 ? Caffeine.newBuilder().maximumSize(maximumSize).build() : null;
+  }
+
+  /**
+   * @param filterConfig the configuration of the filter that owns the cache
+   * @return a cache sized by the <code>acl.decision.cache.size</code> init parameter; a size of 0 disables caching
+   */
+  public static AclDecisionCache create(FilterConfig filterConfig) {
+    final String size = filterConfig.getInitParameter(CACHE_SIZE_PARAM);
+    return new AclDecisionCache(size == null ? DEFAULT_CACHE_SIZE : Long.parseLong(size.trim()));
+  }
+
+  /**
+   * @param subject the authenticated subject
+   * @return the names of the subject's group principals
+   */
+  public static Set<String> groupNames(Subject subject) {
+    final Set<GroupPrincipal> principals = subject.getPrincipals(GroupPrincipal.class);
+    if (principals.isEmpty()) {
+      return Collections.emptySet();
+    }
+    final Set<String> names = new HashSet<>();
+    for (Principal principal : principals) {
+      names.add(principal.getName());
+    }
+    return names;
+  }
+
+  /**
+   * Returns the cached decision for the given inputs, evaluating and caching it
+   * on a miss.
+   *
+   * @param rule       the parsed ACL that is enforced
+   * @param principal  the effective principal name
+   * @param groups     the group names of the subject
+   * @param remoteAddr the client address
+   * @param decision   evaluates the ACL for the given inputs
+   * @return <code>true</code> if access is granted
+   */
+  public boolean isAccessGranted(AclParser rule, String principal, Set<String> groups, String remoteAddr,
+                                 BooleanSupplier decision) {
+    if (decisions == null) {
+      return decision.getAsBoolean();
+    }
+    return decisions.get(new Key(rule, principal, groups, remoteAddr), key -> decision.getAsBoolean());
+  }
+
+  public long size() {
+    return decisions == null ? 0 : decisions.estimatedSize();
+  }
+
+  public void clear() {
+    if (decisions != null) {
+      decisions.invalidateAll();
+    }
+  }
+
+  private static final class Key {
+    private final AclParser rule;
+    private final String principal;
+    private final Set<String> groups;
+    private final String remoteAddr;
+    private final int hash;
+
+    Key(AclParser rule, String principal, Set<String> groups, String remoteAddr) {
+      this.rule = rule;
+      this.principal = principal;
+      this.groups = groups;
+      this.remoteAddr = remoteAddr;
+      this.hash = Objects.hash(System.identityHashCode(rule), principal, groups, remoteAddr);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      final Key key = (Key) other;
+      return hash == key.hash
+          && rule == key.rule
+          && Objects.equals(principal, key.principal)
+          && Objects.equals(remoteAddr, key.remoteAddr)
+          && groups.equals(key.groups);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -24,7 +24,6 @@ import org.apache.knox.gateway.audit.api.Auditor;
 import org.apache.knox.gateway.audit.api.ResourceType;
 import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
-import org.apache.knox.gateway.security.GroupPrincipal;
 import org.apache.knox.gateway.security.SubjectUtils;
 
 import javax.security.auth.Subject;
@@ -34,14 +33,13 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 public class AclsAuthorizationFilter implements Filter {
   private static AclsAuthorizationMessages log = MessagesFactory.get( AclsAuthorizationMessages.class );
@@ -53,6 +51,7 @@ public class AclsAuthorizationFilter implements Filter {
   private AclParser parser = new AclParser();
   private List<String> adminGroups = new ArrayList<>();
   private List<String> adminUsers = new ArrayList<>();
+  private AclDecisionCache decisionCache;
 
   @Override
   public void init(FilterConfig filterConfig) throws ServletException {
@@ -78,6 +77,7 @@ public class AclsAuthorizationFilter implements Filter {
     log.aclProcessingMode(aclProcessingMode);
     String acls = getInitParameter(filterConfig, resourceRole + ".acl");
     parser.parseAcls(resourceRole, acls);
+    decisionCache = AclDecisionCache.create(filterConfig);
   }
 
   private String getInitParameter(FilterConfig filterConfig, String paramName) {
@@ -94,6 +94,9 @@ public class AclsAuthorizationFilter implements Filter {
 
   @Override
   public void destroy() {
+    if (decisionCache != null) {
+      decisionCache.clear();
+    }
   }
 
   @Override
@@ -120,17 +123,23 @@ public class AclsAuthorizationFilter implements Filter {
       return true;
     }
 
+    final Subject subject = SubjectUtils.getCurrentSubject();
+    final String effectivePrincipalName = SubjectUtils.getEffectivePrincipalName(subject);
+    final Set<String> groups = AclDecisionCache.groupNames(subject);
+    final String remoteAddr = request.getRemoteAddr();
+    return decisionCache.isAccessGranted(parser, effectivePrincipalName, groups, remoteAddr,
+        () -> checkAcls(effectivePrincipalName, groups, remoteAddr));
+  }
+
+  private boolean checkAcls(String effectivePrincipalName, Set<String> groups, String remoteAddr) {
     boolean groupAccess = false;
     boolean ipAddrAccess;
 
-    final Subject subject = SubjectUtils.getCurrentSubject();
-    final String effectivePrincipalName = SubjectUtils.getEffectivePrincipalName(subject);
     log.effectivePrincipal(effectivePrincipalName);
     boolean userAccess = checkUserAcls(effectivePrincipalName);
     log.effectivePrincipalHasAccess(userAccess);
 
-    Object[] groups = subject.getPrincipals(GroupPrincipal.class).toArray();
-    if (groups.length > 0) {
+    if (!groups.isEmpty()) {
       groupAccess = checkGroupAcls(groups);
       log.groupPrincipalHasAccess(groupAccess);
     }
@@ -143,8 +152,8 @@ public class AclsAuthorizationFilter implements Filter {
         groupAccess = true;
       }
     }
-    log.remoteIPAddress(((HttpServletRequest) request).getRemoteAddr());
-    ipAddrAccess = checkRemoteIpAcls(((HttpServletRequest) request).getRemoteAddr());
+    log.remoteIPAddress(remoteAddr);
+    ipAddrAccess = checkRemoteIpAcls(remoteAddr);
     log.remoteIPAddressHasAccess(ipAddrAccess);
 
     if ("OR".equals(aclProcessingMode)) {
@@ -199,7 +208,7 @@ public class AclsAuthorizationFilter implements Filter {
     return allowed;
   }
 
-  boolean checkGroupAcls(Object[] userGroups) {
+  boolean checkGroupAcls(Set<String> userGroups) {
     boolean allowed;
     if (userGroups == null) {
       return false;
@@ -216,15 +225,8 @@ public class AclsAuthorizationFilter implements Filter {
     return allowed;
   }
 
-  private boolean hasAllowedPrincipal(List<String> allowed, Object[] userGroups) {
-    boolean rc = false;
-    for (Object userGroup : userGroups) {
-      if (allowed.contains(((Principal) userGroup).getName())) {
-        rc = true;
-        break;
-      }
-    }
-    return rc;
+  private boolean hasAllowedPrincipal(List<String> allowed, Set<String> userGroups) {
+    return allowed.stream().anyMatch(userGroups::contains);
   }
 
   private void sendForbidden(HttpServletResponse res) {
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AclDecisionCacheTest {
+
+  @Test
+  public void testDecisionIsCachedPerInputs() throws Exception {
+    final AclDecisionCache cache = new AclDecisionCache(100);
+    final AclParser rule = new AclParser();
+    rule.parseAcls("KNOX", "guest;admin;*");
+    final AtomicInteger evaluations = new AtomicInteger();
+    final Set<String> groups = new HashSet<>(Arrays.asList("users", "admin"));
+
+    assertTrue(cache.isAccessGranted(rule, "guest", groups, "127.0.0.1", () -> evaluations.incrementAndGet() > 0));
+    assertTrue(cache.isAccessGranted(rule, "guest", new HashSet<>(Arrays.asList("admin", "users")), "127.0.0.1",
+        () -> false));
+    assertEquals(1, evaluations.get());
+
+    /* any differing input is a different decision */
+    assertFalse(cache.isAccessGranted(rule, "guest", Collections.singleton("users"), "127.0.0.1", () -> false));
+    assertFalse(cache.isAccessGranted(rule, "guest", groups, "10.0.0.1", () -> false));
+    assertFalse(cache.isAccessGranted(rule, "sam", groups, "127.0.0.1", () -> false));
+    assertFalse(cache.isAccessGranted(new AclParser(), "guest", groups, "127.0.0.1", () -> false));
+    assertEquals(5, cache.size());
+
+    cache.clear();
+    assertFalse(cache.isAccessGranted(rule, "guest", groups, "127.0.0.1", () -> false));
+  }
+
+  @Test
+  public void testZeroSizeDisablesCaching() throws Exception {
+    final AclDecisionCache cache = new AclDecisionCache(0);
+    final AclParser rule = new AclParser();
+    final AtomicInteger evaluations = new AtomicInteger();
+
+    cache.isAccessGranted(rule, "guest", Collections.emptySet(), null, () -> evaluations.incrementAndGet() > 0);
+    cache.isAccessGranted(rule, "guest", Collections.emptySet(), null, () -> evaluations.incrementAndGet() > 0);
+    assertEquals(2, evaluations.get());
+    assertEquals(0, cache.size());
+  }
+}
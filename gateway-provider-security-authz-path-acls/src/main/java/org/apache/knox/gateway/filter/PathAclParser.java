@@ -33,6 +33,8 @@ public class PathAclParser {
       PathAclsAuthorizationMessages.class);
   /* A Map of path to ACLs (users, groups, ips) to match */
   public Map<Matcher, AclParser> rulesMap = new HashMap<>();
+  /* All path templates in a single matcher so a request is resolved with one traversal */
+  private final Matcher<AclParser> ruleIndex = new Matcher<>();
   public PathAclParser() {
     super();
   }
@@ -70,6 +72,7 @@ public class PathAclParser {
           aclParser.parseAcls(resourceRole, aclRules);
           /* Save our rule and the parsed path */
           rulesMap.put(urlMatcher, aclParser);
+          ruleIndex.add(urlPatternTemplate, aclParser);
         }
 
       }
@@ -78,6 +81,15 @@ public class PathAclParser {
     }
   }
 
+  /**
+   * @param url the request URL
+   * @return the ACLs of the most specific rule whose path matches the URL; or <code>null</code> if none matches
+   */
+  public AclParser match(Template url) {
+    final Matcher<AclParser>.Match match = ruleIndex.match(url);
+    return match == null ? null : match.getValue();
+  }
+
   public Map getRulesMap() {
     return Collections.unmodifiableMap(rulesMap);
   }
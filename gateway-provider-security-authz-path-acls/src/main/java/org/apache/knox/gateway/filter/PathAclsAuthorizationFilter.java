@@ -25,9 +25,7 @@ import org.apache.knox.gateway.audit.api.Auditor;
 import org.apache.knox.gateway.audit.api.ResourceType;
 import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
-import org.apache.knox.gateway.security.GroupPrincipal;
 import org.apache.knox.gateway.security.SubjectUtils;
-import org.apache.knox.gateway.util.urltemplate.Matcher;
 import org.apache.knox.gateway.util.urltemplate.Parser;
 import org.apache.knox.gateway.util.urltemplate.Template;
 
@@ -42,7 +40,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -50,6 +47,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 public class PathAclsAuthorizationFilter implements Filter {
   private static PathAclsAuthorizationMessages log = MessagesFactory.get(
@@ -64,6 +62,7 @@ public class PathAclsAuthorizationFilter implements Filter {
   private List<String> adminGroups = new ArrayList<>();
   private List<String> adminUsers = new ArrayList<>();
   private Map<String, String> rawRules = new HashMap<>();
+  private AclDecisionCache decisionCache;
 
   @Override
   public void init(FilterConfig filterConfig) {
@@ -114,6 +113,7 @@ public class PathAclsAuthorizationFilter implements Filter {
     log.aclProcessingMode(aclProcessingMode);
     /* Rules for services */
     pathAclParser.parsePathAcls(resourceRole, rawRules);
+    decisionCache = AclDecisionCache.create(filterConfig);
   }
 
   private String getInitParameter(FilterConfig filterConfig, String paramName) {
@@ -130,6 +130,9 @@ public class PathAclsAuthorizationFilter implements Filter {
 
   @Override
   public void destroy() {
+    if (decisionCache != null) {
+      decisionCache.clear();
+    }
   }
 
   @Override
@@ -171,7 +174,6 @@ public class PathAclsAuthorizationFilter implements Filter {
       }
 
       final Template requestUrlTemplate = Parser.parseLiteral(requestURL);
-      final Map<Matcher, AclParser> rulesMap = pathAclParser.getRulesMap();
 
       /**
        *
@@ -182,13 +184,10 @@ public class PathAclsAuthorizationFilter implements Filter {
        * use case in the future.
        */
       /* See if we have any path match */
-      for (final Map.Entry<Matcher, AclParser> e : rulesMap.entrySet()) {
-        final Matcher<String>.Match match = e.getKey()
-            .match(requestUrlTemplate);
-        if (match != null) {
-          /* we have a path match, now check ACLs */
-          return checkACLs(e.getValue(), request);
-        }
+      final AclParser aclParser = pathAclParser.match(requestUrlTemplate);
+      if (aclParser != null) {
+        /* we have a path match, now check ACLs */
+        return checkACLs(aclParser, request);
       }
 
     } catch (URISyntaxException e) {
@@ -207,18 +206,27 @@ public class PathAclsAuthorizationFilter implements Filter {
       return true;
     }
 
-    boolean groupAccess = false;
-    boolean ipAddrAccess;
-
     final Subject subject = SubjectUtils.getCurrentSubject();
     final String effectivePrincipalName = SubjectUtils.getEffectivePrincipalName(
         subject);
+    final Set<String> groups = AclDecisionCache.groupNames(subject);
+    final String remoteAddr = request.getRemoteAddr();
+    return decisionCache.isAccessGranted(aclParser, effectivePrincipalName,
+        groups, remoteAddr,
+        () -> checkACLs(aclParser, effectivePrincipalName, groups, remoteAddr));
+  }
+
+  private boolean checkACLs(final AclParser aclParser,
+      final String effectivePrincipalName, final Set<String> groups,
+      final String remoteAddr) {
+    boolean groupAccess = false;
+    boolean ipAddrAccess;
+
     log.effectivePrincipal(effectivePrincipalName);
     boolean userAccess = checkUserAcls(effectivePrincipalName, aclParser);
     log.effectivePrincipalHasAccess(userAccess);
 
-    Object[] groups = subject.getPrincipals(GroupPrincipal.class).toArray();
-    if (groups.length > 0) {
+    if (!groups.isEmpty()) {
       groupAccess = checkGroupAcls(groups, aclParser);
       log.groupPrincipalHasAccess(groupAccess);
     } else {
@@ -230,9 +238,8 @@ public class PathAclsAuthorizationFilter implements Filter {
         groupAccess = true;
       }
     }
-    log.remoteIPAddress(((HttpServletRequest) request).getRemoteAddr());
-    ipAddrAccess = checkRemoteIpAcls(
-        ((HttpServletRequest) request).getRemoteAddr(), aclParser);
+    log.remoteIPAddress(remoteAddr);
+    ipAddrAccess = checkRemoteIpAcls(remoteAddr, aclParser);
     log.remoteIPAddressHasAccess(ipAddrAccess);
 
     if ("OR".equals(aclProcessingMode)) {
@@ -285,7 +292,7 @@ public class PathAclsAuthorizationFilter implements Filter {
     return allowed;
   }
 
-  boolean checkGroupAcls(final Object[] userGroups, final AclParser aclParser) {
+  boolean checkGroupAcls(final Set<String> userGroups, final AclParser aclParser) {
     boolean allowed;
     if (userGroups == null) {
       return false;
@@ -302,15 +309,8 @@ public class PathAclsAuthorizationFilter implements Filter {
   }
 
   private boolean hasAllowedPrincipal(List<String> allowed,
-      Object[] userGroups) {
-    boolean rc = false;
-    for (Object userGroup : userGroups) {
-      if (allowed.contains(((Principal) userGroup).getName())) {
-        rc = true;
-        break;
-      }
-    }
-    return rc;
+      Set<String> userGroups) {
+    return allowed.stream().anyMatch(userGroups::contains);
   }
 
   private void sendForbidden(HttpServletResponse res) {
@@ -91,6 +91,9 @@ public interface JWTMessages {
   @Message( level = MessageLevel.INFO, text = "Initialized token signature verification cache for the {0} topology." )
   void initializedSignatureVerificationCache(String topology);
 
+  @Message( level = MessageLevel.DEBUG, text = "Evicted the signature verification record of revoked token {0}" )
+  void evictedRevokedTokenVerification(String tokenId);
+
   @Message( level = MessageLevel.ERROR, text = "Failed to parse passcode token: {0}" )
   void failedToParsePasscodeToken(@StackTrace( level = MessageLevel.ERROR) Exception e);
 
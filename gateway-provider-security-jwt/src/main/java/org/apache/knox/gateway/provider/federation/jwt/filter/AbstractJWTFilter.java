@@ -173,6 +173,10 @@ public abstract class AbstractJWTFilter implements Filter {
     // Setup the verified tokens cache
     topologyName = context != null ? (String) context.getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE) : null;
     signatureVerificationCache = SignatureVerificationCache.getInstance(topologyName, filterConfig);
+    if (tokenStateService != null) {
+      // Discard the verification records of tokens as soon as they are revoked
+      tokenStateService.addTokenStateListener(signatureVerificationCache);
+    }
 
     String fallbackConfig = filterConfig.getInitParameter(JWT_INSTANCE_KEY_FALLBACK);
     isJwtInstanceKeyFallback = fallbackConfig != null ? Boolean.parseBoolean(fallbackConfig) : JWT_INSTANCE_KEY_FALLBACK_DEFAULT;
@@ -379,7 +383,21 @@ public abstract class AbstractJWTFilter implements Filter {
   }
 
   public Subject createSubjectFromToken(final String token) throws ParseException, UnknownTokenException {
-    return createSubjectFromToken(new JWTToken(token));
+    return createSubjectFromToken(parseToken(token));
+  }
+
+  /**
+   * Parse the specified serialized JWT, reusing the parsed token if its signature has already been verified.
+   *
+   * @param token A serialized JWT.
+   *
+   * @return The parsed token.
+   *
+   * @throws ParseException if the token cannot be parsed.
+   */
+  protected JWT parseToken(final String token) throws ParseException {
+    final VerifiedToken verified = signatureVerificationCache == null ? null : signatureVerificationCache.getVerifiedToken(token);
+    return verified != null ? verified.getToken() : new JWTToken(token);
   }
 
   protected Subject createSubjectFromToken(final JWT token) throws UnknownTokenException {
@@ -615,7 +633,8 @@ public abstract class AbstractJWTFilter implements Filter {
     final byte[] storedPasscode = tokenMetadata == null ? null : tokenMetadata.getPasscode().getBytes(UTF_8);
     final boolean validPasscode = Arrays.equals(tokenMAC.hash(tokenId, issueTime, userName, passcode).getBytes(UTF_8), storedPasscode);
     if (validPasscode) {
-      recordSignatureVerification(passcode);
+      // Associate the record with the token, so it is evicted if the token is revoked
+      recordSignatureVerification(passcode, tokenId);
     }
     return validPasscode;
   }
@@ -669,6 +688,8 @@ public abstract class AbstractJWTFilter implements Filter {
 
       if (verified) { // If successful, record the verification for future reference
         recordSignatureVerification(serializedJWT);
+        // Keep the parsed token as well, so that requests bearing it again need not even parse it
+        signatureVerificationCache.recordVerifiedToken(token);
       }
     }
 
@@ -692,7 +713,17 @@ public abstract class AbstractJWTFilter implements Filter {
    * @param token The serialized String for a JWT or Passcode token which has been successfully verified.
    */
   protected void recordSignatureVerification(final String token) {
-    signatureVerificationCache.recordSignatureVerification(token);
+    recordSignatureVerification(token, null);
+  }
+
+  /**
+   * Record a successful JWT or Passcode token signature verification, which is evicted if the token is revoked.
+   *
+   * @param token   The serialized String for a JWT or Passcode token which has been successfully verified.
+   * @param tokenId The unique identifier of the token, or null if it is not known.
+   */
+  protected void recordSignatureVerification(final String token, final String tokenId) {
+    signatureVerificationCache.recordSignatureVerification(token, tokenId);
   }
 
   /**
@@ -51,11 +51,14 @@ import java.util.Set;
 public class AccessTokenFederationFilter implements Filter {
   private static JWTMessages log = MessagesFactory.get( JWTMessages.class );
   private static final String BEARER = "Bearer ";
+  private static final String ACCESS_TOKEN_CACHE_SUFFIX = "-access-token";
 
   private JWTokenAuthority authority;
 
   private TokenStateService tokenStateService;
 
+  private SignatureVerificationCache signatureVerificationCache;
+
   @Override
   public void init( FilterConfig filterConfig ) throws ServletException {
     GatewayServices services = (GatewayServices) filterConfig.getServletContext().getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
@@ -64,6 +67,14 @@ public class AccessTokenFederationFilter implements Filter {
     if (TokenUtils.isServerManagedTokenStateEnabled(filterConfig)) {
       tokenStateService = services.getService(ServiceType.TOKEN_STATE_SERVICE);
     }
+
+    // Tokens are verified against the gateway signing key here, so do not share records with the other JWT providers
+    final String topologyName = (String) filterConfig.getServletContext().getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
+    signatureVerificationCache = SignatureVerificationCache.getInstance(
+        (topologyName != null ? topologyName : SignatureVerificationCache.DEFAULT_CACHE_ID) + ACCESS_TOKEN_CACHE_SUFFIX, filterConfig);
+    if (tokenStateService != null) {
+      tokenStateService.addTokenStateListener(signatureVerificationCache);
+    }
   }
 
   @Override
@@ -78,17 +89,26 @@ public class AccessTokenFederationFilter implements Filter {
       // what follows the bearer designator should be the JWT token being used to request or as an access token
       String wireToken = header.substring(BEARER.length());
       JWTToken token;
-      try {
-        token = JWTToken.parseToken(wireToken);
-      } catch (ParseException e) {
-        throw new ServletException("ParseException encountered while processing the JWT token: ", e);
-      }
-
       boolean verified = false;
-      try {
-        verified = authority.verifyToken(token);
-      } catch (TokenServiceException e) {
-        log.unableToVerifyToken(e);
+      final VerifiedToken verifiedToken = signatureVerificationCache.getVerifiedToken(wireToken);
+      if (verifiedToken != null && verifiedToken.getToken() instanceof JWTToken) {
+        token = (JWTToken) verifiedToken.getToken();
+        verified = true;
+      } else {
+        try {
+          token = JWTToken.parseToken(wireToken);
+        } catch (ParseException e) {
+          throw new ServletException("ParseException encountered while processing the JWT token: ", e);
+        }
+
+        try {
+          verified = authority.verifyToken(token);
+        } catch (TokenServiceException e) {
+          log.unableToVerifyToken(e);
+        }
+        if (verified) {
+          signatureVerificationCache.recordVerifiedToken(token);
+        }
       }
 
       final String tokenId = TokenUtils.getTokenId(token);
@@ -28,7 +28,6 @@ import org.apache.knox.gateway.security.TokenExchangePrincipalImpl;
 import org.apache.knox.gateway.services.security.token.TokenUtils;
 import org.apache.knox.gateway.services.security.token.UnknownTokenException;
 import org.apache.knox.gateway.services.security.token.impl.JWT;
-import org.apache.knox.gateway.services.security.token.impl.JWTToken;
 import org.apache.knox.gateway.util.AuthFilterUtils;
 import org.apache.knox.gateway.util.CertificateUtils;
 import org.apache.knox.gateway.util.CookieUtils;
@@ -497,7 +496,7 @@ public class JWTFederationFilter extends AbstractJWTFilter {
   private JWT parseAndValidateJWT(HttpServletRequest request, HttpServletResponse response,
                                   FilterChain chain, String tokenValue)
       throws ParseException, IOException, ServletException {
-    JWT token = new JWTToken(tokenValue);
+    JWT token = parseToken(tokenValue);
     if (validateToken(request, response, chain, token)) {
       return token;
     }
@@ -241,7 +241,7 @@ public class SSOCookieFederationFilter extends AbstractJWTFilter {
       for(Cookie ssoCookie : ssoCookies) {
         String wireToken = ssoCookie.getValue();
         try {
-          JWT token = new JWTToken(wireToken);
+          JWT token = parseToken(wireToken);
           if (validateToken(req, res, chain, token)) {
             Subject subject = createSubjectFromToken(token);
             request.setAttribute(TokenUtils.ATTR_CURRENT_KNOXSSO_COOKIE_TOKEN_ID, token.getClaim(JWTToken.KNOX_ID_CLAIM));
@@ -19,16 +19,34 @@ package org.apache.knox.gateway.provider.federation.jwt.filter;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.provider.federation.jwt.JWTMessages;
+import org.apache.knox.gateway.services.security.token.TokenStateListener;
+import org.apache.knox.gateway.services.security.token.TokenUtils;
+import org.apache.knox.gateway.services.security.token.impl.JWT;
+import org.apache.knox.gateway.util.Tokens;
 
 import javax.servlet.FilterConfig;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A shared record of tokens for which the signature has been verified.
+ * <p>
+ * Records are keyed by a SHA-256 digest of the serialized token rather than the token itself. Records of JWTs also hold
+ * the parsed token, so that repeated requests bearing the same token need neither parse nor verify it again. These
+ * records are evicted when the token expires, and when it is revoked through the TokenStateService this cache is
+ * registered with.
  */
-public class SignatureVerificationCache {
+public class SignatureVerificationCache implements TokenStateListener {
 
     public static final String TOKENS_VERIFIED_CACHE_MAX = "tokens.verified.cache.max";
     private static final int   TOKENS_VERIFIED_CACHE_MAX_DEFAULT = 250;
@@ -39,7 +57,18 @@ public class SignatureVerificationCache {
 
     private static final ConcurrentHashMap<String, SignatureVerificationCache> instances = new ConcurrentHashMap<>();
 
-    private Cache<String, Boolean> verifiedTokens;
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    /* The keys of the records of each token id, so that revoking a token need not scan the whole cache */
+    private final ConcurrentHashMap<String, Set<String>> keysByTokenId = new ConcurrentHashMap<>();
 
     /**
      * Caches are topology-specific because the configuration is defined at the provider level.
@@ -82,7 +111,34 @@ public class SignatureVerificationCache {
             }
         }
 
-        verifiedTokens = Caffeine.newBuilder().maximumSize(maxCacheSize).build();
+        verifiedTokens = Caffeine.newBuilder()
+                                 .maximumSize(maxCacheSize)
+                                 .expireAfter(new TokenExpiry())
+                                 .removalListener(this::onRemoval)
+                                 .executor(Runnable::run)
+                                 .build();
+    }
+
+    static String digest(final String token) {
+        final byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private void record(final String key, final VerifiedToken verified) {
+        if (verified.getTokenId() != null) {
+            keysByTokenId.computeIfAbsent(verified.getTokenId(), id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        verifiedTokens.put(key, verified);
+    }
+
+    private void onRemoval(final String key, final VerifiedToken verified, final RemovalCause cause) {
+        // A replaced record is replaced by one for the same token, which is still indexed
+        if (cause != RemovalCause.REPLACED && verified != null && verified.getTokenId() != null) {
+            keysByTokenId.computeIfPresent(verified.getTokenId(), (id, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
     }
 
     /**
@@ -93,7 +149,7 @@ public class SignatureVerificationCache {
      * @return true, if the specified token has been previously verified; Otherwise, false.
      */
     public boolean hasSignatureBeenVerified(final String token) {
-        return (verifiedTokens.getIfPresent(token) != null);
+        return (verifiedTokens.getIfPresent(digest(token)) != null);
     }
 
     /**
@@ -102,7 +158,38 @@ public class SignatureVerificationCache {
      * @param token A serialized JWT or Passcode token for which the signature has been successfully verified.
      */
     public void recordSignatureVerification(final String token) {
-        verifiedTokens.put(token, true);
+        recordSignatureVerification(token, null);
+    }
+
+    /**
+     * Record a successful token signature verification, which is evicted if the token is revoked.
+     *
+     * @param token   A serialized JWT or Passcode token for which the signature has been successfully verified.
+     * @param tokenId The unique identifier of the token, or null if it is not known.
+     */
+    public void recordSignatureVerification(final String token, final String tokenId) {
+        record(digest(token), new VerifiedToken(null, tokenId, Long.MAX_VALUE));
+    }
+
+    /**
+     * Record a successful JWT signature verification along with the parsed token.
+     *
+     * @param token A JWT for which the signature has been successfully verified.
+     */
+    public void recordVerifiedToken(final JWT token) {
+        final Date expires = token.getExpiresDate();
+        record(digest(token.toString()),
+               new VerifiedToken(token, TokenUtils.getTokenId(token), expires == null ? Long.MAX_VALUE : expires.getTime()));
+    }
+
+    /**
+     * @param token A serialized JWT.
+     *
+     * @return The parsed token if its signature has previously been verified and it has not expired since; Otherwise, null.
+     */
+    public VerifiedToken getVerifiedToken(final String token) {
+        final VerifiedToken verified = verifiedTokens.getIfPresent(digest(token));
+        return verified == null || verified.getToken() == null || verified.isExpired() ? null : verified;
     }
 
     /**
@@ -111,7 +198,16 @@ public class SignatureVerificationCache {
      * @param token The serialized JWT or Passcode token for which the associated signature verification record should be evicted.
      */
     public void removeSignatureVerificationRecord(final String token) {
-         verifiedTokens.asMap().remove(token);
+         verifiedTokens.asMap().remove(digest(token));
+    }
+
+    @Override
+    public void onTokenRevoked(final String tokenId) {
+        final Set<String> keys = keysByTokenId.remove(tokenId);
+        if (keys != null) {
+            verifiedTokens.invalidateAll(keys);
+            log.evictedRevokedTokenVerification(Tokens.getTokenIDDisplayText(tokenId));
+        }
     }
 
     /**
@@ -134,4 +230,27 @@ public class SignatureVerificationCache {
     public void clear() {
         verifiedTokens.asMap().clear();
     }
+
+    /**
+     * Expires each record at the expiration time of its token.
+     */
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            if (value.getExpiresAt() == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, value.getExpiresAt() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.provider.federation.jwt.filter;
+
+import org.apache.knox.gateway.services.security.token.impl.JWT;
+
+/**
+ * A record of {@link SignatureVerificationCache} for a token whose signature has been verified.
+ */
+public class VerifiedToken {
+  private final JWT token;
+  private final String tokenId;
+  private final long expiresAt;
+
+  VerifiedToken(JWT token, String tokenId, long expiresAt) {
+    this.token = token;
+    this.tokenId = tokenId;
+    this.expiresAt = expiresAt;
+  }
+
+  /**
+   * @return The parsed token, or null for a passcode token.
+   */
+  public JWT getToken() {
+    return token;
+  }
+
+  /**
+   * @return The unique identifier of the token, or null if it is not known.
+   */
+  public String getTokenId() {
+    return tokenId;
+  }
+
+  /**
+   * @return The expiration time of the token in milliseconds, or Long.MAX_VALUE if it does not expire.
+   */
+  public long getExpiresAt() {
+    return expiresAt;
+  }
+
+  public boolean isExpired() {
+    return expiresAt <= System.currentTimeMillis();
+  }
+}
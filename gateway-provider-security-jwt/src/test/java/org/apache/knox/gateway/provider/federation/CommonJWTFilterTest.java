@@ -19,6 +19,7 @@ package org.apache.knox.gateway.provider.federation;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.provider.federation.jwt.filter.AbstractJWTFilter;
 import org.apache.knox.gateway.provider.federation.jwt.filter.JWTFederationFilter;
+import org.apache.knox.gateway.security.PrimaryPrincipal;
 import org.apache.knox.gateway.security.SubjectUtils;
 import org.apache.knox.gateway.services.security.token.TokenStateService;
 import org.apache.knox.gateway.services.security.token.TokenUtils;
@@ -43,6 +44,9 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.easymock.EasyMock.anyObject;
@@ -171,6 +175,30 @@ public class CommonJWTFilterTest {
     Assert.assertEquals("anonymous", chain.subject.getPrincipals().stream().findFirst().get().getName());
   }
 
+  @Test
+  public void testSubjectFromTokenIsCreatedByOverridableHook() throws Exception {
+    final PrimaryPrincipal custom = new PrimaryPrincipal("custom");
+    handler = new TestHandler() {
+      @Override
+      protected Subject createSubjectFromTokenData(String principal,
+                                                   String expectedPrincipalClaimValue,
+                                                   String tokenId,
+                                                   List<Map<String, Object>> actorChain) {
+        Assert.assertEquals("alice", principal);
+        return new Subject(true, Collections.singleton(custom), Collections.emptySet(), Collections.emptySet());
+      }
+    };
+
+    JWT jwt = EasyMock.createNiceMock(JWT.class);
+    EasyMock.expect(jwt.getSubject()).andReturn("alice").anyTimes();
+    EasyMock.replay(jwt);
+
+    Method m = AbstractJWTFilter.class.getDeclaredMethod("createSubjectFromToken", JWT.class);
+    m.setAccessible(true);
+    Subject subject = (Subject) m.invoke(handler, jwt);
+    Assert.assertEquals(Collections.singleton(custom), subject.getPrincipals());
+  }
+
   public static class DummyFilterChain implements FilterChain {
     boolean doFilterCalled;
     Subject subject;
@@ -225,7 +253,7 @@ public class CommonJWTFilterTest {
     }
   }
 
-  static final class TestHandler extends AbstractJWTFilter {
+  static class TestHandler extends AbstractJWTFilter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
 
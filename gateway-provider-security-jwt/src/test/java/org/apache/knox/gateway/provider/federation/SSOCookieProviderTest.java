@@ -747,8 +747,8 @@ public class SSOCookieProviderTest extends AbstractJWTFilterTest {
     }
 
     @Override
-    protected void recordSignatureVerification(String tokenId) {
-      super.recordSignatureVerification(tokenId);
+    protected void recordSignatureVerification(String token, String tokenId) {
+      super.recordSignatureVerification(token, tokenId);
       verificationCount++;
     }
 
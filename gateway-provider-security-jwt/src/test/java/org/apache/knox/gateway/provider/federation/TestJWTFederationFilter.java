@@ -50,8 +50,8 @@ public class TestJWTFederationFilter extends JWTFederationFilter
     }
 
     @Override
-    protected void recordSignatureVerification(String tokenId) {
-        super.recordSignatureVerification(tokenId);
+    protected void recordSignatureVerification(String token, String tokenId) {
+        super.recordSignatureVerification(token, tokenId);
         verifiedCount++;
     }
 
@@ -19,6 +19,9 @@ package org.apache.knox.gateway.provider.federation.jwt.filter;
 
 import com.nimbusds.jwt.SignedJWT;
 import org.apache.knox.gateway.provider.federation.TestFilterConfig;
+import org.apache.knox.gateway.services.security.token.TokenUtils;
+import org.apache.knox.gateway.services.security.token.impl.JWT;
+import org.apache.knox.gateway.services.security.token.impl.JWTToken;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -34,6 +37,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class SignatureVerificationCacheTest {
@@ -151,6 +156,67 @@ public class SignatureVerificationCacheTest {
         }
     }
 
+    @Test
+    public void testVerifiedTokenIsReused() throws Exception {
+        final TestFilterConfig filterConfig = createFilterConfig("test-topology-parsed");
+        SignatureVerificationCache cache = SignatureVerificationCache.getInstance("test-topology-parsed", filterConfig);
+
+        final String serializedJWT = createTestJWT().serialize();
+        assertNull(cache.getVerifiedToken(serializedJWT));
+
+        final JWT token = new JWTToken(serializedJWT);
+        cache.recordVerifiedToken(token);
+        assertTrue(cache.hasSignatureBeenVerified(serializedJWT));
+
+        final VerifiedToken verified = cache.getVerifiedToken(serializedJWT);
+        assertNotNull(verified);
+        assertSame("Expected the token parsed when it was verified.", token, verified.getToken());
+        assertEquals(TokenUtils.getTokenId(token), verified.getTokenId());
+
+        // Passcode records hold no token
+        cache.recordSignatureVerification("passcode");
+        assertTrue(cache.hasSignatureBeenVerified("passcode"));
+        assertNull(cache.getVerifiedToken("passcode"));
+    }
+
+    @Test
+    public void testVerifiedTokenEvictedOnExpiry() throws Exception {
+        final TestFilterConfig filterConfig = createFilterConfig("test-topology-expiry");
+        SignatureVerificationCache cache = SignatureVerificationCache.getInstance("test-topology-expiry", filterConfig);
+
+        final String serializedJWT = JWTTestUtils.getJWT(AbstractJWTFilter.JWT_DEFAULT_ISSUER,
+                                                         "alice",
+                                                         new Date(System.currentTimeMillis() - 1000),
+                                                         privateKey).serialize();
+        cache.recordVerifiedToken(new JWTToken(serializedJWT));
+        assertNull(cache.getVerifiedToken(serializedJWT));
+        assertFalse(cache.hasSignatureBeenVerified(serializedJWT));
+    }
+
+    @Test
+    public void testVerifiedTokenEvictedOnRevocation() throws Exception {
+        final TestFilterConfig filterConfig = createFilterConfig("test-topology-revocation");
+        SignatureVerificationCache cache = SignatureVerificationCache.getInstance("test-topology-revocation", filterConfig);
+
+        final String serializedJWT = createTestJWT().serialize();
+        final JWT token = new JWTToken(serializedJWT);
+        final String otherJWT = createTestJWT().serialize();
+        cache.recordVerifiedToken(token);
+        cache.recordVerifiedToken(new JWTToken(otherJWT));
+        cache.recordSignatureVerification("passcode", TokenUtils.getTokenId(token));
+
+        cache.onTokenRevoked(TokenUtils.getTokenId(token));
+        assertFalse(cache.hasSignatureBeenVerified(serializedJWT));
+        assertFalse(cache.hasSignatureBeenVerified("passcode"));
+        assertTrue(cache.hasSignatureBeenVerified(otherJWT));
+    }
+
+    private TestFilterConfig createFilterConfig(String topologyName) {
+        final Properties filterProps = new Properties();
+        filterProps.setProperty(TestFilterConfig.TOPOLOGY_NAME_PROP, topologyName);
+        return new TestFilterConfig(filterProps);
+    }
+
     private SignedJWT createTestJWT() throws Exception {
         return JWTTestUtils.getJWT(AbstractJWTFilter.JWT_DEFAULT_ISSUER,
                                    "alice",
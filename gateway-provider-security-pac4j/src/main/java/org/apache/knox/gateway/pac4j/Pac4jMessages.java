@@ -41,6 +41,14 @@ public interface Pac4jMessages {
   @Message( level = MessageLevel.ERROR, text = "Unable to generate a password for encryption")
   void unableToGenerateAPasswordForEncryption(Exception e);
 
+  @Message( level = MessageLevel.ERROR, text = "Unable to create the shared pac4j session store: {0}")
+  void unableToCreateSharedSessionStore(Exception e);
+
+  @Message( level = MessageLevel.WARN, text = "pac4j sessions of topology {0} are kept in the memory of this gateway instance only; "
+      + "with several gateway instances, either route each client to the same instance (sticky sessions) "
+      + "or set pac4j.session.store.server.shared to true")
+  void sessionsNotShared(String clusterName);
+
   @Message( level = MessageLevel.INFO, text =
       "No private key passphrase alias found. Defaulting to master secret. Exception encountered: {0}")
   void noPrivateKeyPasshraseProvisioned(Exception e);
@@ -19,12 +19,17 @@ package org.apache.knox.gateway.pac4j.filter;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.database.DataSourceProvider;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.pac4j.Pac4jMessages;
 import org.apache.knox.gateway.pac4j.config.ClientConfigurationDecorator;
 import org.apache.knox.gateway.pac4j.config.Pac4jClientConfigurationDecorator;
 import org.apache.knox.gateway.pac4j.config.SAML2ClientConfigurationDecorator;
+import org.apache.knox.gateway.pac4j.session.InMemorySessionDataStore;
+import org.apache.knox.gateway.pac4j.session.JDBCSessionDataStore;
+import org.apache.knox.gateway.pac4j.session.KnoxServerSessionStore;
 import org.apache.knox.gateway.pac4j.session.KnoxSessionStore;
+import org.apache.knox.gateway.pac4j.session.SessionDataStore;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServiceType;
 import org.apache.knox.gateway.services.security.AliasService;
@@ -64,6 +69,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
@@ -104,6 +110,23 @@ public class Pac4jDispatcherFilter implements Filter, SessionInvalidator {
 
   private static final String PAC4J_SESSION_STORE = "pac4j.session.store";
 
+  /* keep the session data on the server and only an opaque session id in a cookie */
+  public static final String PAC4J_SESSION_STORE_SERVER = "server";
+
+  /* maximum number of sessions kept in memory by the server session store */
+  public static final String PAC4J_SESSION_STORE_SERVER_MAX_SESSIONS = "pac4j.session.store.server.max.sessions";
+
+  public static final String PAC4J_SESSION_STORE_SERVER_MAX_SESSIONS_DEFAULT = "10000";
+
+  /* seconds after which an unused server side session expires */
+  public static final String PAC4J_SESSION_STORE_SERVER_TIMEOUT = "pac4j.session.store.server.timeout";
+
+  public static final String PAC4J_SESSION_STORE_SERVER_TIMEOUT_DEFAULT = "3600";
+
+  /* share server side sessions between gateway instances through the gateway database; without it, sessions are
+   * local to each instance, so deployments with several instances need a load balancer with sticky sessions */
+  public static final String PAC4J_SESSION_STORE_SERVER_SHARED = "pac4j.session.store.server.shared";
+
   public static final String PAC4J_SESSION_STORE_EXCLUDE_GROUPS = "pac4j.session.store.exclude.groups";
 
   public static final String PAC4J_SESSION_STORE_EXCLUDE_ROLES = "pac4j.session.store.exclude.roles";
@@ -257,7 +280,12 @@ public class Pac4jDispatcherFilter implements Filter, SessionInvalidator {
 
     SessionStore sessionStore;
 
-    if(!StringUtils.isBlank(sessionStoreVar) && JEESessionStore.class.getName().contains(sessionStoreVar) ) {
+    GatewayConfig gatewayConfig = (GatewayConfig) context.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
+
+    if (PAC4J_SESSION_STORE_SERVER.equalsIgnoreCase(sessionStoreVar)) {
+      sessionStore = new KnoxServerSessionStore(cryptoService, clusterName, domainSuffix, sessionStoreConfigs,
+          createSessionDataStore(filterConfig, gatewayConfig, clusterName), getSigningSecret(clusterName));
+    } else if(!StringUtils.isBlank(sessionStoreVar) && JEESessionStore.class.getName().contains(sessionStoreVar) ) {
       /* NOTE: this is a final variable, and will be used by all requests in Knox */
       sessionStore = new JEESessionStore();
     } else {
@@ -268,10 +296,41 @@ public class Pac4jDispatcherFilter implements Filter, SessionInvalidator {
 
     SessionInvalidators.KNOX_SSO_INVALIDATOR.registerSessionInvalidator(this);
 
-    GatewayConfig gatewayConfig = (GatewayConfig) context.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
     SSL_ENABLED = gatewayConfig.isSSLEnabled();
   }
 
+  private SessionDataStore createSessionDataStore(final FilterConfig filterConfig, final GatewayConfig gatewayConfig,
+      final String clusterName) throws ServletException {
+    final Duration timeout = Duration.ofSeconds(Long.parseLong(getInitParameter(filterConfig,
+        PAC4J_SESSION_STORE_SERVER_TIMEOUT, PAC4J_SESSION_STORE_SERVER_TIMEOUT_DEFAULT)));
+    if (Boolean.parseBoolean(filterConfig.getInitParameter(PAC4J_SESSION_STORE_SERVER_SHARED))) {
+      try {
+        return new JDBCSessionDataStore(DataSourceProvider.getDataSource(gatewayConfig, aliasService),
+            gatewayConfig.getDatabaseType(), timeout);
+      } catch (Exception e) {
+        log.unableToCreateSharedSessionStore(e);
+        throw new ServletException("Unable to create the shared pac4j session store.", e);
+      }
+    }
+    log.sessionsNotShared(clusterName);
+    return new InMemorySessionDataStore(Long.parseLong(getInitParameter(filterConfig,
+        PAC4J_SESSION_STORE_SERVER_MAX_SESSIONS, PAC4J_SESSION_STORE_SERVER_MAX_SESSIONS_DEFAULT)), timeout);
+  }
+
+  private char[] getSigningSecret(final String clusterName) throws ServletException {
+    try {
+      return aliasService.getPasswordFromAliasForCluster(clusterName, KnoxSessionStore.PAC4J_PASSWORD);
+    } catch (AliasServiceException e) {
+      log.unableToGenerateAPasswordForEncryption(e);
+      throw new ServletException("Unable to get the password for signing session ids.");
+    }
+  }
+
+  private static String getInitParameter(final FilterConfig filterConfig, final String name, final String defaultValue) {
+    final String value = filterConfig.getInitParameter(name);
+    return StringUtils.isBlank(value) ? defaultValue : value;
+  }
+
   /**
    * A helper method to set filter config value
    * @param filterConfig
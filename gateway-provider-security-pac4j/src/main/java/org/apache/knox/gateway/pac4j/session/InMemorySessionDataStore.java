@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps sessions in memory. The number of sessions is bounded; the least recently used are evicted
+ * first, and sessions not accessed within the timeout expire.
+ * <p>
+ * Sessions are not shared with other gateway instances. When several instances serve the same
+ * topology, a client must be routed to the instance holding its session (sticky sessions), or
+ * the {@link JDBCSessionDataStore} must be used instead.
+ *
+ * @since 3.0.0
+ */
+public class InMemorySessionDataStore implements SessionDataStore {
+
+  private final Cache<String, Map<String, Object>> sessions;
+
+  public InMemorySessionDataStore(final long maxSessions, final Duration timeout) {
+    this.sessions = Caffeine.newBuilder()
+        .maximumSize(maxSessions)
+        .expireAfterAccess(timeout)
+        .build();
+  }
+
+  @Override
+  public Object get(final String sessionId, final String key) {
+    final Map<String, Object> session = sessions.getIfPresent(sessionId);
+    return session == null ? null : session.get(key);
+  }
+
+  @Override
+  public void set(final String sessionId, final String key, final Object value) {
+    if (value == null) {
+      final Map<String, Object> session = sessions.getIfPresent(sessionId);
+      if (session != null) {
+        session.remove(key);
+      }
+    } else {
+      sessions.get(sessionId, id -> new ConcurrentHashMap<>()).put(key, value);
+    }
+  }
+
+  @Override
+  public void remove(final String sessionId) {
+    sessions.invalidate(sessionId);
+  }
+
+  @Override
+  public void rename(final String sessionId, final String newSessionId) {
+    final Map<String, Object> session = sessions.asMap().remove(sessionId);
+    if (session != null) {
+      sessions.put(newSessionId, session);
+    }
+  }
+}
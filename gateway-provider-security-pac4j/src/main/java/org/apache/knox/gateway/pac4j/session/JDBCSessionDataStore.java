@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+import org.apache.knox.gateway.database.DatabaseType;
+import org.apache.knox.gateway.database.JDBCUtils;
+import org.pac4j.core.exception.TechnicalException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps sessions in the gateway database, so that all gateway instances of a cluster share them.
+ * Values are written with the {@link ProfileSerializer}. A session expires when it was not accessed
+ * within the timeout, like the sessions of the {@link InMemorySessionDataStore}; reads extend the
+ * expiration once a tenth of the timeout has passed, so not every read writes to the database.
+ * Expired sessions are purged at most once a minute.
+ *
+ * @since 3.0.0
+ */
+public class JDBCSessionDataStore implements SessionDataStore {
+  static final String SESSIONS_TABLE_NAME = "KNOX_PAC4J_SESSIONS";
+  private static final String GET_ATTRIBUTE_SQL = "SELECT attr_value, expiration FROM " + SESSIONS_TABLE_NAME + " WHERE session_id = ? AND attr_key = ? AND expiration > ?";
+  private static final String ADD_ATTRIBUTE_SQL = "INSERT INTO " + SESSIONS_TABLE_NAME + "(session_id, attr_key, attr_value, expiration) VALUES(?, ?, ?, ?)";
+  private static final String UPDATE_ATTRIBUTE_SQL = "UPDATE " + SESSIONS_TABLE_NAME + " SET attr_value = ?, expiration = ? WHERE session_id = ? AND attr_key = ?";
+  private static final String REMOVE_ATTRIBUTE_SQL = "DELETE FROM " + SESSIONS_TABLE_NAME + " WHERE session_id = ? AND attr_key = ?";
+  private static final String UPDATE_EXPIRATION_SQL = "UPDATE " + SESSIONS_TABLE_NAME + " SET expiration = ? WHERE session_id = ?";
+  private static final String REMOVE_SESSION_SQL = "DELETE FROM " + SESSIONS_TABLE_NAME + " WHERE session_id = ?";
+  private static final String RENAME_SESSION_SQL = "UPDATE " + SESSIONS_TABLE_NAME + " SET session_id = ? WHERE session_id = ?";
+  private static final String REMOVE_EXPIRED_SESSIONS_SQL = "DELETE FROM " + SESSIONS_TABLE_NAME + " WHERE expiration < ?";
+  private static final long PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+  private final DataSource dataSource;
+  private final long timeout;
+  private final ProfileSerializer serializer = new ProfileSerializer();
+  private final AtomicLong nextPurge = new AtomicLong();
+
+  public JDBCSessionDataStore(final DataSource dataSource, final String dbType, final Duration timeout) throws Exception {
+    this.dataSource = dataSource;
+    this.timeout = timeout.toMillis();
+    if (!JDBCUtils.tableExists(SESSIONS_TABLE_NAME, dataSource)) {
+      JDBCUtils.createTableFromSQL(DatabaseType.fromString(dbType).pac4jSessionsTableSql(), dataSource,
+          JDBCSessionDataStore.class.getClassLoader());
+    }
+  }
+
+  @Override
+  public Object get(final String sessionId, final String key) {
+    try (Connection connection = dataSource.getConnection(); PreparedStatement getAttributeStatement = connection.prepareStatement(GET_ATTRIBUTE_SQL)) {
+      getAttributeStatement.setString(1, sessionId);
+      getAttributeStatement.setString(2, key);
+      getAttributeStatement.setLong(3, System.currentTimeMillis());
+      final byte[] bytes;
+      final long expiration;
+      try (ResultSet rs = getAttributeStatement.executeQuery()) {
+        if (!rs.next()) {
+          return null;
+        }
+        bytes = rs.getBytes(1);
+        expiration = rs.getLong(2);
+      }
+      final long now = System.currentTimeMillis();
+      if (expiration - now < timeout - timeout / 10) {
+        updateExpiration(connection, sessionId, now + timeout);
+      }
+      return serializer.deserialize(bytes);
+    } catch (SQLException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  @Override
+  public void set(final String sessionId, final String key, final Object value) {
+    final long now = System.currentTimeMillis();
+    final long expiration = now + timeout;
+    try (Connection connection = dataSource.getConnection()) {
+      if (value == null) {
+        try (PreparedStatement removeAttributeStatement = connection.prepareStatement(REMOVE_ATTRIBUTE_SQL)) {
+          removeAttributeStatement.setString(1, sessionId);
+          removeAttributeStatement.setString(2, key);
+          removeAttributeStatement.executeUpdate();
+        }
+      } else {
+        final byte[] bytes = serializer.serialize(value);
+        if (!updateAttribute(connection, sessionId, key, bytes, expiration)) {
+          try {
+            addAttribute(connection, sessionId, key, bytes, expiration);
+          } catch (SQLException e) {
+            // Another gateway instance inserted the attribute since the update
+            if (!isDuplicateKey(e)) {
+              throw e;
+            }
+            updateAttribute(connection, sessionId, key, bytes, expiration);
+          }
+        }
+      }
+      updateExpiration(connection, sessionId, expiration);
+      purgeExpiredSessions(connection, now);
+    } catch (SQLException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  private boolean updateAttribute(final Connection connection, final String sessionId, final String key, final byte[] bytes,
+                                  final long expiration) throws SQLException {
+    try (PreparedStatement updateAttributeStatement = connection.prepareStatement(UPDATE_ATTRIBUTE_SQL)) {
+      updateAttributeStatement.setBytes(1, bytes);
+      updateAttributeStatement.setLong(2, expiration);
+      updateAttributeStatement.setString(3, sessionId);
+      updateAttributeStatement.setString(4, key);
+      return updateAttributeStatement.executeUpdate() == 1;
+    }
+  }
+
+  private void addAttribute(final Connection connection, final String sessionId, final String key, final byte[] bytes,
+                            final long expiration) throws SQLException {
+    try (PreparedStatement addAttributeStatement = connection.prepareStatement(ADD_ATTRIBUTE_SQL)) {
+      addAttributeStatement.setString(1, sessionId);
+      addAttributeStatement.setString(2, key);
+      addAttributeStatement.setBytes(3, bytes);
+      addAttributeStatement.setLong(4, expiration);
+      addAttributeStatement.executeUpdate();
+    }
+  }
+
+  private void updateExpiration(final Connection connection, final String sessionId, final long expiration) throws SQLException {
+    try (PreparedStatement updateExpirationStatement = connection.prepareStatement(UPDATE_EXPIRATION_SQL)) {
+      updateExpirationStatement.setLong(1, expiration);
+      updateExpirationStatement.setString(2, sessionId);
+      updateExpirationStatement.executeUpdate();
+    }
+  }
+
+  /* Not every driver throws the SQLIntegrityConstraintViolationException subclass; SQLState class 23 is the standard */
+  private static boolean isDuplicateKey(final SQLException e) {
+    return e instanceof SQLIntegrityConstraintViolationException
+        || (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+  }
+
+  @Override
+  public void remove(final String sessionId) {
+    try (Connection connection = dataSource.getConnection(); PreparedStatement removeSessionStatement = connection.prepareStatement(REMOVE_SESSION_SQL)) {
+      removeSessionStatement.setString(1, sessionId);
+      removeSessionStatement.executeUpdate();
+    } catch (SQLException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  @Override
+  public void rename(final String sessionId, final String newSessionId) {
+    try (Connection connection = dataSource.getConnection(); PreparedStatement renameSessionStatement = connection.prepareStatement(RENAME_SESSION_SQL)) {
+      renameSessionStatement.setString(1, newSessionId);
+      renameSessionStatement.setString(2, sessionId);
+      renameSessionStatement.executeUpdate();
+    } catch (SQLException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  private void purgeExpiredSessions(final Connection connection, final long now) throws SQLException {
+    final long purgeTime = nextPurge.get();
+    if (now < purgeTime || !nextPurge.compareAndSet(purgeTime, now + PURGE_INTERVAL)) {
+      return;
+    }
+    try (PreparedStatement removeExpiredStatement = connection.prepareStatement(REMOVE_EXPIRED_SESSIONS_SQL)) {
+      removeExpiredStatement.setLong(1, now);
+      removeExpiredStatement.executeUpdate();
+    }
+  }
+}
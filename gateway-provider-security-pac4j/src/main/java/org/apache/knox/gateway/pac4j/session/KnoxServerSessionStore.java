@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.knox.gateway.services.security.CryptoService;
+import org.apache.knox.gateway.util.SetCookieHeader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.pac4j.core.context.Cookie;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.context.WebContextHelper;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.util.Pac4jConstants;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Session store that keeps the session data on the server, in a {@link SessionDataStore}, and
+ * only sets a cookie holding a signed, opaque session id. Unlike the cookie based {@link KnoxSessionStore},
+ * session values are not serialized and encrypted on every request, and the request headers stay small
+ * whatever the size of the profiles.
+ *
+ * @since 3.0.0
+ */
+public class KnoxServerSessionStore extends KnoxSessionStore {
+
+    private static final Logger logger = LogManager.getLogger(KnoxServerSessionStore.class);
+
+    public static final String PAC4J_SESSION_ID_COOKIE = PAC4J_SESSION_PREFIX + "id";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final int SESSION_ID_LENGTH = 24;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SessionDataStore sessionDataStore;
+
+    private final SecretKeySpec signingKey;
+
+    public KnoxServerSessionStore(final CryptoService cryptoService,
+        final String clusterName,
+        final String domainSuffix,
+        final Map<String, String> sessionStoreConfigs,
+        final SessionDataStore sessionDataStore,
+        final char[] signingSecret) {
+        super(cryptoService, clusterName, domainSuffix, sessionStoreConfigs);
+        this.sessionDataStore = sessionDataStore;
+        this.signingKey = new SecretKeySpec(new String(signingSecret).getBytes(UTF_8), HMAC_ALGORITHM);
+    }
+
+    @Override
+    public Optional<String> getSessionId(final WebContext context, final boolean createSession) {
+        final Optional<Object> current = context.getRequestAttribute(PAC4J_SESSION_ID_COOKIE);
+        if (current.isPresent()) {
+            return Optional.of((String) current.get());
+        }
+        final Cookie cookie = WebContextHelper.getCookie(context, PAC4J_SESSION_ID_COOKIE);
+        String sessionId = cookie == null ? null : verify(cookie.getValue());
+        if (sessionId == null) {
+            if (!createSession) {
+                return Optional.empty();
+            }
+            sessionId = newSessionId();
+            addCookie(context, new SetCookieHeader(PAC4J_SESSION_ID_COOKIE, sign(sessionId)));
+        }
+        context.setRequestAttribute(PAC4J_SESSION_ID_COOKIE, sessionId);
+        return Optional.of(sessionId);
+    }
+
+    @Override
+    public Optional<Object> get(final WebContext context, final String key) {
+        final Optional<String> sessionId = getSessionId(context, false);
+        final Object value = sessionId.map(id -> sessionDataStore.get(id, key)).orElse(null);
+        logger.debug("Get from session: {} = {}", key, value);
+        return Optional.ofNullable(value);
+    }
+
+    @Override
+    public void set(final WebContext context, final String key, final Object value) {
+        if (value == null) {
+            getSessionId(context, false).ifPresent(id -> sessionDataStore.set(id, key, null));
+            return;
+        }
+        final Object trimmed = key.contentEquals(Pac4jConstants.USER_PROFILES) ? clearUserProfile(value) : value;
+        logger.debug("Save in session: {} = {}", key, trimmed);
+        getSessionId(context, true).ifPresent(id -> sessionDataStore.set(id, key, trimmed));
+    }
+
+    @Override
+    public boolean destroySession(final WebContext context) {
+        final Optional<String> sessionId = getSessionId(context, false);
+        sessionId.ifPresent(id -> {
+            sessionDataStore.remove(id);
+            context.setRequestAttribute(PAC4J_SESSION_ID_COOKIE, null);
+            addCookie(context, new SetCookieHeader(PAC4J_SESSION_ID_COOKIE, null));
+        });
+        return sessionId.isPresent();
+    }
+
+    /* Issues a new session id for the session data, e.g. after login, to prevent session fixation */
+    @Override
+    public boolean renewSession(final WebContext context) {
+        final Optional<String> sessionId = getSessionId(context, false);
+        if (!sessionId.isPresent()) {
+            return false;
+        }
+        final String newSessionId = newSessionId();
+        sessionDataStore.rename(sessionId.get(), newSessionId);
+        context.setRequestAttribute(PAC4J_SESSION_ID_COOKIE, newSessionId);
+        addCookie(context, new SetCookieHeader(PAC4J_SESSION_ID_COOKIE, sign(newSessionId)));
+        return true;
+    }
+
+    private static String newSessionId() {
+        final byte[] bytes = new byte[SESSION_ID_LENGTH];
+        RANDOM.nextBytes(bytes);
+        return Base64.encodeBase64URLSafeString(bytes);
+    }
+
+    String sign(final String sessionId) {
+        return sessionId + '.' + Base64.encodeBase64URLSafeString(hmac(sessionId));
+    }
+
+    /* returns the session id of a cookie value if its signature is valid */
+    String verify(final String cookieValue) {
+        if (cookieValue == null) {
+            return null;
+        }
+        final int separator = cookieValue.indexOf('.');
+        if (separator <= 0) {
+            return null;
+        }
+        final String sessionId = cookieValue.substring(0, separator);
+        final byte[] signature = Base64.decodeBase64(cookieValue.substring(separator + 1));
+        return MessageDigest.isEqual(hmac(sessionId), signature) ? sessionId : null;
+    }
+
+    private byte[] hmac(final String sessionId) {
+        try {
+            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac.doFinal(sessionId.getBytes(UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new TechnicalException(e);
+        }
+    }
+}
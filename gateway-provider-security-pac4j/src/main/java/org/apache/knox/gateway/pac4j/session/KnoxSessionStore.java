@@ -33,7 +33,6 @@ import org.pac4j.core.context.WebContext;
 import org.pac4j.core.context.session.SessionStore;
 import org.pac4j.core.exception.TechnicalException;
 import org.pac4j.core.profile.CommonProfile;
-import org.pac4j.core.util.serializer.JavaSerializer;
 import org.pac4j.core.util.Pac4jConstants;
 import org.pac4j.jee.context.JEEContext;
 
@@ -63,6 +62,7 @@ import static org.apache.knox.gateway.pac4j.filter.Pac4jDispatcherFilter.PAC4J_S
 /**
  * Specific session store where data are saved into cookies (and not in memory).
  * Each data is encrypted and base64 encoded before being saved as a cookie (for security reasons).
+ * Profiles are written with the compact {@link ProfileSerializer} to keep the cookies small.
  *
  * @since 0.8.0
  */
@@ -74,7 +74,7 @@ public class KnoxSessionStore implements SessionStore {
 
     public static final String PAC4J_SESSION_PREFIX = "pac4j.session.";
 
-    private final JavaSerializer javaSerializer;
+    private final ProfileSerializer serializer;
 
     private final CryptoService cryptoService;
 
@@ -92,7 +92,7 @@ public class KnoxSessionStore implements SessionStore {
         final String clusterName,
         final String domainSuffix,
         final Map<String, String> sessionStoreConfigs) {
-        this.javaSerializer = new JavaSerializer();
+        this.serializer = new ProfileSerializer();
         this.cryptoService = cryptoService;
         this.clusterName = clusterName;
         this.domainSuffix = domainSuffix;
@@ -116,7 +116,7 @@ public class KnoxSessionStore implements SessionStore {
                 result.salt);
             if (clear != null) {
                 try {
-                    return javaSerializer.deserializeFromBytes(unCompress(clear));
+                    return serializer.deserialize(unCompress(clear));
                 } catch (IOException e) {
                     throw new TechnicalException(e);
                 }
@@ -141,7 +141,7 @@ public class KnoxSessionStore implements SessionStore {
             || (o instanceof Map<?,?> && ((Map<?,?>)o).isEmpty())) {
             return null;
         } else {
-            byte[] bytes = javaSerializer.serializeToBytes(o);
+            byte[] bytes = serializer.serialize(o);
 
             /* compress the data  */
             try {
@@ -175,6 +175,15 @@ public class KnoxSessionStore implements SessionStore {
             logger.debug("Save in session: {} = {}", key, profile);
             setCookieHeader = new SetCookieHeader(PAC4J_SESSION_PREFIX + key, compressEncryptBase64(profile));
         }
+        addCookie(context, setCookieHeader);
+    }
+
+    /**
+     * Sets the domain, path and flags of a session cookie and adds it to the response.
+     * @param context the web context
+     * @param setCookieHeader the session cookie
+     */
+    protected void addCookie(final WebContext context, final SetCookieHeader setCookieHeader) {
         try {
             String domain = Urls
                 .getDomainName(context.getFullRequestURL(), this.domainSuffix);
@@ -255,7 +264,7 @@ public class KnoxSessionStore implements SessionStore {
      * @return trimmed profile object
      * @since 1.3.0
      */
-    private Object clearUserProfile(final Object value) {
+    protected Object clearUserProfile(final Object value) {
         if(value instanceof Map<?,?>) {
             final Map<String, CommonProfile> profiles = (Map<String, CommonProfile>) value;
             profiles.forEach((name, profile) -> profile.removeLoginData());
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.util.serializer.JavaSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serializes session values for the pac4j session stores.
+ * <p>
+ * User profiles, which make up most of the session data, are written in a compact binary form:
+ * the profile class, id, client name, roles and attributes, with attribute values of common types
+ * written directly. Any other value, and attribute values of other types, fall back to Java
+ * serialization. Values serialized by Java serialization alone, i.e. by earlier versions of the
+ * session store, are still read. Strings are written as length-prefixed UTF-8, so unlike
+ * {@link DataOutputStream#writeUTF(String)} they are not limited to 64KB.
+ * <p>
+ * Java-serialized values are only read back through an {@link ObjectInputFilter} which admits the
+ * JDK value and collection types and the pac4j, Nimbus and OpenSAML classes found in sessions, and
+ * rejects any other class.
+ *
+ * @since 3.0.0
+ */
+class ProfileSerializer {
+
+  private static final byte PROFILES = 1;
+  private static final byte PROFILE = 2;
+  private static final byte JAVA = 3;
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte BOOLEAN = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte DATE = 6;
+  private static final byte STRING_LIST = 7;
+  private static final byte STRING_SET = 8;
+  private static final byte OBJECT = 9;
+
+  /* first byte of a Java serialization stream (STREAM_MAGIC) */
+  private static final byte JAVA_STREAM_MAGIC = (byte) 0xAC;
+
+  /* the classes which may be Java deserialized, with limits on the object graph */
+  static final ObjectInputFilter JAVA_FILTER = ObjectInputFilter.Config.createFilter(
+      "maxdepth=32;maxrefs=100000;maxarray=1000000;"
+          + "java.lang.*;java.util.*;java.time.*;java.net.URI;java.net.URL;"
+          + "org.pac4j.**;com.nimbusds.**;net.minidev.json.*;com.github.scribejava.**;org.opensaml.**;!*");
+
+  private final JavaSerializer javaSerializer = new JavaSerializer();
+
+  byte[] serialize(final Object value) {
+    try (ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+         DataOutputStream out = new DataOutputStream(bytes)) {
+      if (isProfiles(value)) {
+        out.writeByte(PROFILES);
+        final Map<?, ?> profiles = (Map<?, ?>) value;
+        out.writeInt(profiles.size());
+        for (final Map.Entry<?, ?> entry : profiles.entrySet()) {
+          writeUtf8(out, (String) entry.getKey());
+          writeProfile(out, (CommonProfile) entry.getValue());
+        }
+      } else if (value instanceof CommonProfile) {
+        out.writeByte(PROFILE);
+        writeProfile(out, (CommonProfile) value);
+      } else {
+        out.writeByte(JAVA);
+        writeBytes(out, javaSerializer.serializeToBytes(value));
+      }
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  Object deserialize(final byte[] data) {
+    if (data == null || data.length == 0) {
+      return null;
+    }
+    if (data[0] == JAVA_STREAM_MAGIC) {
+      return readJava(data);
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      switch (in.readByte()) {
+        case PROFILES:
+          final int size = in.readInt();
+          final Map<String, CommonProfile> profiles = new LinkedHashMap<>();
+          for (int i = 0; i < size; i++) {
+            final String name = readUtf8(in);
+            profiles.put(name, readProfile(in));
+          }
+          return profiles;
+        case PROFILE:
+          return readProfile(in);
+        case JAVA:
+          return readJava(readBytes(in));
+        default:
+          throw new TechnicalException("Unknown session value format");
+      }
+    } catch (IOException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  private static boolean isProfiles(final Object value) {
+    if (!(value instanceof Map<?, ?>)) {
+      return false;
+    }
+    for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+      if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof CommonProfile)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void writeProfile(final DataOutputStream out, final CommonProfile profile) throws IOException {
+    writeUtf8(out, profile.getClass().getName());
+    writeString(out, profile.getId());
+    writeString(out, profile.getLinkedId());
+    writeString(out, profile.getClientName());
+    out.writeBoolean(profile.isRemembered());
+    out.writeInt(profile.getRoles().size());
+    for (final String role : profile.getRoles()) {
+      writeUtf8(out, role);
+    }
+    writeAttributes(out, profile.getAttributes());
+    writeAttributes(out, profile.getAuthenticationAttributes());
+  }
+
+  private CommonProfile readProfile(final DataInputStream in) throws IOException {
+    final CommonProfile profile = newProfile(readUtf8(in));
+    profile.setId(readString(in));
+    profile.setLinkedId(readString(in));
+    profile.setClientName(readString(in));
+    profile.setRemembered(in.readBoolean());
+    final int roles = in.readInt();
+    final List<String> roleNames = new ArrayList<>(roles);
+    for (int i = 0; i < roles; i++) {
+      roleNames.add(readUtf8(in));
+    }
+    profile.addRoles(roleNames);
+    final int attributes = in.readInt();
+    for (int i = 0; i < attributes; i++) {
+      profile.addAttribute(readUtf8(in), readValue(in));
+    }
+    final int authenticationAttributes = in.readInt();
+    for (int i = 0; i < authenticationAttributes; i++) {
+      profile.addAuthenticationAttribute(readUtf8(in), readValue(in));
+    }
+    return profile;
+  }
+
+  /* The profile itself must be a profile class; its OBJECT attribute values are Java deserialized through the filter */
+  private static CommonProfile newProfile(final String className) {
+    try {
+      final Class<?> profileClass = Class.forName(className, false, CommonProfile.class.getClassLoader());
+      if (!CommonProfile.class.isAssignableFrom(profileClass)) {
+        throw new TechnicalException("Not a profile class: " + className);
+      }
+      return (CommonProfile) profileClass.getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new TechnicalException(e);
+    }
+  }
+
+  private void writeAttributes(final DataOutputStream out, final Map<String, Object> attributes) throws IOException {
+    out.writeInt(attributes.size());
+    for (final Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      writeUtf8(out, attribute.getKey());
+      writeValue(out, attribute.getValue());
+    }
+  }
+
+  private void writeValue(final DataOutputStream out, final Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeUtf8(out, (String) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Date) {
+      out.writeByte(DATE);
+      out.writeLong(((Date) value).getTime());
+    } else if (value instanceof List<?> && isStrings((Collection<?>) value)) {
+      out.writeByte(STRING_LIST);
+      writeStrings(out, (Collection<?>) value);
+    } else if (value instanceof Set<?> && isStrings((Collection<?>) value)) {
+      out.writeByte(STRING_SET);
+      writeStrings(out, (Collection<?>) value);
+    } else {
+      out.writeByte(OBJECT);
+      writeBytes(out, javaSerializer.serializeToBytes(value));
+    }
+  }
+
+  private Object readValue(final DataInputStream in) throws IOException {
+    switch (in.readByte()) {
+      case NULL:
+        return null;
+      case STRING:
+        return readUtf8(in);
+      case BOOLEAN:
+        return in.readBoolean();
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case DATE:
+        return new Date(in.readLong());
+      case STRING_LIST:
+        return readStrings(in, new ArrayList<>());
+      case STRING_SET:
+        return readStrings(in, new LinkedHashSet<>());
+      case OBJECT:
+        return readJava(readBytes(in));
+      default:
+        throw new TechnicalException("Unknown attribute value format");
+    }
+  }
+
+  private static Object readJava(final byte[] bytes) {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      in.setObjectInputFilter(JAVA_FILTER);
+      return in.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new TechnicalException("Unable to deserialize session value", e);
+    }
+  }
+
+  private static boolean isStrings(final Collection<?> values) {
+    for (final Object value : values) {
+      if (!(value instanceof String)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void writeStrings(final DataOutputStream out, final Collection<?> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (final Object string : strings) {
+      writeUtf8(out, (String) string);
+    }
+  }
+
+  private static Collection<String> readStrings(final DataInputStream in, final Collection<String> strings) throws IOException {
+    final int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      strings.add(readUtf8(in));
+    }
+    return strings;
+  }
+
+  private static void writeString(final DataOutputStream out, final String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      writeUtf8(out, value);
+    }
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    return in.readBoolean() ? readUtf8(in) : null;
+  }
+
+  private static void writeUtf8(final DataOutputStream out, final String value) throws IOException {
+    writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String readUtf8(final DataInputStream in) throws IOException {
+    return new String(readBytes(in), StandardCharsets.UTF_8);
+  }
+
+  private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(final DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+/**
+ * Keeps the attributes of the sessions of the {@link KnoxServerSessionStore}.
+ *
+ * @since 3.0.0
+ */
+public interface SessionDataStore {
+
+  /**
+   * @param sessionId the session id
+   * @param key the attribute name
+   * @return the attribute value; or <code>null</code> if the session or attribute does not exist or has expired
+   */
+  Object get(String sessionId, String key);
+
+  /**
+   * @param sessionId the session id
+   * @param key the attribute name
+   * @param value the attribute value; <code>null</code> removes the attribute
+   */
+  void set(String sessionId, String key, Object value);
+
+  /**
+   * @param sessionId the id of the session to remove
+   */
+  void remove(String sessionId);
+
+  /**
+   * Moves the attributes of a session to a new session id.
+   * @param sessionId the current session id
+   * @param newSessionId the new session id
+   */
+  void rename(String sessionId, String newSessionId);
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+import org.apache.knox.gateway.database.DatabaseType;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+public class JDBCSessionDataStoreTest {
+  private static final Duration TIMEOUT = Duration.ofMinutes(10);
+
+  private static JDBCDataSource dataSource;
+  private static JDBCSessionDataStore store;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    dataSource = new JDBCDataSource();
+    dataSource.setUrl("jdbc:hsqldb:mem:pac4jsessions;ifexists=false");
+    dataSource.setUser("SA");
+    dataSource.setPassword("");
+    store = new JDBCSessionDataStore(dataSource, DatabaseType.HSQL.type(), TIMEOUT);
+  }
+
+  @AfterClass
+  public static void tearDown() throws Exception {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("SHUTDOWN");
+    }
+  }
+
+  @Test
+  public void testValuesRoundTrip() {
+    final String sessionId = UUID.randomUUID().toString();
+    final CommonProfile profile = new CommonProfile();
+    profile.setId("alice");
+
+    store.set(sessionId, "profiles", Collections.singletonMap("client", profile));
+    store.set(sessionId, "requestedUrl", "https://local.com/gateway/knoxsso/api/v1/websso");
+
+    final Map<?, ?> profiles = (Map<?, ?>) store.get(sessionId, "profiles");
+    Assert.assertEquals("alice", ((CommonProfile) profiles.get("client")).getId());
+    Assert.assertEquals("https://local.com/gateway/knoxsso/api/v1/websso", store.get(sessionId, "requestedUrl"));
+    Assert.assertNull(store.get(UUID.randomUUID().toString(), "requestedUrl"));
+  }
+
+  @Test
+  public void testSetReplacesAndRemovesValues() {
+    final String sessionId = UUID.randomUUID().toString();
+    store.set(sessionId, "state", "first");
+    store.set(sessionId, "state", "second");
+    Assert.assertEquals("second", store.get(sessionId, "state"));
+
+    store.set(sessionId, "state", null);
+    Assert.assertNull(store.get(sessionId, "state"));
+  }
+
+  @Test
+  public void testRemoveAndRename() {
+    final String sessionId = UUID.randomUUID().toString();
+    final String renamedId = UUID.randomUUID().toString();
+    store.set(sessionId, "state", "value");
+
+    store.rename(sessionId, renamedId);
+    Assert.assertNull(store.get(sessionId, "state"));
+    Assert.assertEquals("value", store.get(renamedId, "state"));
+
+    store.remove(renamedId);
+    Assert.assertNull(store.get(renamedId, "state"));
+  }
+
+  @Test
+  public void testReadExtendsExpiration() throws Exception {
+    final String sessionId = UUID.randomUUID().toString();
+    store.set(sessionId, "state", "value");
+    setExpiration(sessionId, System.currentTimeMillis() + TIMEOUT.toMillis() / 2);
+
+    Assert.assertEquals("value", store.get(sessionId, "state"));
+    Assert.assertTrue(getExpiration(sessionId) > System.currentTimeMillis() + TIMEOUT.toMillis() / 2);
+  }
+
+  @Test
+  public void testExpiredValuesAreNotRead() throws Exception {
+    final String sessionId = UUID.randomUUID().toString();
+    store.set(sessionId, "state", "value");
+    setExpiration(sessionId, System.currentTimeMillis() - 1);
+
+    Assert.assertNull(store.get(sessionId, "state"));
+  }
+
+  private static void setExpiration(final String sessionId, final long expiration) throws Exception {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement(
+             "UPDATE " + JDBCSessionDataStore.SESSIONS_TABLE_NAME + " SET expiration = ? WHERE session_id = ?")) {
+      statement.setLong(1, expiration);
+      statement.setString(2, sessionId);
+      statement.executeUpdate();
+    }
+  }
+
+  private static long getExpiration(final String sessionId) throws Exception {
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement statement = connection.prepareStatement(
+             "SELECT expiration FROM " + JDBCSessionDataStore.SESSIONS_TABLE_NAME + " WHERE session_id = ?")) {
+      statement.setString(1, sessionId);
+      try (ResultSet rs = statement.executeQuery()) {
+        Assert.assertTrue(rs.next());
+        return rs.getLong(1);
+      }
+    }
+  }
+}
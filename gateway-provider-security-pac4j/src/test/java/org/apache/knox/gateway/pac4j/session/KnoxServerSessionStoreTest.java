@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+import org.apache.knox.gateway.pac4j.MockHttpServletRequest;
+import org.apache.knox.gateway.pac4j.MockHttpServletResponse;
+import org.apache.knox.gateway.services.security.CryptoService;
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.util.Pac4jConstants;
+import org.pac4j.jee.context.JEEContext;
+import org.pac4j.saml.profile.SAML2Profile;
+
+import javax.servlet.http.Cookie;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.apache.knox.gateway.pac4j.session.KnoxServerSessionStore.PAC4J_SESSION_ID_COOKIE;
+
+public class KnoxServerSessionStoreTest {
+  private static final String CLUSTER_NAME = "knox";
+  private static final String REQUEST_URL = "https://local.com/gateway/knoxsso/api/v1/websso";
+
+  private final KnoxServerSessionStore sessionStore = new KnoxServerSessionStore(
+      EasyMock.createNiceMock(CryptoService.class), CLUSTER_NAME, null, new HashMap<>(),
+      new InMemorySessionDataStore(100, Duration.ofMinutes(5)), "secret".toCharArray());
+
+  @Test
+  public void testOnlySessionIdIsSetAsCookie() {
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    final Map<String, CommonProfile> profiles = new HashMap<>();
+    final SAML2Profile profile = new SAML2Profile();
+    profile.setId("alice");
+    profiles.put("SAML2Client", profile);
+
+    final JEEContext loginContext = new JEEContext(request(null), response);
+    sessionStore.set(loginContext, Pac4jConstants.USER_PROFILES, profiles);
+    sessionStore.set(loginContext, Pac4jConstants.REQUESTED_URL, REQUEST_URL);
+
+    final List<String> setCookies = response.getHeaders().get("Set-Cookie");
+    Assert.assertEquals(1, setCookies.size());
+    final String cookieValue = cookieValue(setCookies.get(0));
+    Assert.assertTrue(cookieValue.length() < 100);
+
+    final JEEContext context = new JEEContext(request(cookieValue), new MockHttpServletResponse());
+    final Map<?, ?> stored = (Map<?, ?>) sessionStore.get(context, Pac4jConstants.USER_PROFILES).get();
+    Assert.assertEquals("alice", ((CommonProfile) stored.get("SAML2Client")).getId());
+    Assert.assertEquals(Optional.of(REQUEST_URL), sessionStore.get(context, Pac4jConstants.REQUESTED_URL));
+  }
+
+  @Test
+  public void testTamperedSessionIdIsIgnored() {
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    sessionStore.set(new JEEContext(request(null), response), Pac4jConstants.REQUESTED_URL, REQUEST_URL);
+    final String cookieValue = cookieValue(response.getHeaders().get("Set-Cookie").get(0));
+    final String sessionId = cookieValue.substring(0, cookieValue.indexOf('.'));
+
+    Assert.assertEquals(REQUEST_URL,
+        sessionStore.get(new JEEContext(request(cookieValue), response), Pac4jConstants.REQUESTED_URL).get());
+    Assert.assertFalse(sessionStore.get(new JEEContext(request(sessionId), response), Pac4jConstants.REQUESTED_URL).isPresent());
+    Assert.assertFalse(sessionStore.get(new JEEContext(request(sessionId + ".AAAA"), response), Pac4jConstants.REQUESTED_URL).isPresent());
+  }
+
+  @Test
+  public void testRenewSessionInvalidatesPreviousId() {
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    sessionStore.set(new JEEContext(request(null), response), Pac4jConstants.REQUESTED_URL, REQUEST_URL);
+    final String cookieValue = cookieValue(response.getHeaders().get("Set-Cookie").get(0));
+
+    final MockHttpServletResponse renewResponse = new MockHttpServletResponse();
+    Assert.assertTrue(sessionStore.renewSession(new JEEContext(request(cookieValue), renewResponse)));
+    final String renewedValue = cookieValue(renewResponse.getHeaders().get("Set-Cookie").get(0));
+
+    Assert.assertNotEquals(cookieValue, renewedValue);
+    Assert.assertFalse(sessionStore.get(new JEEContext(request(cookieValue), response), Pac4jConstants.REQUESTED_URL).isPresent());
+    Assert.assertEquals(REQUEST_URL,
+        sessionStore.get(new JEEContext(request(renewedValue), response), Pac4jConstants.REQUESTED_URL).get());
+  }
+
+  private static MockHttpServletRequest request(final String sessionCookie) {
+    final MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setRequestURL(REQUEST_URL);
+    request.setServerName("local.com");
+    if (sessionCookie != null) {
+      request.setCookies(new Cookie[] { new Cookie(PAC4J_SESSION_ID_COOKIE, sessionCookie) });
+    }
+    return request;
+  }
+
+  private static String cookieValue(final String setCookieHeader) {
+    Assert.assertTrue(setCookieHeader.startsWith(PAC4J_SESSION_ID_COOKIE + "="));
+    return setCookieHeader.substring(PAC4J_SESSION_ID_COOKIE.length() + 1, setCookieHeader.indexOf(';'));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.pac4j.session;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.util.serializer.JavaSerializer;
+import org.pac4j.saml.profile.SAML2Profile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class ProfileSerializerTest {
+
+  private final ProfileSerializer serializer = new ProfileSerializer();
+
+  @Test
+  public void testProfilesRoundTrip() {
+    final Map<String, CommonProfile> profiles = profiles();
+
+    final Object value = serializer.deserialize(serializer.serialize(profiles));
+
+    Assert.assertTrue(value instanceof Map);
+    final CommonProfile profile = (CommonProfile) ((Map<?, ?>) value).get("SAML2Client");
+    Assert.assertTrue(profile instanceof SAML2Profile);
+    Assert.assertEquals("alice", profile.getId());
+    Assert.assertEquals("SAML2Client", profile.getClientName());
+    Assert.assertEquals(Collections.singleton("admin"), profile.getRoles());
+    Assert.assertEquals(profiles.get("SAML2Client").getAttributes(), profile.getAttributes());
+  }
+
+  @Test
+  public void testCompactFormIsSmallerThanJavaSerialization() {
+    final Map<String, CommonProfile> profiles = profiles();
+    Assert.assertTrue(serializer.serialize(profiles).length < new JavaSerializer().serializeToBytes(profiles).length);
+  }
+
+  @Test
+  public void testReadsJavaSerializedValues() {
+    final byte[] legacy = new JavaSerializer().serializeToBytes(profiles());
+
+    final Object value = serializer.deserialize(legacy);
+
+    Assert.assertEquals("alice", ((CommonProfile) ((Map<?, ?>) value).get("SAML2Client")).getId());
+  }
+
+  @Test
+  public void testOtherValuesRoundTrip() {
+    Assert.assertEquals("https://local.com/gateway/knoxsso/api/v1/websso",
+        serializer.deserialize(serializer.serialize("https://local.com/gateway/knoxsso/api/v1/websso")));
+    Assert.assertEquals(Collections.emptyMap(), serializer.deserialize(serializer.serialize(new LinkedHashMap<>())));
+  }
+
+  @Test
+  public void testStringsLongerThan64KB() {
+    final StringBuilder groups = new StringBuilder();
+    while (groups.length() < 100000) {
+      groups.append("cn=group_").append(groups.length()).append(",ou=groups,dc=local,dc=com;\u00e9");
+    }
+    final Map<String, CommonProfile> profiles = profiles();
+    profiles.get("SAML2Client").addAttribute("memberOf", groups.toString());
+
+    final Map<?, ?> value = (Map<?, ?>) serializer.deserialize(serializer.serialize(profiles));
+
+    Assert.assertEquals(groups.toString(), ((CommonProfile) value.get("SAML2Client")).getAttribute("memberOf"));
+  }
+
+  @Test(expected = TechnicalException.class)
+  public void testOnlyProfileClassesAreInstantiated() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(2);
+      final byte[] className = StringBuilder.class.getName().getBytes(StandardCharsets.UTF_8);
+      out.writeInt(className.length);
+      out.write(className);
+    }
+    serializer.deserialize(bytes.toByteArray());
+  }
+
+  @Test
+  public void testAllowedJavaSerializedAttributeValuesRoundTrip() {
+    final Map<String, CommonProfile> profiles = profiles();
+    final UUID nonce = UUID.randomUUID();
+    profiles.get("SAML2Client").addAttribute("nonce", nonce);
+
+    final Object value = serializer.deserialize(serializer.serialize(profiles));
+
+    Assert.assertEquals(nonce, ((CommonProfile) ((Map<?, ?>) value).get("SAML2Client")).getAttribute("nonce"));
+  }
+
+  @Test(expected = TechnicalException.class)
+  public void testOtherJavaSerializedClassesAreRejected() {
+    serializer.deserialize(serializer.serialize(new Untrusted()));
+  }
+
+  @Test(expected = TechnicalException.class)
+  public void testOtherJavaSerializedAttributeValuesAreRejected() {
+    final Map<String, CommonProfile> profiles = profiles();
+    profiles.get("SAML2Client").addAttribute("untrusted", new Untrusted());
+    serializer.deserialize(serializer.serialize(profiles));
+  }
+
+  @Test(expected = TechnicalException.class)
+  public void testOtherLegacyJavaSerializedValuesAreRejected() throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(new Untrusted());
+    }
+    serializer.deserialize(bytes.toByteArray());
+  }
+
+  private static Map<String, CommonProfile> profiles() {
+    final SAML2Profile profile = new SAML2Profile();
+    profile.setId("alice");
+    profile.setClientName("SAML2Client");
+    profile.addRole("admin");
+    profile.addAttribute("groups", new HashSet<>(Arrays.asList("admin_1", "admin_2")));
+    profile.addAttribute("email", Arrays.asList("alice@local.com"));
+    profile.addAttribute("displayName", "Alice");
+    profile.addAttribute("sessionIndex", 3);
+    profile.addAttribute("notOnOrAfter", new Date(1700000000000L));
+    final Map<String, CommonProfile> profiles = new LinkedHashMap<>();
+    profiles.put("SAML2Client", profile);
+    return profiles;
+  }
+
+  private static class Untrusted implements Serializable {
+    private static final long serialVersionUID = 1L;
+  }
+}
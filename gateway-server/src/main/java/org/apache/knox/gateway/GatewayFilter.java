@@ -26,7 +26,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -38,11 +37,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpHeaders;
 import org.apache.knox.gateway.audit.api.Action;
 import org.apache.knox.gateway.audit.api.ActionOutcome;
 import org.apache.knox.gateway.audit.api.AuditContext;
+import org.apache.knox.gateway.audit.api.AuditEvent;
 import org.apache.knox.gateway.audit.api.AuditService;
 import org.apache.knox.gateway.audit.api.AuditServiceFactory;
 import org.apache.knox.gateway.audit.api.Auditor;
@@ -54,16 +53,17 @@ import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationContext;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.filter.AbstractGatewayFilter;
+import org.apache.knox.gateway.filter.CorrelationHandler;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
 import org.apache.knox.gateway.topology.Topology;
+import org.apache.knox.gateway.tracing.Span;
+import org.apache.knox.gateway.tracing.Tracer;
 import org.apache.knox.gateway.util.ServletRequestUtils;
 import org.apache.knox.gateway.util.urltemplate.Matcher;
 import org.apache.knox.gateway.util.urltemplate.Parser;
 import org.apache.knox.gateway.util.urltemplate.Template;
 
-import static org.apache.knox.gateway.filter.CorrelationHandler.REQUEST_ID_HEADER_NAME;
-
 public class GatewayFilter implements Filter {
 
   private static final FilterChain EMPTY_CHAIN = new FilterChain() {
@@ -163,13 +163,7 @@ public class GatewayFilter implements Filter {
       }
     }
 
-    /* If request contains X-Request-Id header use it else use random uuid as correlation id */
-    final String reqID =
-        StringUtils.isBlank(((HttpServletRequest) servletRequest).getHeader(REQUEST_ID_HEADER_NAME)) ?
-            UUID.randomUUID().toString() :
-            ((HttpServletRequest) servletRequest).getHeader(REQUEST_ID_HEADER_NAME);
-
-    assignCorrelationRequestId(reqID);
+    final String reqID = assignCorrelationRequestId(httpRequest);
 
     // Populate Audit/correlation parameters
     AuditContext auditContext = auditService.getContext();
@@ -180,31 +174,45 @@ public class GatewayFilter implements Filter {
     auditContext.setRemoteIp( getRemoteAddress(servletRequest) );
     auditContext.setRemoteHostname( servletRequest.getRemoteHost() );
     auditService.attachContext(auditContext);
-    auditor.audit(
-        Action.ACCESS, contextWithPathAndQuery, ResourceType.URI,
-        ActionOutcome.UNAVAILABLE, RES.requestMethod(((HttpServletRequest)servletRequest).getMethod()));
-
-    if( match != null ) {
-      Chain chain = match.getValue();
-      servletRequest.setAttribute( AbstractGatewayFilter.TARGET_SERVICE_ROLE, chain.getResourceRole() );
-      try {
-        chain.doFilter(
-                UrlEncodedFormRequest.isUrlEncodedForm(servletRequest)
-                  ? new UrlEncodedFormRequest((HttpServletRequest) servletRequest)
-                  : servletRequest,
-                servletResponse);
-      } catch( IOException | RuntimeException | ThreadDeath | ServletException e ) {
-        LOG.failedToExecuteFilter( e );
-        auditor.audit( Action.ACCESS, contextWithPathAndQuery, ResourceType.URI, ActionOutcome.FAILURE );
-        throw e;
-      } catch( Throwable e ) {
-        LOG.failedToExecuteFilter( e );
-        auditor.audit( Action.ACCESS, contextWithPathAndQuery, ResourceType.URI, ActionOutcome.FAILURE );
-        throw new ServletException( e );
+    auditor.audit( AuditEvent.get().action( Action.ACCESS ).resource( contextWithPathAndQuery, ResourceType.URI )
+        .outcome( ActionOutcome.UNAVAILABLE ).message( RES.requestMethod(((HttpServletRequest)servletRequest).getMethod()) ) );
+
+    // Each filter of the chain records a child span, so the self time of every span is the time
+    // spent in that filter and the root span covers the whole request
+    final Span span = Tracer.startTrace( "gateway.request", reqID )
+        .attribute( "http.request.method", httpRequest.getMethod() )
+        .attribute( "url.path", requestPath )
+        .attribute( "knox.service.role", match == null ? null : match.getValue().getResourceRole() );
+    try {
+      if( match != null ) {
+        Chain chain = match.getValue();
+        servletRequest.setAttribute( AbstractGatewayFilter.TARGET_SERVICE_ROLE, chain.getResourceRole() );
+        try {
+          chain.doFilter(
+                  UrlEncodedFormRequest.isUrlEncodedForm(servletRequest)
+                    ? new UrlEncodedFormRequest((HttpServletRequest) servletRequest)
+                    : servletRequest,
+                  servletResponse);
+        } catch( IOException | RuntimeException | ThreadDeath | ServletException e ) {
+          span.error( e );
+          LOG.failedToExecuteFilter( e );
+          auditor.audit( AuditEvent.get().action( Action.ACCESS ).resource( contextWithPathAndQuery, ResourceType.URI )
+              .outcome( ActionOutcome.FAILURE ) );
+          throw e;
+        } catch( Throwable e ) {
+          span.error( e );
+          LOG.failedToExecuteFilter( e );
+          auditor.audit( AuditEvent.get().action( Action.ACCESS ).resource( contextWithPathAndQuery, ResourceType.URI )
+              .outcome( ActionOutcome.FAILURE ) );
+          throw new ServletException( e );
+        }
+      } else {
+        LOG.failedToMatchPath( requestPath );
+        httpResponse.setStatus( HttpServletResponse.SC_NOT_FOUND );
       }
-    } else {
-      LOG.failedToMatchPath( requestPath );
-      httpResponse.setStatus( HttpServletResponse.SC_NOT_FOUND );
+    } finally {
+      span.attribute( "http.response.status_code", httpResponse.getStatus() );
+      span.close();
     }
 
     if("/".equals(requestPath)) {
@@ -258,12 +266,15 @@ public class GatewayFilter implements Filter {
   }
 
   // Now creating the correlation context only if required since it may be created upstream in the CorrelationHandler.
-  private void assignCorrelationRequestId(final String requestID) {
+  /* Reuses the context created by the CorrelationHandler; only requests that bypass it get a new one */
+  private String assignCorrelationRequestId(final HttpServletRequest request) {
     CorrelationService correlationService = CorrelationServiceFactory.getCorrelationService();
     CorrelationContext correlationContext = correlationService.getContext();
     if( correlationContext == null ) {
-      correlationService.attachContext(new Log4jCorrelationContext(requestID, null, null));
+      correlationContext = new Log4jCorrelationContext(CorrelationHandler.requestId(request), null, null);
+      correlationService.attachContext(correlationContext);
     }
+    return correlationContext.getRequestId();
   }
 
   private void auditLog(ServletRequest servletRequest, ServletResponse servletResponse) {
@@ -276,7 +287,8 @@ public class GatewayFilter implements Filter {
       requestUri = (String) servletRequest.getAttribute(AbstractGatewayFilter.SOURCE_REQUEST_CONTEXT_URL_ATTRIBUTE_NAME);
       actionOutcome = ActionOutcome.SUCCESS;
     }
-    auditor.audit(Action.ACCESS, requestUri, ResourceType.URI, actionOutcome, RES.responseStatus(status));
+    auditor.audit(AuditEvent.get().action(Action.ACCESS).resource(requestUri, ResourceType.URI)
+        .outcome(actionOutcome).message(RES.responseStatus(status)));
   }
 
   private void addCacheHeaders(HttpServletResponse httpResponse) {
@@ -331,6 +343,7 @@ public class GatewayFilter implements Filter {
     private Class<? extends Filter> clazz;
     private String type;
     private String resourceRole;
+    private String spanName;
 
     Holder( String path, String name, Filter filter, Map<String,String> params, String resourceRole ) throws URISyntaxException {
       this.template = Parser.parseTemplate( path );
@@ -340,6 +353,7 @@ public class GatewayFilter implements Filter {
       this.clazz = filter.getClass();
       this.type = clazz.getCanonicalName();
       this.resourceRole = resourceRole;
+      this.spanName = "filter." + name;
     }
 
     Holder( String path, String name, String clazz, Map<String,String> params, String resourceRole ) throws URISyntaxException {
@@ -350,6 +364,7 @@ public class GatewayFilter implements Filter {
       this.clazz = null;
       this.type = clazz;
       this.resourceRole = resourceRole;
+      this.spanName = "filter." + name;
     }
 
     @Override
@@ -388,7 +403,15 @@ public class GatewayFilter implements Filter {
     @Override
     public void doFilter( ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain ) throws IOException, ServletException {
       final Filter filter = getInstance();
-      filter.doFilter( servletRequest, servletResponse, filterChain );
+      final Span span = Tracer.startSpan( spanName ).attribute( "knox.filter.class", type );
+      try {
+        filter.doFilter( servletRequest, servletResponse, filterChain );
+      } catch( IOException | ServletException | RuntimeException e ) {
+        span.error( e );
+        throw e;
+      } finally {
+        span.close();
+      }
     }
 
     @Override
@@ -42,6 +42,9 @@ public interface GatewayMessages {
   @Message( level = MessageLevel.INFO, text = "Starting gateway..." )
   void startingGateway();
 
+  @Message( level = MessageLevel.INFO, text = "Tracing a fraction of {0} of the requests" )
+  void tracingEnabled( double sampleRate );
+
   @Message( level = MessageLevel.FATAL, text = "Failed to start gateway: {0}" )
   void failedToStartGateway( @StackTrace( level = MessageLevel.FATAL ) Exception e );
 
@@ -673,6 +676,14 @@ public interface GatewayMessages {
            text = "Error removing remote listener for path {0}, cause: {1} ")
   void errorRemovingRemoteListener(String path, String cause);
 
+  @Message(level = MessageLevel.INFO,
+           text = "Cached {0} decrypted remote aliases")
+  void primedRemoteAliasCache(int count);
+
+  @Message(level = MessageLevel.WARN,
+           text = "Error caching remote alias {1} for cluster {0}, cause: {2} ")
+  void errorPrimingRemoteAliasCache(String cluster, String alias, String cause);
+
   @Message(level = MessageLevel.INFO,
            text = "Remote Alias Service disabled")
   void remoteAliasServiceDisabled();
@@ -840,4 +851,19 @@ public interface GatewayMessages {
 
   @Message(level = MessageLevel.ERROR, text = "LDAP service not found or not properly registered")
   void ldapServiceNotFound();
+
+  @Message(level = MessageLevel.INFO, text = "Handling requests on virtual threads")
+  void usingVirtualThreads();
+
+  @Message(level = MessageLevel.WARN, text = "Virtual threads are enabled but not supported by this Java runtime, handling requests on up to {0} platform threads")
+  void virtualThreadsNotSupported(int maxThreads);
+
+  @Message(level = MessageLevel.WARN, text = "A virtual thread was pinned to its carrier thread for {0} ms at {1}")
+  void virtualThreadPinned(long durationMs, String stack);
+
+  @Message(level = MessageLevel.DEBUG, text = "A virtual thread was pinned to its carrier thread for {0} ms ({1} times so far) at {2}")
+  void virtualThreadPinnedAgain(long durationMs, long count, String stack);
+
+  @Message(level = MessageLevel.WARN, text = "Unable to monitor pinned virtual threads: {0}")
+  void failedToMonitorPinnedVirtualThreads(String reason);
 }
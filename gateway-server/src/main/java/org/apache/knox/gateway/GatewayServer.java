@@ -40,6 +40,7 @@ import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServiceType;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
 import org.apache.knox.gateway.services.registry.ServiceDefinitionRegistry;
 import org.apache.knox.gateway.services.registry.ServiceRegistry;
 import org.apache.knox.gateway.services.security.AliasServiceException;
@@ -48,6 +49,8 @@ import org.apache.knox.gateway.services.topology.TopologyService;
 import org.apache.knox.gateway.services.topology.impl.GatewayStatusService;
 import org.apache.knox.gateway.topology.Application;
 import org.apache.knox.gateway.topology.Topology;
+import org.apache.knox.gateway.tracing.LogSpanExporter;
+import org.apache.knox.gateway.tracing.Tracer;
 import org.apache.knox.gateway.topology.TopologyEvent;
 import org.apache.knox.gateway.topology.TopologyListener;
 import org.apache.knox.gateway.topology.hadoop.xml.HadoopXmlResourceMonitor;
@@ -56,6 +59,7 @@ import org.apache.knox.gateway.trace.AccessHandler;
 import org.apache.knox.gateway.trace.KnoxErrorHandler;
 import org.apache.knox.gateway.trace.TraceHandler;
 import org.apache.knox.gateway.util.Urls;
+import org.apache.knox.gateway.util.VirtualThreads;
 import org.apache.knox.gateway.util.XmlUtils;
 import org.apache.knox.gateway.websockets.GatewayWebsocketHandler;
 import org.eclipse.jetty.server.ConnectionFactory;
@@ -114,6 +118,7 @@ import java.nio.file.attribute.FileTime;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -144,6 +149,7 @@ public class GatewayServer {
       AuditConstants.KNOX_SERVICE_NAME, AuditConstants.KNOX_COMPONENT_NAME);
 
   private static final String TOPOLOGY_EXTENSION = ".topo.";
+  private static final Duration PINNED_VIRTUAL_THREAD_THRESHOLD = Duration.ofMillis(20);
 
   static final String KNOXSESSIONCOOKIENAME = "KNOXSESSIONID";
 
@@ -158,6 +164,8 @@ public class GatewayServer {
   private static FileTime lastReloadTime;
 
   private Server jetty;
+  /* Runs request handling on virtual threads, null unless enabled */
+  private VirtualThreadPool requestThreadPool;
   private GatewayConfig config;
   private ContextHandlerCollection contexts;
   private TopologyService monitor;
@@ -415,6 +423,16 @@ public class GatewayServer {
     }
   }
 
+  private static void configureTracing(GatewayConfig config, GatewayServices services) {
+    final double sampleRate = config.getTracingSampleRate();
+    if (sampleRate > 0) {
+      Tracer.configure(sampleRate, new LogSpanExporter("knox-gateway"), MetricsUtils.getMetricRegistry(config, services));
+      log.tracingEnabled(sampleRate);
+    } else {
+      Tracer.reset();
+    }
+  }
+
   public static GatewayServer startGateway( GatewayConfig config, GatewayServices svcs ) throws Exception {
     log.startingGateway();
     server = new GatewayServer( config );
@@ -427,6 +445,7 @@ public class GatewayServer {
       //}
       //KM]
       services.start();
+      configureTracing(config, services);
       DeploymentFactory.setGatewayServices(services);
       server.start();
 
@@ -500,9 +519,9 @@ public class GatewayServer {
         SSLService ssl = services.getService(ServiceType.SSL_SERVICE);
         SslContextFactory sslContextFactory = (SslContextFactory)ssl.buildSslContextFactory( config );
         ssl.excludeTopologyFromClientAuth(sslContextFactory, config, topologyName);
-        connector = new ServerConnector( server, sslContextFactory, new HttpConnectionFactory( httpsConfig ) );
+        connector = newServerConnector( server, sslContextFactory, new HttpConnectionFactory( httpsConfig ) );
       } else {
-        connector = new ServerConnector(server, new HttpConnectionFactory(httpConfig));
+        connector = newServerConnector(server, null, new HttpConnectionFactory(httpConfig));
       }
       connector.setHost( address.getHostName() );
       connector.setPort( connectorPort );
@@ -782,7 +801,13 @@ public class GatewayServer {
   }
 
   void createJetty() throws IOException, CertificateException, NoSuchAlgorithmException, KeyStoreException, AliasServiceException {
+    /* Acceptors and selectors always run on platform threads */
     jetty = new Server( new QueuedThreadPool( config.getThreadPoolMax() ) );
+    requestThreadPool = createRequestThreadPool();
+    if (requestThreadPool != null) {
+      jetty.addBean(requestThreadPool);
+      jetty.addBean(new PinnedVirtualThreadMonitor(PINNED_VIRTUAL_THREAD_THRESHOLD));
+    }
 
     jetty.setAttribute(ContextHandler.MAX_FORM_CONTENT_SIZE_KEY, config.getJettyMaxFormContentSize());
     log.setMaxFormContentSize(config.getJettyMaxFormContentSize());
@@ -805,6 +830,26 @@ public class GatewayServer {
     hadoopXmlResourceMonitor.setupMonitor();
   }
 
+  private VirtualThreadPool createRequestThreadPool() {
+    if (config.isVirtualThreadsEnabled()) {
+      if (VirtualThreads.isSupported()) {
+        log.usingVirtualThreads();
+        return new VirtualThreadPool("knox-request");
+      }
+      log.virtualThreadsNotSupported(config.getThreadPoolMax());
+    }
+    return null;
+  }
+
+  private ServerConnector newServerConnector(Server server, SslContextFactory sslContextFactory,
+                                             ConnectionFactory factory) {
+    if (requestThreadPool != null) {
+      return new VirtualThreadServerConnector(server, requestThreadPool, sslContextFactory, factory);
+    }
+    return sslContextFactory == null ? new ServerConnector(server, factory)
+        : new ServerConnector(server, sslContextFactory, factory);
+  }
+
   public synchronized void stop() throws Exception {
     if (!stopped.get()) {
       try {
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway;
+
+import de.thetaphi.forbiddenapis.SuppressForbidden;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports code that pins virtual threads to their carrier thread, such as blocking while holding a
+ * monitor, based on the <code>jdk.VirtualThreadPinned</code> flight recorder event. Each distinct
+ * stack is logged as a warning the first time it is seen and at debug level afterwards.
+ */
+@SuppressForbidden // the flight recorder is the only way to observe pinned virtual threads
+class PinnedVirtualThreadMonitor extends AbstractLifeCycle {
+  private static final GatewayMessages LOG = MessagesFactory.get(GatewayMessages.class);
+
+  static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+  private static final int MAX_FRAMES = 10;
+
+  private final Duration threshold;
+  private final Map<String, Long> hotSpots = new ConcurrentHashMap<>();
+  private RecordingStream stream;
+
+  PinnedVirtualThreadMonitor(Duration threshold) {
+    this.threshold = threshold;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    try {
+      stream = new RecordingStream();
+      stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+      stream.onEvent(PINNED_EVENT, this::onPinned);
+      stream.startAsync();
+    } catch (RuntimeException e) {
+      // e.g. the flight recorder is not available in this runtime
+      LOG.failedToMonitorPinnedVirtualThreads(e.toString());
+      stream = null;
+    }
+    super.doStart();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    if (stream != null) {
+      stream.close();
+      stream = null;
+    }
+    super.doStop();
+  }
+
+  void onPinned(RecordedEvent event) {
+    final String stack = describe(event.getStackTrace());
+    final long count = hotSpots.merge(stack, 1L, Long::sum);
+    if (count == 1L) {
+      LOG.virtualThreadPinned(event.getDuration().toMillis(), stack);
+    } else {
+      LOG.virtualThreadPinnedAgain(event.getDuration().toMillis(), count, stack);
+    }
+  }
+
+  /**
+   * @return the number of times virtual threads were pinned, per stack
+   */
+  Map<String, Long> getHotSpots() {
+    return hotSpots;
+  }
+
+  static String describe(RecordedStackTrace stackTrace) {
+    if (stackTrace == null) {
+      return "unknown";
+    }
+    return stackTrace.getFrames().stream()
+        .filter(RecordedFrame::isJavaFrame)
+        .limit(MAX_FRAMES)
+        .map(frame -> String.format(Locale.ROOT, "%s.%s:%d", frame.getMethod().getType().getName(),
+            frame.getMethod().getName(), frame.getLineNumber()))
+        .collect(Collectors.joining(" <- "));
+  }
+}
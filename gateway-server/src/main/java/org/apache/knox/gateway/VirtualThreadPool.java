@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway;
+
+import org.apache.knox.gateway.util.VirtualThreads;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A Jetty {@link ThreadPool} that runs every task on a new virtual thread.
+ * <p>
+ * It only handles requests, through {@link VirtualThreadServerConnector}; the server itself keeps a
+ * {@link org.eclipse.jetty.util.thread.QueuedThreadPool} for the acceptors and selectors.
+ * <p>
+ * Unlike {@link org.eclipse.jetty.util.thread.QueuedThreadPool} it has no upper bound, so a request
+ * blocked on a slow backend does not hold one of a limited number of platform threads. It is not a
+ * {@link ThreadPool.SizedThreadPool}, hence Jetty neither reserves threads nor checks the thread budget.
+ */
+class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+  private final String name;
+  private final AtomicInteger threads = new AtomicInteger();
+  private final AtomicReference<ExecutorService> executor = new AtomicReference<>();
+
+  VirtualThreadPool(String name) {
+    this.name = name;
+  }
+
+  @Override
+  protected void doStart() throws Exception {
+    final ExecutorService started = VirtualThreads.newThreadPerTaskExecutor(name + "-");
+    if (started == null) {
+      throw new IllegalStateException("Virtual threads are not supported by this Java runtime");
+    }
+    executor.set(started);
+    super.doStart();
+  }
+
+  @Override
+  protected void doStop() throws Exception {
+    super.doStop();
+    final ExecutorService stopping = executor.get();
+    if (stopping != null) {
+      stopping.shutdownNow();
+      stopping.awaitTermination(getStopTimeout(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public void execute(Runnable job) {
+    final ExecutorService current = executor.get();
+    if (current == null) {
+      throw new RejectedExecutionException(name + " is not started");
+    }
+    current.execute(() -> {
+      threads.incrementAndGet();
+      try {
+        job.run();
+      } finally {
+        threads.decrementAndGet();
+      }
+    });
+  }
+
+  @Override
+  public void join() throws InterruptedException {
+    final ExecutorService current = executor.get();
+    if (current != null) {
+      while (!current.awaitTermination(1, TimeUnit.MINUTES)) {
+        // keep waiting until stopped
+      }
+    }
+  }
+
+  /**
+   * @return the number of tasks currently running
+   */
+  @Override
+  public int getThreads() {
+    return threads.get();
+  }
+
+  @Override
+  public int getIdleThreads() {
+    return 0;
+  }
+
+  @Override
+  public boolean isLowOnThreads() {
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return name + "{" + getState() + ",threads=" + getThreads() + "}";
+  }
+}
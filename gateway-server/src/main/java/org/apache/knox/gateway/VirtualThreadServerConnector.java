@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway;
+
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.server.AbstractConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link ServerConnector} that handles requests on a separate executor, such as a {@link VirtualThreadPool},
+ * while its acceptors and selectors stay on the platform threads of the server's thread pool.
+ * <p>
+ * Accepting and selecting block in native code, which pins a virtual thread to its carrier thread. The
+ * connector therefore runs them, and every task it executes itself, on the server's thread pool. Only the
+ * tasks the selectors produce, which read and handle requests, go to the request executor. Since the request
+ * executor is not a {@link org.eclipse.jetty.util.thread.TryExecutor}, the selectors never hand their role
+ * over to it either.
+ */
+class VirtualThreadServerConnector extends ServerConnector {
+  private final Executor requestExecutor;
+
+  VirtualThreadServerConnector(Server server, Executor requestExecutor, SslContextFactory sslContextFactory,
+                               ConnectionFactory... factories) {
+    super(server, null, null, null, -1, -1, AbstractConnectionFactory.getFactories(sslContextFactory, factories));
+    this.requestExecutor = requestExecutor;
+  }
+
+  Executor getRequestExecutor() {
+    return requestExecutor;
+  }
+
+  @Override
+  protected SelectorManager newSelectorManager(Executor executor, Scheduler scheduler, int selectors) {
+    return new RequestExecutorSelectorManager(executor, scheduler, selectors);
+  }
+
+  private class RequestExecutorSelectorManager extends ServerConnectorManager {
+    RequestExecutorSelectorManager(Executor executor, Scheduler scheduler, int selectors) {
+      super(executor, scheduler, selectors);
+    }
+
+    /**
+     * The executor the selectors hand their produced tasks to. The selectors themselves, and the tasks
+     * the manager executes, use the executor of the connector.
+     * Called when the selectors are started, after the connector has been constructed.
+     */
+    @Override
+    public Executor getExecutor() {
+      return requestExecutor;
+    }
+  }
+}
@@ -135,7 +135,12 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   private static final String HTTP_CLIENT_CONNECTION_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionTimeout";
   private static final String HTTP_CLIENT_SOCKET_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.socketTimeout";
   private static final String HTTP_CLIENT_COOKIE_SPEC = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.cookieSpec";
+  private static final String HTTP_CLIENT_CONNECTION_SHARING_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.connectionSharing.enabled";
+  private static final String HTTP_CLIENT_PREWARM_CONNECTIONS = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.prewarmConnections";
+  private static final String HTTP_CLIENT_IDLE_CONNECTION_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".httpclient.idleConnectionTimeout";
+  private static final String DISPATCH_PASSTHROUGH_STREAMING = GATEWAY_CONFIG_FILE_PREFIX + ".dispatch.passthrough.streaming.enabled";
   private static final String THREAD_POOL_MAX = GATEWAY_CONFIG_FILE_PREFIX + ".threadpool.max";
+  private static final String VIRTUAL_THREADS_ENABLED = GATEWAY_CONFIG_FILE_PREFIX + ".virtual.threads.enabled";
   public static final String HTTP_SERVER_REQUEST_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.requestBuffer";
   public static final String HTTP_SERVER_REQUEST_HEADER_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.requestHeaderBuffer";
   public static final String HTTP_SERVER_RESPONSE_BUFFER = GATEWAY_CONFIG_FILE_PREFIX + ".httpserver.responseBuffer";
@@ -148,6 +153,7 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   public static final String GRAPHITE_METRICS_REPORTING_HOST = GATEWAY_CONFIG_FILE_PREFIX + ".graphite.metrics.reporting.host";
   public static final String GRAPHITE_METRICS_REPORTING_PORT = GATEWAY_CONFIG_FILE_PREFIX + ".graphite.metrics.reporting.port";
   public static final String GRAPHITE_METRICS_REPORTING_FREQUENCY = GATEWAY_CONFIG_FILE_PREFIX + ".graphite.metrics.reporting.frequency";
+  public static final String TRACING_SAMPLE_RATE = GATEWAY_CONFIG_FILE_PREFIX + ".tracing.sample.rate";
   public static final String GATEWAY_IDLE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".idle.timeout";
   public static final String REMOTE_IP_HEADER_NAME = GATEWAY_CONFIG_FILE_PREFIX + ".remote.ip.header.name";
   private static final String JETTY_MAX_FORM_CONTENT_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".jetty.max.form.content.size";
@@ -163,6 +169,7 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   public static final String WEBSOCKET_ASYNC_WRITE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".websocket.async.write.timeout";
   public static final String WEBSOCKET_IDLE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".websocket.idle.timeout";
   public static final String WEBSOCKET_MAX_WAIT_BUFFER_COUNT = GATEWAY_CONFIG_FILE_PREFIX + ".websocket.max.wait.buffer.count";
+  public static final String WEBSOCKET_MAX_WAIT_BUFFER_BYTES = GATEWAY_CONFIG_FILE_PREFIX + ".websocket.max.wait.buffer.bytes";
 
 
   /* @since 2.0.0 WebShell config variables */
@@ -183,6 +190,10 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   public static final String CLUSTER_CONFIG_MONITOR_ENABLED_SUFFIX = ".enabled";
 
 
+  private static final String TLS_PROVIDER = GATEWAY_CONFIG_FILE_PREFIX + ".tls.provider";
+  private static final String TLS_SESSION_CACHE_SIZE = GATEWAY_CONFIG_FILE_PREFIX + ".tls.session.cache.size";
+  private static final String TLS_SESSION_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".tls.session.timeout";
+
   // These config property names are not inline with the convention of using the
   // GATEWAY_CONFIG_FILE_PREFIX as is done by those above. These are left for
   // backward compatibility.
@@ -226,6 +237,7 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   public static final int DEFAULT_WEBSOCKET_ASYNC_WRITE_TIMEOUT = 60000;
   public static final int DEFAULT_WEBSOCKET_IDLE_TIMEOUT = 300000;
   public static final int DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_COUNT = 100;
+  public static final long DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_BYTES = 1024 * 1024;
 
   public static final boolean DEFAULT_WEBSHELL_FEATURE_ENABLED = false;
   public static final boolean DEFAULT_WEBSHELL_AUDIT_LOGGING_ENABLED = false;
@@ -298,11 +310,22 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
   private static final String MIGRATE_EXPIRED_TOKENS= KNOX_TOKEN_PREFIX + ".migration.include.expired.tokens";
   private static final String TOKEN_MIGRATION_PRINTS_VERBOSE_MESSAGES= KNOX_TOKEN_PREFIX + ".migration.verbose";
   private static final String TOKEN_MIGRATION_PROGRESS_COUNT= KNOX_TOKEN_PREFIX + ".migration.progress.count";
+  private static final String TOKEN_STATE_WRITE_BEHIND_PREFIX = KNOX_TOKEN_PREFIX + ".jdbc.write.behind";
+  private static final String TOKEN_STATE_WRITE_BEHIND_ENABLED = TOKEN_STATE_WRITE_BEHIND_PREFIX + ".enabled";
+  private static final String TOKEN_STATE_WRITE_BEHIND_MAX_DELAY = TOKEN_STATE_WRITE_BEHIND_PREFIX + ".max.delay";
+  private static final String TOKEN_STATE_WRITE_BEHIND_MAX_BATCH_SIZE = TOKEN_STATE_WRITE_BEHIND_PREFIX + ".max.batch.size";
+  private static final String TOKEN_STATE_WRITE_BEHIND_ACK_TIMEOUT = TOKEN_STATE_WRITE_BEHIND_PREFIX + ".ack.timeout";
+  private static final String TOKEN_STATE_CACHE_PREFIX = KNOX_TOKEN_PREFIX + ".jdbc.cache";
+  private static final String TOKEN_STATE_CACHE_ENABLED = TOKEN_STATE_CACHE_PREFIX + ".enabled";
+  private static final String TOKEN_STATE_CACHE_MAX_STALENESS = TOKEN_STATE_CACHE_PREFIX + ".max.staleness";
+  private static final String TOKEN_STATE_CACHE_MAX_SIZE = TOKEN_STATE_CACHE_PREFIX + ".max.size";
+  private static final String TOKEN_STATE_CHANGE_LOG_ENABLED = KNOX_TOKEN_PREFIX + ".jdbc.change.log.enabled";
 
   private static final String CLOUDERA_MANAGER_DESCRIPTORS_MONITOR_INTERVAL = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.descriptors.monitor.interval";
   private static final String CLOUDERA_MANAGER_ADVANCED_SERVICE_DISCOVERY_CONF_MONITOR_INTERVAL = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.advanced.service.discovery.config.monitor.interval";
   private static final String CLOUDERA_MANAGER_SERVICE_DISCOVERY_REPOSITORY_CACHE_ENTRY_TTL = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.service.discovery.repository.cache.entry.ttl";
   private static final String CLOUDERA_MANAGER_SERVICE_DISCOVERY_MAX_RETRY_ATTEMPS = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.service.discovery.maximum.retry.attemps";
+  private static final String CLOUDERA_MANAGER_SERVICE_DISCOVERY_PARALLELISM = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.service.discovery.parallelism";
   private static final String CLOUDERA_MANAGER_SERVICE_DISCOVERY_CONNECT_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.service.discovery.connect.timeout.ms";
   private static final String CLOUDERA_MANAGER_SERVICE_DISCOVERY_READ_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.service.discovery.read.timeout.ms";
   private static final String CLOUDERA_MANAGER_SERVICE_DISCOVERY_WRITE_TIMEOUT = GATEWAY_CONFIG_FILE_PREFIX + ".cloudera.manager.service.discovery.write.timeout.ms";
@@ -716,6 +739,21 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return getBoolean(SSL_RENEGOTIATION, true);
   }
 
+  @Override
+  public String getTlsProvider() {
+    return get(TLS_PROVIDER, null);
+  }
+
+  @Override
+  public int getTlsSessionCacheSize() {
+    return getInt(TLS_SESSION_CACHE_SIZE, -1);
+  }
+
+  @Override
+  public int getTlsSessionTimeout() {
+    return getInt(TLS_SESSION_TIMEOUT, -1);
+  }
+
   @Override
   public boolean isClientAuthNeeded() {
     return Boolean.parseBoolean(get( CLIENT_AUTH_NEEDED, "false" ));
@@ -803,6 +841,11 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return t;
   }
 
+  @Override
+  public boolean isDispatchPassthroughStreamingEnabled() {
+    return getBoolean(DISPATCH_PASSTHROUGH_STREAMING, false);
+  }
+
   @Override
   public String getHttpClientTruststorePath() {
     return get(HTTP_CLIENT_TRUSTSTORE_PATH);
@@ -880,6 +923,11 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return i;
   }
 
+  @Override
+  public boolean isVirtualThreadsEnabled() {
+    return getBoolean(VIRTUAL_THREADS_ENABLED, false);
+  }
+
   @Override
   public int getHttpServerRequestBuffer() {
     return getInt( HTTP_SERVER_REQUEST_BUFFER, 16 * 1024 );
@@ -1049,6 +1097,11 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return getInt( GRAPHITE_METRICS_REPORTING_FREQUENCY, 1 );
   }
 
+  @Override
+  public double getTracingSampleRate() {
+    return getDouble( TRACING_SAMPLE_RATE, 0.0d );
+  }
+
   @Override
   public boolean isWebsocketEnabled() {
     return getBoolean(WEBSOCKET_FEATURE_ENABLED, DEFAULT_WEBSOCKET_FEATURE_ENABLED);
@@ -1114,6 +1167,11 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return getInt( WEBSOCKET_MAX_WAIT_BUFFER_COUNT, DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_COUNT);
   }
 
+  @Override
+  public long getWebsocketMaxWaitBufferBytes() {
+    return getLong( WEBSOCKET_MAX_WAIT_BUFFER_BYTES, DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_BYTES);
+  }
+
   @Override
   public Map<String, Integer> getGatewayPortMappings() {
 
@@ -1398,6 +1456,11 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return getInt(CLOUDERA_MANAGER_SERVICE_DISCOVERY_MAX_RETRY_ATTEMPS, DEFAULT_CM_SERVICE_DISCOVERY_MAX_RETRY_ATTEMPTS);
   }
 
+  @Override
+  public int getClouderaManagerServiceDiscoveryParallelism() {
+    return getInt(CLOUDERA_MANAGER_SERVICE_DISCOVERY_PARALLELISM, DEFAULT_CM_SERVICE_DISCOVERY_PARALLELISM);
+  }
+
   @Override
   public Collection<String> getClouderaManagerServiceDiscoveryExcludedServiceTypes() {
     return getTrimmedStringCollection(CLOUDERA_MANAGER_SERVICE_DISCOVERY_EXCLUDED_SERVICE_TYPES);
@@ -1737,11 +1800,75 @@ public class GatewayConfigImpl extends Configuration implements GatewayConfig {
     return getInt(TOKEN_MIGRATION_PROGRESS_COUNT, 10);
   }
 
+  @Override
+  public boolean isTokenStateWriteBehindEnabled() {
+    return getBoolean(TOKEN_STATE_WRITE_BEHIND_ENABLED, false);
+  }
+
+  @Override
+  public long getTokenStateWriteBehindMaxDelay() {
+    return getLong(TOKEN_STATE_WRITE_BEHIND_MAX_DELAY, 5L);
+  }
+
+  @Override
+  public int getTokenStateWriteBehindMaxBatchSize() {
+    return getInt(TOKEN_STATE_WRITE_BEHIND_MAX_BATCH_SIZE, 200);
+  }
+
+  @Override
+  public long getTokenStateWriteBehindAckTimeout() {
+    return getLong(TOKEN_STATE_WRITE_BEHIND_ACK_TIMEOUT, 30000L);
+  }
+
+  @Override
+  public boolean isTokenStateCacheEnabled() {
+    return getBoolean(TOKEN_STATE_CACHE_ENABLED, false);
+  }
+
+  @Override
+  public boolean isTokenStateChangeLogEnabled() {
+    return getBoolean(TOKEN_STATE_CHANGE_LOG_ENABLED, false);
+  }
+
+  @Override
+  public long getTokenStateCacheMaxStaleness() {
+    return getLong(TOKEN_STATE_CACHE_MAX_STALENESS, 5000L);
+  }
+
+  @Override
+  public long getTokenStateCacheMaxSize() {
+    return getLong(TOKEN_STATE_CACHE_MAX_SIZE, 100000L);
+  }
+
   @Override
   public String getHttpClientCookieSpec() {
     return get(HTTP_CLIENT_COOKIE_SPEC);
   }
 
+  @Override
+  public boolean isHttpClientConnectionSharingEnabled() {
+    return getBoolean(HTTP_CLIENT_CONNECTION_SHARING_ENABLED, false);
+  }
+
+  @Override
+  public int getHttpClientPrewarmConnections() {
+    return getInt(HTTP_CLIENT_PREWARM_CONNECTIONS, 0);
+  }
+
+  @Override
+  public long getHttpClientIdleConnectionTimeout() {
+    long t = TimeUnit.MINUTES.toMillis(1);
+    String s = get(HTTP_CLIENT_IDLE_CONNECTION_TIMEOUT);
+    if (s != null) {
+      try {
+        t = parseNetworkTimeout(s);
+      } catch (Exception e) {
+        // Ignore it and use the default.
+      }
+    }
+    return t;
+  }
+
   @Override
   public String getBannerText() {
     return get(UI_BANNER_TEXT, "");
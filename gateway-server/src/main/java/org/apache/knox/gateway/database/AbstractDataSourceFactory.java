@@ -34,6 +34,12 @@ public abstract class AbstractDataSourceFactory {
     public static final String DERBY_TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenMetadataDatabaseTableDerby.sql";
     public static final String POSTGRES_TOKENS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenDatabaseTablePostgres.sql";
     public static final String POSTGRES_TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenMetadataDatabaseTablePostgres.sql";
+    public static final String TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenChangesTable.sql";
+    public static final String MYSQL_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenChangesTableMySQL.sql";
+    public static final String ORACLE_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenChangesTableOracle.sql";
+    public static final String DERBY_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenChangesTableDerby.sql";
+    public static final String POSTGRES_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME = "createKnoxTokenChangesTablePostgres.sql";
+    public static final String TOKEN_CHANGES_INDEX_CREATE_SQL_FILE_NAME = "createKnoxTokenChangesIndex.sql";
 
     public static final String KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxProvidersTable.sql";
     public static final String KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxDescriptorsTable.sql";
@@ -42,6 +48,11 @@ public abstract class AbstractDataSourceFactory {
     public static final String DERBY_KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxProvidersTableDerby.sql";
     public static final String DERBY_KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxDescriptorsTableDerby.sql";
 
+    public static final String PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxPac4jSessionsTable.sql";
+    public static final String POSTGRES_PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxPac4jSessionsTablePostgres.sql";
+    public static final String ORACLE_PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxPac4jSessionsTableOracle.sql";
+    public static final String DERBY_PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME = "createKnoxPac4jSessionsTableDerby.sql";
+
     public static final String DATABASE_USER_ALIAS_NAME = "gateway_database_user";
     public static final String DATABASE_PASSWORD_ALIAS_NAME = "gateway_database_password";
     public static final String DATABASE_TRUSTSTORE_PASSWORD_ALIAS_NAME = "gateway_database_ssl_truststore_password";
@@ -22,37 +22,55 @@ public enum DatabaseType {
             AbstractDataSourceFactory.POSTGRES_TOKENS_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.POSTGRES_TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME,
-            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME
+            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.POSTGRES_PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.POSTGRES_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME,
+            null
     ),
     MYSQL("mysql",
             AbstractDataSourceFactory.TOKENS_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME,
-            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME
+            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.MYSQL_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME,
+            null
     ),
     MARIADB("mariadb",
             AbstractDataSourceFactory.TOKENS_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME,
-            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME
+            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.MYSQL_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME,
+            null
     ),
     HSQL("hsql",
             AbstractDataSourceFactory.TOKENS_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME,
-            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME
+            AbstractDataSourceFactory.KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.TOKEN_CHANGES_INDEX_CREATE_SQL_FILE_NAME
     ),
     DERBY("derbydb",
             AbstractDataSourceFactory.DERBY_TOKENS_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.DERBY_TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.DERBY_KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME,
-            AbstractDataSourceFactory.DERBY_KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME
+            AbstractDataSourceFactory.DERBY_KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.DERBY_PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.DERBY_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.TOKEN_CHANGES_INDEX_CREATE_SQL_FILE_NAME
     ),
     ORACLE("oracle",
             AbstractDataSourceFactory.ORACLE_TOKENS_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.ORACLE_TOKEN_METADATA_TABLE_CREATE_SQL_FILE_NAME,
             AbstractDataSourceFactory.ORACLE_KNOX_PROVIDERS_TABLE_CREATE_SQL_FILE_NAME,
-            AbstractDataSourceFactory.ORACLE_KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME
+            AbstractDataSourceFactory.ORACLE_KNOX_DESCRIPTORS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.ORACLE_PAC4J_SESSIONS_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.ORACLE_TOKEN_CHANGES_TABLE_CREATE_SQL_FILE_NAME,
+            AbstractDataSourceFactory.TOKEN_CHANGES_INDEX_CREATE_SQL_FILE_NAME
     );
 
     private final String type;
@@ -60,13 +78,20 @@ public enum DatabaseType {
     private final String metadataTableSql;
     private final String providersTableSql;
     private final String descriptorsTableSql;
+    private final String pac4jSessionsTableSql;
+    private final String tokenChangesTableSql;
+    private final String tokenChangesIndexSql;
 
-    DatabaseType(String type, String tokensTableSql, String metadataTableSql,  String providersTableSql, String descriptorsTableSql) {
+    DatabaseType(String type, String tokensTableSql, String metadataTableSql,  String providersTableSql, String descriptorsTableSql,
+                 String pac4jSessionsTableSql, String tokenChangesTableSql, String tokenChangesIndexSql) {
         this.type = type;
         this.tokensTableSql = tokensTableSql;
         this.metadataTableSql = metadataTableSql;
         this.providersTableSql = providersTableSql;
         this.descriptorsTableSql = descriptorsTableSql;
+        this.pac4jSessionsTableSql = pac4jSessionsTableSql;
+        this.tokenChangesTableSql = tokenChangesTableSql;
+        this.tokenChangesIndexSql = tokenChangesIndexSql;
     }
 
     public String type() {
@@ -89,6 +114,21 @@ public enum DatabaseType {
         return descriptorsTableSql;
     }
 
+    public String pac4jSessionsTableSql() {
+        return pac4jSessionsTableSql;
+    }
+
+    public String tokenChangesTableSql() {
+        return tokenChangesTableSql;
+    }
+
+    /**
+     * @return the script that indexes the token changes by time, or <code>null</code> if the table script does
+     */
+    public String tokenChangesIndexSql() {
+        return tokenChangesIndexSql;
+    }
+
     public static DatabaseType fromString(String dbType) {
         for (DatabaseType dt : values()) {
             if (dt.type.equalsIgnoreCase(dbType)) {
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Hands response bodies to {@link HttpOutput#sendContent(ReadableByteChannel)}. Jetty reads them into
+ * buffers from the connector's buffer pool and writes those to the endpoint, bypassing the servlet
+ * output stream's aggregation buffer.
+ */
+public class JettyChannelResponseWriter implements ChannelResponseWriter {
+
+  @Override
+  public boolean accepts(OutputStream output) {
+    return output instanceof HttpOutput;
+  }
+
+  @Override
+  public void write(ReadableByteChannel content, OutputStream output) throws IOException {
+    ((HttpOutput) output).sendContent(content);
+  }
+}
@@ -18,15 +18,16 @@
 package org.apache.knox.gateway.filter;
 
 import java.io.IOException;
-import java.util.UUID;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.knox.gateway.audit.api.CorrelationIds;
 import org.apache.knox.gateway.audit.api.CorrelationService;
 import org.apache.knox.gateway.audit.api.CorrelationServiceFactory;
 import org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationContext;
+import org.apache.knox.gateway.tracing.TraceContext;
 import org.apache.logging.log4j.CloseableThreadContext;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
@@ -39,12 +40,9 @@ public class CorrelationHandler extends HandlerWrapper {
   public void handle( String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response )
       throws IOException, ServletException {
     CorrelationService correlationService = CorrelationServiceFactory.getCorrelationService();
-    /* If request contains X-Request-Id header use it else use random uuid as correlation id */
-    final String reqID =
-        StringUtils.isBlank(request.getHeader(REQUEST_ID_HEADER_NAME)) ?
-            UUID.randomUUID().toString() :
-            request.getHeader(REQUEST_ID_HEADER_NAME);
+    final String reqID = requestId(request);
 
+    /* The context is created once per request; the gateway filter, audit and dispatch reuse it */
     correlationService.attachContext(
             new Log4jCorrelationContext(reqID,
                 null, null));
@@ -54,4 +52,21 @@ public class CorrelationHandler extends HandlerWrapper {
       correlationService.detachContext();
     }
   }
+
+  /**
+   * Uses the trace id of a valid W3C traceparent header if present, so the id logged by the gateway
+   * matches the trace started upstream; else the X-Request-Id header; else a newly generated id as
+   * correlation id.
+   *
+   * @param request the inbound request
+   * @return the correlation id of the request
+   */
+  public static String requestId( HttpServletRequest request ) {
+    final String traceId = TraceContext.correlationId(request.getHeader(TraceContext.TRACEPARENT_HEADER));
+    if (traceId != null) {
+      return traceId;
+    }
+    final String requestId = request.getHeader(REQUEST_ID_HEADER_NAME);
+    return StringUtils.isBlank(requestId) ? CorrelationIds.newRequestId() : requestId;
+  }
 }
@@ -25,6 +25,7 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.deploy.DeploymentContext;
 import org.apache.knox.gateway.descriptor.FilterParamDescriptor;
 import org.apache.knox.gateway.descriptor.ResourceDescriptor;
+import org.apache.knox.gateway.dispatch.DefaultHttpClientFactory;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.security.KeystoreService;
 import org.apache.knox.gateway.services.security.KeystoreServiceException;
@@ -88,6 +89,13 @@ public class DefaultGatewayServices extends AbstractGatewayServices {
     addService(ServiceType.LDAP_SERVICE, gatewayServiceFactory.create(this, ServiceType.LDAP_SERVICE, config, options));
   }
 
+  @Override
+  public void stop() throws ServiceLifecycleException {
+    super.stop();
+    // the dispatch connection pools are shared by all topologies, so they live as long as the gateway services
+    DefaultHttpClientFactory.shutdownSharedConnectionManagers();
+  }
+
   @Override
   public void initializeContribution(DeploymentContext context) {
     // setup credential store as appropriate
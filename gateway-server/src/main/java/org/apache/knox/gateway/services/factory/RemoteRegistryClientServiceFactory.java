@@ -30,6 +30,7 @@ import org.apache.knox.gateway.services.Service;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
 import org.apache.knox.gateway.services.ServiceType;
 import org.apache.knox.gateway.services.config.client.RemoteConfigurationRegistryClientService;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
 import org.apache.knox.gateway.services.security.AliasService;
 
 // There are two implementations of 'RemoteConfigurationRegistryClientService':
@@ -50,6 +51,9 @@ public class RemoteRegistryClientServiceFactory extends AbstractServiceFactory {
       final AliasService localAliasService = (AliasService) aliasServiceFactory.create(gatewayServices, ServiceType.ALIAS_SERVICE, gatewayConfig, options, "");
       localAliasService.init(gatewayConfig, options);
       ((RemoteConfigurationRegistryClientService) service).setAliasService(localAliasService);
+      if (service instanceof ZooKeeperClientService) {
+        ((ZooKeeperClientService) service).setMetricRegistrySupplier(() -> MetricsUtils.getMetricRegistry(gatewayConfig, gatewayServices));
+      }
     }
     return service;
   }
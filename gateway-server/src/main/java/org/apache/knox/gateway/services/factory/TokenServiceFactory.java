@@ -38,6 +38,7 @@ public class TokenServiceFactory extends AbstractServiceFactory {
       service = new DefaultTokenAuthorityService();
       ((DefaultTokenAuthorityService) service).setKeystoreService(getKeystoreService(gatewayServices));
       ((DefaultTokenAuthorityService) service).setAliasService(getAliasService(gatewayServices));
+      ((DefaultTokenAuthorityService) service).setGatewayServices(gatewayServices);
     }
     return service;
   }
@@ -24,6 +24,7 @@ import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.Service;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
 import org.apache.knox.gateway.services.ServiceType;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
 import org.apache.knox.gateway.services.token.impl.DefaultTokenStateService;
 import org.apache.knox.gateway.services.token.impl.DerbyDBTokenStateService;
 import org.apache.knox.gateway.services.token.impl.JDBCTokenStateService;
@@ -51,6 +52,7 @@ public class TokenStateServiceFactory extends AbstractServiceFactory {
         try {
           service = new JDBCTokenStateService();
           ((JDBCTokenStateService) service).setAliasService(getAliasService(gatewayServices));
+          ((JDBCTokenStateService) service).setMetricRegistrySupplier(() -> MetricsUtils.getMetricRegistry(gatewayConfig, gatewayServices));
           service.init(gatewayConfig, options);
         } catch (ServiceLifecycleException e) {
           LOG.errorInitializingService(implementation, e.getMessage(), e);
@@ -70,6 +72,7 @@ public class TokenStateServiceFactory extends AbstractServiceFactory {
       service = new DerbyDBTokenStateService();
       ((DerbyDBTokenStateService) service).setAliasService(getAliasService(gatewayServices));
       ((DerbyDBTokenStateService) service).setMasterService(getMasterService(gatewayServices));
+      ((DerbyDBTokenStateService) service).setMetricRegistrySupplier(() -> MetricsUtils.getMetricRegistry(gatewayConfig, gatewayServices));
       service.init(gatewayConfig, options);
     } catch (ServiceLifecycleException e) {
       LOG.errorInitializingService(DerbyDBTokenStateService.class.getName(), e.getMessage(), e);
@@ -43,7 +43,7 @@ public class InstrUtils {
      * @return resource path
      */
     public static String getResourcePath(String fullPath) {
-        return getMatchedPath(fullPath, p);
+        return getMatchedPath(fullPath, p, 3);
     }
 
     /**
@@ -55,24 +55,32 @@ public class InstrUtils {
      * @return resource path
      */
     public static String getServiceResourcePath(String fullPath) {
-        return getMatchedPath(fullPath, serviceP);
+        return getMatchedPath(fullPath, serviceP, 2);
     }
 
     /**
-     * This function return match Pattern pathinfo
+     * This function return match Pattern pathinfo.
+     * The patterns only ever match a run of <code>slashes</code> '/' separated segments, so that is looked
+     * up directly; the pattern is only used for paths containing line terminators, which '.' does not match.
      * @param fullPath full path to determine the resource from
      * @param pattern this regular expression pattern is used to parse element
+     * @param slashes the number of '/' characters matched by the pattern
      * @return matched path
      */
-    private static String getMatchedPath(String fullPath, Pattern pattern) {
+    private static String getMatchedPath(String fullPath, Pattern pattern, int slashes) {
         String resourcePath = "";
         if (fullPath != null && !fullPath.isEmpty()) {
-            Matcher m = pattern.matcher(fullPath);
-            if (m.find()) {
-                resourcePath = m.group(0);
-            } else {
-                resourcePath = fullPath;
+            if (fullPath.indexOf('\n') >= 0 || fullPath.indexOf('\r') >= 0
+                    || fullPath.indexOf('\u0085') >= 0 || fullPath.indexOf('\u2028') >= 0 || fullPath.indexOf('\u2029') >= 0) {
+                Matcher m = pattern.matcher(fullPath);
+                return m.find() ? m.group(0) : fullPath;
             }
+            int start = fullPath.indexOf('/');
+            int end = start;
+            for (int i = 1; i < slashes && end >= 0; i++) {
+                end = fullPath.indexOf('/', end + 1);
+            }
+            resourcePath = start >= 0 && end >= 0 ? fullPath.substring(start, end + 1) : fullPath;
         }
         return resourcePath;
     }
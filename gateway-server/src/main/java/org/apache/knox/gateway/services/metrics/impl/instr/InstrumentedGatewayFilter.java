@@ -18,8 +18,8 @@
 package org.apache.knox.gateway.services.metrics.impl.instr;
 
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.Timer;
 import org.apache.knox.gateway.GatewayFilter;
+import org.eclipse.jetty.server.Response;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -27,11 +27,14 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class InstrumentedGatewayFilter extends GatewayFilter {
 
@@ -39,9 +42,13 @@ public class InstrumentedGatewayFilter extends GatewayFilter {
 
   private MetricRegistry metricRegistry;
 
+  private final RequestMetrics.Cache routes;
+
   public InstrumentedGatewayFilter(GatewayFilter gatewayFilter, MetricRegistry metricRegistry) {
     this.gatewayFilter = gatewayFilter;
     this.metricRegistry = metricRegistry;
+    this.routes = new RequestMetrics.Cache(metricRegistry, (context, method, resource) ->
+        "client." + context + resource + '.' + method.toLowerCase(Locale.ROOT) + "-requests");
   }
 
   @Override
@@ -66,35 +73,48 @@ public class InstrumentedGatewayFilter extends GatewayFilter {
 
   @Override
   public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
-    Timer.Context timerContext = this.timer(servletRequest).time();
+    final long start = System.nanoTime();
     try {
       gatewayFilter.doFilter(servletRequest, servletResponse, filterChain);
     } finally {
-      timerContext.stop();
+      record(servletRequest, servletResponse, start);
     }
   }
 
   @Override
   public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse) throws IOException, ServletException {
-    Timer.Context timerContext = this.timer(servletRequest).time();
+    final long start = System.nanoTime();
     try {
       gatewayFilter.doFilter(servletRequest, servletResponse);
     } finally {
-      timerContext.stop();
+      record(servletRequest, servletResponse, start);
+    }
+  }
+
+  /* Read from Jetty's output rather than by wrapping the response, which would hide the output from the dispatch */
+  static long getBytesWritten(ServletResponse response) {
+    ServletResponse unwrapped = response;
+    while (unwrapped instanceof ServletResponseWrapper) {
+      unwrapped = ((ServletResponseWrapper) unwrapped).getResponse();
     }
+    return unwrapped instanceof Response ? ((Response) unwrapped).getHttpOutput().getWritten() : 0;
   }
 
-  private Timer timer(ServletRequest request) {
-    StringBuilder builder = new StringBuilder();
-    builder.append("client.")
-        .append(request.getServletContext().getContextPath());
+  private void record(ServletRequest request, ServletResponse response, long start) {
+    final long elapsed = System.nanoTime() - start;
     if (request instanceof HttpServletRequest) {
       HttpServletRequest httpServletRequest = (HttpServletRequest) request;
-      builder.append(InstrUtils.getResourcePath(httpServletRequest.getPathInfo()));
-      builder.append('.');
-      builder.append(httpServletRequest.getMethod().toLowerCase(Locale.ROOT));
-      builder.append("-requests");
+      final int status = response instanceof HttpServletResponse ? ((HttpServletResponse) response).getStatus() : 0;
+      RequestMetrics metrics = route(httpServletRequest);
+      metrics.update(elapsed, status);
+      metrics.bytes(httpServletRequest.getContentLengthLong(), getBytesWritten(response));
+    } else {
+      metricRegistry.timer("client." + request.getServletContext().getContextPath()).update(elapsed, TimeUnit.NANOSECONDS);
     }
-    return metricRegistry.timer(builder.toString());
+  }
+
+  private RequestMetrics route(HttpServletRequest request) {
+    return routes.get(request.getServletContext().getContextPath(), request.getMethod(),
+        InstrUtils.getResourcePath(request.getPathInfo()));
   }
 }
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.metrics.impl.instr;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.knox.gateway.tracing.TracingRequestExecutor;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Records the latency, the response status classes and the bytes of dispatched requests, both per
+ * topology route (<code>service.{context}{resource}.{method}-requests</code>) and per backend
+ * (<code>service.backend.{host}-requests</code>). Sampled requests are also traced as by the
+ * {@link TracingRequestExecutor}.
+ */
+class InstrumentedRequestExecutor extends TracingRequestExecutor {
+
+  private final RequestMetrics.Cache routes;
+  private final RequestMetrics.Cache backends;
+
+  InstrumentedRequestExecutor(MetricRegistry registry) {
+    this.routes = new RequestMetrics.Cache(registry, (context, method, resource) ->
+        MetricRegistry.name("service", context + resource, method.toLowerCase(Locale.ROOT) + "-requests"));
+    this.backends = new RequestMetrics.Cache(registry, (context, method, host) ->
+        MetricRegistry.name("service", "backend", host + "-requests"));
+  }
+
+  @Override
+  public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+      throws IOException, HttpException {
+    final long start = System.nanoTime();
+    HttpResponse response = null;
+    try {
+      response = super.execute(request, conn, context);
+      return response;
+    } finally {
+      final long elapsed = System.nanoTime() - start;
+      final int status = response == null ? 0 : response.getStatusLine().getStatusCode();
+      final long requestLength = contentLength(request instanceof HttpEntityEnclosingRequest
+          ? ((HttpEntityEnclosingRequest) request).getEntity() : null);
+      final long responseLength = contentLength(response == null ? null : response.getEntity());
+
+      final RequestMetrics route = route(request);
+      route.update(elapsed, status);
+      route.bytes(requestLength, responseLength);
+
+      final HttpHost target = HttpCoreContext.adapt(context).getTargetHost();
+      if (target != null) {
+        final RequestMetrics backend = backends.get("", "", target.toHostString());
+        backend.update(elapsed, status);
+        backend.bytes(requestLength, responseLength);
+      }
+    }
+  }
+
+  private RequestMetrics route(HttpRequest request) {
+    final Header header = request.getFirstHeader("X-Forwarded-Context");
+    final String uri = request.getRequestLine().getUri();
+    final int query = uri.indexOf('?');
+    return routes.get(header == null ? "" : header.getValue(), request.getRequestLine().getMethod(),
+        InstrUtils.getServiceResourcePath(query < 0 ? uri : uri.substring(0, query)));
+  }
+
+  private static long contentLength(HttpEntity entity) {
+    return entity == null ? -1 : entity.getContentLength();
+  }
+}
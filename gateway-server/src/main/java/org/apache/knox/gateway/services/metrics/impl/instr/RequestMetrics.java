@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.metrics.impl.instr;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The metrics of one route: a latency timer, response counters per status class and byte counters.
+ * <p>
+ * The metrics are looked up in the registry once, when the route is first seen, so recording a request
+ * does not build metric names or go through the registry.
+ */
+final class RequestMetrics {
+
+  private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+  private final Timer timer;
+  private final Counter[] responses = new Counter[STATUS_CLASSES.length];
+  private final Counter requestBytes;
+  private final Counter responseBytes;
+
+  /**
+   * @param registry the registry to register the metrics with
+   * @param name     the name of the timer; the other metrics are named after it
+   */
+  RequestMetrics(MetricRegistry registry, String name) {
+    this.timer = registry.timer(name);
+    final String prefix = name.endsWith("-requests") ? name.substring(0, name.length() - "-requests".length()) : name;
+    for (int i = 0; i < STATUS_CLASSES.length; i++) {
+      responses[i] = registry.counter(MetricRegistry.name(prefix + "-responses", STATUS_CLASSES[i]));
+    }
+    this.requestBytes = registry.counter(prefix + "-request-bytes");
+    this.responseBytes = registry.counter(prefix + "-response-bytes");
+  }
+
+  /**
+   * @param nanos  the time it took to process the request
+   * @param status the response status, or a value outside of 100-599 if there is none
+   */
+  void update(long nanos, int status) {
+    timer.update(nanos, TimeUnit.NANOSECONDS);
+    final int statusClass = status / 100 - 1;
+    if (statusClass >= 0 && statusClass < responses.length) {
+      responses[statusClass].inc();
+    }
+  }
+
+  void bytes(long requestLength, long responseLength) {
+    if (requestLength > 0) {
+      requestBytes.inc(requestLength);
+    }
+    if (responseLength > 0) {
+      responseBytes.inc(responseLength);
+    }
+  }
+
+  /**
+   * Builds the name of the timer of a route.
+   */
+  interface Naming {
+    String name(String context, String method, String resource);
+  }
+
+  /**
+   * Resolves the metrics of routes by context, method and resource path without building a key per lookup.
+   * <p>
+   * Methods and resource paths come from clients, so the number of routes is bounded: methods other than the
+   * standard HTTP methods are recorded as <code>OTHER</code>, and once <code>maxRoutes</code> resources have
+   * been seen, requests for further resources are recorded under the {@link #OTHER_RESOURCE} of their context.
+   */
+  static final class Cache {
+    static final int DEFAULT_MAX_ROUTES = 1000;
+    static final String OTHER_RESOURCE = "/other/";
+    private static final String OTHER_METHOD = "OTHER";
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList(
+        "GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE", "CONNECT"));
+
+    private final MetricRegistry registry;
+    private final Naming naming;
+    private final int maxRoutes;
+    private final AtomicInteger routeCount = new AtomicInteger();
+    private final Map<String, Map<String, Map<String, RequestMetrics>>> routes = new ConcurrentHashMap<>();
+
+    Cache(MetricRegistry registry, Naming naming) {
+      this(registry, naming, DEFAULT_MAX_ROUTES);
+    }
+
+    Cache(MetricRegistry registry, Naming naming, int maxRoutes) {
+      this.registry = registry;
+      this.naming = naming;
+      this.maxRoutes = maxRoutes;
+    }
+
+    RequestMetrics get(String context, String method, String resource) {
+      final Map<String, RequestMetrics> byResource = routes
+          .computeIfAbsent(context, c -> new ConcurrentHashMap<>())
+          .computeIfAbsent(normalize(method), m -> new ConcurrentHashMap<>());
+      final RequestMetrics metrics = byResource.get(resource);
+      if (metrics != null) {
+        return metrics;
+      }
+      if (routeCount.get() >= maxRoutes) {
+        return byResource.computeIfAbsent(OTHER_RESOURCE,
+            r -> new RequestMetrics(registry, naming.name(context, normalize(method), r)));
+      }
+      return byResource.computeIfAbsent(resource, r -> {
+        routeCount.incrementAndGet();
+        return new RequestMetrics(registry, naming.name(context, normalize(method), r));
+      });
+    }
+
+    private static String normalize(String method) {
+      if (method == null) {
+        return OTHER_METHOD;
+      }
+      if (METHODS.contains(method)) {
+        return method;
+      }
+      final String upperCase = method.toUpperCase(Locale.ROOT);
+      return METHODS.contains(upperCase) ? upperCase : OTHER_METHOD;
+    }
+  }
+}
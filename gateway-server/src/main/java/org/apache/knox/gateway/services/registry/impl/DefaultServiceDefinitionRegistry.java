@@ -276,6 +276,11 @@ public class DefaultServiceDefinitionRegistry implements ServiceDefinitionRegist
     listeners.add(listener);
   }
 
+  @Override
+  public void removeServiceDefinitionChangeListener(ServiceDefinitionChangeListener listener) {
+    listeners.remove(listener);
+  }
+
   private void notifyListeners(String name, String role, String version) {
     listeners.forEach(listener -> listener.onServiceDefinitionChange(name, role, version));
   }
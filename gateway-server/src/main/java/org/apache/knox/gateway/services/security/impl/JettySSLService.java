@@ -19,6 +19,7 @@ package org.apache.knox.gateway.services.security.impl;
 
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.Provider;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateNotYetValidException;
@@ -40,6 +41,7 @@ import org.apache.knox.gateway.services.security.AliasServiceException;
 import org.apache.knox.gateway.services.security.KeystoreService;
 import org.apache.knox.gateway.services.security.KeystoreServiceException;
 import org.apache.knox.gateway.services.security.SSLService;
+import org.apache.knox.gateway.util.TlsProviderUtils;
 import org.apache.knox.gateway.util.X500PrincipalParser;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 
@@ -361,6 +363,17 @@ public class JettySSLService implements SSLService {
     }
 
     sslContextFactory.setRenegotiationAllowed(config.isSSLRenegotiationAllowed());
+
+    final Provider tlsProvider = TlsProviderUtils.getTlsProvider(config);
+    if (tlsProvider != null) {
+      sslContextFactory.setProvider(tlsProvider.getName());
+    }
+    if (config.getTlsSessionCacheSize() > -1) {
+      sslContextFactory.setSslSessionCacheSize(config.getTlsSessionCacheSize());
+    }
+    if (config.getTlsSessionTimeout() > -1) {
+      sslContextFactory.setSslSessionTimeout(config.getTlsSessionTimeout());
+    }
     return sslContextFactory;
   }
 
@@ -17,6 +17,8 @@
  */
 package org.apache.knox.gateway.services.security.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.knox.gateway.GatewayMessages;
@@ -38,6 +40,7 @@ import org.apache.zookeeper.ZooDefs;
 import java.nio.charset.StandardCharsets;
 import java.security.cert.Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -45,6 +48,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * An {@link AliasService} implementation based on zookeeper remote service registry.
@@ -59,6 +65,9 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
     private static final String GATEWAY_SUB_NODE = BASE_SUB_NODE + NO_CLUSTER_NAME;
     public static final String OPTION_NAME_SHOULD_CREATE_TOKENS_SUB_NODE = "zkShouldCreateTokenSubnodes";
     public static final String OPTION_NAME_SHOULD_USE_LOCAL_ALIAS = "zkShouldUseLocalAlias";
+    public static final String OPTION_NAME_SHOULD_CACHE_DECRYPTED_ALIASES = "zkShouldCacheDecryptedAliases";
+    public static final String OPTION_NAME_DECRYPTED_ALIAS_CACHE_SIZE = "zkDecryptedAliasCacheSize";
+    static final long DEFAULT_DECRYPTED_ALIAS_CACHE_SIZE = 1000L;
     public static final String TOKENS_SUB_NODE_NAME = "tokens";
     public static final String TOKENS_SUB_NODE_PATH = PATH_SEPARATOR + TOKENS_SUB_NODE_NAME;
 
@@ -125,11 +134,23 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
     private final RemoteConfigurationRegistryClientService remoteConfigurationRegistryClientService;
     private final Collection<RemoteTokenStateChangeListener> remoteTokenStateChangeListeners = new HashSet<>();
 
+    /*
+     * Decrypted aliases keyed by cluster/alias; null if caching is disabled. Entries are kept up to date by the registry
+     * listeners, so a hit saves the registry round trips and the key derivation of the decryption. The generation of
+     * an alias is bumped on every invalidation of that alias, and the epoch on every invalidation of many, so that a
+     * lookup racing with a remote change does not cache the value it read before the change.
+     */
+    private Cache<String, char[]> decryptedAliases;
+    private final Map<String, Long> decryptedAliasGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong decryptedAliasesEpoch = new AtomicLong();
+    private long decryptedAliasCacheSize = DEFAULT_DECRYPTED_ALIAS_CACHE_SIZE;
+
     private RemoteConfigurationRegistryClient remoteClient;
     private ConfigurableEncryptor encryptor;
     private GatewayConfig config;
     private boolean shouldCreateTokensSubNode;
     private boolean shouldUseLocalAliasService;
+    private boolean shouldCacheDecryptedAliases;
 
     ZookeeperRemoteAliasService(AliasService localAliasService, MasterService ms, RemoteConfigurationRegistryClientService remoteConfigurationRegistryClientService) {
         this.localAliasService = localAliasService;
@@ -257,6 +278,8 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
                 throw new AliasServiceException(e);
             }
 
+            invalidateDecryptedAlias(clusterName, alias);
+
             if (remoteClient.getEntryData(aliasEntryPath) == null) {
                 throw new IllegalStateException(String.format(Locale.ROOT, "Failed to store alias %s for cluster %s in remote registry", alias, clusterName));
             }
@@ -278,6 +301,7 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
 
             if (remoteClient.entryExists(aliasEntryPath)) {
                 remoteClient.deleteEntry(aliasEntryPath);
+                invalidateDecryptedAlias(clusterName, alias);
 
                 if (remoteClient.entryExists(aliasEntryPath)) {
                     throw new IllegalStateException(String.format(Locale.ROOT, "Failed to delete alias %s for cluster %s in remote registry", alias, clusterName));
@@ -304,6 +328,12 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
 
         /* try to get it from remote registry */
         if (password == null && remoteClient != null) {
+            password = getCachedDecryptedAlias(clusterName, alias);
+            if (password != null) {
+                return password;
+            }
+
+            final long[] generation = decryptedAliasGeneration(clusterName, alias);
             checkPathsExist(remoteClient);
             String encrypted = null;
 
@@ -319,6 +349,7 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
             } else {
                 try {
                     password = decrypt(encrypted).toCharArray();
+                    cacheDecryptedAlias(clusterName, alias, password, generation);
                 } catch (final Exception e) {
                     throw new AliasServiceException(e);
                 }
@@ -407,6 +438,19 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
             encryptor.init(config);
 
             this.shouldCreateTokensSubNode = Boolean.parseBoolean(options.getOrDefault(OPTION_NAME_SHOULD_CREATE_TOKENS_SUB_NODE, "false"));
+            // token state aliases are looked up once per token, caching them would only push the others out
+            this.shouldCacheDecryptedAliases = !shouldCreateTokensSubNode
+                && Boolean.parseBoolean(options.getOrDefault(OPTION_NAME_SHOULD_CACHE_DECRYPTED_ALIASES, "true"));
+            if (shouldCacheDecryptedAliases) {
+                decryptedAliasCacheSize = Long.parseLong(options.getOrDefault(OPTION_NAME_DECRYPTED_ALIAS_CACHE_SIZE,
+                    String.valueOf(DEFAULT_DECRYPTED_ALIAS_CACHE_SIZE)));
+                // evicted, replaced and invalidated passwords are cleared right away
+                decryptedAliases = Caffeine.newBuilder()
+                    .maximumSize(decryptedAliasCacheSize)
+                    .executor(Runnable::run)
+                    .<String, char[]>removalListener((key, password, cause) -> clear(password))
+                    .build();
+            }
         } else {
             LOG.missingClientConfigurationForRemoteMonitoring();
         }
@@ -414,7 +458,9 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
 
     @Override
     public void start() throws ServiceLifecycleException {
-
+        if (remoteClient != null && shouldCacheDecryptedAliases) {
+            primeDecryptedAliases();
+        }
     }
 
     @Override
@@ -426,6 +472,155 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
                 LOG.errorRemovingRemoteListener(PATH_KNOX_ALIAS_STORE_TOPOLOGY, e.toString());
             }
         }
+        invalidateDecryptedAliases("");
+    }
+
+    /**
+     * Decrypt the aliases of every cluster up front so that filters initialized at deployment time do not each pay
+     * for the registry round trips and the decryption. Token state aliases are left to be cached on demand.
+     */
+    private void primeDecryptedAliases() {
+        final List<String> clusters = remoteClient.listChildEntries(PATH_KNOX_ALIAS_STORE_TOPOLOGY);
+        if (clusters == null) {
+            return;
+        }
+        int count = 0;
+        for (String cluster : clusters) {
+            final List<String> aliases = remoteClient.listChildEntries(buildClusterEntryName(cluster));
+            if (aliases == null) {
+                continue;
+            }
+            for (String alias : aliases) {
+                if (TOKENS_SUB_NODE_NAME.equals(alias)) {
+                    continue;
+                }
+                try {
+                    final long[] generation = decryptedAliasGeneration(cluster, alias);
+                    final String encrypted = remoteClient.getEntryData(buildClusterEntryName(cluster) + PATH_SEPARATOR + alias);
+                    if (encrypted != null) {
+                        cacheDecryptedAlias(cluster, alias, decrypt(encrypted).toCharArray(), generation);
+                        count++;
+                    }
+                } catch (final Exception e) {
+                    LOG.errorPrimingRemoteAliasCache(cluster, alias, e.toString());
+                }
+            }
+        }
+        LOG.primedRemoteAliasCache(count);
+    }
+
+    private static String decryptedAliasKey(final String clusterName, final String alias) {
+        return clusterName + PATH_SEPARATOR + alias.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return a copy of the cached password, so that callers are free to clear it; or <code>null</code> on a miss
+     */
+    private char[] getCachedDecryptedAlias(final String clusterName, final String alias) {
+        if (decryptedAliases == null) {
+            return null;
+        }
+        // copied while the entry is locked, so that a concurrent replacement cannot clear it half way
+        final AtomicReference<char[]> copy = new AtomicReference<>();
+        decryptedAliases.asMap().computeIfPresent(decryptedAliasKey(clusterName, alias), (key, cached) -> {
+            copy.set(cached.clone());
+            return cached;
+        });
+        return copy.get();
+    }
+
+    /**
+     * @return the epoch and the generation of the alias, to be passed to {@link #cacheDecryptedAlias} after the lookup
+     */
+    private long[] decryptedAliasGeneration(final String clusterName, final String alias) {
+        synchronized (decryptedAliasGenerations) {
+            return new long[] { decryptedAliasesEpoch.get(),
+                decryptedAliasGenerations.getOrDefault(decryptedAliasKey(clusterName, alias), 0L) };
+        }
+    }
+
+    /**
+     * Caches a copy of the given password unless the alias was invalidated after <code>generation</code> was read,
+     * in which case the password may already be outdated.
+     */
+    private void cacheDecryptedAlias(final String clusterName, final String alias, final char[] password, final long[] generation) {
+        if (decryptedAliases == null) {
+            return;
+        }
+        final String key = decryptedAliasKey(clusterName, alias);
+        synchronized (decryptedAliasGenerations) {
+            if (decryptedAliasesEpoch.get() == generation[0]
+                && decryptedAliasGenerations.getOrDefault(key, 0L) == generation[1]) {
+                decryptedAliases.put(key, password.clone());
+            }
+        }
+    }
+
+    private void invalidateDecryptedAlias(final String clusterName, final String alias) {
+        if (decryptedAliases == null) {
+            return;
+        }
+        final String key = decryptedAliasKey(clusterName, alias);
+        synchronized (decryptedAliasGenerations) {
+            bumpDecryptedAliasGeneration(key);
+            decryptedAliases.invalidate(key);
+        }
+    }
+
+    /**
+     * Replaces the cached password of an alias that changed remotely. Aliases that are not cached yet are not added,
+     * which keeps aliases nobody looked up out of memory.
+     */
+    private void refreshDecryptedAlias(final String clusterName, final String alias, final char[] password) {
+        if (decryptedAliases != null) {
+            final String key = decryptedAliasKey(clusterName, alias);
+            synchronized (decryptedAliasGenerations) {
+                bumpDecryptedAliasGeneration(key);
+                decryptedAliases.asMap().computeIfPresent(key, (k, previous) -> password.clone());
+            }
+        }
+        clear(password);
+    }
+
+    /**
+     * The generations only need to outlive the lookups in flight; once there are more of them than cached aliases, they
+     * are all dropped in favor of a new epoch.
+     */
+    private void bumpDecryptedAliasGeneration(final String key) {
+        if (decryptedAliasGenerations.size() >= decryptedAliasCacheSize) {
+            decryptedAliasesEpoch.incrementAndGet();
+            decryptedAliasGenerations.clear();
+        }
+        decryptedAliasGenerations.merge(key, 1L, Long::sum);
+    }
+
+    /**
+     * Invalidates all cached aliases whose key starts with the given prefix; an empty prefix invalidates every alias.
+     */
+    private void invalidateDecryptedAliases(final String prefix) {
+        if (decryptedAliases == null) {
+            return;
+        }
+        synchronized (decryptedAliasGenerations) {
+            decryptedAliasesEpoch.incrementAndGet();
+            decryptedAliasGenerations.clear();
+            decryptedAliases.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    /* package private for testing */
+    long getCachedDecryptedAliasCount() {
+        if (decryptedAliases == null) {
+            return 0L;
+        }
+        decryptedAliases.cleanUp();
+        return decryptedAliases.estimatedSize();
+    }
+
+    private static void clear(final char[] password) {
+        if (password != null) {
+            Arrays.fill(password, '\0');
+        }
     }
 
     /**
@@ -507,6 +702,10 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
                     /* remove listener */
                     client.removeEntryListener(path);
                     if (!alias.isEmpty()) {
+                      if (!tokenSubNode) {
+                        invalidateDecryptedAlias(cluster, alias);
+                      }
+
                       for (RemoteTokenStateChangeListener changeListener : remoteTokenStateChangeListeners) {
                         changeListener.onRemoved(alias);
                       }
@@ -515,6 +714,9 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
                         LOG.removeAliasLocally(cluster, alias);
                         localAliasService.removeAliasForCluster(cluster, alias);
                       }
+                    } else if (subPathParts.length == 1) {
+                      /* the whole cluster is gone */
+                      invalidateDecryptedAliases(subPathParts[0] + PATH_SEPARATOR);
                     }
                 } catch (final Exception e) {
                     LOG.errorRemovingAliasLocally(cluster, alias, e.toString());
@@ -569,6 +771,10 @@ public class ZookeeperRemoteAliasService extends AbstractAliasService {
               throw new IllegalArgumentException("An error occurred while trying to decrypt data for alias " + alias, e);
             }
 
+            if (!path.contains(TOKENS_SUB_NODE_PATH)) {
+              refreshDecryptedAlias(cluster, alias, decryptedData.toCharArray());
+            }
+
             //if this is a token related alias, notify listeners
             if (path.contains(TOKENS_SUB_NODE_PATH)) {
               for (RemoteTokenStateChangeListener changeListener : remoteTokenStateChangeListeners) {
@@ -19,7 +19,6 @@ package org.apache.knox.gateway.services.token.impl;
 
 import java.net.MalformedURLException;
 import java.net.URI;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.KeyStore;
@@ -32,14 +31,23 @@ import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.JWSVerifier;
 import com.nimbusds.jose.KeyLengthException;
@@ -48,7 +56,6 @@ import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
 import com.nimbusds.jose.proc.BadJOSEException;
 import com.nimbusds.jose.proc.JOSEObjectTypeVerifier;
 import com.nimbusds.jose.proc.JWSKeySelector;
@@ -61,8 +68,10 @@ import org.apache.knox.gateway.GatewayResources;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
+import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.Service;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
 import org.apache.knox.gateway.services.security.AliasService;
 import org.apache.knox.gateway.services.security.AliasServiceException;
 import org.apache.knox.gateway.services.security.KeystoreService;
@@ -85,13 +94,14 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
   private AliasService aliasService;
   private KeystoreService keystoreService;
   private GatewayConfig config;
+  private GatewayServices gatewayServices;
 
   private char[] cachedSigningKeyPassphrase;
   private byte[] cachedSigningHmacSecret;
   private RSAPrivateKey signingKey;
 
   /* Cache JWKS Key source which has its own cache for the jwk keys */
-  private Map<String, JWKSource<SecurityContext>> cachedJwkSources = new HashMap<>();
+  private final AtomicReference<JwksKeySourceCache> jwksCache = new AtomicReference<>();
 
   private Optional<String> cachedSigningKeyID = Optional.empty();
 
@@ -103,6 +113,10 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     this.aliasService = as;
   }
 
+  public void setGatewayServices(GatewayServices gatewayServices) {
+    this.gatewayServices = gatewayServices;
+  }
+
   @Override
   public JWT issueToken(JWTokenAttributes jwtAttributes) throws TokenServiceException {
     final String algorithm = jwtAttributes.getAlgorithm();
@@ -228,22 +242,7 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
     try {
       if (algorithm != null && jwksUrl != null) {
         JWSAlgorithm expectedJWSAlg = JWSAlgorithm.parse(algorithm);
-        /* Retry one time in case of failure and cache JWKS in case there is outage, TTL is OUTAGE_TTL */
-        long outageTTL = config.getJwksOutageCacheTTL();
-        long cacheTTL = config.getJwksCacheTimeToLive();
-        long cacheTimeOut = config.getJwksCacheRefreshTimeout();
-
-        JWKSource<SecurityContext> jwksSource = cachedJwkSources.get(jwksUrl);
-
-        if(jwksSource == null) {
-          jwksSource = JWKSourceBuilder.create(new URL(jwksUrl))
-                  .cache(cacheTTL, cacheTimeOut)
-                  .refreshAheadCache(true)
-                  .retrying(true)
-                  .outageTolerant(outageTTL)
-                  .build();
-            cachedJwkSources.put(jwksUrl, jwksSource);
-        }
+        JWKSource<SecurityContext> jwksSource = getJwksCache().getSource(jwksUrl);
 
         JWSKeySelector<SecurityContext> keySelector = new JWSVerificationKeySelector<>(expectedJWSAlg, jwksSource);
 
@@ -271,22 +270,104 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
   @Override
   public boolean verifyToken(JWT token, Set<URI> jwksUrls, String algorithm, JOSEObjectTypeVerifier<SecurityContext> typeVerifier) throws TokenServiceException {
-    boolean verified = false;
-    for(final URI url : jwksUrls) {
-      try {
-        verified = this.verifyToken(token, url.toString(), algorithm, typeVerifier);
-        /* if token is verified no need to check further return result */
-        if(verified) {
-          return verified;
+    final JwksKeySourceCache cache = getJwksCache();
+    final Set<String> candidates = new LinkedHashSet<>();
+    for (final URI url : jwksUrls) {
+      candidates.add(url.toString());
+    }
+
+    /* Go straight to the endpoint that published the kid of the token or verified its issuer before */
+    final String routed = cache.route(getKeyId(token), token.getIssuer(), candidates);
+    if (routed != null) {
+      LOG.jwksRouted(routed);
+      if (verifyToken(token, routed, algorithm, typeVerifier, cache)) {
+        return true;
+      }
+      candidates.remove(routed);
+    }
+
+    if (candidates.size() == 1) {
+      return verifyToken(token, candidates.iterator().next(), algorithm, typeVerifier, cache);
+    }
+    return verifyInParallel(token, candidates, algorithm, typeVerifier, cache);
+  }
+
+  /*
+   * Verifies against all endpoints at once so that a slow or unavailable one does not delay the others.
+   * Gives up on the endpoints that did not answer within the verification timeout. Once the outcome is known,
+   * the verifications that have not started yet are skipped; the running ones are bounded by the fetch timeouts.
+   */
+  private boolean verifyInParallel(JWT token, Set<String> jwksUrls, String algorithm,
+                                   JOSEObjectTypeVerifier<SecurityContext> typeVerifier, JwksKeySourceCache cache) {
+    final CompletionService<Boolean> completionService = new ExecutorCompletionService<>(cache.getExecutor());
+    final AtomicBoolean done = new AtomicBoolean();
+    int submitted = 0;
+    try {
+      for (final String url : jwksUrls) {
+        try {
+          completionService.submit(() -> !done.get() && verifyToken(token, url, algorithm, typeVerifier, cache));
+          submitted++;
+        } catch (RejectedExecutionException e) {
+          LOG.jwksVerificationRejected(url);
         }
-      } catch (TokenServiceException e) {
-        /* failed to verify token, log and move on */
-        LOG.jwksVerificationFailed(url.toString(), e.toString(), e);
       }
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(cache.getVerificationTimeout());
+      for (int i = 0; i < submitted; i++) {
+        final Future<Boolean> verification = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if (verification == null) {
+          LOG.jwksVerificationTimedOut(jwksUrls.toString(), cache.getVerificationTimeout());
+          return false;
+        }
+        if (verification.get()) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      /* verifyToken logs its own failures, this is unexpected */
+      LOG.jwksVerificationFailed(jwksUrls.toString(), e.toString(), e);
+    } finally {
+      done.set(true);
     }
-    return verified;
+    return false;
   }
 
+  private boolean verifyToken(JWT token, String url, String algorithm,
+                              JOSEObjectTypeVerifier<SecurityContext> typeVerifier, JwksKeySourceCache cache) {
+    try {
+      if (verifyToken(token, url, algorithm, typeVerifier)) {
+        cache.verified(token.getIssuer(), url);
+        return true;
+      }
+    } catch (TokenServiceException e) {
+      /* failed to verify token, log and move on */
+      LOG.jwksVerificationFailed(url, e.toString(), e);
+    }
+    return false;
+  }
+
+  private static String getKeyId(JWT token) {
+    try {
+      return token.getHeader() == null ? null : JWSHeader.parse(token.getHeader()).getKeyID();
+    } catch (ParseException e) {
+      return null;
+    }
+  }
+
+  private JwksKeySourceCache getJwksCache() {
+    JwksKeySourceCache cache = jwksCache.get();
+    if (cache == null) {
+      cache = new JwksKeySourceCache(config.getJwksCacheTimeToLive(), config.getJwksCacheRefreshTimeout(),
+          config.getJwksOutageCacheTTL(), config.isVirtualThreadsEnabled(),
+          () -> MetricsUtils.getMetricRegistry(config, gatewayServices));
+      if (!jwksCache.compareAndSet(null, cache)) {
+        cache.close();
+        cache = jwksCache.get();
+      }
+    }
+    return cache;
+  }
 
   @Override
   public void init(GatewayConfig config, Map<String, String> options)
@@ -361,6 +442,10 @@ public class DefaultTokenAuthorityService implements JWTokenAuthority, Service {
 
   @Override
   public void stop() throws ServiceLifecycleException {
+    final JwksKeySourceCache cache = jwksCache.getAndSet(null);
+    if (cache != null) {
+      cache.close();
+    }
   }
 
   protected Optional<String> getCachedSigningKeyID() {
@@ -26,7 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
@@ -43,6 +43,7 @@ import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
 import org.apache.knox.gateway.services.security.token.KnoxToken;
 import org.apache.knox.gateway.services.security.token.TokenMetadata;
+import org.apache.knox.gateway.services.security.token.TokenStateListener;
 import org.apache.knox.gateway.services.security.token.TokenStateService;
 import org.apache.knox.gateway.services.security.token.TokenUtils;
 import org.apache.knox.gateway.services.security.token.UnknownTokenException;
@@ -50,6 +51,7 @@ import org.apache.knox.gateway.services.security.token.impl.JWT;
 import org.apache.knox.gateway.services.security.token.impl.JWTToken;
 import org.apache.knox.gateway.services.token.TokenStateServiceStatistics;
 import org.apache.knox.gateway.util.Tokens;
+import org.apache.knox.gateway.util.VirtualThreads;
 
 /**
  * In-Memory authentication token state management implementation.
@@ -72,6 +74,8 @@ public class DefaultTokenStateService implements TokenStateService {
 
   private final Map<String, TokenMetadata> metadataMap = new ConcurrentHashMap<>();
 
+  private final CopyOnWriteArrayList<TokenStateListener> listeners = new CopyOnWriteArrayList<>();
+
   // Token eviction interval (in seconds)
   private long tokenEvictionInterval;
 
@@ -81,7 +85,7 @@ public class DefaultTokenStateService implements TokenStateService {
   // Knox token validation permissiveness
   protected boolean permissiveValidationEnabled;
 
-  private final ScheduledExecutorService evictionScheduler = Executors.newScheduledThreadPool(1);
+  private ScheduledExecutorService evictionScheduler;
 
   //token state MBean to store statistics (only initialized and used if JMX reporting is enabled)
   protected TokenStateServiceStatistics tokenStateServiceStatistics;
@@ -92,6 +96,8 @@ public class DefaultTokenStateService implements TokenStateService {
     tokenEvictionInterval = config.getKnoxTokenEvictionInterval();
     tokenEvictionGracePeriod = config.getKnoxTokenEvictionGracePeriod();
     permissiveValidationEnabled = config.isKnoxTokenPermissiveValidationEnabled();
+    // eviction may block on a persistent store, so it runs on a virtual thread if enabled
+    evictionScheduler = VirtualThreads.newScheduledExecutor(config.isVirtualThreadsEnabled(), 1, "token-eviction-");
     if (config.isMetricsEnabled() && config.isJmxMetricsReportingEnabled()) {
       try {
         tokenStateServiceStatistics = new TokenStateServiceStatistics();
@@ -113,7 +119,9 @@ public class DefaultTokenStateService implements TokenStateService {
 
   @Override
   public void stop() throws ServiceLifecycleException {
-    evictionScheduler.shutdown();
+    if (evictionScheduler != null) {
+      evictionScheduler.shutdown();
+    }
   }
 
   @Override
@@ -263,6 +271,19 @@ public class DefaultTokenStateService implements TokenStateService {
     /* no reason to keep revoked tokens around */
     removeToken(tokenId);
     log.revokedToken(Tokens.getTokenIDDisplayText(tokenId));
+    for (TokenStateListener listener : listeners) {
+      listener.onTokenRevoked(tokenId);
+    }
+  }
+
+  @Override
+  public void addTokenStateListener(final TokenStateListener listener) {
+    listeners.addIfAbsent(listener);
+  }
+
+  @Override
+  public void removeTokenStateListener(final TokenStateListener listener) {
+    listeners.remove(listener);
   }
 
   @Override
@@ -87,6 +87,7 @@ public class DerbyDBTokenStateService extends JDBCTokenStateService {
 
   @Override
   public void stop() throws ServiceLifecycleException {
+    super.stop();
     try {
       if (derbyDatabase != null) {
         derbyDatabase.shutdown();
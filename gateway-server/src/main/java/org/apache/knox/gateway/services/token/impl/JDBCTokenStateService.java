@@ -17,6 +17,7 @@
  */
 package org.apache.knox.gateway.services.token.impl;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.database.DataSourceProvider;
@@ -33,12 +34,14 @@ import org.apache.knox.gateway.util.Tokens;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class JDBCTokenStateService extends AbstractPersistentTokenStateService implements TokenMigrationTarget {
@@ -54,6 +57,18 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
   private boolean verboseTokenMigration;
   private int tokenMigrationProgressCount;
 
+  private boolean writeBehindEnabled;
+  private long writeBehindMaxDelay;
+  private int writeBehindMaxBatchSize;
+  private long writeBehindAckTimeout;
+  private Supplier<MetricRegistry> metricRegistrySupplier;
+  private TokenStateWriteBehind writeBehind;
+
+  private boolean cacheEnabled;
+  private long cacheMaxStaleness;
+  private long cacheMaxSize;
+  private TokenStateCache tokenStateCache;
+
   public void setAliasService(AliasService aliasService) {
     this.aliasService = aliasService;
   }
@@ -62,6 +77,10 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
     return aliasService;
   }
 
+  public void setMetricRegistrySupplier(Supplier<MetricRegistry> metricRegistrySupplier) {
+    this.metricRegistrySupplier = metricRegistrySupplier;
+  }
+
   @Override
   public void init(GatewayConfig config, Map<String, String> options) throws ServiceLifecycleException {
     if (!initialized.get()) {
@@ -72,7 +91,9 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
           throw new ServiceLifecycleException("The required AliasService reference has not been set.");
         }
         try {
-          this.tokenDatabase = new TokenStateDatabase(DataSourceProvider.getDataSource(config, aliasService), config.getDatabaseType());
+          // instances that do not cache token state record their changes only for the ones that do
+          this.tokenDatabase = new TokenStateDatabase(DataSourceProvider.getDataSource(config, aliasService), config.getDatabaseType(),
+              config.isTokenStateCacheEnabled() || config.isTokenStateChangeLogEnabled());
           initialized.set(true);
         } catch (Exception e) {
           throw new ServiceLifecycleException("Error while initiating JDBCTokenStateService: " + e, e);
@@ -83,6 +104,15 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
         this.migrateExpiredTokens = config.migrateExpiredTokens();
         this.verboseTokenMigration = config.printVerboseTokenMigrationMessages();
         this.tokenMigrationProgressCount = config.getTokenMigrationProgressCount();
+
+        this.writeBehindEnabled = config.isTokenStateWriteBehindEnabled();
+        this.writeBehindMaxDelay = config.getTokenStateWriteBehindMaxDelay();
+        this.writeBehindMaxBatchSize = config.getTokenStateWriteBehindMaxBatchSize();
+        this.writeBehindAckTimeout = config.getTokenStateWriteBehindAckTimeout();
+
+        this.cacheEnabled = config.isTokenStateCacheEnabled();
+        this.cacheMaxStaleness = config.getTokenStateCacheMaxStaleness();
+        this.cacheMaxSize = config.getTokenStateCacheMaxSize();
       } finally {
         initLock.unlock();
       }
@@ -92,6 +122,15 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
   @Override
   public void start() throws ServiceLifecycleException {
     super.start();
+    if (writeBehindEnabled) {
+      writeBehind = new TokenStateWriteBehind(tokenDatabase, writeBehindMaxDelay, writeBehindMaxBatchSize, writeBehindAckTimeout,
+          metricRegistrySupplier == null ? null : metricRegistrySupplier.get());
+      writeBehind.start();
+    }
+    if (cacheEnabled) {
+      tokenStateCache = new TokenStateCache(tokenDatabase, cacheMaxStaleness, cacheMaxSize);
+      tokenStateCache.start();
+    }
     if (skipTokenMigration) {
       log.skipTokenMigration();
     } else {
@@ -104,10 +143,26 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
     }
   }
 
+  @Override
+  public void stop() throws ServiceLifecycleException {
+    try {
+      if (tokenStateCache != null) {
+        tokenStateCache.stop();
+      }
+      if (writeBehind != null) {
+        // returns once the writer has exited, so it never uses the data source closed below
+        writeBehind.stop();
+      }
+    } finally {
+      super.stop();
+    }
+  }
+
   @Override
   public void addToken(String tokenId, long issueTime, long expiration, long maxLifetimeDuration) {
     try {
-      final boolean added = tokenDatabase.addToken(tokenId, issueTime, expiration, maxLifetimeDuration);
+      final boolean added = writeBehind == null ? tokenDatabase.addToken(tokenId, issueTime, expiration, maxLifetimeDuration)
+          : writeBehind.write(TokenStateWrite.addToken(tokenId, issueTime, expiration, maxLifetimeDuration));
       if (added) {
         log.savedTokenInDatabase(Tokens.getTokenIDDisplayText(tokenId));
 
@@ -151,15 +206,16 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
 
   @Override
   public long getTokenExpiration(String tokenId, boolean validate) throws UnknownTokenException {
-    // To support HA, there is no in-memory lookup here; we should go directly to the DB
-    // See KNOX-2658 for more details.
+    // To support HA, there is no lookup in the in-memory collections here; we should go directly to the DB,
+    // or to the token state cache, which is kept coherent with the DB. See KNOX-2658 for more details.
 
     if (validate) {
       validateToken(tokenId);
     }
 
     try {
-      final Long expiration = tokenDatabase.getTokenExpiration(tokenId);
+      final Long expiration = tokenStateCache == null ? tokenDatabase.getTokenExpiration(tokenId)
+          : tokenStateCache.getExpiration(tokenId, () -> tokenDatabase.getTokenExpiration(tokenId));
       if (expiration != null) {
         log.fetchedExpirationFromDatabase(Tokens.getTokenIDDisplayText(tokenId), expiration);
 
@@ -178,9 +234,11 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
   @Override
   protected void updateExpiration(String tokenId, long expiration) {
     try {
-      final boolean updated = tokenDatabase.updateExpiration(tokenId, expiration);
+      final boolean updated = writeBehind == null ? tokenDatabase.updateExpiration(tokenId, expiration)
+          : writeBehind.write(TokenStateWrite.updateExpiration(tokenId, expiration));
       if (updated) {
         log.updatedExpirationInDatabase(Tokens.getTokenIDDisplayText(tokenId), expiration);
+        invalidateCachedState(tokenId);
 
         // Update in-memory
         super.updateExpiration(tokenId, expiration);
@@ -230,6 +288,7 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
     try {
       final boolean removed = tokenDatabase.removeToken(tokenId);
       if (removed) {
+        invalidateCachedState(tokenId);
         super.removeTokens(Collections.singleton(tokenId));
         log.removedTokenFromDatabase(Tokens.getTokenIDDisplayText(tokenId));
       } else {
@@ -252,11 +311,21 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
         log.removedTokensFromDatabase(numOfExpiredTokens);
 
         // remove from in-memory collections
+        expiredTokenIds.forEach(this::invalidateCachedState);
         super.removeTokens(expiredTokenIds);
       }
     } catch (SQLException e) {
       log.errorRemovingTokensFromDatabase(e.getMessage(), e);
     }
+
+    // the token state cache purges the change log itself
+    if (tokenStateCache == null && tokenDatabase.isRecordingChanges()) {
+      try {
+        tokenDatabase.deleteTokenChanges(System.currentTimeMillis() - TokenStateCache.CHANGE_RETENTION_MILLIS);
+      } catch (SQLException e) {
+        log.failedToPurgeTokenChanges(e.getMessage(), e);
+      }
+    }
   }
 
   @Override
@@ -266,6 +335,7 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
 
       if (added) {
         log.updatedMetadataInDatabase(Tokens.getTokenIDDisplayText(tokenId));
+        invalidateCachedState(tokenId);
 
         // Update in-memory
         super.addMetadata(tokenId, metadata);
@@ -279,7 +349,24 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
     }
   }
 
+  private void invalidateCachedState(String tokenId) {
+    if (tokenStateCache != null) {
+      tokenStateCache.invalidate(tokenId);
+    }
+  }
+
   private boolean saveMetadataMapInDatabase(String tokenId, Map<String, String> metadataMap) throws SQLException {
+    if (writeBehind != null) {
+      // the writer upserts every entry of the batch in one transaction, so no lock is needed
+      final Map<String, String> nonBlankMetadata = new LinkedHashMap<>();
+      metadataMap.forEach((name, value) -> {
+        if (StringUtils.isNotBlank(value)) {
+          nonBlankMetadata.put(name, value);
+        }
+      });
+      return !nonBlankMetadata.isEmpty() && writeBehind.write(TokenStateWrite.saveMetadata(tokenId, nonBlankMetadata));
+    }
+
     addMetadataLock.lock();
     try {
       boolean saved = false;
@@ -290,12 +377,24 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
           }
         }
       }
+      if (saved) {
+        recordTokenChange(tokenId);
+      }
       return saved;
     } finally {
       addMetadataLock.unlock();
     }
   }
 
+  /* The metadata is already committed, so failing to record its change must not fail the update */
+  private void recordTokenChange(String tokenId) {
+    try {
+      tokenDatabase.addTokenChange(tokenId);
+    } catch (SQLException e) {
+      log.failedToRecordTokenChange(Tokens.getTokenIDDisplayText(tokenId), e.getMessage(), e);
+    }
+  }
+
   private boolean upsertTokenMetadata(String tokenId, String metadataName, String metadataValue) throws SQLException {
     if (!tokenDatabase.updateMetadata(tokenId, metadataName, metadataValue)) {
       return tokenDatabase.addMetadata(tokenId, metadataName, metadataValue);
@@ -306,13 +405,14 @@ public class JDBCTokenStateService extends AbstractPersistentTokenStateService i
 
   @Override
   public TokenMetadata getTokenMetadata(String tokenId) throws UnknownTokenException {
-    // To support HA, there is no in-memory lookup here; we should go directly to the DB.
-    // See KNOX-2658 for more details.
+    // To support HA, there is no lookup in the in-memory collections here; we should go directly to the DB,
+    // or to the token state cache, which is kept coherent with the DB. See KNOX-2658 for more details.
 
     TokenMetadata tokenMetadata = null;
 
     try {
-      tokenMetadata = tokenDatabase.getTokenMetadata(tokenId);
+      tokenMetadata = tokenStateCache == null ? tokenDatabase.getTokenMetadata(tokenId)
+          : tokenStateCache.getMetadata(tokenId, () -> tokenDatabase.getTokenMetadata(tokenId));
 
       if (tokenMetadata != null) {
         log.fetchedMetadataFromDatabase(Tokens.getTokenIDDisplayText(tokenId));
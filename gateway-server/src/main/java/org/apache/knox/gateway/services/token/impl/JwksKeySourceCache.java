@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSetCacheRefreshEvaluator;
+import com.nimbusds.jose.jwk.source.JWKSetSource;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.jwk.source.URLBasedJWKSetSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.util.VirtualThreads;
+
+/**
+ * Concurrent cache of the JWKS key sources used to verify tokens issued by external identity providers.
+ * <p>
+ * Each source keeps its own key set cache, which is refreshed by a shared scheduler ahead of its expiry
+ * so that verifications are not blocked by fetching keys. The key sets most recently fetched from each
+ * endpoint are also kept here so that tokens can be routed to the endpoint that published their
+ * <code>kid</code>; the endpoint that last verified a token of an issuer is remembered as well.
+ */
+class JwksKeySourceCache {
+  private static final TokenAuthorityServiceMessages LOG = MessagesFactory.get(TokenAuthorityServiceMessages.class);
+
+  static final String FETCH_TIMER = "jwks.fetch";
+  static final String REFRESH_FAILURES_METER = "jwks.refresh.failures";
+  static final String CACHE_HITS_METER = "jwks.cache.hits";
+  static final String CACHE_MISSES_METER = "jwks.cache.misses";
+
+  /* Bounds the threads, and the verifications waiting for one, so that an unavailable endpoint cannot pile them up */
+  static final int MAX_THREADS = 16;
+  static final int MAX_QUEUED_TASKS = 1024;
+
+  private final Map<String, Entry> sources = new ConcurrentHashMap<>();
+  private final Map<String, String> issuerRoutes = new ConcurrentHashMap<>();
+  private final long cacheTTL;
+  private final long cacheTimeOut;
+  private final long outageTTL;
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+  private final Supplier<MetricRegistry> metricRegistrySupplier;
+  private final AtomicReference<MetricRegistry> metricRegistry = new AtomicReference<>();
+
+  JwksKeySourceCache(long cacheTTL, long cacheTimeOut, long outageTTL, boolean virtualThreads,
+                     Supplier<MetricRegistry> metricRegistrySupplier) {
+    this.cacheTTL = cacheTTL;
+    this.cacheTimeOut = cacheTimeOut;
+    this.outageTTL = outageTTL;
+    this.executor = newExecutor(virtualThreads);
+    this.scheduler = VirtualThreads.newScheduledExecutor(virtualThreads, 1, "jwks-refresh-");
+    this.metricRegistrySupplier = metricRegistrySupplier;
+  }
+
+  /**
+   * @param jwksUrl the JWKS endpoint
+   * @return the key source of the endpoint, created on first use
+   * @throws MalformedURLException if the endpoint is not a valid URL
+   */
+  JWKSource<SecurityContext> getSource(String jwksUrl) throws MalformedURLException {
+    Entry entry = sources.get(jwksUrl);
+    if (entry == null) {
+      final Entry created = new Entry(jwksUrl);
+      entry = sources.putIfAbsent(jwksUrl, created);
+      if (entry == null) {
+        entry = created;
+      } else {
+        created.close();
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Picks the endpoint a token should be verified against first without contacting any of them.
+   *
+   * @param kid      the key ID in the header of the token, may be <code>null</code>
+   * @param issuer   the issuer of the token, may be <code>null</code>
+   * @param jwksUrls the candidate endpoints
+   * @return the endpoint whose last fetched key set contains <code>kid</code>, or else the one which
+   * last verified a token of <code>issuer</code>; <code>null</code> if neither is known
+   */
+  String route(String kid, String issuer, Collection<String> jwksUrls) {
+    if (kid != null) {
+      for (String jwksUrl : jwksUrls) {
+        final Entry entry = sources.get(jwksUrl);
+        if (entry != null && entry.hasKey(kid)) {
+          return jwksUrl;
+        }
+      }
+    }
+    if (issuer != null) {
+      final String jwksUrl = issuerRoutes.get(issuer);
+      if (jwksUrl != null && jwksUrls.contains(jwksUrl)) {
+        return jwksUrl;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param issuer  the issuer of a successfully verified token, may be <code>null</code>
+   * @param jwksUrl the endpoint that verified it
+   */
+  void verified(String issuer, String jwksUrl) {
+    if (issuer != null) {
+      issuerRoutes.put(issuer, jwksUrl);
+    }
+  }
+
+  private static ExecutorService newExecutor(boolean virtualThreads) {
+    ThreadFactory threadFactory = virtualThreads ? VirtualThreads.newThreadFactory("jwks-") : null;
+    if (threadFactory == null) {
+      final AtomicInteger threadCount = new AtomicInteger();
+      threadFactory = runnable -> {
+        final Thread thread = new Thread(runnable, "jwks-" + threadCount.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(MAX_QUEUED_TASKS), threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * @return the executor verifications against several endpoints run on; it rejects tasks once
+   * {@value #MAX_QUEUED_TASKS} are waiting for one of its {@value #MAX_THREADS} threads
+   */
+  ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * @return the longest a verification against one endpoint is expected to take: a fetch, retried once,
+   * or waiting for another thread to fetch the keys
+   */
+  long getVerificationTimeout() {
+    return Math.max(cacheTimeOut, 2L * (JWKSourceBuilder.DEFAULT_HTTP_CONNECT_TIMEOUT + JWKSourceBuilder.DEFAULT_HTTP_READ_TIMEOUT));
+  }
+
+  /* The gateway's registry; or null while metrics are disabled, in which case nothing is recorded */
+  private MetricRegistry getMetricRegistry() {
+    MetricRegistry registry = metricRegistry.get();
+    if (registry == null && metricRegistrySupplier != null) {
+      registry = metricRegistrySupplier.get();
+      if (registry != null) {
+        metricRegistry.compareAndSet(null, registry);
+      }
+    }
+    return registry;
+  }
+
+  private void mark(String meter) {
+    final MetricRegistry registry = getMetricRegistry();
+    if (registry != null) {
+      registry.meter(meter).mark();
+    }
+  }
+
+  void close() {
+    for (Entry entry : sources.values()) {
+      entry.close();
+    }
+    sources.clear();
+    issuerRoutes.clear();
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Key source of a single endpoint, recording cache hits and misses on lookup. A lookup counts as a miss if
+   * the endpoint was fetched while it ran, which may also be a refresh ahead of expiry running concurrently.
+   */
+  private final class Entry implements JWKSource<SecurityContext> {
+    private final MeteredJWKSetSource endpoint;
+    private final JWKSource<SecurityContext> cached;
+
+    Entry(String jwksUrl) throws MalformedURLException {
+      this.endpoint = new MeteredJWKSetSource(jwksUrl);
+      /* Retry one time in case of failure and cache JWKS in case there is outage, TTL is OUTAGE_TTL */
+      this.cached = JWKSourceBuilder.create((JWKSetSource<SecurityContext>) endpoint)
+          .cache(cacheTTL, cacheTimeOut)
+          .refreshAheadCache(refreshAheadTime(), null, executor, false, scheduler, false)
+          .retrying(true)
+          .outageTolerant(outageTTL)
+          .build();
+    }
+
+    /* Refresh ahead of expiry by the default margin, unless the TTL is too short to leave room for it */
+    private long refreshAheadTime() {
+      return Math.max(0L, Math.min(JWKSourceBuilder.DEFAULT_REFRESH_AHEAD_TIME, cacheTTL - cacheTimeOut));
+    }
+
+    boolean hasKey(String kid) {
+      final JWKSet keys = endpoint.lastFetched.get();
+      return keys != null && keys.getKeyByKeyId(kid) != null;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+      final long fetches = endpoint.fetches.get();
+      try {
+        return cached.get(jwkSelector, context);
+      } finally {
+        mark(endpoint.fetches.get() == fetches ? CACHE_HITS_METER : CACHE_MISSES_METER);
+      }
+    }
+
+    void close() {
+      try {
+        /* closes the wrapped endpoint as well, but not the shared executors */
+        if (cached instanceof Closeable) {
+          ((Closeable) cached).close();
+        } else {
+          endpoint.close();
+        }
+      } catch (IOException e) {
+        LOG.failedToCloseJwksSource(endpoint.jwksUrl, e.toString());
+      }
+    }
+  }
+
+  /**
+   * Fetches the key set of an endpoint, recording the latency and failures of each fetch.
+   */
+  private final class MeteredJWKSetSource implements JWKSetSource<SecurityContext> {
+    private final String jwksUrl;
+    private final JWKSetSource<SecurityContext> delegate;
+    private final AtomicReference<JWKSet> lastFetched = new AtomicReference<>();
+    private final AtomicLong fetches = new AtomicLong();
+
+    MeteredJWKSetSource(String jwksUrl) throws MalformedURLException {
+      this.jwksUrl = jwksUrl;
+      this.delegate = new URLBasedJWKSetSource<>(new URL(jwksUrl),
+          new DefaultResourceRetriever(JWKSourceBuilder.DEFAULT_HTTP_CONNECT_TIMEOUT,
+              JWKSourceBuilder.DEFAULT_HTTP_READ_TIMEOUT, JWKSourceBuilder.DEFAULT_HTTP_SIZE_LIMIT));
+    }
+
+    @Override
+    public JWKSet getJWKSet(JWKSetCacheRefreshEvaluator refreshEvaluator, long currentTime, SecurityContext context)
+        throws KeySourceException {
+      fetches.incrementAndGet();
+      final MetricRegistry registry = getMetricRegistry();
+      final Timer.Context timer = registry == null ? null : registry.timer(FETCH_TIMER).time();
+      try {
+        final JWKSet keys = delegate.getJWKSet(refreshEvaluator, currentTime, context);
+        lastFetched.set(keys);
+        return keys;
+      } catch (KeySourceException | RuntimeException e) {
+        mark(REFRESH_FAILURES_METER);
+        LOG.jwksFetchFailed(jwksUrl, e.toString());
+        throw e;
+      } finally {
+        if (timer != null) {
+          timer.stop();
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
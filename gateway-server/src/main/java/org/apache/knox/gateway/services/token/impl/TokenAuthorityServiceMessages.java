@@ -32,4 +32,19 @@ public interface TokenAuthorityServiceMessages {
 
   @Message(level = MessageLevel.WARN, text = "Ignoring typ header verification for token")
   void ignoreTypeHeaderVerification();
+
+  @Message(level = MessageLevel.WARN, text = "Failed to fetch the key set from JWKS endpoint {0}, reason: {1}")
+  void jwksFetchFailed(String jwksUrl, String reason);
+
+  @Message(level = MessageLevel.WARN, text = "Failed to close the key source of JWKS endpoint {0}, reason: {1}")
+  void failedToCloseJwksSource(String jwksUrl, String reason);
+
+  @Message(level = MessageLevel.WARN, text = "Not verifying token against JWKS endpoint {0}, too many verifications are waiting")
+  void jwksVerificationRejected(String jwksUrl);
+
+  @Message(level = MessageLevel.WARN, text = "Failed to verify token using JWKS endpoints {0} within {1} ms")
+  void jwksVerificationTimedOut(String jwksUrls, long timeout);
+
+  @Message(level = MessageLevel.DEBUG, text = "Verifying token against JWKS endpoint {0} matching its kid or issuer")
+  void jwksRouted(String jwksUrl);
 }
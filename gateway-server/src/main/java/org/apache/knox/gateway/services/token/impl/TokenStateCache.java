@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.services.security.token.TokenMetadata;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches token expirations and metadata in memory, so that validating a token does not query the database.
+ * <p>
+ * The cache stays coherent across the gateway instances that share the database by tailing the token change
+ * log: every renewal, revocation or metadata update is recorded there by the instances that cache token state
+ * or have the change log enabled, and each instance reads the log every <code>maxStaleness</code> ms and
+ * invalidates the tokens that changed. A change made by another instance is
+ * therefore seen within about that time; changes made by this instance are seen immediately.
+ * <p>
+ * Changes are read by time, with a lookback that covers the clock skew between the instances and transactions
+ * that commit late; the change ids make reading a change twice harmless. When the log cannot be read for
+ * longer than the allowed staleness, the cache is bypassed until it can. Cached values also expire
+ * {@value #EXPIRE_AFTER_WRITE_STALENESS_MULTIPLE} times the allowed staleness after they were loaded,
+ * which bounds how long a change that was not recorded in the log can go unnoticed.
+ */
+class TokenStateCache {
+  static final long CHANGE_LOOKBACK_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  static final long CHANGE_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  static final int EXPIRE_AFTER_WRITE_STALENESS_MULTIPLE = 5;
+  private static final long PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  private static final TokenStateServiceMessages LOG = MessagesFactory.get(TokenStateServiceMessages.class);
+
+  @FunctionalInterface
+  interface Loader<T> {
+    T load() throws SQLException;
+  }
+
+  private final TokenStateDatabase tokenDatabase;
+  private final long maxStalenessMillis;
+  private final Cache<String, Long> expirations;
+  private final Cache<String, TokenMetadata> metadata;
+  // the loads in progress, per token; invalidating a token drops its loads, so that a value loaded
+  // concurrently with a change of that token is not cached
+  private final ConcurrentMap<String, Object> expirationLoads = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Object> metadataLoads = new ConcurrentHashMap<>();
+  private final AtomicLong lastRefresh = new AtomicLong();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    final Thread thread = new Thread(runnable, "TokenStateCacheRefresher");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // only accessed by the refresher
+  private final Map<Long, Long> appliedChanges = new HashMap<>();
+  private long changesReadUntil;
+  private long lastPurge;
+
+  TokenStateCache(TokenStateDatabase tokenDatabase, long maxStalenessMillis, long maxSize) {
+    this.tokenDatabase = tokenDatabase;
+    this.maxStalenessMillis = maxStalenessMillis;
+    final long expireAfterWriteMillis = EXPIRE_AFTER_WRITE_STALENESS_MULTIPLE * maxStalenessMillis;
+    this.expirations = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expireAfterWriteMillis, TimeUnit.MILLISECONDS).build();
+    this.metadata = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(expireAfterWriteMillis, TimeUnit.MILLISECONDS).build();
+    final long now = System.currentTimeMillis();
+    this.lastRefresh.set(now);
+    this.changesReadUntil = now;
+    this.lastPurge = now;
+  }
+
+  void start() {
+    scheduler.scheduleWithFixedDelay(this::refresh, maxStalenessMillis, maxStalenessMillis, TimeUnit.MILLISECONDS);
+    LOG.tokenStateCacheEnabled(maxStalenessMillis);
+  }
+
+  void stop() {
+    scheduler.shutdownNow();
+  }
+
+  Long getExpiration(String tokenId, Loader<Long> loader) throws SQLException {
+    return get(expirations, expirationLoads, tokenId, loader);
+  }
+
+  TokenMetadata getMetadata(String tokenId, Loader<TokenMetadata> loader) throws SQLException {
+    final TokenMetadata tokenMetadata = get(metadata, metadataLoads, tokenId, loader);
+    // callers may modify what they get; the cached instance must not change
+    return tokenMetadata == null ? null : new TokenMetadata(tokenMetadata.getMetadataMap());
+  }
+
+  private <T> T get(Cache<String, T> cache, ConcurrentMap<String, Object> loads, String tokenId, Loader<T> loader) throws SQLException {
+    if (!isCoherent()) {
+      return loader.load();
+    }
+    T value = cache.getIfPresent(tokenId);
+    if (value == null) {
+      final Object load = new Object();
+      loads.put(tokenId, load);
+      try {
+        value = loader.load();
+      } catch (SQLException | RuntimeException e) {
+        loads.remove(tokenId, load);
+        throw e;
+      }
+      final T loaded = value;
+      // invalidations remove the load under the same lock, so they either prevent the put or follow it
+      loads.computeIfPresent(tokenId, (id, current) -> {
+        if (current != load) {
+          return current;
+        }
+        if (loaded != null) {
+          cache.put(id, loaded);
+        }
+        return null;
+      });
+    }
+    return value;
+  }
+
+  private boolean isCoherent() {
+    return System.currentTimeMillis() - lastRefresh.get() <= 2 * maxStalenessMillis;
+  }
+
+  /**
+   * Drops the cached state of the given token.
+   */
+  void invalidate(String tokenId) {
+    expirationLoads.remove(tokenId);
+    metadataLoads.remove(tokenId);
+    expirations.invalidate(tokenId);
+    metadata.invalidate(tokenId);
+  }
+
+  void invalidateAll() {
+    expirationLoads.clear();
+    metadataLoads.clear();
+    expirations.invalidateAll();
+    metadata.invalidateAll();
+  }
+
+  /**
+   * Reads the changes recorded since the last refresh, and invalidates the tokens they affect.
+   */
+  void refresh() {
+    final long refreshTime = System.currentTimeMillis();
+    final long since = changesReadUntil - CHANGE_LOOKBACK_MILLIS;
+    try {
+      int invalidated = 0;
+      for (TokenStateDatabase.TokenChange change : tokenDatabase.getTokenChanges(since)) {
+        if (appliedChanges.putIfAbsent(change.getId(), change.getTime()) == null) {
+          invalidate(change.getTokenId());
+          invalidated++;
+        }
+      }
+      if (refreshTime - lastRefresh.get() > CHANGE_LOOKBACK_MILLIS) {
+        // the log was not read for so long that changes may have been missed
+        invalidateAll();
+      }
+      // changes older than the next lookback cannot be read again
+      appliedChanges.values().removeIf(changeTime -> changeTime <= since);
+      changesReadUntil = refreshTime;
+      lastRefresh.set(refreshTime);
+      if (invalidated > 0) {
+        LOG.invalidatedChangedTokens(invalidated);
+      }
+    } catch (SQLException e) {
+      LOG.failedToReadTokenChanges(e.getMessage(), e);
+    }
+
+    if (refreshTime - lastPurge > PURGE_INTERVAL_MILLIS) {
+      lastPurge = refreshTime;
+      try {
+        tokenDatabase.deleteTokenChanges(refreshTime - CHANGE_RETENTION_MILLIS);
+      } catch (SQLException e) {
+        LOG.failedToPurgeTokenChanges(e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -28,10 +28,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -40,6 +45,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public class TokenStateDatabase {
   static final String TOKENS_TABLE_NAME = "KNOX_TOKENS";
   static final String TOKEN_METADATA_TABLE_NAME = "KNOX_TOKEN_METADATA";
+  static final String TOKEN_CHANGES_TABLE_NAME = "KNOX_TOKEN_CHANGES";
   private static final String ADD_TOKEN_SQL = "INSERT INTO " + TOKENS_TABLE_NAME + "(token_id, issue_time, expiration, max_lifetime) VALUES(?, ?, ?, ?)";
   private static final String REMOVE_TOKEN_SQL = "DELETE FROM " + TOKENS_TABLE_NAME + " WHERE token_id = ?";
   private static final String GET_EXPIRED_TOKENS_SQL = "SELECT token_id FROM " + TOKENS_TABLE_NAME + " WHERE expiration < ? AND expiration > 0";
@@ -58,19 +64,36 @@ public class TokenStateDatabase {
   private static final String GET_TOKENS_CREATED_BY_USER_NAME_SQL = GET_ALL_TOKENS_SQL + " AND kt.token_id IN (SELECT token_id FROM " + TOKEN_METADATA_TABLE_NAME + " WHERE md_name = '" + TokenMetadata.CREATED_BY + "' AND md_value = ? )"
       + " ORDER BY kt.issue_time";
 
+  private static final String ADD_TOKEN_CHANGE_SQL = "INSERT INTO " + TOKEN_CHANGES_TABLE_NAME + "(token_id, change_time) VALUES(?, ?)";
+  private static final String GET_TOKEN_CHANGES_SQL = "SELECT change_id, token_id, change_time FROM " + TOKEN_CHANGES_TABLE_NAME + " WHERE change_time > ? ORDER BY change_id";
+  private static final String REMOVE_TOKEN_CHANGES_SQL = "DELETE FROM " + TOKEN_CHANGES_TABLE_NAME + " WHERE change_time < ?";
+
   private final DataSource dataSource;
+  private final boolean recordChanges;
 
-  TokenStateDatabase(DataSource dataSource, String dbType) throws Exception {
+  /**
+   * @param recordChanges whether renewals, revocations and metadata updates are recorded in the change log,
+   *                      from which the gateway instances that cache token state invalidate it
+   */
+  TokenStateDatabase(DataSource dataSource, String dbType, boolean recordChanges) throws Exception {
     this.dataSource = dataSource;
+    this.recordChanges = recordChanges;
     DatabaseType databaseType = DatabaseType.fromString(dbType);
     createTableIfNotExists(TOKENS_TABLE_NAME, databaseType.tokensTableSql());
     createTableIfNotExists(TOKEN_METADATA_TABLE_NAME, databaseType.metadataTableSql());
+    if (recordChanges && createTableIfNotExists(TOKEN_CHANGES_TABLE_NAME, databaseType.tokenChangesTableSql())
+        && databaseType.tokenChangesIndexSql() != null) {
+      // every instance caching token state polls, and purges, the changes by time
+      JDBCUtils.createTableFromSQL(databaseType.tokenChangesIndexSql(), dataSource, TokenStateDatabase.class.getClassLoader());
+    }
   }
 
-  private void createTableIfNotExists(String tableName, String createSqlFileName) throws Exception {
+  private boolean createTableIfNotExists(String tableName, String createSqlFileName) throws Exception {
     if (!JDBCUtils.tableExists(tableName, dataSource)) {
       JDBCUtils.createTableFromSQL(createSqlFileName, dataSource, TokenStateDatabase.class.getClassLoader());
+      return true;
     }
+    return false;
   }
 
   boolean addToken(String tokenId, long issueTime, long expiration, long maxLifetimeDuration) throws SQLException {
@@ -84,10 +107,7 @@ public class TokenStateDatabase {
   }
 
   boolean removeToken(String tokenId) throws SQLException {
-    try (Connection connection = dataSource.getConnection(); PreparedStatement addTokenStatement = connection.prepareStatement(REMOVE_TOKEN_SQL)) {
-      addTokenStatement.setString(1, tokenId);
-      return addTokenStatement.executeUpdate() == 1;
-    }
+    return updateToken(tokenId, REMOVE_TOKEN_SQL, removeTokenStatement -> removeTokenStatement.setString(1, tokenId));
   }
 
   long getTokenIssueTime(String tokenId) throws SQLException {
@@ -109,10 +129,31 @@ public class TokenStateDatabase {
   }
 
   boolean updateExpiration(final String tokenId, long expiration) throws SQLException {
-    try (Connection connection = dataSource.getConnection(); PreparedStatement updateTokenExpirationStatement = connection.prepareStatement(UPDATE_TOKEN_EXPIRATION_SQL)) {
+    return updateToken(tokenId, UPDATE_TOKEN_EXPIRATION_SQL, updateTokenExpirationStatement -> {
       updateTokenExpirationStatement.setLong(1, expiration);
       updateTokenExpirationStatement.setString(2, tokenId);
-      return updateTokenExpirationStatement.executeUpdate() == 1;
+    });
+  }
+
+  /* Executes a single row update, and records the change in the same transaction */
+  private boolean updateToken(String tokenId, String sql, StatementParameters parameters) throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      final boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        parameters.set(statement);
+        final boolean updated = statement.executeUpdate() == 1;
+        if (updated) {
+          addTokenChanges(connection, Collections.singleton(tokenId));
+        }
+        connection.commit();
+        return updated;
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
     }
   }
 
@@ -147,7 +188,7 @@ public class TokenStateDatabase {
 
   boolean updateMetadata(String tokenId, String metadataName, String metadataValue) throws SQLException {
     try (Connection connection = dataSource.getConnection(); PreparedStatement updateMetadataStatement = connection.prepareStatement(UPDATE_METADATA_SQL)) {
-      updateMetadataStatement.setString(1, metadataName.equals(TokenMetadata.PASSCODE) ? Base64.encodeBase64String(metadataValue.getBytes(UTF_8)) : metadataValue);
+      updateMetadataStatement.setString(1, encodeMetadata(metadataName, metadataValue));
       updateMetadataStatement.setString(2, tokenId);
       updateMetadataStatement.setString(3, metadataName);
       return updateMetadataStatement.executeUpdate() == 1;
@@ -158,11 +199,220 @@ public class TokenStateDatabase {
     try (Connection connection = dataSource.getConnection(); PreparedStatement addMetadataStatement = connection.prepareStatement(ADD_METADATA_SQL)) {
       addMetadataStatement.setString(1, tokenId);
       addMetadataStatement.setString(2, metadataName);
-      addMetadataStatement.setString(3, metadataName.equals(TokenMetadata.PASSCODE) ? Base64.encodeBase64String(metadataValue.getBytes(UTF_8)) : metadataValue);
+      addMetadataStatement.setString(3, encodeMetadata(metadataName, metadataValue));
       return addMetadataStatement.executeUpdate() == 1;
     }
   }
 
+  /**
+   * Writes the given changes in a single transaction, with one JDBC batch per statement.
+   * <p>
+   * Tokens are added first, so that expiration and metadata changes of tokens added in the
+   * same batch find their rows. Metadata entries are upserted: updated in one batch, and the
+   * ones that did not exist yet inserted in another.
+   *
+   * @param writes the changes to write
+   * @return whether each change affected the database, in the order of the given changes
+   * @throws SQLException if any of the changes fails; the transaction is rolled back
+   */
+  boolean[] write(List<TokenStateWrite> writes) throws SQLException {
+    final boolean[] results = new boolean[writes.size()];
+    try (Connection connection = dataSource.getConnection()) {
+      final boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        writeTokens(connection, writes, results);
+        writeMetadata(connection, writes, results);
+        final Set<String> changedTokenIds = new HashSet<>();
+        for (int i = 0; i < writes.size(); i++) {
+          if (results[i] && writes.get(i).getType() != TokenStateWrite.Type.ADD_TOKEN) {
+            changedTokenIds.add(writes.get(i).getTokenId());
+          }
+        }
+        addTokenChanges(connection, changedTokenIds);
+        connection.commit();
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    }
+    return results;
+  }
+
+  private void writeTokens(Connection connection, List<TokenStateWrite> writes, boolean[] results) throws SQLException {
+    final List<Integer> added = new ArrayList<>();
+    final List<Integer> updated = new ArrayList<>();
+    for (int i = 0; i < writes.size(); i++) {
+      if (writes.get(i).getType() == TokenStateWrite.Type.ADD_TOKEN) {
+        added.add(i);
+      } else if (writes.get(i).getType() == TokenStateWrite.Type.UPDATE_EXPIRATION) {
+        updated.add(i);
+      }
+    }
+
+    if (!added.isEmpty()) {
+      try (PreparedStatement addTokenStatement = connection.prepareStatement(ADD_TOKEN_SQL)) {
+        for (int index : added) {
+          final TokenStateWrite write = writes.get(index);
+          addTokenStatement.setString(1, write.getTokenId());
+          addTokenStatement.setLong(2, write.getIssueTime());
+          addTokenStatement.setLong(3, write.getExpiration());
+          addTokenStatement.setLong(4, write.getMaxLifetimeDuration() < 0 ? write.getMaxLifetimeDuration() : write.getIssueTime() + write.getMaxLifetimeDuration());
+          addTokenStatement.addBatch();
+        }
+        setResults(added, addTokenStatement.executeBatch(), results);
+      }
+    }
+
+    if (!updated.isEmpty()) {
+      try (PreparedStatement updateTokenExpirationStatement = connection.prepareStatement(UPDATE_TOKEN_EXPIRATION_SQL)) {
+        for (int index : updated) {
+          final TokenStateWrite write = writes.get(index);
+          updateTokenExpirationStatement.setLong(1, write.getExpiration());
+          updateTokenExpirationStatement.setString(2, write.getTokenId());
+          updateTokenExpirationStatement.addBatch();
+        }
+        setResults(updated, updateTokenExpirationStatement.executeBatch(), results);
+      }
+    }
+  }
+
+  private void writeMetadata(Connection connection, List<TokenStateWrite> writes, boolean[] results) throws SQLException {
+    // (token_id, md_name) -> value; the last change of an entry wins, and is credited to every write that changed it
+    final Map<List<String>, String> entries = new LinkedHashMap<>();
+    final Map<List<String>, List<Integer>> owners = new HashMap<>();
+    for (int i = 0; i < writes.size(); i++) {
+      final TokenStateWrite write = writes.get(i);
+      if (write.getType() == TokenStateWrite.Type.SAVE_METADATA) {
+        for (Map.Entry<String, String> metadata : write.getMetadata().entrySet()) {
+          final List<String> key = Arrays.asList(write.getTokenId(), metadata.getKey());
+          entries.put(key, metadata.getValue());
+          owners.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+      }
+    }
+    if (entries.isEmpty()) {
+      return;
+    }
+
+    final List<List<String>> keys = new ArrayList<>(entries.keySet());
+    final List<List<String>> missing = new ArrayList<>();
+    try (PreparedStatement updateMetadataStatement = connection.prepareStatement(UPDATE_METADATA_SQL)) {
+      for (List<String> key : keys) {
+        updateMetadataStatement.setString(1, encodeMetadata(key.get(1), entries.get(key)));
+        updateMetadataStatement.setString(2, key.get(0));
+        updateMetadataStatement.setString(3, key.get(1));
+        updateMetadataStatement.addBatch();
+      }
+      final int[] updateCounts = updateMetadataStatement.executeBatch();
+      final List<List<String>> unknown = new ArrayList<>();
+      for (int i = 0; i < keys.size(); i++) {
+        if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+          // the driver does not tell whether the entry existed
+          unknown.add(keys.get(i));
+        } else if (updateCounts[i] > 0) {
+          owners.get(keys.get(i)).forEach(index -> results[index] = true);
+        } else {
+          missing.add(keys.get(i));
+        }
+      }
+      // updating an existing entry again is harmless, and this time the count is known
+      for (List<String> key : unknown) {
+        updateMetadataStatement.setString(1, encodeMetadata(key.get(1), entries.get(key)));
+        updateMetadataStatement.setString(2, key.get(0));
+        updateMetadataStatement.setString(3, key.get(1));
+        if (updateMetadataStatement.executeUpdate() > 0) {
+          owners.get(key).forEach(index -> results[index] = true);
+        } else {
+          missing.add(key);
+        }
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      try (PreparedStatement addMetadataStatement = connection.prepareStatement(ADD_METADATA_SQL)) {
+        for (List<String> key : missing) {
+          addMetadataStatement.setString(1, key.get(0));
+          addMetadataStatement.setString(2, key.get(1));
+          addMetadataStatement.setString(3, encodeMetadata(key.get(1), entries.get(key)));
+          addMetadataStatement.addBatch();
+        }
+        final int[] insertCounts = addMetadataStatement.executeBatch();
+        for (int i = 0; i < missing.size(); i++) {
+          if (isSuccessful(insertCounts[i])) {
+            owners.get(missing.get(i)).forEach(index -> results[index] = true);
+          }
+        }
+      }
+    }
+  }
+
+  boolean isRecordingChanges() {
+    return recordChanges;
+  }
+
+  /**
+   * Records a change of the given token in the change log, if changes are recorded.
+   */
+  void addTokenChange(String tokenId) throws SQLException {
+    if (recordChanges) {
+      try (Connection connection = dataSource.getConnection()) {
+        addTokenChanges(connection, Collections.singleton(tokenId));
+      }
+    }
+  }
+
+  private void addTokenChanges(Connection connection, Collection<String> tokenIds) throws SQLException {
+    if (!recordChanges || tokenIds.isEmpty()) {
+      return;
+    }
+    final long changeTime = System.currentTimeMillis();
+    try (PreparedStatement addTokenChangeStatement = connection.prepareStatement(ADD_TOKEN_CHANGE_SQL)) {
+      for (String tokenId : tokenIds) {
+        addTokenChangeStatement.setString(1, tokenId);
+        addTokenChangeStatement.setLong(2, changeTime);
+        addTokenChangeStatement.addBatch();
+      }
+      addTokenChangeStatement.executeBatch();
+    }
+  }
+
+  /**
+   * @param since the time (exclusive) from which changes are returned
+   * @return the changes recorded after the given time, in the order they were recorded
+   */
+  List<TokenChange> getTokenChanges(long since) throws SQLException {
+    final List<TokenChange> changes = new ArrayList<>();
+    try (Connection connection = dataSource.getConnection(); PreparedStatement getTokenChangesStatement = connection.prepareStatement(GET_TOKEN_CHANGES_SQL)) {
+      getTokenChangesStatement.setLong(1, since);
+      try (ResultSet rs = getTokenChangesStatement.executeQuery()) {
+        while (rs.next()) {
+          changes.add(new TokenChange(rs.getLong(1), rs.getString(2), rs.getLong(3)));
+        }
+      }
+    }
+    return changes;
+  }
+
+  int deleteTokenChanges(long before) throws SQLException {
+    try (Connection connection = dataSource.getConnection(); PreparedStatement deleteTokenChangesStatement = connection.prepareStatement(REMOVE_TOKEN_CHANGES_SQL)) {
+      deleteTokenChangesStatement.setLong(1, before);
+      return deleteTokenChangesStatement.executeUpdate();
+    }
+  }
+
+  private static void setResults(List<Integer> indexes, int[] updateCounts, boolean[] results) {
+    for (int i = 0; i < indexes.size(); i++) {
+      results[indexes.get(i)] = isSuccessful(updateCounts[i]);
+    }
+  }
+
+  private static boolean isSuccessful(int updateCount) {
+    return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+  }
+
   TokenMetadata getTokenMetadata(String tokenId) throws SQLException {
     try (Connection connection = dataSource.getConnection(); PreparedStatement getMaxLifetimeStatement = connection.prepareStatement(GET_METADATA_SQL)) {
       getMaxLifetimeStatement.setString(1, tokenId);
@@ -177,6 +427,10 @@ public class TokenStateDatabase {
     }
   }
 
+  private static String encodeMetadata(String metadataName, String metadataValue) {
+    return metadataName.equals(TokenMetadata.PASSCODE) ? Base64.encodeBase64String(metadataValue.getBytes(UTF_8)) : metadataValue;
+  }
+
   private static String decodeMetadata(String metadataName, String metadataValue) {
     return metadataName.equals(TokenMetadata.PASSCODE) ? new String(Base64.decodeBase64(metadataValue.getBytes(UTF_8)), UTF_8) : metadataValue;
   }
@@ -214,4 +468,36 @@ public class TokenStateDatabase {
       }
     }
   }
+
+  @FunctionalInterface
+  private interface StatementParameters {
+    void set(PreparedStatement statement) throws SQLException;
+  }
+
+  /**
+   * An entry of the change log: the state of a token changed at the given time.
+   */
+  static final class TokenChange {
+    private final long id;
+    private final String tokenId;
+    private final long time;
+
+    TokenChange(long id, String tokenId, long time) {
+      this.id = id;
+      this.tokenId = tokenId;
+      this.time = time;
+    }
+
+    long getId() {
+      return id;
+    }
+
+    String getTokenId() {
+      return tokenId;
+    }
+
+    long getTime() {
+      return time;
+    }
+  }
 }
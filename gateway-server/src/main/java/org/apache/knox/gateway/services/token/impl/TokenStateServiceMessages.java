@@ -271,4 +271,34 @@ public interface TokenStateServiceMessages {
   @Message(level = MessageLevel.INFO, text = "{0}")
   void info(String message);
 
+  @Message(level = MessageLevel.INFO, text = "Token state changes are written to the database in batches of up to {0}, collected for at most {1} ms")
+  void tokenStateWriteBehindEnabled(int maxBatchSize, long maxDelay);
+
+  @Message(level = MessageLevel.DEBUG, text = "Wrote {0} token state changes to the database in {1} ms")
+  void wroteTokenStateBatch(int batchSize, long elapsed);
+
+  @Message(level = MessageLevel.WARN, text = "Failed to write a batch of {0} token state changes to the database, writing them one by one : {1}")
+  void failedToWriteTokenStateBatch(int batchSize, String errorMessage, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.ERROR, text = "The token state writer was interrupted with {0} changes pending")
+  void tokenStateWriterInterrupted(int pending);
+
+  @Message(level = MessageLevel.WARN, text = "The token state writer did not finish within {1} ms of stopping; interrupting it with {0} changes pending")
+  void stoppingTokenStateWriter(int pending, long ackTimeout);
+
+  @Message(level = MessageLevel.INFO, text = "Token expirations and metadata are cached, and refreshed from the token change log every {0} ms")
+  void tokenStateCacheEnabled(long maxStaleness);
+
+  @Message(level = MessageLevel.DEBUG, text = "Invalidated the cached state of {0} tokens changed by other gateway instances")
+  void invalidatedChangedTokens(int count);
+
+  @Message(level = MessageLevel.WARN, text = "Failed to read the token change log, the token state cache is bypassed until it can be read again : {0}")
+  void failedToReadTokenChanges(String errorMessage, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.WARN, text = "Failed to purge the token change log : {0}")
+  void failedToPurgeTokenChanges(String errorMessage, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.WARN, text = "Failed to record the change of token {0} in the token change log, other gateway instances may use its cached state until it expires : {1}")
+  void failedToRecordTokenChange(String tokenId, String errorMessage, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
 }
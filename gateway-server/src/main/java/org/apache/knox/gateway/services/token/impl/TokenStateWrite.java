@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A token state change that is written to the database as part of a batch.
+ */
+final class TokenStateWrite {
+  enum Type { ADD_TOKEN, UPDATE_EXPIRATION, SAVE_METADATA }
+
+  private final Type type;
+  private final String tokenId;
+  private final long issueTime;
+  private final long expiration;
+  private final long maxLifetimeDuration;
+  private final Map<String, String> metadata;
+  private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+  private TokenStateWrite(Type type, String tokenId, long issueTime, long expiration, long maxLifetimeDuration, Map<String, String> metadata) {
+    this.type = type;
+    this.tokenId = tokenId;
+    this.issueTime = issueTime;
+    this.expiration = expiration;
+    this.maxLifetimeDuration = maxLifetimeDuration;
+    this.metadata = metadata;
+  }
+
+  static TokenStateWrite addToken(String tokenId, long issueTime, long expiration, long maxLifetimeDuration) {
+    return new TokenStateWrite(Type.ADD_TOKEN, tokenId, issueTime, expiration, maxLifetimeDuration, Collections.emptyMap());
+  }
+
+  static TokenStateWrite updateExpiration(String tokenId, long expiration) {
+    return new TokenStateWrite(Type.UPDATE_EXPIRATION, tokenId, 0, expiration, 0, Collections.emptyMap());
+  }
+
+  static TokenStateWrite saveMetadata(String tokenId, Map<String, String> metadata) {
+    return new TokenStateWrite(Type.SAVE_METADATA, tokenId, 0, 0, 0, Collections.unmodifiableMap(new LinkedHashMap<>(metadata)));
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  String getTokenId() {
+    return tokenId;
+  }
+
+  long getIssueTime() {
+    return issueTime;
+  }
+
+  long getExpiration() {
+    return expiration;
+  }
+
+  long getMaxLifetimeDuration() {
+    return maxLifetimeDuration;
+  }
+
+  Map<String, String> getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * @return completes with <code>true</code> once the change is committed and affected the database;
+   *         <code>false</code> if it did not affect any row
+   */
+  CompletableFuture<Boolean> getResult() {
+    return result;
+  }
+}
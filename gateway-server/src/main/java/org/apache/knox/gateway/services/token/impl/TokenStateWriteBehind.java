@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes token state changes to the database from a single background thread, in batches.
+ * <p>
+ * The writer takes the first pending change, collects the changes that arrive within the
+ * configured delay (up to the maximum batch size) and writes them in one transaction. Callers
+ * block until the batch that contains their change is committed, so a token is visible to every
+ * gateway instance sharing the database before the caller hands it out. Under load many callers
+ * share one transaction; a lone caller waits at most the configured delay.
+ * <p>
+ * When a batch fails, e.g. because one of its tokens already exists, its changes are written
+ * again one by one, so that only the failing change is reported to its caller.
+ */
+class TokenStateWriteBehind {
+  static final String QUEUE_DEPTH_GAUGE = "token.state.write.behind.queue.depth";
+  static final String BATCH_SIZE_HISTOGRAM = "token.state.write.behind.batch.size";
+  static final String FLUSH_TIMER = "token.state.write.behind.flush";
+
+  private static final TokenStateServiceMessages LOG = MessagesFactory.get(TokenStateServiceMessages.class);
+  private static final long IDLE_POLL_MILLIS = 100L;
+
+  private final TokenStateDatabase tokenDatabase;
+  private final long maxDelayNanos;
+  private final int maxBatchSize;
+  private final long ackTimeoutMillis;
+  private final BlockingQueue<TokenStateWrite> queue = new LinkedBlockingQueue<>();
+  private final AtomicBoolean running = new AtomicBoolean();
+  private final Histogram batchSizes;
+  private final Timer flushTimer;
+  private final Thread writer;
+
+  TokenStateWriteBehind(TokenStateDatabase tokenDatabase, long maxDelayMillis, int maxBatchSize, long ackTimeoutMillis, MetricRegistry metricRegistry) {
+    this.tokenDatabase = tokenDatabase;
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxDelayMillis));
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.ackTimeoutMillis = ackTimeoutMillis;
+    final MetricRegistry registry = metricRegistry == null ? new MetricRegistry() : metricRegistry;
+    registry.remove(QUEUE_DEPTH_GAUGE);
+    registry.register(QUEUE_DEPTH_GAUGE, (Gauge<Integer>) queue::size);
+    this.batchSizes = registry.histogram(BATCH_SIZE_HISTOGRAM);
+    this.flushTimer = registry.timer(FLUSH_TIMER);
+    this.writer = new Thread(this::run, "TokenStateWriteBehind");
+    this.writer.setDaemon(true);
+  }
+
+  void start() {
+    if (running.compareAndSet(false, true)) {
+      writer.start();
+      LOG.tokenStateWriteBehindEnabled(maxBatchSize, TimeUnit.NANOSECONDS.toMillis(maxDelayNanos));
+    }
+  }
+
+  /**
+   * Stops accepting changes, and waits for the pending ones to be written. Changes still pending after
+   * the acknowledgement timeout are failed. Either way, this returns only once the writer has exited,
+   * so the database may be closed afterwards.
+   */
+  void stop() {
+    if (running.compareAndSet(true, false)) {
+      boolean interrupted = false;
+      try {
+        writer.join(ackTimeoutMillis);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+      if (writer.isAlive()) {
+        LOG.stoppingTokenStateWriter(queue.size(), ackTimeoutMillis);
+        writer.interrupt();
+      }
+      while (writer.isAlive()) {
+        try {
+          writer.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @param write the change to write
+   * @return <code>true</code> if the change was committed and affected the database; <code>false</code> otherwise
+   * @throws SQLException if the change failed, or was not committed within the acknowledgement timeout.
+   *                      A change that times out before the writer took it is withdrawn and never written;
+   *                      one that is already part of a batch may still be committed after the timeout.
+   */
+  boolean write(TokenStateWrite write) throws SQLException {
+    queue.add(write);
+    if (!running.get() && queue.remove(write)) {
+      // the writer is gone; write it right away
+      return tokenDatabase.write(Collections.singletonList(write))[0];
+    }
+
+    try {
+      return write.getResult().get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      }
+      throw new SQLException(e.getCause());
+    } catch (TimeoutException e) {
+      final boolean withdrawn = queue.remove(write);
+      throw new SQLException("The token state change of " + write.getTokenId() + " was not committed within " + ackTimeoutMillis + " ms"
+          + (withdrawn ? " and was withdrawn" : " and may still be committed"), e);
+    } catch (InterruptedException e) {
+      queue.remove(write);
+      Thread.currentThread().interrupt();
+      throw new SQLException(e);
+    }
+  }
+
+  int getQueueDepth() {
+    return queue.size();
+  }
+
+  private void run() {
+    final List<TokenStateWrite> batch = new ArrayList<>(maxBatchSize);
+    try {
+      while (running.get() || !queue.isEmpty()) {
+        final TokenStateWrite first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+          collect(batch);
+          flush(batch);
+          batch.clear();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      batch.addAll(queue);
+      queue.removeAll(batch);
+      LOG.tokenStateWriterInterrupted(batch.size());
+      batch.forEach(write -> write.getResult().completeExceptionally(new SQLException("The token state writer was interrupted", e)));
+    }
+  }
+
+  private void collect(List<TokenStateWrite> batch) throws InterruptedException {
+    final long deadline = System.nanoTime() + maxDelayNanos;
+    queue.drainTo(batch, maxBatchSize - batch.size());
+    long remaining = deadline - System.nanoTime();
+    while (batch.size() < maxBatchSize && remaining > 0) {
+      final TokenStateWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        break;
+      }
+      batch.add(next);
+      queue.drainTo(batch, maxBatchSize - batch.size());
+      remaining = deadline - System.nanoTime();
+    }
+  }
+
+  private void flush(List<TokenStateWrite> batch) {
+    final Timer.Context timer = flushTimer.time();
+    try {
+      final boolean[] results = tokenDatabase.write(batch);
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).getResult().complete(results[i]);
+      }
+    } catch (SQLException | RuntimeException e) {
+      if (batch.size() == 1) {
+        batch.get(0).getResult().completeExceptionally(e);
+      } else {
+        LOG.failedToWriteTokenStateBatch(batch.size(), e.getMessage(), e);
+        batch.forEach(this::writeAlone);
+      }
+    } finally {
+      final long elapsed = timer.stop();
+      batchSizes.update(batch.size());
+      LOG.wroteTokenStateBatch(batch.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+  }
+
+  private void writeAlone(TokenStateWrite write) {
+    try {
+      write.getResult().complete(tokenDatabase.write(Collections.singletonList(write))[0]);
+    } catch (SQLException | RuntimeException e) {
+      write.getResult().completeExceptionally(e);
+    }
+  }
+}
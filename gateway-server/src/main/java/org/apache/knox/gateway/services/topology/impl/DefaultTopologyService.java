@@ -524,6 +524,11 @@ public class DefaultTopologyService extends FileAlterationListenerAdaptor implem
     listeners.add(listener);
   }
 
+  @Override
+  public void removeTopologyChangeListener(TopologyListener listener) {
+    listeners.remove(listener);
+  }
+
   @Override
   public void onServiceDefinitionChange(String name, String role, String version) {
     getTopologies().stream().filter(topology -> topology.getServices().stream().anyMatch(service -> isRelevantService(service, role, name, version))).forEach(topology -> {
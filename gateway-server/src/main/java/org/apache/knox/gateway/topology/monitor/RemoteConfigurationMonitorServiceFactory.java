@@ -23,6 +23,7 @@ import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
 import org.apache.knox.gateway.services.ServiceType;
 import org.apache.knox.gateway.services.factory.AbstractServiceFactory;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
 import org.apache.knox.gateway.services.security.AliasService;
 import org.apache.knox.gateway.services.security.AliasServiceException;
 import org.apache.knox.gateway.topology.monitor.db.DbRemoteConfigurationMonitorService;
@@ -52,7 +53,9 @@ public class RemoteConfigurationMonitorServiceFactory extends AbstractServiceFac
         if (matchesImplementation(implementation, ZkRemoteConfigurationMonitorService.class)) {
             service = new ZkRemoteConfigurationMonitorService(gatewayConfig, gatewayServices.getService(ServiceType.REMOTE_REGISTRY_CLIENT_SERVICE));
         } else if (matchesImplementation(implementation, DbRemoteConfigurationMonitorService.class)) {
-            service = createDbBasedMonitor(gatewayConfig, getAliasService(gatewayServices));
+            DbRemoteConfigurationMonitorService dbMonitor = createDbBasedMonitor(gatewayConfig, getAliasService(gatewayServices));
+            dbMonitor.setMetricRegistrySupplier(() -> MetricsUtils.getMetricRegistry(gatewayConfig, gatewayServices));
+            service = dbMonitor;
         }
         return service;
     }
@@ -16,17 +16,26 @@
  */
 package org.apache.knox.gateway.topology.monitor.db;
 
-import static java.util.stream.Collectors.toList;
-
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 
 import org.apache.knox.gateway.GatewayMessages;
 import org.apache.knox.gateway.config.GatewayConfig;
@@ -37,23 +46,34 @@ import org.apache.knox.gateway.topology.monitor.RemoteConfigurationMonitor;
 public class DbRemoteConfigurationMonitorService implements RemoteConfigurationMonitor {
   private static final GatewayMessages LOG = MessagesFactory.get(GatewayMessages.class);
   public static final int OFFSET_SECONDS = 5;
+  static final int RECONCILE_EVERY_SYNCS = 10;
+  static final String SYNC_LAG_GAUGE = "remote.configuration.sync.lag";
+  static final String CHANGE_LAG_HISTOGRAM = "remote.configuration.sync.change.lag";
   private final RemoteConfigDatabase db;
-  private final LocalDirectory providersDir;
-  private final LocalDirectory descriptorsDir;
+  private final RemoteTable providers;
+  private final RemoteTable descriptors;
   private final long syncIntervalSeconds;
   private final ScheduledExecutorService executor;
   private final int cleanUpPeriodSeconds;
+  private final AtomicLong lastSuccessfulSyncMillis = new AtomicLong(System.currentTimeMillis());
+  private Supplier<MetricRegistry> metricRegistrySupplier;
+  private Histogram changeLag = new Histogram(new ExponentiallyDecayingReservoir());
   private Instant lastSyncTime;
+  private long syncCount;
 
   public DbRemoteConfigurationMonitorService(RemoteConfigDatabase db, LocalDirectory providersDir, LocalDirectory descriptorsDir, long syncIntervalSeconds, int cleanUpPeriodSeconds) {
     this.db = db;
-    this.providersDir = providersDir;
-    this.descriptorsDir = descriptorsDir;
+    this.providers = new RemoteTable(providersDir, db::selectProviders, db::selectProviders, db::selectProviderVersions, db::selectProvider);
+    this.descriptors = new RemoteTable(descriptorsDir, db::selectDescriptors, db::selectDescriptors, db::selectDescriptorVersions, db::selectDescriptor);
     this.executor = Executors.newSingleThreadScheduledExecutor();
     this.syncIntervalSeconds = syncIntervalSeconds;
     this.cleanUpPeriodSeconds = cleanUpPeriodSeconds;
   }
 
+  public void setMetricRegistrySupplier(Supplier<MetricRegistry> metricRegistrySupplier) {
+    this.metricRegistrySupplier = metricRegistrySupplier;
+  }
+
   @Override
   public void init(GatewayConfig config, Map<String, String> options) throws ServiceLifecycleException {
     LOG.initDbRemoteConfigMonitor(syncIntervalSeconds, cleanUpPeriodSeconds);
@@ -62,6 +82,12 @@ public class DbRemoteConfigurationMonitorService implements RemoteConfigurationM
   @Override
   public void start() throws ServiceLifecycleException {
     LOG.startingDbRemoteConfigurationMonitor(syncIntervalSeconds);
+    final MetricRegistry metricRegistry = metricRegistrySupplier == null ? null : metricRegistrySupplier.get();
+    final MetricRegistry registry = metricRegistry == null ? new MetricRegistry() : metricRegistry;
+    registry.remove(SYNC_LAG_GAUGE);
+    registry.register(SYNC_LAG_GAUGE, (Gauge<Long>) () -> System.currentTimeMillis() - lastSuccessfulSyncMillis.get());
+    changeLag = registry.histogram(CHANGE_LAG_HISTOGRAM);
+    lastSuccessfulSyncMillis.set(System.currentTimeMillis());
     executor.scheduleWithFixedDelay(this::sync, syncIntervalSeconds, syncIntervalSeconds, TimeUnit.SECONDS);
     executor.scheduleWithFixedDelay(this::cleanUp, cleanUpPeriodSeconds, cleanUpPeriodSeconds, TimeUnit.SECONDS);
   }
@@ -97,67 +123,85 @@ public class DbRemoteConfigurationMonitorService implements RemoteConfigurationM
 
   public void sync() {
     try {
-      syncLocalWithRemote(db.selectProviders(), providersDir);
-      syncLocalWithRemote(db.selectDescriptors(), descriptorsDir);
+      final boolean reconcile = ++syncCount % RECONCILE_EVERY_SYNCS == 0;
+      syncLocalWithRemote(providers, reconcile);
+      syncLocalWithRemote(descriptors, reconcile);
       lastSyncTime = Instant.now();
+      lastSuccessfulSyncMillis.set(lastSyncTime.toEpochMilli());
       LOG.remoteConfigurationSyncCompleted(lastSyncTime);
     } catch (Exception e) {
       LOG.errorWhileSyncingLocalFileSystem(e);
     }
   }
 
-  private void syncLocalWithRemote(List<RemoteConfig> remoteConfigs, LocalDirectory localDir) {
-    List<RemoteConfig> existingConfigs = remoteConfigs.stream()
-            .filter(each -> !each.isDeleted())
-            .collect(toList());
-    createOrUpdateLocalFiles(existingConfigs, localDir);
-    Set<String> deletedConfigs = remoteConfigs.stream()
-            .filter(RemoteConfig::isDeleted)
-            .map(RemoteConfig::getName)
-            .collect(Collectors.toSet());
-    deleteLocalFiles(deletedConfigs, localDir);
-  }
-
-  private void createOrUpdateLocalFiles(List<RemoteConfig> remoteConfigs, LocalDirectory localDir) {
-    Set<String> localFiles = localDir.list();
-    for (RemoteConfig remoteConfig : remoteConfigs) {
-      try {
-        String remoteContent = remoteConfig.getContent();
-        if (!localFiles.contains(remoteConfig.getName())) {
-          // if file does not exist locally, create it
-          LOG.downloadingProviderDescriptor(remoteConfig.getName(), localDir);
-          localDir.writeFile(remoteConfig.getName(), remoteContent);
-        } else if (shouldUpdateContent(remoteConfig, localDir)) {
-            // exists locally, overwrite content only if necessary
-            LOG.downloadingProviderDescriptor(remoteConfig.getName(), localDir);
-            localDir.writeFile(remoteConfig.getName(), remoteContent);
-         }
-      } catch (IOException e) {
-        LOG.errorSynchronizingLocalProviderDescriptor(localDir, e);
+  /*
+   * The first sync reads every remote config with its content. Subsequent ones only read the rows which were modified
+   * after the watermark (the latest modification time seen so far) minus an offset. Changes in remote configs can happen
+   * during a sync and clocks of the gateway instances are not perfectly aligned, the offset makes sure such changes are
+   * picked up by the next sync. Every RECONCILE_EVERY_SYNCS syncs, the modification times of all remote configs are
+   * compared to the applied ones, without their content, to catch anything which slipped through the offset.
+   */
+  private void syncLocalWithRemote(RemoteTable table, boolean reconcile) {
+    final Set<String> localFiles = new HashSet<>(table.localDir.list());
+    if (table.watermark == null) {
+      applyRemoteConfigs(table, table.selectAll.get(), localFiles);
+      if (table.watermark == null) {
+        table.watermark = Instant.EPOCH;
+      }
+      return;
+    }
+    if (reconcile) {
+      for (RemoteConfig version : table.selectVersions.get()) {
+        final boolean known = table.versions.containsKey(version.getName()) || localFiles.contains(version.getName());
+        if (!version.getLastModified().equals(table.versions.get(version.getName())) && (known || !version.isDeleted())) {
+          applyRemoteConfig(table, table.selectOne.apply(version.getName()), localFiles);
+        }
+      }
+    }
+    applyRemoteConfigs(table, table.selectModifiedAfter.apply(table.watermark.minusSeconds(OFFSET_SECONDS)), localFiles);
+    // recreate the local files of live remote configs which were removed from the file system
+    for (String name : new ArrayList<>(table.versions.keySet())) {
+      if (!localFiles.contains(name)) {
+        table.versions.remove(name);
+        applyRemoteConfig(table, table.selectOne.apply(name), localFiles);
       }
     }
   }
 
-  private boolean shouldUpdateContent(RemoteConfig remoteConfig, LocalDirectory localDir) throws IOException {
-      if (lastSyncTime == null || remoteConfig.getLastModified() // remote changed since last sync?
-              .isAfter(lastSyncTime.minusSeconds(OFFSET_SECONDS))) {
-      // Change in remote config can happen during a sync.
-      // We apply an offset on lastSyncTime to make sure the changes are picked up at the next sync.
-      // If a remote change happened after (lastSync-offset) we'll still sync. If it happened before (lastSync-offset) we won't.
-      return !remoteConfig.getContent().equals(localDir.fileContent(remoteConfig.getName()));
-    } else {
-      return false;
+  private void applyRemoteConfigs(RemoteTable table, List<RemoteConfig> remoteConfigs, Set<String> localFiles) {
+    for (RemoteConfig remoteConfig : remoteConfigs) {
+      applyRemoteConfig(table, remoteConfig, localFiles);
     }
   }
 
-  private void deleteLocalFiles(Set<String> deletedRemoteConfigNames, LocalDirectory localDir) {
-    for (String localFileName : localDir.list()) {
-      if (deletedRemoteConfigNames.contains(localFileName)) {
-        if (localDir.deleteFile(localFileName)) {
-          LOG.deletingProviderDescriptor(localFileName, localDir);
+  private void applyRemoteConfig(RemoteTable table, RemoteConfig remoteConfig, Set<String> localFiles) {
+    if (remoteConfig == null) {
+      return; // physically deleted in the meantime
+    }
+    final String name = remoteConfig.getName();
+    final LocalDirectory localDir = table.localDir;
+    if (remoteConfig.isDeleted()) {
+      table.versions.remove(name);
+      if (localFiles.remove(name) && localDir.deleteFile(name)) {
+        LOG.deletingProviderDescriptor(name, localDir);
+      }
+    } else if (!remoteConfig.getLastModified().equals(table.versions.get(name))) {
+      try {
+        // the remote config changed since it was last applied, overwrite the local file only if the content differs
+        if (!localFiles.contains(name) || !remoteConfig.getContent().equals(localDir.fileContent(name))) {
+          LOG.downloadingProviderDescriptor(name, localDir);
+          localDir.writeFile(name, remoteConfig.getContent());
+          localFiles.add(name);
+          changeLag.update(Math.max(0L, Duration.between(remoteConfig.getLastModified(), Instant.now()).toMillis()));
         }
+        table.versions.put(name, remoteConfig.getLastModified());
+      } catch (IOException e) {
+        LOG.errorSynchronizingLocalProviderDescriptor(localDir, e);
       }
     }
+    if (table.watermark == null || remoteConfig.getLastModified().isAfter(table.watermark)) {
+      table.watermark = remoteConfig.getLastModified();
+    }
   }
 
   /**
@@ -167,4 +211,30 @@ public class DbRemoteConfigurationMonitorService implements RemoteConfigurationM
     LOG.cleaningRemoteConfigTables(cleanUpPeriodSeconds);
     db.cleanTables(cleanUpPeriodSeconds);
   }
+
+  /**
+   * The remote configs of one table which were applied to the local directory, and the way to read them.
+   */
+  private static final class RemoteTable {
+    private final LocalDirectory localDir;
+    private final Supplier<List<RemoteConfig>> selectAll;
+    private final Function<Instant, List<RemoteConfig>> selectModifiedAfter;
+    private final Supplier<List<RemoteConfig>> selectVersions;
+    private final Function<String, RemoteConfig> selectOne;
+    // last modification time of the live remote configs written to the local directory
+    private final Map<String, Instant> versions = new HashMap<>();
+    private Instant watermark;
+
+    RemoteTable(LocalDirectory localDir,
+                Supplier<List<RemoteConfig>> selectAll,
+                Function<Instant, List<RemoteConfig>> selectModifiedAfter,
+                Supplier<List<RemoteConfig>> selectVersions,
+                Function<String, RemoteConfig> selectOne) {
+      this.localDir = localDir;
+      this.selectAll = selectAll;
+      this.selectModifiedAfter = selectModifiedAfter;
+      this.selectVersions = selectVersions;
+      this.selectOne = selectOne;
+    }
+  }
 }
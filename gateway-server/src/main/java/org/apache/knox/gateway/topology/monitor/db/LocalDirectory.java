@@ -21,10 +21,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
@@ -51,8 +56,23 @@ public class LocalDirectory {
     }
   }
 
+  /**
+   * Writes the content to a temporary file next to the target and moves it in place, so that the directory monitors
+   * never observe a partially written descriptor or provider config.
+   */
   public void writeFile(String name, String content) throws IOException {
-    FileUtils.writeStringToFile(file(name), content, CHARSET);
+    final Path target = file(name).toPath();
+    final Path temp = file("." + name + "." + UUID.randomUUID() + ".tmp").toPath();
+    try {
+      Files.write(temp, content.getBytes(CHARSET), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      try {
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
   }
 
   public boolean deleteFile(String name) {
@@ -69,18 +69,79 @@ public class RemoteConfigDatabase {
     return selectFrom(KNOX_DESCRIPTORS_TABLE_NAME);
   }
 
+  /**
+   * @return the remote providers, including the deleted ones, which were modified after the given instant
+   */
+  public List<RemoteConfig> selectProviders(Instant modifiedAfter) {
+    return selectModifiedAfter(KNOX_PROVIDERS_TABLE_NAME, modifiedAfter);
+  }
+
+  /**
+   * @return the remote descriptors, including the deleted ones, which were modified after the given instant
+   */
+  public List<RemoteConfig> selectDescriptors(Instant modifiedAfter) {
+    return selectModifiedAfter(KNOX_DESCRIPTORS_TABLE_NAME, modifiedAfter);
+  }
+
+  /**
+   * @return the remote provider with the given name, or null if it does not exist
+   */
+  public RemoteConfig selectProvider(String name) {
+    return selectByName(KNOX_PROVIDERS_TABLE_NAME, name);
+  }
+
+  /**
+   * @return the remote descriptor with the given name, or null if it does not exist
+   */
+  public RemoteConfig selectDescriptor(String name) {
+    return selectByName(KNOX_DESCRIPTORS_TABLE_NAME, name);
+  }
+
+  /**
+   * @return all remote providers, including the deleted ones, without their content
+   */
+  public List<RemoteConfig> selectProviderVersions() {
+    return selectVersions(KNOX_PROVIDERS_TABLE_NAME);
+  }
+
+  /**
+   * @return all remote descriptors, including the deleted ones, without their content
+   */
+  public List<RemoteConfig> selectDescriptorVersions() {
+    return selectVersions(KNOX_DESCRIPTORS_TABLE_NAME);
+  }
+
   private List<RemoteConfig> selectFrom(String tableName) {
+    return select("SELECT name, content, last_modified_time, deleted FROM " + tableName, true, statement -> {});
+  }
+
+  private List<RemoteConfig> selectModifiedAfter(String tableName, Instant modifiedAfter) {
+    return select("SELECT name, content, last_modified_time, deleted FROM " + tableName + " WHERE last_modified_time > ?", true,
+            statement -> statement.setTimestamp(1, Timestamp.from(modifiedAfter)));
+  }
+
+  private RemoteConfig selectByName(String tableName, String name) {
+    List<RemoteConfig> result = select("SELECT name, content, last_modified_time, deleted FROM " + tableName + " WHERE name = ?", true,
+            statement -> statement.setString(1, name));
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  private List<RemoteConfig> selectVersions(String tableName) {
+    return select("SELECT name, last_modified_time, deleted FROM " + tableName, false, statement -> {});
+  }
+
+  private List<RemoteConfig> select(String sql, boolean withContent, StatementParameters parameters) {
     List<RemoteConfig> result = new ArrayList<>();
     try (Connection connection = dataSource.getConnection();
-         PreparedStatement statement = connection.prepareStatement(
-                 "SELECT name, content, last_modified_time, deleted FROM " + tableName)) {
+         PreparedStatement statement = connection.prepareStatement(sql)) {
+      parameters.set(statement);
       try (ResultSet rs = statement.executeQuery()) {
         while(rs.next()) {
           result.add(new RemoteConfig(
-                  rs.getString(1),
-                  rs.getString(2),
-                  rs.getTimestamp(3).toInstant(),
-                  rs.getBoolean(4)
+                  rs.getString("name"),
+                  withContent ? rs.getString("content") : null,
+                  rs.getTimestamp("last_modified_time").toInstant(),
+                  rs.getBoolean("deleted")
           ));
         }
       }
@@ -90,6 +151,11 @@ public class RemoteConfigDatabase {
     return result;
   }
 
+  @FunctionalInterface
+  private interface StatementParameters {
+    void set(PreparedStatement statement) throws SQLException;
+  }
+
   /**
    * Save provider config to DB, overwrite if exists
    */
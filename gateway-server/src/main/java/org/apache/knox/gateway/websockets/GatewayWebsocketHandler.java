@@ -22,11 +22,13 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServiceType;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
 import org.apache.knox.gateway.services.registry.ServiceDefEntry;
 import org.apache.knox.gateway.services.registry.ServiceDefinitionRegistry;
 import org.apache.knox.gateway.services.registry.ServiceRegistry;
 import org.apache.knox.gateway.services.security.KeystoreService;
 import org.apache.knox.gateway.services.security.KeystoreServiceException;
+import org.apache.knox.gateway.util.VirtualThreads;
 import org.apache.knox.gateway.webshell.WebshellWebSocketAdapter;
 import org.eclipse.jetty.websocket.server.WebSocketHandler;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
@@ -44,7 +46,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -71,11 +72,15 @@ public class GatewayWebsocketHandler extends WebSocketHandler
   static final String REGEX_WEBSHELL_REQUEST_PATH =
           "^(" + SECURE_WEBSOCKET_PROTOCOL_STRING+"|"+WEBSOCKET_PROTOCOL_STRING + ")[^/]+/[^/]+/webshell$";
 
-  private static final int POOL_SIZE = 10;
+  /* platform threads for connecting to backends and cleaning up, in addition to the web shell threads */
+  static final int MAX_PROXY_THREADS = 64;
+
   private final AtomicInteger concurrentWebshells;
 
   /**
-   * Manage the threads that are spawned
+   * Manage the threads that are spawned. Backend connects and web shell reads block, so platform
+   * threads are bounded by the web shells, which each hold a thread for their lifetime, plus
+   * {@link #MAX_PROXY_THREADS}; further backend connects and cleanups queue.
    * @since 0.13
    */
   private final ExecutorService pool;
@@ -89,10 +94,17 @@ public class GatewayWebsocketHandler extends WebSocketHandler
     super();
     this.config = config;
     this.services = services;
-    pool = Executors.newFixedThreadPool(POOL_SIZE);
+    pool = VirtualThreads.newCachedExecutor(config.isVirtualThreadsEnabled(), "websocket-",
+        MAX_PROXY_THREADS + Math.max(config.getMaximumConcurrentWebshells(), 0));
     this.concurrentWebshells = new AtomicInteger(0);
   }
 
+  @Override
+  protected void doStop() throws Exception {
+    pool.shutdownNow();
+    super.doStop();
+  }
+
   @Override
   public void configure(final WebSocketServletFactory factory) {
     factory.setCreator(this);
@@ -151,7 +163,8 @@ public class GatewayWebsocketHandler extends WebSocketHandler
       // Upgrade happens here
       final ClientEndpointConfig clientConfig = getClientEndpointConfig(req);
       clientConfig.getUserProperties().put("org.apache.knox.gateway.websockets.truststore", getTruststore());
-      return new ProxyWebSocketAdapter(URI.create(backendURL), pool, clientConfig, config);
+      return new ProxyWebSocketAdapter(URI.create(backendURL), pool, clientConfig, config,
+          MetricsUtils.getMetricRegistry(config, services));
     } catch (final Exception e) {
       LOG.failedCreatingWebSocket(e);
       throw new RuntimeException(e);
@@ -204,7 +217,7 @@ public class GatewayWebsocketHandler extends WebSocketHandler
    * @param requestURI url to match
    * @return Websocket backend url
    */
-  protected synchronized String getMatchedBackendURL(final URI requestURI) {
+  protected String getMatchedBackendURL(final URI requestURI) {
     final String path = requestURI.getRawPath();
     final String query = requestURI.getRawQuery();
 
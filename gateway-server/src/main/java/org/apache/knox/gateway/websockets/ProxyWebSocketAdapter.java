@@ -19,9 +19,14 @@ package org.apache.knox.gateway.websockets;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.List;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -31,6 +36,8 @@ import javax.websocket.ContainerProvider;
 import javax.websocket.DeploymentException;
 import javax.websocket.WebSocketContainer;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.eclipse.jetty.io.RuntimeIOException;
@@ -39,33 +46,57 @@ import org.eclipse.jetty.websocket.api.BatchMode;
 import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.SuspendToken;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import java.security.KeyStore;
 /**
  * Handles outbound/inbound Websocket connections and sessions.
+ * <p>
+ * Messages are relayed with asynchronous writes in both directions. The bytes that are
+ * queued or in flight per direction are bounded by {@link GatewayConfig#getWebsocketMaxWaitBufferBytes()};
+ * when the bound is exceeded, reading from the sending peer is suspended until the receiving
+ * peer catches up.
  *
  * @since 0.10
  */
 public class ProxyWebSocketAdapter extends WebSocketAdapter {
   protected static final WebsocketLogMessages LOG = MessagesFactory.get(WebsocketLogMessages.class);
 
+  static final String CONNECTIONS_METRIC = MetricRegistry.name("websocket", "connections");
+
   /* URI for the backend */
   private final URI backend;
 
-  /* Session between the frontend (browser) and Knox */
-  private Session frontendSession;
+  /* Session between the frontend (browser) and Knox, read from backend and pool threads */
+  private final AtomicReference<Session> frontendSession = new AtomicReference<>();
 
   /* Session between the backend (outbound) and Knox */
-  private javax.websocket.Session backendSession;
+  private final AtomicReference<javax.websocket.Session> backendSession = new AtomicReference<>();
 
-  private WebSocketContainer container;
+  /* Set on the pool thread connecting to the backend, stopped on the pool thread cleaning up */
+  private final AtomicReference<WebSocketContainer> container = new AtomicReference<>();
 
   protected ExecutorService pool;
 
-  /* Message buffer for holding data frames temporarily in memory till connection is setup.
-   Keeping the max size of the buffer as 100 messages for now. */
-  private List<String> messageBuffer = new ArrayList<>();
-  private Lock remoteLock = new ReentrantLock();
+  /* Message buffer for holding data frames from the backend temporarily in memory till the frontend is ready,
+   bounded by the max wait buffer count and the max wait buffer bytes. */
+  private final Deque<Frame> messageBuffer = new ArrayDeque<>();
+  private final Lock remoteLock = new ReentrantLock();
+
+  /* Frames received from the frontend while the backend connection is being established */
+  private final Deque<Frame> backendBuffer = new ArrayDeque<>();
+  private final Lock backendLock = new ReentrantLock();
+
+  /* Frontend to backend */
+  private final WebSocketFlowControl upstream;
+  /* Backend to frontend */
+  private final WebSocketFlowControl downstream;
+
+  private final Counter connections;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  /* Set on the thread accepting the frontend connection, read by whichever thread cleans up */
+  private final AtomicLong connectedAt = new AtomicLong();
 
   protected final GatewayConfig config;
 
@@ -73,7 +104,7 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
    * Used to transmit headers from browser to backend server.
    * @since 0.14
    */
-  private ClientEndpointConfig clientConfig;
+  private final ClientEndpointConfig clientConfig;
 
   public ProxyWebSocketAdapter(final URI backend, final ExecutorService pool, GatewayConfig config) {
     this(backend, pool, null, config);
@@ -81,20 +112,62 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
 
   public ProxyWebSocketAdapter(final URI backend, final ExecutorService pool, final ClientEndpointConfig clientConfig,
                                GatewayConfig config) {
+    this(backend, pool, clientConfig, config, null);
+  }
+
+  /**
+   * @param registry optional registry for the connection, throughput and queue metrics
+   * @since 3.0.0
+   */
+  public ProxyWebSocketAdapter(final URI backend, final ExecutorService pool, final ClientEndpointConfig clientConfig,
+                               GatewayConfig config, MetricRegistry registry) {
     super();
     this.backend = backend;
     this.pool = pool;
     this.clientConfig = clientConfig;
     this.config = config;
+    final long maxWaitBufferBytes = config.getWebsocketMaxWaitBufferBytes();
+    this.upstream = new WebSocketFlowControl("upstream", maxWaitBufferBytes,
+        this::suspendFrontend, registry);
+    this.downstream = new WebSocketFlowControl("downstream", maxWaitBufferBytes,
+        this::suspendBackend, registry);
+    this.connections = registry == null ? null : registry.counter(CONNECTIONS_METRIC);
   }
 
   @Override
   public void onWebSocketConnect(final Session frontEndSession) {
+    remoteLock.lock();
+    try {
+      super.onWebSocketConnect(frontEndSession);
+      this.frontendSession.set(frontEndSession);
+    } finally {
+      remoteLock.unlock();
+    }
+    backendLock.lock();
+    try {
+      backendSession.set(null);
+      backendBuffer.clear();
+    } finally {
+      backendLock.unlock();
+    }
+    closed.set(false);
+    connectedAt.set(System.nanoTime());
+    if (connections != null) {
+      connections.inc();
+    }
+
     /*
      * Let's connect to the backend, this is where the Backend-to-frontend
-     * plumbing takes place
+     * plumbing takes place. Connecting blocks, so it is done on the pool
+     * instead of the thread that accepted the frontend connection; frames
+     * from the frontend are buffered meanwhile.
      */
-    container = ContainerProvider.getWebSocketContainer();
+    pool.execute(() -> connectToBackend(frontEndSession));
+  }
+
+  private void connectToBackend(final Session frontEndSession) {
+    final WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+    this.container.set(container);
     container.setDefaultMaxTextMessageBufferSize(frontEndSession.getPolicy().getMaxTextMessageBufferSize());
     container.setDefaultMaxBinaryMessageBufferSize(frontEndSession.getPolicy().getMaxBinaryMessageBufferSize());
     container.setAsyncSendTimeout(frontEndSession.getPolicy().getAsyncWriteTimeout());
@@ -119,44 +192,35 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
 
     final ProxyInboundClient backendSocket = new ProxyInboundClient(getMessageCallback());
 
-    /* build the configuration */
-
     /* Attempt Connect */
+    final javax.websocket.Session session;
     try {
-      backendSession = container.connectToServer(backendSocket, clientConfig, backend);
-
+      session = container.connectToServer(backendSocket, clientConfig, backend);
       LOG.onConnectionOpen(backend.toString());
-
-    } catch (DeploymentException e) {
-      LOG.connectionFailed(e);
-      throw new RuntimeException(e);
-    } catch (IOException e) {
+    } catch (DeploymentException | IOException | RuntimeException e) {
       LOG.connectionFailed(e);
-      throw new RuntimeIOException(e);
+      if (frontEndSession.isOpen()) {
+        frontEndSession.close(StatusCode.SERVER_ERROR, e.getMessage());
+      }
+      cleanup();
+      return;
     }
 
-    remoteLock.lock();
-    super.onWebSocketConnect(frontEndSession);
-    this.frontendSession = frontEndSession;
-
-    final RemoteEndpoint remote = frontEndSession.getRemote();
+    backendLock.lock();
     try {
-      if (!messageBuffer.isEmpty()) {
-        flushBufferedMessages(remote);
-
-        if (remote.getBatchMode() == BatchMode.ON) {
-          remote.flush();
-        }
-      } else {
-        LOG.debugLog("Message buffer is empty");
+      /* Relay what the frontend sent while connecting, then let new frames go straight through */
+      Frame frame;
+      while ((frame = backendBuffer.poll()) != null) {
+        sendToBackend(session, frame);
       }
-    } catch (IOException e) {
-      LOG.connectionFailed(e);
-      throw new RuntimeIOException(e);
+      backendSession.set(session);
+    } finally {
+      backendLock.unlock();
     }
-    finally
-    {
-      remoteLock.unlock();
+
+    if (closed.get()) {
+      /* The frontend went away while connecting */
+      closeQuietly();
     }
   }
 
@@ -166,8 +230,10 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
       return;
     }
 
-    throw new UnsupportedOperationException(
-        "Websocket support for binary messages is not supported at this time.");
+    /* The payload belongs to the frontend connection's read buffer */
+    final ByteBuffer copy = ByteBuffer.allocate(length);
+    copy.put(payload, offset, length).flip();
+    relayToBackend(new Frame(copy));
   }
 
   @Override
@@ -177,13 +243,50 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
     }
 
     LOG.logMessage("[From Frontend --->]" + message);
+    relayToBackend(new Frame(message));
+  }
+
+  private void relayToBackend(final Frame frame) {
+    upstream.onReceived(frame.size);
+
+    final javax.websocket.Session connected = backendSession.get();
+    if (connected != null) {
+      sendToBackend(connected, frame);
+      return;
+    }
+
+    /* The session is published under the lock once the buffered frames have been relayed */
+    final javax.websocket.Session session;
+    backendLock.lock();
+    try {
+      session = backendSession.get();
+      if (session == null) {
+        backendBuffer.add(frame);
+        return;
+      }
+    } finally {
+      backendLock.unlock();
+    }
+    sendToBackend(session, frame);
+  }
 
+  private void sendToBackend(final javax.websocket.Session session, final Frame frame) {
     /* Proxy message to backend */
     try {
-      backendSession.getBasicRemote().sendText(message);
+      if (frame.text != null) {
+        session.getAsyncRemote().sendText(frame.text, result -> onSentToBackend(frame, result.isOK(), result.getException()));
+      } else {
+        session.getAsyncRemote().sendBinary(frame.binary, result -> onSentToBackend(frame, result.isOK(), result.getException()));
+      }
+    } catch (RuntimeException e) {
+      onSentToBackend(frame, false, e);
+    }
+  }
 
-    } catch (IOException e) {
-      LOG.connectionFailed(e);
+  private void onSentToBackend(final Frame frame, final boolean ok, final Throwable cause) {
+    upstream.onSent(frame.size, ok);
+    if (!ok && cause != null) {
+      LOG.onError(cause.toString());
     }
   }
 
@@ -205,15 +308,16 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
   private void cleanupOnError(final Throwable t) {
 
     LOG.onError(t.toString());
+    final Session session = frontendSession.get();
     if (t.toString().contains("exceeds maximum size")) {
-      if(frontendSession != null && frontendSession.isOpen()) {
-        frontendSession.close(StatusCode.MESSAGE_TOO_LARGE, t.getMessage());
+      if(session != null && session.isOpen()) {
+        session.close(StatusCode.MESSAGE_TOO_LARGE, t.getMessage());
       }
     }
 
     else {
-      if(frontendSession != null && frontendSession.isOpen()) {
-        frontendSession.close(StatusCode.SERVER_ERROR, t.getMessage());
+      if(session != null && session.isOpen()) {
+        session.close(StatusCode.SERVER_ERROR, t.getMessage());
       }
       cleanup();
     }
@@ -235,7 +339,7 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
       @Override
       public void onConnectionClose(final CloseReason reason) {
         try {
-          frontendSession.close(reason.getCloseCode().getCode(),
+          frontendSession.get().close(reason.getCloseCode().getCode(),
               reason.getReasonPhrase());
         } finally {
           cleanup();
@@ -250,43 +354,13 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
       @Override
       public void onMessageText(String message, Object session) {
         LOG.logMessage("[From Backend <---]" + message);
-        remoteLock.lock();
-        final RemoteEndpoint remote = getRemote();
-        try {
-          if (remote == null) {
-            LOG.debugLog("Remote endpoint is null");
-            if (messageBuffer.size() >= config.getWebsocketMaxWaitBufferCount()) {
-              throw new RuntimeIOException("Remote is null and message buffer is full. Cannot buffer anymore ");
-            }
-            LOG.debugLog("Buffering message: " + message);
-            messageBuffer.add(message);
-            return;
-          }
-
-          /* Proxy message to frontend */
-          flushBufferedMessages(remote);
-
-          LOG.debugLog("Sending current message [From Backend <---]: " + message);
-          remote.sendString(message);
-          if (remote.getBatchMode() == BatchMode.ON) {
-            remote.flush();
-          }
-        } catch (IOException e) {
-          LOG.connectionFailed(e);
-          throw new RuntimeIOException(e);
-        }
-        finally
-        {
-          remoteLock.unlock();
-        }
+        relayToFrontend(new Frame(message));
       }
 
       @Override
       public void onMessageBinary(byte[] message, boolean last,
           Object session) {
-        throw new UnsupportedOperationException(
-            "Websocket support for binary messages is not supported at this time.");
-
+        relayToFrontend(new Frame(ByteBuffer.wrap(message)));
       }
 
       @Override
@@ -322,8 +396,91 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
 
   }
 
+  private void relayToFrontend(final Frame frame) {
+    remoteLock.lock();
+    final RemoteEndpoint remote = getRemote();
+    try {
+      if (remote == null) {
+        LOG.debugLog("Remote endpoint is null");
+        final int maxCount = config.getWebsocketMaxWaitBufferCount();
+        if (maxCount > 0 && messageBuffer.size() >= maxCount) {
+          throw new RuntimeIOException("Remote is null and message buffer is full. Cannot buffer anymore ");
+        }
+        LOG.debugLog("Buffering message of " + frame.size + " bytes");
+        downstream.onReceived(frame.size);
+        messageBuffer.add(frame);
+        return;
+      }
+
+      /* Proxy message to frontend */
+      flushBufferedMessages(remote);
+
+      LOG.debugLog("Sending current message of " + frame.size + " bytes [From Backend <---]");
+      downstream.onReceived(frame.size);
+      sendToFrontend(remote, frame);
+      if (remote.getBatchMode() == BatchMode.ON) {
+        remote.flush();
+      }
+    } catch (IOException e) {
+      LOG.connectionFailed(e);
+      throw new RuntimeIOException(e);
+    }
+    finally
+    {
+      remoteLock.unlock();
+    }
+  }
+
+  /*
+   * Function to send a frame to the frontend. Should be called with remoteLock held so frames are written in order.
+   */
+  private void sendToFrontend(final RemoteEndpoint remote, final Frame frame) {
+    final WriteCallback callback = new WriteCallback() {
+      @Override
+      public void writeFailed(Throwable x) {
+        downstream.onSent(frame.size, false);
+        LOG.onError(x.toString());
+      }
+
+      @Override
+      public void writeSuccess() {
+        downstream.onSent(frame.size, true);
+      }
+    };
+    if (frame.text != null) {
+      remote.sendString(frame.text, callback);
+    } else {
+      remote.sendBytes(frame.binary, callback);
+    }
+  }
+
+  private SuspendToken suspendFrontend() {
+    final Session session = frontendSession.get();
+    return session == null ? null : session.suspend();
+  }
+
+  private SuspendToken suspendBackend() {
+    final javax.websocket.Session session = backendSession.get();
+    /* The JSR client session is a Jetty session underneath, which is the only one that can be suspended */
+    if (session instanceof Session) {
+      return ((Session) session).suspend();
+    }
+    return null;
+  }
+
   @SuppressWarnings("PMD.DoNotUseThreads")
   private void cleanup() {
+    if (closed.compareAndSet(false, true)) {
+      if (connections != null) {
+        connections.dec();
+      }
+      LOG.connectionStatistics(String.valueOf(backend),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectedAt.get()),
+          upstream.getTransferredMessages(), upstream.getTransferredBytes(),
+          Math.round(upstream.getBytesPerSecond()), upstream.getMaxPendingBytes(),
+          downstream.getTransferredMessages(), downstream.getTransferredBytes(),
+          Math.round(downstream.getBytesPerSecond()), downstream.getMaxPendingBytes());
+    }
     /* do the cleaning business in separate thread so we don't block */
     pool.execute(new Runnable() {
       @Override
@@ -335,35 +492,63 @@ public class ProxyWebSocketAdapter extends WebSocketAdapter {
 
   private void closeQuietly() {
     try {
-      if(backendSession != null && !backendSession.isOpen()) {
-        backendSession.close();
+      final javax.websocket.Session session = backendSession.get();
+      if(session != null && !session.isOpen()) {
+        session.close();
       }
     } catch (IOException e) {
       LOG.connectionFailed(e);
     }
 
-    if (container instanceof LifeCycle) {
+    final WebSocketContainer backendContainer = container.get();
+    if (backendContainer instanceof LifeCycle) {
       try {
-        ((LifeCycle) container).stop();
+        ((LifeCycle) backendContainer).stop();
       } catch (Exception e) {
         LOG.connectionFailed(e);
       }
     }
 
-    if(frontendSession != null && !frontendSession.isOpen()) {
-      frontendSession.close();
+    final Session session = frontendSession.get();
+    if(session != null && !session.isOpen()) {
+      session.close();
     }
   }
 
   /*
    * Function to flush buffered messages. Should be called with remoteLock held
    */
-  private void flushBufferedMessages(final RemoteEndpoint remote) throws IOException {
+  private void flushBufferedMessages(final RemoteEndpoint remote) {
+    if (messageBuffer.isEmpty()) {
+      return;
+    }
     LOG.debugLog("Flushing old buffered messages");
-    for(String obj:messageBuffer) {
-      LOG.debugLog("Sending old buffered message [From Backend <---]: " + obj);
-      remote.sendString(obj);
+    Frame frame;
+    while ((frame = messageBuffer.poll()) != null) {
+      LOG.debugLog("Sending old buffered message of " + frame.size + " bytes [From Backend <---]");
+      sendToFrontend(remote, frame);
+    }
+  }
+
+  /**
+   * A text or binary data frame along with its size in bytes.
+   */
+  private static final class Frame {
+    final String text;
+    final ByteBuffer binary;
+    final long size;
+
+    Frame(final String text) {
+      this.text = text;
+      this.binary = null;
+      /* UTF-16 length is a cheap upper bound of what is queued in memory */
+      this.size = (long) text.length() * Character.BYTES;
+    }
+
+    Frame(final ByteBuffer binary) {
+      this.text = null;
+      this.binary = binary;
+      this.size = binary.remaining();
     }
-    messageBuffer.clear();
   }
 }
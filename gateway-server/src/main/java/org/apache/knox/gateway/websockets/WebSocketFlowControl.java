@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.websockets;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.eclipse.jetty.websocket.api.SuspendToken;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Byte based flow control for one direction of a proxied websocket connection.
+ * <p>
+ * Every message read from the sending session is accounted for until it has been written to the
+ * receiving session, whether it is still queued because the receiving session is not connected yet
+ * or it is in flight as an asynchronous write. Once the pending bytes exceed the high water mark,
+ * reading from the sending session is suspended; it is resumed as soon as the pending bytes drop
+ * to half of that.
+ */
+class WebSocketFlowControl {
+  private static final WebsocketLogMessages LOG = MessagesFactory.get(WebsocketLogMessages.class);
+
+  private final String name;
+  private final long highWaterMark;
+  private final long lowWaterMark;
+  private final Supplier<SuspendToken> suspender;
+  private final Histogram queueDepth;
+  /* gateway-wide, shared by the flow controls of all connections */
+  private final Meter transferred;
+  private final Meter suspensions;
+  /* the throughput of this connection alone */
+  private final Meter throughput = new Meter();
+
+  private final AtomicLong pendingBytes = new AtomicLong();
+  private final AtomicLong maxPendingBytes = new AtomicLong();
+  private final AtomicLong transferredBytes = new AtomicLong();
+  private final AtomicLong transferredMessages = new AtomicLong();
+
+  /* guarded by this */
+  private SuspendToken suspendToken;
+
+  /**
+   * @param name          name of the direction, used for logging and as part of the metric names
+   * @param highWaterMark pending bytes above which the sending side is suspended; non-positive disables suspension
+   * @param suspender     suspends reading from the sending session, may return <code>null</code> if not supported
+   * @param registry      optional registry for the gateway-wide queue depth, transferred bytes and suspension metrics
+   */
+  WebSocketFlowControl(String name, long highWaterMark, Supplier<SuspendToken> suspender, MetricRegistry registry) {
+    this.name = name;
+    this.highWaterMark = highWaterMark;
+    this.lowWaterMark = highWaterMark / 2;
+    this.suspender = suspender;
+    if (registry != null) {
+      this.queueDepth = registry.histogram(MetricRegistry.name("websocket", name, "queue", "bytes"));
+      this.transferred = registry.meter(MetricRegistry.name("websocket", name, "bytes"));
+      this.suspensions = registry.meter(MetricRegistry.name("websocket", name, "suspensions"));
+    } else {
+      this.queueDepth = null;
+      this.transferred = null;
+      this.suspensions = null;
+    }
+  }
+
+  /**
+   * Accounts for a message that has been read from the sending session.
+   * @param bytes size of the message
+   */
+  void onReceived(long bytes) {
+    final long pending = pendingBytes.addAndGet(bytes);
+    maxPendingBytes.accumulateAndGet(pending, Math::max);
+    if (queueDepth != null) {
+      queueDepth.update(pending);
+    }
+    if (highWaterMark > 0 && pending > highWaterMark) {
+      suspend(pending);
+    }
+  }
+
+  /**
+   * Accounts for a message that has been written to, or could not be written to, the receiving session.
+   * @param bytes   size of the message
+   * @param written true if the message has been written
+   */
+  void onSent(long bytes, boolean written) {
+    final long pending = pendingBytes.addAndGet(-bytes);
+    if (written) {
+      transferredBytes.addAndGet(bytes);
+      transferredMessages.incrementAndGet();
+      throughput.mark(bytes);
+      if (transferred != null) {
+        transferred.mark(bytes);
+      }
+    }
+    if (pending <= lowWaterMark) {
+      resume(pending);
+    }
+  }
+
+  private synchronized void suspend(long pending) {
+    if (suspendToken == null) {
+      try {
+        suspendToken = suspender.get();
+        if (suspendToken != null) {
+          LOG.suspendedWebsocketReads(name, pending);
+          if (suspensions != null) {
+            suspensions.mark();
+          }
+          // The queue may have been drained, and resume() found no token, between the
+          // pending bytes being read in onReceived() and the token being taken here.
+          final long current = pendingBytes.get();
+          if (current <= lowWaterMark) {
+            resume(current);
+          }
+        }
+      } catch (IllegalStateException e) {
+        // The session is closing, nothing left to suspend
+        LOG.debugLog("Unable to suspend " + name + ": " + e);
+      }
+    }
+  }
+
+  synchronized void resume(long pending) {
+    if (suspendToken != null) {
+      final SuspendToken token = suspendToken;
+      suspendToken = null;
+      try {
+        token.resume();
+        LOG.resumedWebsocketReads(name, pending);
+      } catch (IllegalStateException e) {
+        LOG.debugLog("Unable to resume " + name + ": " + e);
+      }
+    }
+  }
+
+  synchronized boolean isSuspended() {
+    return suspendToken != null;
+  }
+
+  long getPendingBytes() {
+    return pendingBytes.get();
+  }
+
+  long getMaxPendingBytes() {
+    return maxPendingBytes.get();
+  }
+
+  long getTransferredBytes() {
+    return transferredBytes.get();
+  }
+
+  long getTransferredMessages() {
+    return transferredMessages.get();
+  }
+
+  /**
+   * @return the mean number of bytes per second written to the receiving session of this connection
+   */
+  double getBytesPerSecond() {
+    return throughput.getMeanRate();
+  }
+}
@@ -60,4 +60,20 @@ public interface WebsocketLogMessages {
       text = "{0}")
   void debugLog(String message);
 
+  @Message(level = MessageLevel.DEBUG,
+      text = "Suspended reading {0} with {1} bytes pending")
+  void suspendedWebsocketReads(String direction, long pendingBytes);
+
+  @Message(level = MessageLevel.DEBUG,
+      text = "Resumed reading {0} with {1} bytes pending")
+  void resumedWebsocketReads(String direction, long pendingBytes);
+
+  @Message(level = MessageLevel.DEBUG,
+      text = "Websocket connection to backend server {0} closed after {1} ms; "
+          + "to backend: {2} messages, {3} bytes, {4} bytes/s, max {5} bytes queued; "
+          + "to frontend: {6} messages, {7} bytes, {8} bytes/s, max {9} bytes queued")
+  void connectionStatistics(String backend, long durationMs,
+      long backendMessages, long backendBytes, long backendBytesPerSecond, long backendMaxQueued,
+      long frontendMessages, long frontendBytes, long frontendBytesPerSecond, long frontendMaxQueued);
+
 }
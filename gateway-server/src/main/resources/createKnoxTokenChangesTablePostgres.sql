@@ -0,0 +1,27 @@
+--  Licensed to the Apache Software Foundation (ASF) under one or more
+--  contributor license agreements. See the NOTICE file distributed with this
+--  work for additional information regarding copyright ownership. The ASF
+--  licenses this file to you under the Apache License, Version 2.0 (the
+--  "License"); you may not use this file except in compliance with the License.
+--  You may obtain a copy of the License at
+-- 
+--  http://www.apache.org/licenses/LICENSE-2.0
+-- 
+--  Unless required by applicable law or agreed to in writing, software
+--  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+--  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+--  License for the specific language governing permissions and limitations under
+--  the License.
+
+SELECT pg_advisory_lock (12345);
+
+CREATE TABLE IF NOT EXISTS KNOX_TOKEN_CHANGES (
+   change_id bigserial NOT NULL,
+   token_id varchar(128) NOT NULL,
+   change_time bigint NOT NULL,
+   PRIMARY KEY (change_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_knox_token_changes_time ON KNOX_TOKEN_CHANGES (change_time);
+
+SELECT pg_advisory_unlock (12345);
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway;
+
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertSame;
+
+public class VirtualThreadServerConnectorTest {
+
+  @Test
+  public void testSelectorsHandOffToRequestExecutorOnly() {
+    final QueuedThreadPool platformPool = new QueuedThreadPool(16);
+    final Server server = new Server(platformPool);
+    final Executor requestExecutor = Runnable::run;
+
+    final VirtualThreadServerConnector connector =
+        new VirtualThreadServerConnector(server, requestExecutor, null, new HttpConnectionFactory());
+
+    // Acceptors and selectors run on the server's pool
+    assertSame(platformPool, connector.getExecutor());
+    // Produced tasks go to the request executor
+    assertSame(requestExecutor, connector.getSelectorManager().getExecutor());
+    assertSame(requestExecutor, connector.getRequestExecutor());
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import org.easymock.EasyMock;
+import org.eclipse.jetty.server.HttpOutput;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ServiceLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JettyChannelResponseWriterTest {
+
+  private static final byte[] CONTENT = "passthrough response body".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void testIsLoadedAsChannelResponseWriter() {
+    boolean loaded = false;
+    for (ChannelResponseWriter writer : ServiceLoader.load(ChannelResponseWriter.class)) {
+      loaded |= writer instanceof JettyChannelResponseWriter;
+    }
+    assertTrue(loaded);
+  }
+
+  @Test
+  public void testAcceptsOnlyJettyOutput() {
+    final JettyChannelResponseWriter writer = new JettyChannelResponseWriter();
+    assertTrue(writer.accepts(EasyMock.createMock(HttpOutput.class)));
+    assertFalse(writer.accepts(new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testWriteSendsChannel() throws Exception {
+    final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    final HttpOutput output = EasyMock.createMock(HttpOutput.class);
+    output.sendContent(EasyMock.anyObject(ReadableByteChannel.class));
+    EasyMock.expectLastCall().andAnswer(() -> {
+      final ReadableByteChannel channel = (ReadableByteChannel) EasyMock.getCurrentArguments()[0];
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          sent.write(buffer.get());
+        }
+        buffer.clear();
+      }
+      return null;
+    });
+    EasyMock.replay(output);
+
+    new JettyChannelResponseWriter().write(Channels.newChannel(new ByteArrayInputStream(CONTENT)), output);
+
+    EasyMock.verify(output);
+    assertEquals(new String(CONTENT, StandardCharsets.UTF_8), sent.toString(StandardCharsets.UTF_8.name()));
+  }
+}
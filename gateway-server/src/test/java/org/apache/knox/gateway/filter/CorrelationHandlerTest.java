@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.knox.gateway.tracing.TraceContext;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class CorrelationHandlerTest {
+  private static final String TRACEPARENT = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+  @Test
+  public void testTraceparentWinsOverRequestId() {
+    assertEquals("4bf92f35-77b3-4da6-a3ce-929d0e0e4736",
+        CorrelationHandler.requestId(request("request-1", TRACEPARENT)));
+  }
+
+  @Test
+  public void testRequestIdWhenTraceparentIsInvalid() {
+    assertEquals("request-1", CorrelationHandler.requestId(request("request-1", "00-invalid")));
+    assertEquals("request-1", CorrelationHandler.requestId(request("request-1", null)));
+  }
+
+  @Test
+  public void testNewIdWithoutHeaders() {
+    final String requestId = CorrelationHandler.requestId(request(null, null));
+    assertNotNull(requestId);
+    assertNotEquals(requestId, CorrelationHandler.requestId(request(" ", null)));
+  }
+
+  private static HttpServletRequest request(String requestId, String traceparent) {
+    final HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(request.getHeader(CorrelationHandler.REQUEST_ID_HEADER_NAME)).andReturn(requestId).anyTimes();
+    EasyMock.expect(request.getHeader(TraceContext.TRACEPARENT_HEADER)).andReturn(traceparent).anyTimes();
+    EasyMock.replay(request);
+    return request;
+  }
+}
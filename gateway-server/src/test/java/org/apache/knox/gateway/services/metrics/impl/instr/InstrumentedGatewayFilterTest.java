@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.metrics.impl.instr;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.GatewayFilter;
+import org.easymock.EasyMock;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Response;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class InstrumentedGatewayFilterTest {
+
+  @Test
+  public void testRouteMetricsAreRecordedPerResourceAndMethod() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    GatewayFilter gatewayFilter = EasyMock.createNiceMock(GatewayFilter.class);
+    ServletContext context = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(context.getContextPath()).andReturn("/gateway/sandbox").anyTimes();
+    HttpServletRequest first = request(context, "/webhdfs/v1/tmp/a", 10L);
+    HttpServletRequest second = request(context, "/webhdfs/v1/tmp/b", -1L);
+    HttpServletResponse ok = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.expect(ok.getStatus()).andReturn(200).anyTimes();
+    HttpServletResponse notFound = EasyMock.createNiceMock(HttpServletResponse.class);
+    EasyMock.expect(notFound.getStatus()).andReturn(404).anyTimes();
+    EasyMock.replay(gatewayFilter, context, first, second, ok, notFound);
+
+    InstrumentedGatewayFilter filter = new InstrumentedGatewayFilter(gatewayFilter, registry);
+    FilterChain chain = EasyMock.createNiceMock(FilterChain.class);
+    filter.doFilter(first, ok, chain);
+    filter.doFilter(second, ok, chain);
+    filter.doFilter(first, notFound);
+
+    final String route = "client./gateway/sandbox/webhdfs/v1/.get";
+    Assert.assertEquals(3, registry.timer(route + "-requests").getCount());
+    Assert.assertEquals(2, registry.counter(route + "-responses.2xx").getCount());
+    Assert.assertEquals(1, registry.counter(route + "-responses.4xx").getCount());
+    Assert.assertEquals(0, registry.counter(route + "-responses.5xx").getCount());
+    Assert.assertEquals(20, registry.counter(route + "-request-bytes").getCount());
+  }
+
+  @Test
+  public void testResponseBytesAreCountedWithoutWrappingTheResponse() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    ServletContext context = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(context.getContextPath()).andReturn("/gateway/sandbox").anyTimes();
+    HttpServletRequest request = request(context, "/webhdfs/v1/tmp/a", -1L);
+    HttpOutput output = EasyMock.createNiceMock(HttpOutput.class);
+    EasyMock.expect(output.getWritten()).andReturn(6L).anyTimes();
+    Response jettyResponse = EasyMock.createNiceMock(Response.class);
+    EasyMock.expect(jettyResponse.getHttpOutput()).andReturn(output).anyTimes();
+    EasyMock.expect(jettyResponse.getStatus()).andReturn(200).anyTimes();
+    HttpServletResponse response = new HttpServletResponseWrapper(jettyResponse);
+    GatewayFilter gatewayFilter = EasyMock.createNiceMock(GatewayFilter.class);
+    // the dispatch must get the response as it is, to find Jetty's output
+    gatewayFilter.doFilter(EasyMock.eq(request), EasyMock.same(response));
+    EasyMock.expectLastCall().once();
+    EasyMock.replay(gatewayFilter, context, request, output, jettyResponse);
+
+    new InstrumentedGatewayFilter(gatewayFilter, registry).doFilter(request, response);
+
+    EasyMock.verify(gatewayFilter);
+    Assert.assertEquals(6, registry.counter("client./gateway/sandbox/webhdfs/v1/.get-response-bytes").getCount());
+  }
+
+  @Test
+  public void testRoutesAreBounded() {
+    MetricRegistry registry = new MetricRegistry();
+    RequestMetrics.Cache cache = new RequestMetrics.Cache(registry, (context, method, resource) ->
+        "client." + context + resource + '.' + method + "-requests", 2);
+    RequestMetrics a = cache.get("/gateway/sandbox", "GET", "/a/");
+    Assert.assertSame(a, cache.get("/gateway/sandbox", "get", "/a/"));
+    cache.get("/gateway/sandbox", "GET", "/b/");
+    RequestMetrics other = cache.get("/gateway/sandbox", "GET", "/c/");
+    Assert.assertSame(other, cache.get("/gateway/sandbox", "GET", "/d/"));
+    Assert.assertNotSame(a, other);
+    // Unknown methods share one bucket
+    Assert.assertSame(cache.get("/gateway/sandbox", "FOO", "/a/"), cache.get("/gateway/sandbox", "BAR", "/a/"));
+
+    Assert.assertEquals(1, registry.getTimers().keySet().stream()
+        .filter(name -> name.contains(RequestMetrics.Cache.OTHER_RESOURCE + ".GET")).count());
+  }
+
+  @Test
+  public void testResourcePathsMatchThePatterns() {
+    final Pattern resource = Pattern.compile("/.*?/.*?/");
+    final Pattern service = Pattern.compile("/.*?/");
+    final String[] paths = {"/webhdfs/v1/d1/d2", "/webhdfs/v1", "/webhdfs/v1/", "webhdfs/v1/d1/", "/", "//", "///x",
+        "no-slash", "/a\nb/c/d/e/", "/a/b\r/c/"};
+    for (String path : paths) {
+      Assert.assertEquals(path, match(resource, path), InstrUtils.getResourcePath(path));
+      Assert.assertEquals(path, match(service, path), InstrUtils.getServiceResourcePath(path));
+    }
+    Assert.assertEquals("", InstrUtils.getResourcePath(null));
+  }
+
+  private static HttpServletRequest request(ServletContext context, String pathInfo, long contentLength) {
+    HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(request.getServletContext()).andReturn(context).anyTimes();
+    EasyMock.expect(request.getPathInfo()).andReturn(pathInfo).anyTimes();
+    EasyMock.expect(request.getMethod()).andReturn("GET").anyTimes();
+    EasyMock.expect(request.getContentLengthLong()).andReturn(contentLength).anyTimes();
+    return request;
+  }
+
+  private static String match(Pattern pattern, String path) {
+    Matcher m = pattern.matcher(path);
+    return m.find() ? m.group(0) : path;
+  }
+}
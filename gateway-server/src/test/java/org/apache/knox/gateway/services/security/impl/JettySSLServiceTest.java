@@ -566,6 +566,41 @@ public class JettySSLServiceTest {
     verify(config, aliasService, keystoreService);
   }
 
+  @Test
+  public void testBuildSslContextFactoryWithTlsProvider() throws Exception {
+    String basedir = System.getProperty("basedir");
+    if (basedir == null) {
+      basedir = new File(".").getCanonicalPath();
+    }
+
+    Path identityKeystorePath = Paths.get(basedir, "target", "test-classes", "keystores", "server-keystore.jks");
+    char[] identityKeystorePassword = "horton".toCharArray();
+    char[] identityKeyPassphrase = "horton".toCharArray();
+    Path truststorePath = Paths.get(basedir, "target", "test-classes", "keystores", "server-truststore.jks");
+
+    GatewayConfig config = createGatewayConfig(false, false, identityKeystorePath, "jks", "server", truststorePath, "jks", "trust_store_password",
+        null, null, null, null, "SunJSSE", 1000, 3600);
+
+    AliasService aliasService = createMock(AliasService.class);
+    expect(aliasService.getGatewayIdentityKeystorePassword()).andReturn(identityKeystorePassword).atLeastOnce();
+    expect(aliasService.getGatewayIdentityPassphrase()).andReturn(identityKeyPassphrase).atLeastOnce();
+
+    KeystoreService keystoreService = createMock(KeystoreService.class);
+
+    replay(config, aliasService, keystoreService);
+
+    JettySSLService sslService = new JettySSLService();
+    sslService.setAliasService(aliasService);
+    sslService.setKeystoreService(keystoreService);
+
+    SslContextFactory sslContextFactory = (SslContextFactory) sslService.buildSslContextFactory(config);
+    assertEquals("SunJSSE", sslContextFactory.getProvider());
+    assertEquals(1000, sslContextFactory.getSslSessionCacheSize());
+    assertEquals(3600, sslContextFactory.getSslSessionTimeout());
+
+    verify(config, aliasService, keystoreService);
+  }
+
   private GatewayConfig createGatewayConfig(boolean isClientAuthNeeded, boolean isExplicitTruststore,
                                             Path identityKeystorePath, String identityKeystoreType,
                                             String identityKeyAlias, Path truststorePath,
@@ -579,6 +614,17 @@ public class JettySSLServiceTest {
                                             String truststoreType, String trustStorePasswordAlias,
                                             List<String> includedCiphers, List<String> excludedCiphers,
                                             Set<String> includedProtocols, List<String> excludedProtocols) {
+    return createGatewayConfig(isClientAuthNeeded, isExplicitTruststore, identityKeystorePath, identityKeystoreType, identityKeyAlias, truststorePath, truststoreType, trustStorePasswordAlias,
+        includedCiphers, excludedCiphers, includedProtocols, excludedProtocols, null, -1, -1);
+  }
+
+  private GatewayConfig createGatewayConfig(boolean isClientAuthNeeded, boolean isExplicitTruststore,
+                                            Path identityKeystorePath, String identityKeystoreType,
+                                            String identityKeyAlias, Path truststorePath,
+                                            String truststoreType, String trustStorePasswordAlias,
+                                            List<String> includedCiphers, List<String> excludedCiphers,
+                                            Set<String> includedProtocols, List<String> excludedProtocols,
+                                            String tlsProvider, int tlsSessionCacheSize, int tlsSessionTimeout) {
     GatewayConfig config = createMock(GatewayConfig.class);
     expect(config.getIdentityKeystorePath()).andReturn(identityKeystorePath.toString()).atLeastOnce();
     expect(config.getIdentityKeystoreType()).andReturn(identityKeystoreType).atLeastOnce();
@@ -605,6 +651,9 @@ public class JettySSLServiceTest {
     expect(config.getIncludedSSLProtocols()).andReturn(includedProtocols).atLeastOnce();
     expect(config.getExcludedSSLProtocols()).andReturn(excludedProtocols).atLeastOnce();
     expect(config.isSSLRenegotiationAllowed()).andReturn(true).atLeastOnce();
+    expect(config.getTlsProvider()).andReturn(tlsProvider).atLeastOnce();
+    expect(config.getTlsSessionCacheSize()).andReturn(tlsSessionCacheSize).atLeastOnce();
+    expect(config.getTlsSessionTimeout()).andReturn(tlsSessionTimeout).atLeastOnce();
     return config;
   }
 
@@ -234,9 +234,16 @@ public class ZookeeperRemoteAliasMonitorTest {
                 + ZookeeperRemoteAliasService.PATH_SEPARATOR + expectedAliasDev,
             zkAlias.encrypt(expectedPasswordDev).getBytes(StandardCharsets.UTF_8));
 
-    /* Try */
+    /* Try, external changes reach the local mirror of the registry asynchronously */
+    final long deadline = System.currentTimeMillis() + 10000;
     aliases = zkAlias.getAliasesForCluster(expectedClusterName);
     aliasesDev = zkAlias.getAliasesForCluster(expectedClusterNameDev);
+    while ((!aliases.contains(expectedAlias) || !aliasesDev.contains(expectedAliasDev))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+      aliases = zkAlias.getAliasesForCluster(expectedClusterName);
+      aliasesDev = zkAlias.getAliasesForCluster(expectedClusterNameDev);
+    }
 
     Assert.assertTrue("Expected alias 'knox.test.alias' not found ",
         aliases.contains(expectedAlias));
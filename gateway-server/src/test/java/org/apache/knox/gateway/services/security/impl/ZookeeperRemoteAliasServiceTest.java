@@ -39,12 +39,14 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import static org.easymock.EasyMock.capture;
@@ -343,6 +345,119 @@ public class ZookeeperRemoteAliasServiceTest {
     Assert.assertEquals("Expected 'knox.test.alias' aliases to have been removed.", originalSize, aliases.size());
   }
 
+  @Test
+  public void testDecryptedAliasCacheFollowsRemoteChanges() throws Exception {
+    final String cluster = "cached";
+    final String alias = "knox.test.cached.alias";
+
+    final AliasService defaultAlias = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.replay(defaultAlias);
+
+    final DefaultMasterService ms = EasyMock.createNiceMock(DefaultMasterService.class);
+    EasyMock.expect(ms.getMasterSecret()).andReturn("knox".toCharArray()).anyTimes();
+    EasyMock.replay(ms);
+
+    RemoteConfigurationRegistryClientService clientService = (new ZooKeeperClientServiceProvider()).newInstance();
+    clientService.setAliasService(defaultAlias);
+    clientService.init(gc, Collections.emptyMap());
+
+    // Two services sharing the registry, as two gateway instances would
+    final ZookeeperRemoteAliasService writer = new ZookeeperRemoteAliasService(defaultAlias, ms, clientService);
+    writer.init(gc, Collections.emptyMap());
+    writer.start();
+    writer.addAliasForCluster(cluster, alias, "first");
+
+    final ZookeeperRemoteAliasService reader = new ZookeeperRemoteAliasService(defaultAlias, ms, clientService);
+    reader.init(gc, Collections.emptyMap());
+    reader.start();
+
+    // Callers may clear the returned password without affecting the cached copy
+    char[] password = reader.getPasswordFromAliasForCluster(cluster, alias);
+    Assert.assertEquals("first", new String(password));
+    Arrays.fill(password, '\0');
+    Assert.assertEquals("first", new String(reader.getPasswordFromAliasForCluster(cluster, alias)));
+
+    writer.addAliasForCluster(cluster, alias, "second");
+    awaitPassword(reader, cluster, alias, "second");
+
+    writer.removeAliasForCluster(cluster, alias);
+    awaitPassword(reader, cluster, alias, null);
+
+    reader.stop();
+    writer.stop();
+  }
+
+  @Test
+  public void testDecryptedAliasCacheIsBounded() throws Exception {
+    final String cluster = "bounded";
+
+    final AliasService defaultAlias = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.replay(defaultAlias);
+
+    final DefaultMasterService ms = EasyMock.createNiceMock(DefaultMasterService.class);
+    EasyMock.expect(ms.getMasterSecret()).andReturn("knox".toCharArray()).anyTimes();
+    EasyMock.replay(ms);
+
+    RemoteConfigurationRegistryClientService clientService = (new ZooKeeperClientServiceProvider()).newInstance();
+    clientService.setAliasService(defaultAlias);
+    clientService.init(gc, Collections.emptyMap());
+
+    final ZookeeperRemoteAliasService service = new ZookeeperRemoteAliasService(defaultAlias, ms, clientService);
+    service.init(gc, Collections.singletonMap(ZookeeperRemoteAliasService.OPTION_NAME_DECRYPTED_ALIAS_CACHE_SIZE, "2"));
+    service.start();
+    for (int i = 0; i < 5; i++) {
+      service.addAliasForCluster(cluster, "knox.test.bounded.alias" + i, "secret" + i);
+    }
+
+    for (int i = 0; i < 5; i++) {
+      Assert.assertEquals("secret" + i, new String(service.getPasswordFromAliasForCluster(cluster, "knox.test.bounded.alias" + i)));
+    }
+    Assert.assertTrue(service.getCachedDecryptedAliasCount() <= 2);
+
+    service.removeAliasesForCluster(cluster, new HashSet<>(service.getAliasesForCluster(cluster)));
+    service.stop();
+  }
+
+  @Test
+  public void testTokenStateAliasesAreNotCached() throws Exception {
+    final AliasService defaultAlias = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.replay(defaultAlias);
+
+    final DefaultMasterService ms = EasyMock.createNiceMock(DefaultMasterService.class);
+    EasyMock.expect(ms.getMasterSecret()).andReturn("knox".toCharArray()).anyTimes();
+    EasyMock.replay(ms);
+
+    RemoteConfigurationRegistryClientService clientService = (new ZooKeeperClientServiceProvider()).newInstance();
+    clientService.setAliasService(defaultAlias);
+    clientService.init(gc, Collections.emptyMap());
+
+    final ZookeeperRemoteAliasService service = new ZookeeperRemoteAliasService(defaultAlias, ms, clientService);
+    service.init(gc, Collections.singletonMap(ZookeeperRemoteAliasService.OPTION_NAME_SHOULD_CREATE_TOKENS_SUB_NODE, "true"));
+    service.start();
+    service.addAliasForCluster(AliasService.NO_CLUSTER_NAME, "knox.test.token.alias", "state");
+
+    Assert.assertEquals("state", new String(service.getPasswordFromAliasForCluster(AliasService.NO_CLUSTER_NAME, "knox.test.token.alias")));
+    Assert.assertEquals(0L, service.getCachedDecryptedAliasCount());
+
+    service.removeAliasForCluster(AliasService.NO_CLUSTER_NAME, "knox.test.token.alias");
+    service.stop();
+  }
+
+  private static void awaitPassword(ZookeeperRemoteAliasService service, String cluster, String alias, String expected)
+      throws Exception {
+    final long deadline = System.currentTimeMillis() + 10000L;
+    String actual;
+    do {
+      final char[] password = service.getPasswordFromAliasForCluster(cluster, alias);
+      actual = password == null ? null : new String(password);
+      if (Objects.equals(expected, actual)) {
+        return;
+      }
+      Thread.sleep(50L);
+    } while (System.currentTimeMillis() < deadline);
+    Assert.assertEquals(expected, actual);
+  }
+
   @Test
   @Ignore("should be executed manually in case you'd like to measure how much time alias addition/fetch takes")
   public void testPerformance() throws Exception {
@@ -30,8 +30,10 @@ import java.nio.file.Path;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.interfaces.RSAPrivateKey;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -39,6 +41,7 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.services.ServiceLifecycleException;
 import org.apache.knox.gateway.services.security.token.JWTokenAttributesBuilder;
 import org.apache.knox.gateway.services.security.token.TokenMetadata;
+import org.apache.knox.gateway.services.security.token.TokenStateListener;
 import org.apache.knox.gateway.services.security.token.TokenStateService;
 import org.apache.knox.gateway.services.security.token.TokenUtils;
 import org.apache.knox.gateway.services.security.token.UnknownTokenException;
@@ -162,6 +165,26 @@ public class DefaultTokenStateServiceTest {
     tss.isExpired(token);
   }
 
+  @Test
+  public void testRevocationNotifiesListeners() throws Exception {
+    final JWTToken token = createMockToken(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60));
+    final TokenStateService tss = createTokenStateService();
+    addToken(tss, token, System.currentTimeMillis());
+
+    final List<String> revoked = new ArrayList<>();
+    final TokenStateListener listener = revoked::add;
+    tss.addTokenStateListener(listener);
+    tss.addTokenStateListener(listener);
+
+    tss.revokeToken(token);
+    assertEquals(Collections.singletonList(TokenUtils.getTokenId(token)), revoked);
+
+    tss.removeTokenStateListener(listener);
+    addToken(tss, token, System.currentTimeMillis());
+    tss.revokeToken(token);
+    assertEquals(1, revoked.size());
+  }
+
   @Test
   public void testRenewal() throws Exception {
     final JWTToken token = createMockToken(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(60));
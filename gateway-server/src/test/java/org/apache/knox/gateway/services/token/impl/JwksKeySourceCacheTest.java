@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.services.security.AliasService;
+import org.apache.knox.gateway.services.security.KeystoreService;
+import org.apache.knox.gateway.services.security.token.impl.JWTToken;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JwksKeySourceCacheTest {
+  private static final long CACHE_TTL = 60000;
+  private static final long CACHE_TIMEOUT = 5000;
+  private static final long OUTAGE_TTL = 120000;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final MetricRegistry metrics = new MetricRegistry();
+  private JwksKeySourceCache cache;
+  private RSAKey signingKey;
+  private String jwksUrl;
+  private String missingJwksUrl;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new JwksKeySourceCache(CACHE_TTL, CACHE_TIMEOUT, OUTAGE_TTL, false, () -> metrics);
+    signingKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+    final File jwks = folder.newFile("jwks.json");
+    Files.write(jwks.toPath(), new JWKSet(signingKey.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8));
+    jwksUrl = jwks.toURI().toString();
+    missingJwksUrl = new File(folder.getRoot(), "missing.json").toURI().toString();
+  }
+
+  @After
+  public void tearDown() {
+    cache.close();
+  }
+
+  @Test
+  public void testSourceIsSharedAndKeysAreCached() throws Exception {
+    final JWKSource<SecurityContext> source = cache.getSource(jwksUrl);
+    assertSame(source, cache.getSource(jwksUrl));
+
+    final JWKSelector selector = new JWKSelector(new JWKMatcher.Builder().keyID("key-1").build());
+    assertEquals(1, source.get(selector, null).size());
+    assertEquals(1, source.get(selector, null).size());
+    assertEquals(1, source.get(selector, null).size());
+
+    assertEquals(1, metrics.timer(JwksKeySourceCache.FETCH_TIMER).getCount());
+    assertEquals(1, metrics.meter(JwksKeySourceCache.CACHE_MISSES_METER).getCount());
+    assertEquals(2, metrics.meter(JwksKeySourceCache.CACHE_HITS_METER).getCount());
+    assertEquals(0, metrics.meter(JwksKeySourceCache.REFRESH_FAILURES_METER).getCount());
+  }
+
+  @Test
+  public void testNothingIsRecordedWhileMetricsAreDisabled() throws Exception {
+    final JwksKeySourceCache withoutMetrics = new JwksKeySourceCache(CACHE_TTL, CACHE_TIMEOUT, OUTAGE_TTL, false, () -> null);
+    try {
+      final JWKSelector selector = new JWKSelector(new JWKMatcher.Builder().keyID("key-1").build());
+      assertEquals(1, withoutMetrics.getSource(jwksUrl).get(selector, null).size());
+      assertEquals(1, withoutMetrics.getSource(jwksUrl).get(selector, null).size());
+    } finally {
+      withoutMetrics.close();
+    }
+  }
+
+  @Test
+  public void testVerificationsRunOnABoundedNamedPool() throws Exception {
+    assertTrue(cache.getExecutor() instanceof ThreadPoolExecutor);
+    final ThreadPoolExecutor executor = (ThreadPoolExecutor) cache.getExecutor();
+    assertEquals(JwksKeySourceCache.MAX_THREADS, executor.getMaximumPoolSize());
+    assertEquals(JwksKeySourceCache.MAX_QUEUED_TASKS, executor.getQueue().remainingCapacity());
+    assertTrue(executor.submit(() -> Thread.currentThread().getName()).get().startsWith("jwks-"));
+  }
+
+  @Test(expected = KeySourceException.class)
+  public void testFetchFailuresAreCounted() throws Exception {
+    final JWKSource<SecurityContext> source = cache.getSource(missingJwksUrl);
+    try {
+      source.get(new JWKSelector(new JWKMatcher.Builder().build()), null);
+    } finally {
+      assertTrue(metrics.meter(JwksKeySourceCache.REFRESH_FAILURES_METER).getCount() > 0);
+    }
+  }
+
+  @Test
+  public void testRouteByKidAndIssuer() throws Exception {
+    final List<String> urls = Arrays.asList(missingJwksUrl, jwksUrl);
+    assertNull(cache.route("key-1", "issuer", urls));
+
+    cache.getSource(jwksUrl).get(new JWKSelector(new JWKMatcher.Builder().build()), null);
+    assertEquals(jwksUrl, cache.route("key-1", null, urls));
+    assertNull(cache.route("key-2", "issuer", urls));
+
+    cache.verified("issuer", missingJwksUrl);
+    assertEquals(missingJwksUrl, cache.route("key-2", "issuer", urls));
+    assertNull(cache.route("key-2", "issuer", Collections.singletonList(jwksUrl)));
+  }
+
+  @Test
+  public void testVerifyAgainstSeveralEndpoints() throws Exception {
+    final GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(config.getJwksCacheTimeToLive()).andReturn(CACHE_TTL).anyTimes();
+    EasyMock.expect(config.getJwksCacheRefreshTimeout()).andReturn(CACHE_TIMEOUT).anyTimes();
+    EasyMock.expect(config.getJwksOutageCacheTTL()).andReturn(OUTAGE_TTL).anyTimes();
+    EasyMock.expect(config.getIssuersWithIgnoredTypeHeader()).andReturn(Collections.emptySet()).anyTimes();
+    EasyMock.replay(config);
+
+    final DefaultTokenAuthorityService service = new DefaultTokenAuthorityService();
+    service.setAliasService(EasyMock.createNiceMock(AliasService.class));
+    service.setKeystoreService(EasyMock.createNiceMock(KeystoreService.class));
+    service.init(config, new HashMap<>());
+
+    final SignedJWT signed = new SignedJWT(
+        new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("key-1").type(JOSEObjectType.JWT).build(),
+        new JWTClaimsSet.Builder().subject("alice").issuer("idp")
+            .expirationTime(new Date(System.currentTimeMillis() + 60000)).build());
+    signed.sign(new RSASSASigner(signingKey));
+    final JWTToken token = new JWTToken(signed.serialize());
+
+    final DefaultJOSEObjectTypeVerifier<SecurityContext> typeVerifier =
+        new DefaultJOSEObjectTypeVerifier<>(JOSEObjectType.JWT);
+    final LinkedHashSet<URI> urls = new LinkedHashSet<>(Arrays.asList(new URI(missingJwksUrl), new URI(jwksUrl)));
+    try {
+      assertTrue(service.verifyToken(token, urls, "RS256", typeVerifier));
+      /* routed by kid from now on */
+      assertTrue(service.verifyToken(token, urls, "RS256", typeVerifier));
+      assertFalse(service.verifyToken(token, Collections.singleton(new URI(missingJwksUrl)), "RS256", typeVerifier));
+    } finally {
+      service.stop();
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.database.AbstractDataSourceFactory;
+import org.apache.knox.gateway.database.DataSourceProvider;
+import org.apache.knox.gateway.database.DatabaseType;
+import org.apache.knox.gateway.services.security.AliasService;
+import org.apache.knox.gateway.services.security.token.TokenMetadata;
+import org.easymock.EasyMock;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Two caches over the same database stand for two gateway instances.
+ */
+public class TokenStateCacheTest {
+  private static DataSource dataSource;
+  private static TokenStateDatabase tokenDatabase;
+
+  private TokenStateCache localCache;
+  private TokenStateCache remoteCache;
+
+  @SuppressWarnings("PMD.JUnit4TestShouldUseBeforeAnnotation")
+  @BeforeClass
+  public static void setUpDatabase() throws Exception {
+    final GatewayConfig gatewayConfig = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(gatewayConfig.getDatabaseType()).andReturn(DatabaseType.HSQL.type()).anyTimes();
+    EasyMock.expect(gatewayConfig.getDatabaseConnectionUrl()).andReturn("jdbc:hsqldb:mem:knoxtokencache;ifexists=false").anyTimes();
+    EasyMock.expect(gatewayConfig.getDatabaseName()).andReturn("knoxtokencache").anyTimes();
+    final AliasService aliasService = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.expect(aliasService.getPasswordFromAliasForGateway(AbstractDataSourceFactory.DATABASE_USER_ALIAS_NAME)).andReturn("SA".toCharArray()).anyTimes();
+    EasyMock.expect(aliasService.getPasswordFromAliasForGateway(AbstractDataSourceFactory.DATABASE_PASSWORD_ALIAS_NAME)).andReturn("".toCharArray()).anyTimes();
+    EasyMock.replay(gatewayConfig, aliasService);
+    dataSource = DataSourceProvider.getDataSource(gatewayConfig, aliasService);
+    tokenDatabase = new TokenStateDatabase(dataSource, DatabaseType.HSQL.type(), true);
+  }
+
+  @SuppressWarnings("PMD.JUnit4TestShouldUseAfterAnnotation")
+  @AfterClass
+  public static void tearDownDatabase() throws Exception {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("SHUTDOWN");
+    }
+  }
+
+  @Before
+  public void setUp() {
+    localCache = new TokenStateCache(tokenDatabase, 60000L, 100L);
+    remoteCache = new TokenStateCache(tokenDatabase, 60000L, 100L);
+  }
+
+  @Test
+  public void testCachedExpirationIsServedWithoutQuery() throws Exception {
+    final String tokenId = addToken();
+    final AtomicInteger queries = new AtomicInteger();
+    final TokenStateCache.Loader<Long> loader = () -> {
+      queries.incrementAndGet();
+      return tokenDatabase.getTokenExpiration(tokenId);
+    };
+    assertEquals(Long.valueOf(2000L), localCache.getExpiration(tokenId, loader));
+    assertEquals(Long.valueOf(2000L), localCache.getExpiration(tokenId, loader));
+    assertEquals(1, queries.get());
+  }
+
+  @Test
+  public void testCachedValuesExpireAfterWrite() throws Exception {
+    final String tokenId = addToken();
+    final TokenStateCache cache = new TokenStateCache(tokenDatabase, 10L, 100L);
+    final AtomicInteger queries = new AtomicInteger();
+    final TokenStateCache.Loader<Long> loader = () -> {
+      queries.incrementAndGet();
+      return tokenDatabase.getTokenExpiration(tokenId);
+    };
+    assertEquals(Long.valueOf(2000L), cache.getExpiration(tokenId, loader));
+    Thread.sleep(100L);
+    // keeps the cache coherent, so that only the expiry causes the second query
+    cache.refresh();
+    assertEquals(Long.valueOf(2000L), cache.getExpiration(tokenId, loader));
+    assertEquals(2, queries.get());
+  }
+
+  @Test
+  public void testRenewalIsSeenByOtherInstancesAfterRefresh() throws Exception {
+    final String tokenId = addToken();
+    assertEquals(Long.valueOf(2000L), remoteCache.getExpiration(tokenId, () -> tokenDatabase.getTokenExpiration(tokenId)));
+
+    assertTrue(tokenDatabase.updateExpiration(tokenId, 3000L));
+    localCache.invalidate(tokenId);
+    assertEquals(Long.valueOf(3000L), localCache.getExpiration(tokenId, () -> tokenDatabase.getTokenExpiration(tokenId)));
+
+    // stale until the change log is read
+    assertEquals(Long.valueOf(2000L), remoteCache.getExpiration(tokenId, () -> tokenDatabase.getTokenExpiration(tokenId)));
+    remoteCache.refresh();
+    assertEquals(Long.valueOf(3000L), remoteCache.getExpiration(tokenId, () -> tokenDatabase.getTokenExpiration(tokenId)));
+  }
+
+  @Test
+  public void testRevocationIsSeenByOtherInstancesAfterRefresh() throws Exception {
+    final String tokenId = addToken();
+    assertEquals(Long.valueOf(2000L), remoteCache.getExpiration(tokenId, () -> tokenDatabase.getTokenExpiration(tokenId)));
+
+    assertTrue(tokenDatabase.removeToken(tokenId));
+    remoteCache.refresh();
+    assertNull(remoteCache.getExpiration(tokenId, () -> tokenDatabase.getTokenExpiration(tokenId)));
+  }
+
+  @Test
+  public void testBatchedMetadataUpdateIsSeenByOtherInstancesAfterRefresh() throws Exception {
+    final String tokenId = addToken();
+    assertTrue(tokenDatabase.write(Collections.singletonList(
+        TokenStateWrite.saveMetadata(tokenId, Collections.singletonMap(TokenMetadata.ENABLED, "true"))))[0]);
+    assertTrue(remoteCache.getMetadata(tokenId, () -> tokenDatabase.getTokenMetadata(tokenId)).isEnabled());
+
+    assertTrue(tokenDatabase.write(Collections.singletonList(
+        TokenStateWrite.saveMetadata(tokenId, Collections.singletonMap(TokenMetadata.ENABLED, "false"))))[0]);
+    remoteCache.refresh();
+    assertEquals("false", remoteCache.getMetadata(tokenId, () -> tokenDatabase.getTokenMetadata(tokenId)).getMetadata(TokenMetadata.ENABLED));
+  }
+
+  @Test
+  public void testCachedMetadataCannotBeModifiedByCallers() throws Exception {
+    final String tokenId = addToken();
+    assertTrue(tokenDatabase.write(Collections.singletonList(
+        TokenStateWrite.saveMetadata(tokenId, Collections.singletonMap(TokenMetadata.USER_NAME, "alice"))))[0]);
+    localCache.getMetadata(tokenId, () -> tokenDatabase.getTokenMetadata(tokenId)).add(TokenMetadata.USER_NAME, "bob");
+    assertEquals("alice", localCache.getMetadata(tokenId, () -> tokenDatabase.getTokenMetadata(tokenId)).getUserName());
+  }
+
+  @Test
+  public void testInvalidatingOtherTokensDoesNotPreventCaching() throws Exception {
+    final String tokenId = addToken();
+    final AtomicInteger queries = new AtomicInteger();
+    final TokenStateCache.Loader<Long> loader = () -> {
+      queries.incrementAndGet();
+      localCache.invalidate(UUID.randomUUID().toString());
+      return tokenDatabase.getTokenExpiration(tokenId);
+    };
+    assertEquals(Long.valueOf(2000L), localCache.getExpiration(tokenId, loader));
+    assertEquals(Long.valueOf(2000L), localCache.getExpiration(tokenId, loader));
+    assertEquals(1, queries.get());
+  }
+
+  @Test
+  public void testValueLoadedConcurrentlyWithItsChangeIsNotCached() throws Exception {
+    final String tokenId = addToken();
+    final AtomicInteger queries = new AtomicInteger();
+    final TokenStateCache.Loader<Long> loader = () -> {
+      final Long expiration = tokenDatabase.getTokenExpiration(tokenId);
+      if (queries.incrementAndGet() == 1) {
+        assertTrue(tokenDatabase.updateExpiration(tokenId, 3000L));
+        localCache.invalidate(tokenId);
+      }
+      return expiration;
+    };
+    assertEquals(Long.valueOf(2000L), localCache.getExpiration(tokenId, loader));
+    assertEquals(Long.valueOf(3000L), localCache.getExpiration(tokenId, loader));
+    assertEquals(2, queries.get());
+  }
+
+  @Test
+  public void testChangesAreNotRecordedUnlessEnabled() throws Exception {
+    final String tokenId = addToken();
+    final TokenStateDatabase notRecordingDatabase = new TokenStateDatabase(dataSource, DatabaseType.HSQL.type(), false);
+    final long before = System.currentTimeMillis() - 1;
+
+    assertTrue(notRecordingDatabase.updateExpiration(tokenId, 3000L));
+    assertTrue(notRecordingDatabase.write(Collections.singletonList(
+        TokenStateWrite.saveMetadata(tokenId, Collections.singletonMap(TokenMetadata.ENABLED, "false"))))[0]);
+    notRecordingDatabase.addTokenChange(tokenId);
+
+    assertTrue(tokenDatabase.getTokenChanges(before).stream().noneMatch(change -> tokenId.equals(change.getTokenId())));
+  }
+
+  private static String addToken() throws Exception {
+    final String tokenId = UUID.randomUUID().toString();
+    assertTrue(tokenDatabase.addToken(tokenId, 1000L, 2000L, 5000L));
+    return tokenId;
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.token.impl;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.database.AbstractDataSourceFactory;
+import org.apache.knox.gateway.database.DataSourceProvider;
+import org.apache.knox.gateway.database.DatabaseType;
+import org.apache.knox.gateway.services.security.AliasService;
+import org.apache.knox.gateway.services.security.token.TokenMetadata;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TokenStateWriteBehindTest {
+  private static final int WRITERS = 20;
+
+  private static DataSource dataSource;
+  private static TokenStateDatabase tokenDatabase;
+
+  private MetricRegistry metricRegistry;
+  private TokenStateWriteBehind writeBehind;
+  private ExecutorService executor;
+
+  @SuppressWarnings("PMD.JUnit4TestShouldUseBeforeAnnotation")
+  @BeforeClass
+  public static void setUpDatabase() throws Exception {
+    final GatewayConfig gatewayConfig = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(gatewayConfig.getDatabaseType()).andReturn(DatabaseType.HSQL.type()).anyTimes();
+    EasyMock.expect(gatewayConfig.getDatabaseConnectionUrl()).andReturn("jdbc:hsqldb:mem:knoxwritebehind;ifexists=false").anyTimes();
+    EasyMock.expect(gatewayConfig.getDatabaseName()).andReturn("knoxwritebehind").anyTimes();
+    final AliasService aliasService = EasyMock.createNiceMock(AliasService.class);
+    EasyMock.expect(aliasService.getPasswordFromAliasForGateway(AbstractDataSourceFactory.DATABASE_USER_ALIAS_NAME)).andReturn("SA".toCharArray()).anyTimes();
+    EasyMock.expect(aliasService.getPasswordFromAliasForGateway(AbstractDataSourceFactory.DATABASE_PASSWORD_ALIAS_NAME)).andReturn("".toCharArray()).anyTimes();
+    EasyMock.replay(gatewayConfig, aliasService);
+    dataSource = DataSourceProvider.getDataSource(gatewayConfig, aliasService);
+    tokenDatabase = new TokenStateDatabase(dataSource, DatabaseType.HSQL.type(), true);
+  }
+
+  @SuppressWarnings("PMD.JUnit4TestShouldUseAfterAnnotation")
+  @AfterClass
+  public static void tearDownDatabase() throws Exception {
+    try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("SHUTDOWN");
+    }
+  }
+
+  @Before
+  public void setUp() {
+    metricRegistry = new MetricRegistry();
+    writeBehind = new TokenStateWriteBehind(tokenDatabase, 50L, 100, 10000L, metricRegistry);
+    writeBehind.start();
+    executor = Executors.newFixedThreadPool(WRITERS);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    writeBehind.stop();
+  }
+
+  @Test
+  public void testConcurrentWritesAreCommittedBeforeTheyAreAcknowledged() throws Exception {
+    final List<String> tokenIds = new ArrayList<>();
+    final List<Callable<Boolean>> tasks = new ArrayList<>();
+    for (int i = 0; i < WRITERS; i++) {
+      final String tokenId = UUID.randomUUID().toString();
+      tokenIds.add(tokenId);
+      tasks.add(() -> writeBehind.write(TokenStateWrite.addToken(tokenId, 1000L, 2000L, 5000L))
+          && writeBehind.write(TokenStateWrite.updateExpiration(tokenId, 3000L))
+          && writeBehind.write(TokenStateWrite.saveMetadata(tokenId, Collections.singletonMap(TokenMetadata.USER_NAME, "user-" + tokenId))));
+    }
+
+    for (Future<Boolean> result : runConcurrently(tasks)) {
+      assertTrue(result.get());
+    }
+
+    for (String tokenId : tokenIds) {
+      assertEquals(Long.valueOf(3000L), tokenDatabase.getTokenExpiration(tokenId));
+      assertEquals(6000L, tokenDatabase.getMaxLifetime(tokenId));
+      assertEquals("user-" + tokenId, tokenDatabase.getTokenMetadata(tokenId).getUserName());
+    }
+
+    assertEquals(WRITERS * 3, sum(metricRegistry.histogram(TokenStateWriteBehind.BATCH_SIZE_HISTOGRAM).getSnapshot().getValues()));
+    assertTrue("writes should have been batched", metricRegistry.timer(TokenStateWriteBehind.FLUSH_TIMER).getCount() < WRITERS * 3);
+    assertNotNull(metricRegistry.getGauges().get(TokenStateWriteBehind.QUEUE_DEPTH_GAUGE));
+    assertEquals(0, metricRegistry.getGauges().get(TokenStateWriteBehind.QUEUE_DEPTH_GAUGE).getValue());
+  }
+
+  @Test
+  public void testMetadataIsUpserted() throws Exception {
+    final String tokenId = UUID.randomUUID().toString();
+    assertTrue(writeBehind.write(TokenStateWrite.addToken(tokenId, 1000L, 2000L, 5000L)));
+
+    final Map<String, String> metadata = new HashMap<>();
+    metadata.put(TokenMetadata.USER_NAME, "alice");
+    metadata.put(TokenMetadata.PASSCODE, "secret");
+    assertTrue(writeBehind.write(TokenStateWrite.saveMetadata(tokenId, metadata)));
+    assertTrue(writeBehind.write(TokenStateWrite.saveMetadata(tokenId, Collections.singletonMap(TokenMetadata.USER_NAME, "bob"))));
+
+    final TokenMetadata tokenMetadata = tokenDatabase.getTokenMetadata(tokenId);
+    assertEquals("bob", tokenMetadata.getUserName());
+    assertEquals("secret", tokenMetadata.getPasscode());
+  }
+
+  @Test
+  public void testFailingWriteDoesNotFailTheRestOfItsBatch() throws Exception {
+    final String existingTokenId = UUID.randomUUID().toString();
+    assertTrue(writeBehind.write(TokenStateWrite.addToken(existingTokenId, 1000L, 2000L, 5000L)));
+
+    final List<String> tokenIds = new ArrayList<>();
+    final List<Callable<Boolean>> tasks = new ArrayList<>();
+    tasks.add(() -> writeBehind.write(TokenStateWrite.addToken(existingTokenId, 1000L, 2000L, 5000L)));
+    for (int i = 1; i < WRITERS; i++) {
+      final String tokenId = UUID.randomUUID().toString();
+      tokenIds.add(tokenId);
+      tasks.add(() -> writeBehind.write(TokenStateWrite.addToken(tokenId, 1000L, 2000L, 5000L)));
+    }
+
+    final List<Future<Boolean>> results = runConcurrently(tasks);
+    try {
+      results.get(0).get();
+      fail("Adding an existing token should fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof SQLException);
+    }
+    for (int i = 1; i < WRITERS; i++) {
+      assertTrue(results.get(i).get());
+    }
+    for (String tokenId : tokenIds) {
+      assertEquals(Long.valueOf(2000L), tokenDatabase.getTokenExpiration(tokenId));
+    }
+  }
+
+  @Test
+  public void testUpdatingUnknownTokenIsNotAcknowledgedAsWritten() throws Exception {
+    assertFalse(writeBehind.write(TokenStateWrite.updateExpiration(UUID.randomUUID().toString(), 3000L)));
+  }
+
+  @Test
+  public void testWritesAfterStopAreWrittenDirectly() throws Exception {
+    writeBehind.stop();
+    final String tokenId = UUID.randomUUID().toString();
+    assertTrue(writeBehind.write(TokenStateWrite.addToken(tokenId, 1000L, 2000L, 5000L)));
+    assertEquals(Long.valueOf(2000L), tokenDatabase.getTokenExpiration(tokenId));
+  }
+
+  @Test
+  public void testTimedOutWriteIsWithdrawn() throws Exception {
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final TokenStateDatabase blockingDatabase = new TokenStateDatabase(dataSource, DatabaseType.HSQL.type(), true) {
+      @Override
+      boolean[] write(List<TokenStateWrite> writes) throws SQLException {
+        writing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.write(writes);
+      }
+    };
+    final TokenStateWriteBehind blockedWriteBehind = new TokenStateWriteBehind(blockingDatabase, 0L, 1, 500L, null);
+    blockedWriteBehind.start();
+    try {
+      final String writtenTokenId = UUID.randomUUID().toString();
+      final Future<Boolean> written = executor.submit(() -> blockedWriteBehind.write(TokenStateWrite.addToken(writtenTokenId, 1000L, 2000L, 5000L)));
+      writing.await();
+
+      final String withdrawnTokenId = UUID.randomUUID().toString();
+      try {
+        blockedWriteBehind.write(TokenStateWrite.addToken(withdrawnTokenId, 1000L, 2000L, 5000L));
+        fail("The write should have timed out");
+      } catch (SQLException e) {
+        assertTrue(e.getMessage().endsWith("was withdrawn"));
+        assertEquals(0, blockedWriteBehind.getQueueDepth());
+      }
+      try {
+        written.get();
+        fail("The write should have timed out");
+      } catch (ExecutionException e) {
+        // it was taken by the writer before the timeout
+        assertTrue(e.getCause().getMessage().endsWith("may still be committed"));
+      }
+
+      release.countDown();
+      blockedWriteBehind.stop();
+      assertEquals(Long.valueOf(2000L), tokenDatabase.getTokenExpiration(writtenTokenId));
+      assertNull(tokenDatabase.getTokenExpiration(withdrawnTokenId));
+    } finally {
+      release.countDown();
+      blockedWriteBehind.stop();
+    }
+  }
+
+  @Test
+  public void testStopWaitsForTheWriterToExit() throws Exception {
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch written = new CountDownLatch(1);
+    final TokenStateDatabase blockingDatabase = new TokenStateDatabase(dataSource, DatabaseType.HSQL.type(), true) {
+      @Override
+      boolean[] write(List<TokenStateWrite> writes) throws SQLException {
+        writing.countDown();
+        try {
+          // blocks until the writer is interrupted
+          new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        try {
+          return super.write(writes);
+        } finally {
+          written.countDown();
+        }
+      }
+    };
+    final TokenStateWriteBehind blockedWriteBehind = new TokenStateWriteBehind(blockingDatabase, 0L, 1, 100L, null);
+    blockedWriteBehind.start();
+    executor.submit(() -> blockedWriteBehind.write(TokenStateWrite.addToken(UUID.randomUUID().toString(), 1000L, 2000L, 5000L)));
+    writing.await();
+
+    blockedWriteBehind.stop();
+    assertEquals("stop() returned while the writer was still writing", 0, written.getCount());
+  }
+
+  @Test
+  public void testMetadataIsUpsertedWhenTheDriverReportsNoUpdateCounts() throws Exception {
+    final TokenStateDatabase noInfoDatabase = new TokenStateDatabase(withoutBatchUpdateCounts(dataSource), DatabaseType.HSQL.type(), true);
+    final String tokenId = UUID.randomUUID().toString();
+    assertTrue(noInfoDatabase.write(Collections.singletonList(TokenStateWrite.addToken(tokenId, 1000L, 2000L, 5000L)))[0]);
+    assertTrue(noInfoDatabase.write(Collections.singletonList(
+        TokenStateWrite.saveMetadata(tokenId, Collections.singletonMap(TokenMetadata.USER_NAME, "alice"))))[0]);
+
+    // one existing entry to update, one missing entry to insert
+    final Map<String, String> metadata = new HashMap<>();
+    metadata.put(TokenMetadata.USER_NAME, "bob");
+    metadata.put(TokenMetadata.COMMENT, "upserted");
+    assertTrue(noInfoDatabase.write(Collections.singletonList(TokenStateWrite.saveMetadata(tokenId, metadata)))[0]);
+
+    final TokenMetadata tokenMetadata = tokenDatabase.getTokenMetadata(tokenId);
+    assertEquals("bob", tokenMetadata.getUserName());
+    assertEquals("upserted", tokenMetadata.getComment());
+  }
+
+  /* A data source whose batches report Statement.SUCCESS_NO_INFO, as some drivers do, instead of update counts */
+  private static DataSource withoutBatchUpdateCounts(DataSource delegate) {
+    return proxy(DataSource.class, delegate, (method, result) -> method.getName().equals("getConnection")
+        ? proxy(Connection.class, (Connection) result, (connectionMethod, connectionResult) -> connectionMethod.getName().equals("prepareStatement")
+            ? proxy(PreparedStatement.class, (PreparedStatement) connectionResult, (statementMethod, statementResult) -> {
+                if (statementMethod.getName().equals("executeBatch")) {
+                  final int[] counts = new int[((int[]) statementResult).length];
+                  Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                  return counts;
+                }
+                return statementResult;
+              })
+            : connectionResult)
+        : result);
+  }
+
+  private static <T> T proxy(Class<T> type, T delegate, BiFunction<Method, Object, Object> resultMapper) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+      try {
+        return resultMapper.apply(method, method.invoke(delegate, args));
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }));
+  }
+
+  private List<Future<Boolean>> runConcurrently(List<Callable<Boolean>> tasks) {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Future<Boolean>> results = new ArrayList<>();
+    for (Callable<Boolean> task : tasks) {
+      results.add(executor.submit(() -> {
+        start.await();
+        return task.call();
+      }));
+    }
+    start.countDown();
+    return results;
+  }
+
+  private static long sum(long[] values) {
+    long sum = 0;
+    for (long value : values) {
+      sum += value;
+    }
+    return sum;
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.knox.gateway.topology.monitor.db;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptySet;
+import static org.apache.knox.gateway.topology.monitor.db.DbRemoteConfigurationMonitorService.OFFSET_SECONDS;
 
 import java.time.Instant;
 import java.util.Arrays;
@@ -166,10 +167,15 @@ public class DbRemoteConfigurationMonitorServiceTest {
     EasyMock.expect(descriptorsDir.fileContent("desc1")).andReturn("local-content").anyTimes();
 
     // Remote DB
-    EasyMock.expect(db.selectProviders()).andReturn(emptyList()).anyTimes();
+    EasyMock.expect(db.selectProviders()).andReturn(emptyList()).once();
     EasyMock.expect(db.selectDescriptors()).andReturn(asList(
             new RemoteConfig("desc1", "remote-content", NOW.minusSeconds(15))
-    )).anyTimes();
+    )).once();
+    // the second sync only reads what was modified after the watermark of the first one
+    EasyMock.expect(db.selectProviders(Instant.EPOCH.minusSeconds(OFFSET_SECONDS))).andReturn(emptyList()).once();
+    EasyMock.expect(db.selectDescriptors(NOW.minusSeconds(15 + OFFSET_SECONDS))).andReturn(asList(
+            new RemoteConfig("desc1", "remote-content", NOW.minusSeconds(15))
+    )).once();
 
     // Expectations
     descriptorsDir.writeFile("desc1", "remote-content");
@@ -190,11 +196,12 @@ public class DbRemoteConfigurationMonitorServiceTest {
     EasyMock.expect(descriptorsDir.fileContent("desc1")).andReturn("local-content").anyTimes();
 
     // Remote DB
-    EasyMock.expect(db.selectProviders()).andReturn(emptyList()).anyTimes();
+    EasyMock.expect(db.selectProviders()).andReturn(emptyList()).once();
+    EasyMock.expect(db.selectProviders(EasyMock.anyObject(Instant.class))).andReturn(emptyList()).once();
     EasyMock.expect(db.selectDescriptors()).andReturn(asList(
             new RemoteConfig("desc1", "remote-content", NOW.plusSeconds(10))
     )).once();
-    EasyMock.expect(db.selectDescriptors()).andReturn(asList(
+    EasyMock.expect(db.selectDescriptors(NOW.plusSeconds(10 - OFFSET_SECONDS))).andReturn(asList(
             new RemoteConfig("desc1", "remote-content", NOW.plusSeconds(20))
     )).once();
 
@@ -208,6 +215,63 @@ public class DbRemoteConfigurationMonitorServiceTest {
     EasyMock.verify(providersDir, descriptorsDir, db);
   }
 
+  @Test
+  public void testRecreatesLocallyRemovedFile() throws Exception {
+    // Local FS, the file written by the first sync is removed afterwards
+    EasyMock.expect(providersDir.list()).andReturn(emptySet()).anyTimes();
+    EasyMock.expect(descriptorsDir.list()).andReturn(emptySet()).anyTimes();
+
+    // Remote DB
+    EasyMock.expect(db.selectProviders()).andReturn(emptyList()).once();
+    EasyMock.expect(db.selectDescriptors()).andReturn(asList(
+            new RemoteConfig("desc1", "remote-content", NOW))).once();
+    EasyMock.expect(db.selectProviders(EasyMock.anyObject(Instant.class))).andReturn(emptyList()).once();
+    EasyMock.expect(db.selectDescriptors(EasyMock.anyObject(Instant.class))).andReturn(emptyList()).once();
+    EasyMock.expect(db.selectDescriptor("desc1")).andReturn(
+            new RemoteConfig("desc1", "remote-content", NOW)).once();
+
+    // Expectations
+    descriptorsDir.writeFile("desc1", "remote-content");
+    EasyMock.expectLastCall().times(2);
+
+    EasyMock.replay(providersDir, descriptorsDir, db);
+    monitor.sync();
+    monitor.sync();
+    EasyMock.verify(providersDir, descriptorsDir, db);
+  }
+
+  @Test
+  public void testReconcilePicksUpChangesMissedByIncrementalSync() throws Exception {
+    // Local FS
+    EasyMock.expect(providersDir.list()).andReturn(emptySet()).anyTimes();
+    EasyMock.expect(descriptorsDir.list()).andReturn(new HashSet<>(asList("desc1"))).anyTimes();
+    EasyMock.expect(descriptorsDir.fileContent("desc1")).andReturn("old-content").anyTimes();
+
+    // Remote DB
+    EasyMock.expect(db.selectProviders()).andReturn(emptyList()).once();
+    EasyMock.expect(db.selectDescriptors()).andReturn(asList(
+            new RemoteConfig("desc1", "old-content", NOW))).once();
+    EasyMock.expect(db.selectProviders(EasyMock.anyObject(Instant.class))).andReturn(emptyList()).anyTimes();
+    EasyMock.expect(db.selectDescriptors(EasyMock.anyObject(Instant.class))).andReturn(emptyList()).anyTimes();
+    // only the versions are read, the content is fetched for the changed one
+    EasyMock.expect(db.selectProviderVersions()).andReturn(emptyList()).once();
+    EasyMock.expect(db.selectDescriptorVersions()).andReturn(asList(
+            new RemoteConfig("desc1", null, NOW.plusSeconds(30)),
+            new RemoteConfig("never-synced-and-deleted", null, NOW, true))).once();
+    EasyMock.expect(db.selectDescriptor("desc1")).andReturn(
+            new RemoteConfig("desc1", "new-content", NOW.plusSeconds(30))).once();
+
+    // Expectations
+    descriptorsDir.writeFile("desc1", "new-content");
+    EasyMock.expectLastCall().once();
+
+    EasyMock.replay(providersDir, descriptorsDir, db);
+    for (int i = 0; i < DbRemoteConfigurationMonitorService.RECONCILE_EVERY_SYNCS; i++) {
+      monitor.sync();
+    }
+    EasyMock.verify(providersDir, descriptorsDir, db);
+  }
+
   @After
   public void tearDown() throws Exception {
     if (monitor != null) {
@@ -18,6 +18,7 @@ package org.apache.knox.gateway.topology.monitor.db;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -195,4 +196,54 @@ public class RemoteConfigDatabaseTest {
     assertEquals(0, db.selectProviders().size());
     assertEquals(0, db.selectDescriptors().size());
   }
+
+  @Test
+  public void testSelectModifiedAfter() throws Exception {
+    db.putProvider("provider_1", "old");
+    db.putDescriptor("descriptor_1", "old");
+    Thread.sleep(10);
+    Instant watermark = Instant.now();
+    Thread.sleep(10);
+    db.putProvider("provider_2", "new");
+    db.deleteDescriptor("descriptor_1");
+
+    List<RemoteConfig> providers = db.selectProviders(watermark);
+    assertEquals(1, providers.size());
+    assertEquals("provider_2", providers.get(0).getName());
+    assertEquals("new", providers.get(0).getContent());
+
+    List<RemoteConfig> descriptors = db.selectDescriptors(watermark);
+    assertEquals(1, descriptors.size());
+    assertTrue(descriptors.get(0).isDeleted());
+
+    assertTrue(db.selectProviders(Instant.now().plusSeconds(60)).isEmpty());
+  }
+
+  @Test
+  public void testSelectByName() {
+    db.putProvider("provider_1", "test provider1 content");
+    db.putDescriptor("descriptor_1", "test descriptor content");
+
+    assertEquals("test provider1 content", db.selectProvider("provider_1").getContent());
+    assertEquals("test descriptor content", db.selectDescriptor("descriptor_1").getContent());
+    assertNull(db.selectProvider("descriptor_1"));
+    assertNull(db.selectDescriptor("non_existing"));
+  }
+
+  @Test
+  public void testSelectVersionsWithoutContent() {
+    db.putProvider("provider_1", "any");
+    db.putDescriptor("descriptor_1", "any");
+    db.deleteDescriptor("descriptor_1");
+
+    List<RemoteConfig> providers = db.selectProviderVersions();
+    assertEquals(1, providers.size());
+    assertEquals("provider_1", providers.get(0).getName());
+    assertNull(providers.get(0).getContent());
+    assertEquals(db.selectProvider("provider_1").getLastModified(), providers.get(0).getLastModified());
+
+    List<RemoteConfig> descriptors = db.selectDescriptorVersions();
+    assertEquals(1, descriptors.size());
+    assertTrue(descriptors.get(0).isDeleted());
+  }
 }
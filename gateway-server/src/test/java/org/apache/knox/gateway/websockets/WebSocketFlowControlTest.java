@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.websockets;
+
+import com.codahale.metrics.MetricRegistry;
+import org.easymock.EasyMock;
+import org.eclipse.jetty.websocket.api.SuspendToken;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WebSocketFlowControlTest {
+
+  @Test
+  public void testSuspendAboveHighWaterMarkAndResumeBelowLowWaterMark() {
+    final SuspendToken token = EasyMock.createMock(SuspendToken.class);
+    token.resume();
+    EasyMock.expectLastCall().once();
+    EasyMock.replay(token);
+
+    final AtomicInteger suspensions = new AtomicInteger();
+    final WebSocketFlowControl flowControl = new WebSocketFlowControl("upstream", 100, () -> {
+      suspensions.incrementAndGet();
+      return token;
+    }, null);
+
+    flowControl.onReceived(60);
+    assertEquals(0, suspensions.get());
+    flowControl.onReceived(60);
+    assertEquals(1, suspensions.get());
+    // Already suspended
+    flowControl.onReceived(10);
+    assertEquals(1, suspensions.get());
+    assertEquals(130, flowControl.getPendingBytes());
+
+    // 60 left, still above the low water mark of 50
+    flowControl.onSent(60, true);
+    flowControl.onSent(10, true);
+    flowControl.onSent(60, true);
+    EasyMock.verify(token);
+
+    assertEquals(0, flowControl.getPendingBytes());
+    assertEquals(130, flowControl.getMaxPendingBytes());
+    assertEquals(130, flowControl.getTransferredBytes());
+    assertEquals(3, flowControl.getTransferredMessages());
+  }
+
+  @Test
+  public void testNoSuspensionWhenUnbounded() {
+    final WebSocketFlowControl flowControl = new WebSocketFlowControl("downstream", 0, () -> {
+      throw new AssertionError("Should not suspend");
+    }, null);
+    flowControl.onReceived(Integer.MAX_VALUE);
+    flowControl.onSent(Integer.MAX_VALUE, false);
+    assertEquals(0, flowControl.getPendingBytes());
+    assertEquals(0, flowControl.getTransferredBytes());
+  }
+
+  @Test
+  public void testMetrics() {
+    final MetricRegistry registry = new MetricRegistry();
+    final WebSocketFlowControl flowControl = new WebSocketFlowControl("upstream", 10, () -> null, registry);
+    flowControl.onReceived(20);
+    flowControl.onSent(20, true);
+    assertEquals(20, registry.meter("websocket.upstream.bytes").getCount());
+    assertEquals(1, registry.histogram("websocket.upstream.queue.bytes").getCount());
+    // The suspender did not return a token
+    assertEquals(0, registry.meter("websocket.upstream.suspensions").getCount());
+  }
+
+  @Test
+  public void testThroughputIsMeasuredPerConnection() {
+    final MetricRegistry registry = new MetricRegistry();
+    final WebSocketFlowControl first = new WebSocketFlowControl("upstream", 0, () -> null, registry);
+    final WebSocketFlowControl second = new WebSocketFlowControl("upstream", 0, () -> null, registry);
+    first.onReceived(20);
+    first.onSent(20, true);
+    second.onReceived(5);
+    second.onSent(5, false);
+
+    assertTrue(first.getBytesPerSecond() > 0);
+    assertEquals(0, second.getBytesPerSecond(), 0);
+    // the registry aggregates all connections
+    assertEquals(20, registry.meter("websocket.upstream.bytes").getCount());
+  }
+
+  @Test
+  public void testResumeWhenDrainedWhileSuspending() {
+    final AtomicInteger resumes = new AtomicInteger();
+    final WebSocketFlowControl[] flowControl = new WebSocketFlowControl[1];
+    flowControl[0] = new WebSocketFlowControl("upstream", 100, () -> {
+      // The receiving side drains the queue before the token has been recorded,
+      // so its resume() has nothing to resume
+      flowControl[0].onSent(120, true);
+      return resumes::incrementAndGet;
+    }, null);
+
+    flowControl[0].onReceived(120);
+    assertEquals(1, resumes.get());
+    assertFalse(flowControl[0].isSuspended());
+    assertEquals(0, flowControl[0].getPendingBytes());
+  }
+
+  @Test(timeout = 30000)
+  public void testConcurrentReceiveAndSendNeverLeavesSuspended() throws Exception {
+    final int messages = 200000;
+    final AtomicInteger suspended = new AtomicInteger();
+    final WebSocketFlowControl flowControl = new WebSocketFlowControl("upstream", 64, () -> {
+      suspended.incrementAndGet();
+      return suspended::decrementAndGet;
+    }, null);
+    final BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(16);
+
+    final Thread sender = new Thread(() -> {
+      try {
+        for (int i = 0; i < messages; i++) {
+          flowControl.onSent(queue.take(), true);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    sender.start();
+    for (int i = 0; i < messages; i++) {
+      final int bytes = 1 + (i % 32);
+      flowControl.onReceived(bytes);
+      queue.put(bytes);
+    }
+    sender.join(TimeUnit.SECONDS.toMillis(20));
+
+    assertFalse(sender.isAlive());
+    assertEquals(0, flowControl.getPendingBytes());
+    assertFalse(flowControl.isSuspended());
+    assertEquals(0, suspended.get());
+  }
+}
@@ -29,4 +29,7 @@ public interface HealthServiceMessages {
 
   @Message(level = MessageLevel.ERROR, text = "Unable to get health stats for {0}, due to {1}")
   void logException(String name, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message(level = MessageLevel.WARN, text = "The Prometheus name {1} of metric {0} is taken by another metric, it is exposed as {2}")
+  void renamedCollidingMetric(String metricName, String family, String uniqueFamily);
 }
\ No newline at end of file
@@ -36,6 +36,9 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
@@ -46,6 +49,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_XML;
 public class MetricsResource {
   static final String VERSION_TAG = "v1";
   static final String RESOURCE_PATH = "/" + VERSION_TAG + "/metrics";
+  static final String PROMETHEUS_PATH = "prometheus";
   private static HealthServiceMessages log = MessagesFactory.get(HealthServiceMessages.class);
   public static final String RATE_UNIT = MetricsServlet.class.getCanonicalName() + ".rateUnit";
   public static final String DURATION_UNIT = MetricsServlet.class.getCanonicalName() + ".durationUnit";
@@ -101,6 +105,25 @@ public class MetricsResource {
     return getMetrics();
   }
 
+  @GET
+  @Path(PROMETHEUS_PATH)
+  @Produces(PrometheusMetricsWriter.CONTENT_TYPE)
+  public Response doGetPrometheus() {
+    try {
+      response.setContentType(PrometheusMetricsWriter.CONTENT_TYPE);
+      response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+      response.setStatus(HttpServletResponse.SC_OK);
+
+      try (Writer output = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8)) {
+        PrometheusMetricsWriter.write(registry, output);
+      }
+    } catch (IOException ioe) {
+      log.logException("metrics", ioe);
+      return Response.serverError().entity(String.format(Locale.ROOT, "Failed to reply correctly due to : %s ", ioe)).build();
+    }
+    return Response.ok().build();
+  }
+
   private Response getMetrics() {
     try {
       response.setContentType(CONTENT_TYPE);
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.service.health;
+
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Sampling;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the metrics of a {@link MetricRegistry} in the Prometheus text exposition format (version 0.0.4).
+ * <p>
+ * Counters and meters become counters, numeric and boolean gauges become gauges, and histograms and timers
+ * become summaries of their quantiles; timer values are exposed in seconds.
+ * <p>
+ * Metric names whose sanitized forms collide, because they only differ in characters that Prometheus does not
+ * allow, are kept apart by a numeric suffix; each renaming is logged once.
+ */
+final class PrometheusMetricsWriter {
+
+  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private static final HealthServiceMessages LOG = MessagesFactory.get(HealthServiceMessages.class);
+  // the metric names whose renaming was logged already
+  private static final Set<String> RENAMED = ConcurrentHashMap.newKeySet();
+
+  private final Writer writer;
+  private final Set<String> families = new HashSet<>();
+
+  private PrometheusMetricsWriter(Writer writer) {
+    this.writer = writer;
+  }
+
+  static void write(MetricRegistry registry, Writer writer) throws IOException {
+    final PrometheusMetricsWriter prometheus = new PrometheusMetricsWriter(writer);
+    for (Map.Entry<String, Metric> metric : registry.getMetrics().entrySet()) {
+      prometheus.write(metric.getKey(), metric.getValue());
+    }
+    writer.flush();
+  }
+
+  private void write(String metricName, Metric metric) throws IOException {
+    final String name = sanitize(metricName);
+    if (metric instanceof Gauge) {
+      final Object value = ((Gauge<?>) metric).getValue();
+      if (value instanceof Number) {
+        sample(metricName, name, "gauge", ((Number) value).doubleValue());
+      } else if (value instanceof Boolean) {
+        sample(metricName, name, "gauge", (Boolean) value ? 1 : 0);
+      }
+    } else if (metric instanceof Sampling) {
+      final double divisor = metric instanceof Timer ? NANOS_PER_SECOND : 1;
+      final String family = type(metricName, metric instanceof Timer ? name + "_seconds" : name, "summary");
+      final Snapshot snapshot = ((Sampling) metric).getSnapshot();
+      for (double quantile : QUANTILES) {
+        writer.append(family).append("{quantile=\"").append(Double.toString(quantile)).append("\"} ")
+            .append(format(snapshot.getValue(quantile) / divisor)).append('\n');
+      }
+      writer.append(family).append("_count ").append(Long.toString(((Counting) metric).getCount())).append('\n');
+    } else if (metric instanceof Counting) {
+      sample(metricName, name + "_total", "counter", ((Counting) metric).getCount());
+    }
+  }
+
+  private void sample(String metricName, String family, String type, double value) throws IOException {
+    writer.append(type(metricName, family, type)).append(' ').append(format(value)).append('\n');
+  }
+
+  /**
+   * Writes the type line of a metric family.
+   *
+   * @return the name of the family, with a numeric suffix if a family of the same name was written already,
+   * e.g. because two metric names only differ in characters that are not allowed by Prometheus
+   */
+  private String type(String metricName, String family, String type) throws IOException {
+    String unique = family;
+    for (int i = 2; !families.add(unique); i++) {
+      unique = family + '_' + i;
+    }
+    if (!unique.equals(family) && RENAMED.add(metricName)) {
+      LOG.renamedCollidingMetric(metricName, family, unique);
+    }
+    writer.append("# TYPE ").append(unique).append(' ').append(type).append('\n');
+    return unique;
+  }
+
+  static String sanitize(String name) {
+    final StringBuilder sanitized = new StringBuilder(name.length() + 1);
+    if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+      sanitized.append('_');
+    }
+    for (int i = 0; i < name.length(); i++) {
+      final char c = name.charAt(i);
+      sanitized.append((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == ':'
+          ? c : '_');
+    }
+    return sanitized.toString();
+  }
+
+  private static String format(double value) {
+    if (Double.isNaN(value)) {
+      return "NaN";
+    }
+    if (Double.isInfinite(value)) {
+      return value > 0 ? "+Inf" : "-Inf";
+    }
+    return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+  }
+}
@@ -17,9 +17,12 @@
  */
 package org.apache.knox.gateway.service.health;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.StringWriter;
 import java.util.concurrent.TimeUnit;
 
 public class MetricsResourceTest {
@@ -29,4 +32,43 @@ public class MetricsResourceTest {
     Assert.assertEquals(mr.parseTimeUnit("MINUTE", TimeUnit.SECONDS), TimeUnit.SECONDS);
     Assert.assertEquals(mr.parseTimeUnit("MINUTES", TimeUnit.SECONDS), TimeUnit.MINUTES);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testPrometheusExposition() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    registry.counter("client./gateway/sandbox/webhdfs/v1/.get-responses.2xx").inc(3);
+    registry.register("jvm.threads.count", (Gauge<Integer>) () -> 42);
+    registry.meter("requests").mark(2);
+    registry.timer("service./gateway/sandbox/webhdfs/.get-requests").update(250, TimeUnit.MILLISECONDS);
+
+    StringWriter writer = new StringWriter();
+    PrometheusMetricsWriter.write(registry, writer);
+    String exposition = writer.toString();
+
+    Assert.assertTrue(exposition, exposition.contains(
+        "# TYPE client__gateway_sandbox_webhdfs_v1__get_responses_2xx_total counter\n"
+            + "client__gateway_sandbox_webhdfs_v1__get_responses_2xx_total 3\n"));
+    Assert.assertTrue(exposition, exposition.contains("# TYPE jvm_threads_count gauge\njvm_threads_count 42\n"));
+    Assert.assertTrue(exposition, exposition.contains("requests_total 2\n"));
+    Assert.assertTrue(exposition, exposition.contains(
+        "# TYPE service__gateway_sandbox_webhdfs__get_requests_seconds summary\n"
+            + "service__gateway_sandbox_webhdfs__get_requests_seconds{quantile=\"0.5\"} 0.25\n"));
+    Assert.assertTrue(exposition, exposition.contains("service__gateway_sandbox_webhdfs__get_requests_seconds_count 1\n"));
+    Assert.assertEquals("_1xx", PrometheusMetricsWriter.sanitize("1xx"));
+  }
+
+  @Test
+  public void testCollidingPrometheusNamesAreKeptApart() throws Exception {
+    MetricRegistry registry = new MetricRegistry();
+    registry.counter("client./gateway/a-b").inc(1);
+    registry.counter("client./gateway/a.b").inc(2);
+
+    StringWriter writer = new StringWriter();
+    PrometheusMetricsWriter.write(registry, writer);
+    String exposition = writer.toString();
+
+    Assert.assertTrue(exposition, exposition.contains("client__gateway_a_b_total 1\n"));
+    Assert.assertTrue(exposition, exposition.contains(
+        "# TYPE client__gateway_a_b_total_2 counter\nclient__gateway_a_b_total_2 2\n"));
+  }
+}
@@ -21,6 +21,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM;
 import static javax.ws.rs.core.MediaType.APPLICATION_XML;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.security.KeyStoreException;
@@ -28,26 +29,31 @@ import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
 import javax.inject.Singleton;
+import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
@@ -56,19 +62,13 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.dto.HomePageProfile;
 import org.apache.knox.gateway.fips.FipsUtils;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
-import org.apache.knox.gateway.service.definition.Metadata;
-import org.apache.knox.gateway.service.definition.ServiceDefinitionPair;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.ServerInfoService;
 import org.apache.knox.gateway.services.ServiceType;
-import org.apache.knox.gateway.services.registry.ServiceDefinitionRegistry;
 import org.apache.knox.gateway.services.security.AliasService;
 import org.apache.knox.gateway.services.security.AliasServiceException;
 import org.apache.knox.gateway.services.security.KeystoreService;
 import org.apache.knox.gateway.services.security.token.impl.TokenMAC;
-import org.apache.knox.gateway.services.topology.TopologyService;
-import org.apache.knox.gateway.topology.Service;
-import org.apache.knox.gateway.topology.Topology;
 import org.apache.knox.gateway.util.JsonUtils;
 import org.apache.knox.gateway.util.TruststorePasswordSetter;
 import org.apache.knox.gateway.util.X509CertificateUtil;
@@ -84,16 +84,15 @@ import io.swagger.annotations.ApiOperation;
 public class KnoxMetadataResource {
   private static final MetadataServiceMessages LOG = MessagesFactory.get(MetadataServiceMessages.class);
   private static final String SNAPSHOT_VERSION_POSTFIX = "-SNAPSHOT";
-  private static final Set<String> UNREAL_SERVICES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("NAMENODE", "JOBTRACKER", "RESOURCEMANAGERAPI")));
 
-  private Set<String> pinnedTopologies;
-  private java.nio.file.Path pemFilePath;
-  private java.nio.file.Path jksFilePath;
-  private java.nio.file.Path bcfksFilePath;
+  private final AtomicReference<CertificateExports> certificateExports = new AtomicReference<>();
 
   @Context
   private HttpServletRequest request;
 
+  @Context
+  private HttpServletResponse response;
+
   @ApiOperation(value="Get general proxy information", notes="Get general proxy information such as TLS Public Certificate, Knox Admin UI Url, etc...", response=GeneralProxyInformation.class)
   @GET
   @Produces({ APPLICATION_JSON, APPLICATION_XML })
@@ -151,15 +150,15 @@ public class KnoxMetadataResource {
   @Path("publicCert")
   public Response getPublicCertification(@QueryParam("type") @DefaultValue("pem") String certType) throws Exception {
     final GatewayConfig config = (GatewayConfig) request.getServletContext().getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
-    final Certificate[] certificateChain = config.isSSLEnabled() ? getPublicCertificates() : getSigningkeyCerts(config);
-    if (certificateChain != null) {
+    final CertificateExports exports = getCertificateExports(config);
+    if (exports != null) {
       final java.nio.file.Path certFilePath;
       if ("pem".equals(certType)) {
-        certFilePath = generateCertificatePem(certificateChain, config);
+        certFilePath = exports.getFile(certType, chain -> generateCertificatePem(chain, config));
       } else if ("jks".equals(certType)) {
-        certFilePath = generateCertificateJks(certificateChain, config);
+        certFilePath = exports.getFile(certType, chain -> generateCertificateJks(chain, config));
       } else if ("bcfks".equals(certType)) {
-        certFilePath = generateCertificateBcfks(certificateChain, config);
+        certFilePath = exports.getFile(certType, chain -> generateCertificateBcfks(chain, config));
       } else {
         return generateFailureFileDownloadResponse(Status.BAD_REQUEST, "Invalid certification type provided!");
       }
@@ -172,6 +171,25 @@ public class KnoxMetadataResource {
     return generateFailureFileDownloadResponse(Status.SERVICE_UNAVAILABLE, "Could not generate public certificate");
   }
 
+  /*
+   * Fetching the certificates opens a TLS connection to the gateway itself, so they are only
+   * fetched again, and the exported files regenerated, when the keystore they come from changes
+   */
+  private CertificateExports getCertificateExports(final GatewayConfig config) throws Exception {
+    final String keystorePath = config.isSSLEnabled() ? config.getIdentityKeystorePath() : config.getSigningKeystorePath();
+    final long keystoreModified = keystorePath == null ? 0 : new File(keystorePath).lastModified();
+    CertificateExports exports = certificateExports.get();
+    if (exports == null || !exports.isCurrent(keystorePath, keystoreModified)) {
+      final Certificate[] certificateChain = config.isSSLEnabled() ? getPublicCertificates() : getSigningkeyCerts(config);
+      if (certificateChain == null) {
+        return null;
+      }
+      exports = new CertificateExports(keystorePath, keystoreModified, certificateChain);
+      certificateExports.set(exports);
+    }
+    return exports;
+  }
+
   private Certificate[] getSigningkeyCerts(final GatewayConfig config) throws Exception {
     final GatewayServices gatewayServices = (GatewayServices) request.getServletContext().getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
     final KeystoreService keystoreService = gatewayServices.getService(ServiceType.KEYSTORE_SERVICE);
@@ -205,14 +223,10 @@ public class KnoxMetadataResource {
   }
 
   private java.nio.file.Path generateCertificatePem(Certificate[] certificateChain, GatewayConfig gatewayConfig) {
-    if (pemFilePath != null && pemFilePath.toFile().exists()) {
-      return pemFilePath;
-    }
     final java.nio.file.Path candidate = Paths.get(gatewayConfig.getGatewaySecurityDir(), "gateway-client-trust.pem");
     try {
       X509CertificateUtil.writeCertificatesToFile(certificateChain, candidate.toFile());
-      pemFilePath = candidate;
-      return pemFilePath;
+      return candidate;
     } catch (CertificateEncodingException | IOException e) {
       LOG.failedToGeneratePublicCert("PEM", e.getMessage(), e);
       return null;
@@ -220,14 +234,10 @@ public class KnoxMetadataResource {
   }
 
   private java.nio.file.Path generateCertificateJks(Certificate[] certificateChain, GatewayConfig gatewayConfig) {
-    if (jksFilePath != null && jksFilePath.toFile().exists()) {
-      return jksFilePath;
-    }
     final java.nio.file.Path candidate = Paths.get(gatewayConfig.getGatewaySecurityDir(), "gateway-client-trust.jks");
     try {
       X509CertificateUtil.writeCertificatesToJks(certificateChain, candidate.toFile(), null);
-      jksFilePath = candidate;
-      return jksFilePath;
+      return candidate;
     } catch (IOException | KeyStoreException | NoSuchAlgorithmException | CertificateException e) {
       LOG.failedToGeneratePublicCert("JKS", e.getMessage(), e);
       return null;
@@ -235,14 +245,10 @@ public class KnoxMetadataResource {
   }
 
   private java.nio.file.Path generateCertificateBcfks(Certificate[] certificateChain, GatewayConfig gatewayConfig) {
-    if (bcfksFilePath != null && bcfksFilePath.toFile().exists()) {
-      return bcfksFilePath;
-    }
     final java.nio.file.Path candidate = Paths.get(gatewayConfig.getGatewaySecurityDir(), "gateway-client-trust.bcfks");
     try {
       X509CertificateUtil.writeCertificatesToBcfks(certificateChain, candidate.toFile(), null);
-      bcfksFilePath = candidate;
-      return bcfksFilePath;
+      return candidate;
     } catch (IOException | KeyStoreException | NoSuchAlgorithmException | CertificateException e) {
       LOG.failedToGeneratePublicCert("BCFKS", e.getMessage(), e);
       return null;
@@ -268,72 +274,70 @@ public class KnoxMetadataResource {
   }
 
   private TopologyInformationWrapper getTopologies(String topologyName) {
-    final TopologyInformationWrapper topologies = new TopologyInformationWrapper();
-    final GatewayServices gatewayServices = (GatewayServices) request.getServletContext().getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
-    final GatewayConfig config = (GatewayConfig) request.getServletContext().getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
-    final ServiceDefinitionRegistry serviceDefinitionRegistry = gatewayServices.getService(ServiceType.SERVICE_DEFINITION_REGISTRY);
-    final Set<String> hiddenTopologies = config.getHiddenTopologiesOnHomepage();
-    if (gatewayServices != null) {
-      final TopologyService topologyService = gatewayServices.getService(ServiceType.TOPOLOGY_SERVICE);
-      for (Topology topology : topologyService.getTopologies()) {
-        if (!hiddenTopologies.contains(topology.getName()) && (topologyName == null || topology.getName().equalsIgnoreCase(topologyName))) {
-          Set<ServiceModel> apiServices = new HashSet<>();
-          Set<ServiceModel> uiServices = new HashSet<>();
-          topology.getServices().stream().filter(service -> !UNREAL_SERVICES.contains(service.getRole())).forEach(service -> {
-            if (!service.getUrls().isEmpty()) {
-              if(config.getGroupUIServicesOnHomepage()) {
-                final ServiceModel serviceModel = getServiceModel(request, config.getGatewayPath(), topology.getName(), service, getServiceMetadata(serviceDefinitionRegistry, service), null);
-                addService(apiServices, uiServices, serviceModel);
-              } else {
-                service.getUrls().forEach(serviceUrl -> {
-                  final ServiceModel serviceModel = getServiceModel(request, config.getGatewayPath(), topology.getName(), service, getServiceMetadata(serviceDefinitionRegistry, service), serviceUrl);
-                  addService(apiServices, uiServices, serviceModel);
-                });
-              }
-            }
-          });
-          topologies.addTopology(topology.getName(), isPinnedTopology(topology.getName(), config), config.getApiServicesViewVersionOnHomepage(), new TreeSet<>(apiServices), new TreeSet<>(uiServices));
-        }
-      }
+    final MetadataSnapshot snapshot = getSnapshot();
+    if (snapshot == null) {
+      return new TopologyInformationWrapper();
     }
-    return topologies;
+    checkNotModified(snapshot.getEntityTag(request, topologyName));
+    return snapshot.render(request, topologyName);
   }
 
-  private void addService(Set<ServiceModel> apiServices, Set<ServiceModel> uiServices, ServiceModel model) {
-    switch (model.getType()) {
-      case UI -> uiServices.add(model);
-      case API_AND_UI -> {
-        uiServices.add(model);
-        apiServices.add(model);
-      }
-      default -> apiServices.add(model);
+  /*
+   * Conditional GET: answers 304 if the client already has the current metadata, and otherwise
+   * adds the validator to the response so that the client can revalidate it next time.
+   */
+  private void checkNotModified(String entityTagValue) {
+    final EntityTag entityTag = new EntityTag(entityTagValue);
+    final CacheControl cacheControl = new CacheControl();
+    cacheControl.setPrivate(true);
+    cacheControl.setNoCache(true);
+    if (matchesEntityTag(request.getHeader(HttpHeaders.IF_NONE_MATCH), entityTag)) {
+      throw new WebApplicationException(Response.notModified(entityTag).cacheControl(cacheControl)
+          .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build());
     }
+    response.setHeader(HttpHeaders.ETAG, entityTag.toString());
+    response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.toString());
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
   }
 
-  boolean isPinnedTopology(String topologyName, GatewayConfig config) {
-    if (pinnedTopologies == null) {
-      pinnedTopologies = config.getPinnedTopologiesOnHomepage();
+  private MetadataSnapshot getSnapshot() {
+    final GatewayServices gatewayServices = (GatewayServices) request.getServletContext().getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+    if (gatewayServices == null) {
+      return null;
     }
-    return pinnedTopologies.contains(topologyName);
+    final GatewayConfig config = (GatewayConfig) request.getServletContext().getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
+    return getSnapshotTracker(request.getServletContext(), gatewayServices, config).getSnapshot();
   }
 
-  private Metadata getServiceMetadata(ServiceDefinitionRegistry serviceDefinitionRegistry, Service service) {
-    final Optional<ServiceDefinitionPair> serviceDefinition = serviceDefinitionRegistry.getServiceDefinitions().stream()
-        .filter(serviceDefinitionPair -> serviceDefinitionPair.getService().getRole().equalsIgnoreCase(service.getRole()))
-        .filter(serviceDefinitionPair -> service.getVersion() == null || service.getVersion().toString().equalsIgnoreCase(serviceDefinitionPair.getService().getVersion()))
-        .findFirst();
-    return serviceDefinition.isPresent() ? serviceDefinition.get().getService().getMetadata() : null;
+  private static MetadataSnapshotTracker getSnapshotTracker(ServletContext servletContext, GatewayServices gatewayServices, GatewayConfig config) {
+    synchronized (servletContext) {
+      MetadataSnapshotTracker tracker = (MetadataSnapshotTracker) servletContext.getAttribute(MetadataSnapshotTracker.SERVLET_CONTEXT_ATTRIBUTE);
+      if (tracker == null) {
+        tracker = new MetadataSnapshotTracker(config, gatewayServices.getService(ServiceType.TOPOLOGY_SERVICE),
+            gatewayServices.getService(ServiceType.SERVICE_DEFINITION_REGISTRY));
+        servletContext.setAttribute(MetadataSnapshotTracker.SERVLET_CONTEXT_ATTRIBUTE, tracker);
+      }
+      return tracker;
+    }
   }
 
-  private ServiceModel getServiceModel(HttpServletRequest request, String gatewayPath, String topologyName, Service service, Metadata serviceMetadata, String serviceUrl) {
-    final ServiceModel serviceModel = new ServiceModel();
-    serviceModel.setRequest(request);
-    serviceModel.setGatewayPath(gatewayPath);
-    serviceModel.setTopologyName(topologyName);
-    serviceModel.setService(service);
-    serviceModel.setServiceMetadata(serviceMetadata);
-    serviceModel.setServiceUrl(serviceUrl);
-    return serviceModel;
+  static boolean matchesEntityTag(String ifNoneMatch, EntityTag entityTag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String value = candidate.trim();
+      if ("*".equals(value)) {
+        return true;
+      }
+      if (value.startsWith("W/")) {
+        value = value.substring(2);
+      }
+      if (value.equals('"' + entityTag.getValue() + '"')) {
+        return true;
+      }
+    }
+    return false;
   }
 
   @GET
@@ -350,4 +354,31 @@ public class KnoxMetadataResource {
     }
   }
 
+  private static final class CertificateExports {
+    private final String keystorePath;
+    private final long keystoreModified;
+    private final Certificate[] certificateChain;
+    private final Map<String, java.nio.file.Path> files = new ConcurrentHashMap<>();
+
+    CertificateExports(String keystorePath, long keystoreModified, Certificate[] certificateChain) {
+      this.keystorePath = keystorePath;
+      this.keystoreModified = keystoreModified;
+      this.certificateChain = certificateChain;
+    }
+
+    boolean isCurrent(String path, long modified) {
+      return Objects.equals(keystorePath, path) && keystoreModified == modified;
+    }
+
+    java.nio.file.Path getFile(String type, Function<Certificate[], java.nio.file.Path> generator) {
+      java.nio.file.Path file = files.get(type);
+      if (file == null || !file.toFile().exists()) {
+        file = generator.apply(certificateChain);
+        if (file != null) {
+          files.put(type, file);
+        }
+      }
+      return file;
+    }
+  }
 }
@@ -17,6 +17,7 @@
  */
 package org.apache.knox.gateway.service.metadata;
 
+import org.apache.knox.gateway.deploy.DeploymentContext;
 import org.apache.knox.gateway.jersey.JerseyServiceDeploymentContributorBase;
 
 public class KnoxMetadataServiceDeploymentContributor extends JerseyServiceDeploymentContributorBase {
@@ -41,4 +42,10 @@ public class KnoxMetadataServiceDeploymentContributor extends JerseyServiceDeplo
     return new String[] { "*/**?**" };
   }
 
+  @Override
+  public void finalizeContribution(DeploymentContext context) {
+    super.finalizeContribution(context);
+    context.getWebAppDescriptor().createListener().listenerClass(MetadataSnapshotContextListener.class.getName());
+  }
+
 }
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.service.metadata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.service.definition.Metadata;
+import org.apache.knox.gateway.service.definition.ServiceDefinition;
+import org.apache.knox.gateway.service.definition.ServiceDefinitionPair;
+import org.apache.knox.gateway.services.registry.ServiceDefinitionRegistry;
+import org.apache.knox.gateway.topology.Service;
+import org.apache.knox.gateway.topology.Topology;
+import org.apache.knox.gateway.topology.TopologyEvent;
+
+/**
+ * An immutable view of the topologies and services listed on the homepage.
+ * <p>
+ * The services to list and their metadata are resolved once, when a topology or service
+ * definition changes, rather than on every request. Only the service URLs depend on the request,
+ * through the scheme, host and port it addressed the gateway with; the rendered topologies are
+ * cached per origin.
+ */
+final class MetadataSnapshot {
+  private static final Set<String> UNREAL_SERVICES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("NAMENODE", "JOBTRACKER", "RESOURCEMANAGERAPI")));
+  private static final int MAX_RENDERED_ENTRIES = 64;
+
+  private final String id;
+  private final long version;
+  private final Settings settings;
+  private final Map<String, List<ServiceDefinition>> serviceDefinitions;
+  private final Map<String, TopologyEntry> topologies;
+  private final Map<String, TopologyInformationWrapper> rendered = new ConcurrentHashMap<>();
+
+  private MetadataSnapshot(String id, long version, Settings settings, Map<String, List<ServiceDefinition>> serviceDefinitions,
+      Map<String, TopologyEntry> topologies) {
+    this.id = id;
+    this.version = version;
+    this.settings = settings;
+    this.serviceDefinitions = serviceDefinitions;
+    this.topologies = topologies;
+  }
+
+  /**
+   * @param id identifies the snapshots of this gateway instance in entity tags
+   * @param config the gateway configuration
+   * @param serviceDefinitionRegistry the registry of service definitions
+   * @param topologies the deployed topologies
+   * @return the initial snapshot
+   */
+  static MetadataSnapshot create(String id, GatewayConfig config, ServiceDefinitionRegistry serviceDefinitionRegistry, Collection<Topology> topologies) {
+    final Settings settings = new Settings(config);
+    final Map<String, List<ServiceDefinition>> serviceDefinitions = indexServiceDefinitions(serviceDefinitionRegistry);
+    final Map<String, TopologyEntry> entries = new TreeMap<>();
+    for (Topology topology : topologies) {
+      addTopology(entries, topology, settings, serviceDefinitions);
+    }
+    return new MetadataSnapshot(id, 0, settings, serviceDefinitions, entries);
+  }
+
+  /**
+   * @param events topology changes
+   * @return a snapshot that reflects the changes
+   */
+  MetadataSnapshot withTopologyEvents(List<TopologyEvent> events) {
+    final Map<String, TopologyEntry> entries = new TreeMap<>(topologies);
+    for (TopologyEvent event : events) {
+      entries.remove(event.getTopology().getName());
+      if (event.getType() != TopologyEvent.Type.DELETED) {
+        addTopology(entries, event.getTopology(), settings, serviceDefinitions);
+      }
+    }
+    return new MetadataSnapshot(id, version + 1, settings, serviceDefinitions, entries);
+  }
+
+  /**
+   * @param serviceDefinitionRegistry the registry of service definitions
+   * @return a snapshot that reflects the current service definitions
+   */
+  MetadataSnapshot withServiceDefinitions(ServiceDefinitionRegistry serviceDefinitionRegistry) {
+    final Map<String, List<ServiceDefinition>> definitions = indexServiceDefinitions(serviceDefinitionRegistry);
+    final Map<String, TopologyEntry> entries = new TreeMap<>();
+    for (TopologyEntry entry : topologies.values()) {
+      addTopology(entries, entry.topology, settings, definitions);
+    }
+    return new MetadataSnapshot(id, version + 1, settings, definitions, entries);
+  }
+
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * @param request the request
+   * @param topologyName the name of the requested topology; or <code>null</code> for all topologies
+   * @return a strong entity tag that changes whenever the response to the request would change
+   */
+  String getEntityTag(HttpServletRequest request, String topologyName) {
+    final String variant = renderKey(request, topologyName) + '|' + request.getHeader("Accept");
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-256").digest(variant.getBytes(UTF_8));
+      return id + '-' + version + '-' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param request the request
+   * @param topologyName the name of the requested topology; or <code>null</code> for all topologies
+   * @return the topologies with their services
+   */
+  TopologyInformationWrapper render(HttpServletRequest request, String topologyName) {
+    final String key = renderKey(request, topologyName);
+    TopologyInformationWrapper wrapper = rendered.get(key);
+    if (wrapper == null) {
+      wrapper = doRender(request, topologyName);
+      if (rendered.size() < MAX_RENDERED_ENTRIES) {
+        final TopologyInformationWrapper existing = rendered.putIfAbsent(key, wrapper);
+        if (existing != null) {
+          wrapper = existing;
+        }
+      }
+    }
+    return wrapper;
+  }
+
+  private TopologyInformationWrapper doRender(HttpServletRequest request, String topologyName) {
+    final TopologyInformationWrapper wrapper = new TopologyInformationWrapper();
+    for (TopologyEntry entry : topologies.values()) {
+      if (topologyName == null || entry.topology.getName().equalsIgnoreCase(topologyName)) {
+        final Set<ServiceModel> apiServices = new HashSet<>();
+        final Set<ServiceModel> uiServices = new HashSet<>();
+        for (ServiceEntry serviceEntry : entry.services) {
+          addService(apiServices, uiServices, serviceEntry.toModel(request, settings.gatewayPath, entry.topology.getName()));
+        }
+        wrapper.addTopology(entry.topology.getName(), entry.pinned, settings.apiServicesViewVersion, new TreeSet<>(apiServices), new TreeSet<>(uiServices));
+      }
+    }
+    return wrapper;
+  }
+
+  private static String renderKey(HttpServletRequest request, String topologyName) {
+    return request.getScheme() + "://" + request.getServerName() + ':' + request.getServerPort()
+        + '/' + (topologyName == null ? "" : topologyName.toLowerCase(Locale.ROOT));
+  }
+
+  private static void addService(Set<ServiceModel> apiServices, Set<ServiceModel> uiServices, ServiceModel model) {
+    switch (model.getType()) {
+      case UI -> uiServices.add(model);
+      case API_AND_UI -> {
+        uiServices.add(model);
+        apiServices.add(model);
+      }
+      default -> apiServices.add(model);
+    }
+  }
+
+  private static void addTopology(Map<String, TopologyEntry> entries, Topology topology, Settings settings,
+      Map<String, List<ServiceDefinition>> serviceDefinitions) {
+    if (settings.hiddenTopologies.contains(topology.getName())) {
+      return;
+    }
+    final List<ServiceEntry> services = new ArrayList<>();
+    topology.getServices().stream().filter(service -> !UNREAL_SERVICES.contains(service.getRole())).forEach(service -> {
+      if (!service.getUrls().isEmpty()) {
+        final Metadata metadata = getServiceMetadata(serviceDefinitions, service);
+        if (settings.groupUIServices) {
+          services.add(new ServiceEntry(service, metadata, null));
+        } else {
+          service.getUrls().forEach(serviceUrl -> services.add(new ServiceEntry(service, metadata, serviceUrl)));
+        }
+      }
+    });
+    entries.put(topology.getName(), new TopologyEntry(topology, settings.pinnedTopologies.contains(topology.getName()), services));
+  }
+
+  /* role (upper case) -> definitions, in the order of the registry */
+  private static Map<String, List<ServiceDefinition>> indexServiceDefinitions(ServiceDefinitionRegistry serviceDefinitionRegistry) {
+    final Map<String, List<ServiceDefinition>> index = new HashMap<>();
+    for (ServiceDefinitionPair serviceDefinitionPair : serviceDefinitionRegistry.getServiceDefinitions()) {
+      final ServiceDefinition serviceDefinition = serviceDefinitionPair.getService();
+      index.computeIfAbsent(serviceDefinition.getRole().toUpperCase(Locale.ROOT), role -> new ArrayList<>()).add(serviceDefinition);
+    }
+    return index;
+  }
+
+  private static Metadata getServiceMetadata(Map<String, List<ServiceDefinition>> serviceDefinitions, Service service) {
+    final List<ServiceDefinition> candidates = serviceDefinitions.get(service.getRole().toUpperCase(Locale.ROOT));
+    if (candidates != null) {
+      for (ServiceDefinition serviceDefinition : candidates) {
+        if (service.getVersion() == null || service.getVersion().toString().equalsIgnoreCase(serviceDefinition.getVersion())) {
+          return serviceDefinition.getMetadata();
+        }
+      }
+    }
+    return null;
+  }
+
+  private static final class Settings {
+    final Set<String> hiddenTopologies;
+    final Set<String> pinnedTopologies;
+    final boolean groupUIServices;
+    final String apiServicesViewVersion;
+    final String gatewayPath;
+
+    Settings(GatewayConfig config) {
+      this.hiddenTopologies = config.getHiddenTopologiesOnHomepage();
+      this.pinnedTopologies = config.getPinnedTopologiesOnHomepage();
+      this.groupUIServices = config.getGroupUIServicesOnHomepage();
+      this.apiServicesViewVersion = config.getApiServicesViewVersionOnHomepage();
+      this.gatewayPath = config.getGatewayPath();
+    }
+  }
+
+  private static final class TopologyEntry {
+    final Topology topology;
+    final boolean pinned;
+    final List<ServiceEntry> services;
+
+    TopologyEntry(Topology topology, boolean pinned, List<ServiceEntry> services) {
+      this.topology = topology;
+      this.pinned = pinned;
+      this.services = services;
+    }
+  }
+
+  private static final class ServiceEntry {
+    final Service service;
+    final Metadata metadata;
+    final String serviceUrl;
+
+    ServiceEntry(Service service, Metadata metadata, String serviceUrl) {
+      this.service = service;
+      this.metadata = metadata;
+      this.serviceUrl = serviceUrl;
+    }
+
+    ServiceModel toModel(HttpServletRequest request, String gatewayPath, String topologyName) {
+      final ServiceModel serviceModel = new ServiceModel();
+      serviceModel.setRequest(request);
+      serviceModel.setGatewayPath(gatewayPath);
+      serviceModel.setTopologyName(topologyName);
+      serviceModel.setService(service);
+      serviceModel.setServiceMetadata(metadata);
+      serviceModel.setServiceUrl(serviceUrl);
+      return serviceModel;
+    }
+  }
+}
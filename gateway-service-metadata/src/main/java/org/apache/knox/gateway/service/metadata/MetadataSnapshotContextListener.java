@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.service.metadata;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Closes the {@link MetadataSnapshotTracker} of a deployment when it is undeployed.
+ */
+public class MetadataSnapshotContextListener implements ServletContextListener {
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    // the tracker is created on the first request
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    synchronized (sce.getServletContext()) {
+      final MetadataSnapshotTracker tracker = (MetadataSnapshotTracker) sce.getServletContext().getAttribute(MetadataSnapshotTracker.SERVLET_CONTEXT_ATTRIBUTE);
+      if (tracker != null) {
+        tracker.close();
+        sce.getServletContext().removeAttribute(MetadataSnapshotTracker.SERVLET_CONTEXT_ATTRIBUTE);
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.service.metadata;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.service.definition.ServiceDefinitionChangeListener;
+import org.apache.knox.gateway.services.registry.ServiceDefinitionRegistry;
+import org.apache.knox.gateway.services.topology.TopologyService;
+import org.apache.knox.gateway.topology.TopologyEvent;
+import org.apache.knox.gateway.topology.TopologyListener;
+
+/**
+ * Keeps the {@link MetadataSnapshot} current by applying topology and service definition changes.
+ * <p>
+ * One tracker is kept per deployment of the service, in its servlet context, and closed when the
+ * deployment is destroyed.
+ */
+class MetadataSnapshotTracker implements TopologyListener, ServiceDefinitionChangeListener {
+  static final String SERVLET_CONTEXT_ATTRIBUTE = MetadataSnapshotTracker.class.getName();
+
+  private final TopologyService topologyService;
+  private final ServiceDefinitionRegistry serviceDefinitionRegistry;
+  private final AtomicReference<MetadataSnapshot> snapshot = new AtomicReference<>();
+
+  MetadataSnapshotTracker(GatewayConfig config, TopologyService topologyService, ServiceDefinitionRegistry serviceDefinitionRegistry) {
+    this.topologyService = topologyService;
+    this.serviceDefinitionRegistry = serviceDefinitionRegistry;
+    // Listeners are registered first and wait for the initial snapshot, so no change is missed
+    synchronized (this) {
+      topologyService.addTopologyChangeListener(this);
+      serviceDefinitionRegistry.addServiceDefinitionChangeListener(this);
+      snapshot.set(MetadataSnapshot.create(Long.toHexString(ThreadLocalRandom.current().nextLong()), config, serviceDefinitionRegistry,
+          topologyService.getTopologies()));
+    }
+  }
+
+  MetadataSnapshot getSnapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * Stops tracking changes, so that the services no longer reference this tracker.
+   */
+  void close() {
+    topologyService.removeTopologyChangeListener(this);
+    serviceDefinitionRegistry.removeServiceDefinitionChangeListener(this);
+  }
+
+  @Override
+  public synchronized void handleTopologyEvent(List<TopologyEvent> events) {
+    snapshot.set(snapshot.get().withTopologyEvents(events));
+  }
+
+  @Override
+  public synchronized void onServiceDefinitionChange(String name, String role, String version) {
+    snapshot.set(snapshot.get().withServiceDefinitions(serviceDefinitionRegistry));
+  }
+}
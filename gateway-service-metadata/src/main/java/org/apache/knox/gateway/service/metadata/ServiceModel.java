@@ -61,15 +61,23 @@ public class ServiceModel implements Comparable<ServiceModel> {
     API, UI, API_AND_UI, UNKNOWN
   };
 
-  private HttpServletRequest request;
+  private String scheme;
+  private String serverName;
+  private int serverPort;
   private String topologyName;
   private String gatewayPath;
   private Service service;
   private Metadata serviceMetadata;
   private String serviceUrl;
 
+  /*
+   * Only the origin of the request is kept, so models can be cached and shared between requests
+   * that address the gateway the same way
+   */
   public void setRequest(HttpServletRequest request) {
-    this.request = request;
+    this.scheme = request.getScheme();
+    this.serverName = request.getServerName();
+    this.serverPort = request.getServerPort();
   }
 
   public void setTopologyName(String topologyName) {
@@ -136,9 +144,9 @@ public class ServiceModel implements Comparable<ServiceModel> {
     final String context = getContext();
 
     if (HIVE_SERVICE_NAME.equals(getServiceName())) {
-      resolvedServiceUrls.add(format(ROOT, HIVE_SERVICE_URL_TEMPLATE, request.getServerName(), request.getServerPort(), gatewayPath, topologyName));
+      resolvedServiceUrls.add(format(ROOT, HIVE_SERVICE_URL_TEMPLATE, serverName, serverPort, gatewayPath, topologyName));
     } else if (IMPALA_SERVICE_NAME.equals(getServiceName())) {
-      resolvedServiceUrls.add(format(ROOT, IMPALA_SERVICE_URL_TEMPLATE, request.getServerName(), request.getServerPort(), gatewayPath, topologyName));
+      resolvedServiceUrls.add(format(ROOT, IMPALA_SERVICE_URL_TEMPLATE, serverName, serverPort, gatewayPath, topologyName));
     } else {
       if(serviceUrl != null) {
         resolvedServiceUrls.add(getServiceUrl(context, serviceUrl));
@@ -158,7 +166,7 @@ public class ServiceModel implements Comparable<ServiceModel> {
 
   private String getServiceUrl(String context, String serviceUrl) {
     final String resolvedContext = resolvePlaceholdersFromBackendUrl(context, serviceUrl);
-    return String.format(Locale.ROOT, SERVICE_URL_TEMPLATE, request.getScheme(), request.getServerName(), request.getServerPort(), gatewayPath, topologyName, resolvedContext);
+    return String.format(Locale.ROOT, SERVICE_URL_TEMPLATE, scheme, serverName, serverPort, gatewayPath, topologyName, resolvedContext);
   }
 
   private String resolvePlaceholdersFromBackendUrl(String resolveable, String serviceUrl) {
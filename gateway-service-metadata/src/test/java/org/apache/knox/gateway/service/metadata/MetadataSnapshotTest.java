@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.service.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.services.registry.ServiceDefinitionRegistry;
+import org.apache.knox.gateway.services.topology.TopologyService;
+import org.apache.knox.gateway.topology.Service;
+import org.apache.knox.gateway.topology.Topology;
+import org.apache.knox.gateway.topology.TopologyEvent;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+public class MetadataSnapshotTest {
+
+  @Test
+  public void shouldRenderVisibleTopologiesOnly() throws Exception {
+    final MetadataSnapshot snapshot = createSnapshot(createTopology("sandbox", "WEBHDFS"), createTopology("hidden", "WEBHDFS"));
+    final TopologyInformationWrapper wrapper = snapshot.render(createRequest("localhost", "*/*"), null);
+    assertEquals(1, wrapper.getTopologies().size());
+    final TopologyInformation topology = wrapper.getTopologies().iterator().next();
+    assertEquals("sandbox", topology.getTopologyName());
+    assertTrue(topology.isPinned());
+    assertEquals(1, topology.getApiServices().size());
+    assertEquals("https://localhost:8443/gateway/sandbox/webhdfs", topology.getApiServices().iterator().next().getServiceUrls().get(0));
+  }
+
+  @Test
+  public void shouldRenderServiceUrlsWithTheRequestedOrigin() throws Exception {
+    final MetadataSnapshot snapshot = createSnapshot(createTopology("sandbox", "WEBHDFS"));
+    final TopologyInformationWrapper local = snapshot.render(createRequest("localhost", "*/*"), "sandbox");
+    final TopologyInformationWrapper remote = snapshot.render(createRequest("knox.example.com", "*/*"), "sandbox");
+    assertEquals("https://knox.example.com:8443/gateway/sandbox/webhdfs",
+        remote.getTopologies().iterator().next().getApiServices().iterator().next().getServiceUrls().get(0));
+    assertNotEquals(local, remote);
+    assertSame(local, snapshot.render(createRequest("localhost", "*/*"), "sandbox"));
+  }
+
+  @Test
+  public void shouldApplyTopologyEvents() throws Exception {
+    final MetadataSnapshot snapshot = createSnapshot(createTopology("sandbox", "WEBHDFS"));
+    final MetadataSnapshot updated = snapshot.withTopologyEvents(Arrays.asList(
+        new TopologyEvent(TopologyEvent.Type.CREATED, createTopology("other", "HIVE")),
+        new TopologyEvent(TopologyEvent.Type.DELETED, createTopology("sandbox"))));
+    assertEquals(snapshot.getVersion() + 1, updated.getVersion());
+    final TopologyInformationWrapper wrapper = updated.render(createRequest("localhost", "*/*"), null);
+    assertEquals(1, wrapper.getTopologies().size());
+    assertEquals("other", wrapper.getTopologies().iterator().next().getTopologyName());
+    assertEquals(1, snapshot.render(createRequest("localhost", "*/*"), null).getTopologies().size());
+    assertEquals("sandbox", snapshot.render(createRequest("localhost", "*/*"), null).getTopologies().iterator().next().getTopologyName());
+  }
+
+  @Test
+  public void shouldChangeEntityTagWithVersionAndVariant() throws Exception {
+    final MetadataSnapshot snapshot = createSnapshot(createTopology("sandbox", "WEBHDFS"));
+    final String tag = snapshot.getEntityTag(createRequest("localhost", "application/json"), null);
+    assertEquals(tag, snapshot.getEntityTag(createRequest("localhost", "application/json"), null));
+    assertNotEquals(tag, snapshot.getEntityTag(createRequest("localhost", "application/xml"), null));
+    assertNotEquals(tag, snapshot.getEntityTag(createRequest("knox.example.com", "application/json"), null));
+    assertNotEquals(tag, snapshot.getEntityTag(createRequest("localhost", "application/json"), "sandbox"));
+    assertNotEquals(tag, snapshot.withTopologyEvents(Collections.emptyList()).getEntityTag(createRequest("localhost", "application/json"), null));
+  }
+
+  @Test
+  public void shouldMatchEntityTags() throws Exception {
+    assertTrue(KnoxMetadataResource.matchesEntityTag("\"abc\"", new EntityTag("abc")));
+    assertTrue(KnoxMetadataResource.matchesEntityTag("\"xyz\", \"abc\"", new EntityTag("abc")));
+    assertTrue(KnoxMetadataResource.matchesEntityTag("W/\"abc\"", new EntityTag("abc")));
+    assertTrue(KnoxMetadataResource.matchesEntityTag("*", new EntityTag("abc")));
+    assertFalse(KnoxMetadataResource.matchesEntityTag("\"abd\"", new EntityTag("abc")));
+    assertFalse(KnoxMetadataResource.matchesEntityTag(null, new EntityTag("abc")));
+  }
+
+  @Test
+  public void shouldStopTrackingChangesWhenTheDeploymentIsDestroyed() throws Exception {
+    final GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    final ServiceDefinitionRegistry registry = EasyMock.createNiceMock(ServiceDefinitionRegistry.class);
+    EasyMock.expect(registry.getServiceDefinitions()).andReturn(Collections.emptySet()).anyTimes();
+    final TopologyService topologyService = EasyMock.createNiceMock(TopologyService.class);
+    EasyMock.expect(topologyService.getTopologies()).andReturn(Collections.emptyList()).anyTimes();
+    EasyMock.replay(config, registry, topologyService);
+    final MetadataSnapshotTracker tracker = new MetadataSnapshotTracker(config, topologyService, registry);
+
+    EasyMock.reset(registry, topologyService);
+    topologyService.removeTopologyChangeListener(tracker);
+    EasyMock.expectLastCall();
+    registry.removeServiceDefinitionChangeListener(tracker);
+    EasyMock.expectLastCall();
+    final ServletContext servletContext = EasyMock.createMock(ServletContext.class);
+    EasyMock.expect(servletContext.getAttribute(MetadataSnapshotTracker.SERVLET_CONTEXT_ATTRIBUTE)).andReturn(tracker);
+    servletContext.removeAttribute(MetadataSnapshotTracker.SERVLET_CONTEXT_ATTRIBUTE);
+    EasyMock.expectLastCall();
+    EasyMock.replay(registry, topologyService, servletContext);
+
+    new MetadataSnapshotContextListener().contextDestroyed(new ServletContextEvent(servletContext));
+
+    EasyMock.verify(registry, topologyService, servletContext);
+  }
+
+  private static MetadataSnapshot createSnapshot(Topology... topologies) {
+    final GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(config.getHiddenTopologiesOnHomepage()).andReturn(Collections.singleton("hidden")).anyTimes();
+    EasyMock.expect(config.getPinnedTopologiesOnHomepage()).andReturn(Collections.singleton("sandbox")).anyTimes();
+    EasyMock.expect(config.getGatewayPath()).andReturn("gateway").anyTimes();
+    final ServiceDefinitionRegistry registry = EasyMock.createNiceMock(ServiceDefinitionRegistry.class);
+    EasyMock.expect(registry.getServiceDefinitions()).andReturn(Collections.emptySet()).anyTimes();
+    EasyMock.replay(config, registry);
+    return MetadataSnapshot.create("test", config, registry, Arrays.asList(topologies));
+  }
+
+  private static Topology createTopology(String name, String... roles) {
+    final Topology topology = new Topology();
+    topology.setName(name);
+    for (String role : roles) {
+      final Service service = new Service();
+      service.setRole(role);
+      service.addUrl("http://" + role.toLowerCase(Locale.ROOT) + ":1234");
+      topology.addService(service);
+    }
+    return topology;
+  }
+
+  private static HttpServletRequest createRequest(String serverName, String accept) {
+    final HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+    EasyMock.expect(request.getScheme()).andReturn("https").anyTimes();
+    EasyMock.expect(request.getServerName()).andReturn(serverName).anyTimes();
+    EasyMock.expect(request.getServerPort()).andReturn(8443).anyTimes();
+    EasyMock.expect(request.getHeader("Accept")).andReturn(accept).anyTimes();
+    EasyMock.replay(request);
+    return request;
+  }
+}
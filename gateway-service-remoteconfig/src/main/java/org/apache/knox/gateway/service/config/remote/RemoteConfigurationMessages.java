@@ -42,4 +42,11 @@ public interface RemoteConfigurationMessages {
     @Message(level = MessageLevel.ERROR, text = "An error occurred setting the ACL for remote configuration {0} : {1}")
     void errorSettingEntryACL(String path,
                               @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+    @Message(level = MessageLevel.INFO, text = "Mirroring the remote configuration registry entries under {0}")
+    void mirroringRemoteConfigRegistryEntries(String path);
+
+    @Message(level = MessageLevel.WARN,
+             text = "Lost the connection of the mirror of {0}, reading from the remote configuration registry until it reconnects")
+    void remoteConfigRegistryMirrorDisconnected(String path);
 }
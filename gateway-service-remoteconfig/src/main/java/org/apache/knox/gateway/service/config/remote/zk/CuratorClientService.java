@@ -16,17 +16,17 @@
  */
 package org.apache.knox.gateway.service.config.remote.zk;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
 import org.apache.curator.framework.api.ACLProvider;
 import org.apache.curator.framework.imps.DefaultACLProvider;
 import org.apache.curator.framework.recipes.cache.ChildData;
-import org.apache.curator.framework.recipes.cache.NodeCache;
-import org.apache.curator.framework.recipes.cache.NodeCacheListener;
-import org.apache.curator.framework.recipes.cache.PathChildrenCache;
-import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
-import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.knox.gateway.config.ConfigurationException;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
@@ -38,6 +38,7 @@ import org.apache.knox.gateway.services.config.client.RemoteConfigurationRegistr
 import org.apache.knox.gateway.services.config.client.RemoteConfigurationRegistryClient.ChildEntryListener;
 import org.apache.knox.gateway.services.config.client.RemoteConfigurationRegistryClient.EntryListener;
 import org.apache.knox.gateway.services.security.AliasService;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.client.ZKClientConfig;
 import org.apache.zookeeper.data.ACL;
@@ -48,8 +49,12 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 /**
  * RemoteConfigurationRegistryClientService implementation that employs the Curator ZooKeeper client framework.
@@ -65,8 +70,18 @@ class CuratorClientService implements ZooKeeperClientService {
 
     private Map<String, RemoteConfigurationRegistryClient> clients = new HashMap<>();
 
+    static final String CACHE_HITS_COUNTER = "remote.configuration.registry.cache.hits";
+
+    static final String CACHE_MISSES_COUNTER = "remote.configuration.registry.cache.misses";
+
     private AliasService aliasService;
 
+    private Supplier<MetricRegistry> metricRegistrySupplier;
+
+    // registry reads served from the local mirrors, i.e. the round trips avoided, and the ones which were not
+    private final Counter cacheHits = new Counter();
+
+    private final Counter cacheMisses = new Counter();
 
     @Override
     public void init(GatewayConfig config, Map<String, String> options) throws ServiceLifecycleException {
@@ -100,8 +115,20 @@ class CuratorClientService implements ZooKeeperClientService {
         this.aliasService = aliasService;
     }
 
+    @Override
+    public void setMetricRegistrySupplier(Supplier<MetricRegistry> metricRegistrySupplier) {
+        this.metricRegistrySupplier = metricRegistrySupplier;
+    }
+
     @Override
     public void start() throws ServiceLifecycleException {
+        MetricRegistry metricRegistry = metricRegistrySupplier == null ? null : metricRegistrySupplier.get();
+        if (metricRegistry != null) {
+            metricRegistry.remove(CACHE_HITS_COUNTER);
+            metricRegistry.register(CACHE_HITS_COUNTER, cacheHits);
+            metricRegistry.remove(CACHE_MISSES_COUNTER);
+            metricRegistry.register(CACHE_MISSES_COUNTER, cacheMisses);
+        }
     }
 
     @Override
@@ -145,7 +172,7 @@ class CuratorClientService implements ZooKeeperClientService {
 
         client.start();
 
-        return (new ClientAdapter(client, config));
+        return (new ClientAdapter(client, config, cacheHits, cacheMisses));
     }
 
 
@@ -160,15 +187,30 @@ class CuratorClientService implements ZooKeeperClientService {
 
     private static final class ClientAdapter implements RemoteConfigurationRegistryClient {
 
+        // the mzxid recorded for a pending delete
+        private static final long DELETED = -1L;
+
         private CuratorFramework delegate;
 
         private RemoteConfigurationRegistryConfig config;
 
-        private Map<String, NodeCache> entryNodeCaches = new HashMap<>();
+        // local mirrors of the subtrees the listeners subscribed to
+        private final List<RegistryTreeCache> caches = new CopyOnWriteArrayList<>();
+
+        private final Map<String, List<Subscription>> subscriptions = new HashMap<>();
+
+        // writes of this client, by path, which the mirrors did not catch up with yet
+        private final Map<String, Long> pendingWrites = new ConcurrentHashMap<>();
+
+        private final Counter cacheHits;
 
-        ClientAdapter(CuratorFramework delegate, RemoteConfigurationRegistryConfig config) {
+        private final Counter cacheMisses;
+
+        ClientAdapter(CuratorFramework delegate, RemoteConfigurationRegistryConfig config, Counter cacheHits, Counter cacheMisses) {
             this.delegate = delegate;
             this.config = config;
+            this.cacheHits = cacheHits;
+            this.cacheMisses = cacheMisses;
         }
 
         @Override
@@ -183,6 +225,10 @@ class CuratorClientService implements ZooKeeperClientService {
 
         @Override
         public boolean entryExists(String path) {
+            RegistryTreeCache cache = readableCache(path, false);
+            if (cache != null) {
+                return cache.getCurrentData(path) != null;
+            }
             Stat s = null;
             try {
                 s = delegate.checkExists().forPath(path);
@@ -236,6 +282,11 @@ class CuratorClientService implements ZooKeeperClientService {
         @Override
         public List<String> listChildEntries(String path) {
             List<String> result = null;
+            RegistryTreeCache cache = readableCache(path, true);
+            if (cache != null) {
+                Map<String, ChildData> children = cache.getCurrentChildren(path);
+                return children != null ? new ArrayList<>(children.keySet()) : null;
+            }
             try {
                 result = delegate.getChildren().forPath(path);
             } catch (Exception e) {
@@ -246,24 +297,139 @@ class CuratorClientService implements ZooKeeperClientService {
 
         @Override
         public void addChildEntryListener(String path, ChildEntryListener listener) throws Exception {
-            PathChildrenCache childCache = new PathChildrenCache(delegate, path, false);
-            childCache.getListenable().addListener(new ChildEntryListenerAdapter(this, listener));
-            childCache.start();
+            // Like a PathChildrenCache, mirror the data of the direct children only
+            RegistryTreeCache cache = subscribe(path, 1, new ChildEntryListenerAdapter(this, path, listener), true);
+            // Report the children which were already mirrored before this listener was attached
+            Map<String, ChildData> children = cache.getCurrentChildren(path);
+            if (children != null) {
+                for (ChildData child : children.values()) {
+                    listener.childEvent(this, ChildEntryListener.Type.ADDED, child.getPath());
+                }
+            }
         }
 
         @Override
         public void addEntryListener(String path, EntryListener listener) throws Exception {
-            NodeCache nodeCache = new NodeCache(delegate, path);
-            nodeCache.getListenable().addListener(new EntryListenerAdapter(this, nodeCache, listener));
-            nodeCache.start();
-            entryNodeCaches.put(path, nodeCache);
+            RegistryTreeCache cache = subscribe(path, 0, new EntryListenerAdapter(this, path, listener), false);
+            // Report the data which was already mirrored before this listener was attached
+            ChildData current = cache.getCurrentData(path);
+            if (current != null) {
+                listener.entryChanged(this, path, current.getData());
+            }
         }
 
+        /*
+         * Detaches the entry listeners of the path; the child listeners of the path stay attached until the client is
+         * closed, as the registry client has no means to remove them.
+         */
         @Override
         public void removeEntryListener(String path) throws Exception {
-            NodeCache nodeCache = entryNodeCaches.remove(path);
-            if (nodeCache != null) {
-                nodeCache.close();
+            synchronized (subscriptions) {
+                List<Subscription> subscribed = subscriptions.get(path);
+                if (subscribed == null) {
+                    return;
+                }
+                for (Iterator<Subscription> it = subscribed.iterator(); it.hasNext();) {
+                    Subscription subscription = it.next();
+                    if (!subscription.child) {
+                        it.remove();
+                        if (subscription.cache.removeListener(subscription.listener) == 0) {
+                            caches.remove(subscription.cache);
+                            subscription.cache.close();
+                        }
+                    }
+                }
+                if (subscribed.isEmpty()) {
+                    subscriptions.remove(path);
+                }
+            }
+        }
+
+        /*
+         * Attaches the listener to the mirror covering the path, the mirror is created if there is none yet.
+         */
+        private RegistryTreeCache subscribe(String path, int depth, TreeCacheListener listener, boolean child) throws Exception {
+            synchronized (subscriptions) {
+                RegistryTreeCache cache = null;
+                for (RegistryTreeCache each : caches) {
+                    if (depth == 0 ? each.covers(path) : each.coversChildren(path)) {
+                        cache = each;
+                        break;
+                    }
+                }
+                if (cache == null) {
+                    cache = new RegistryTreeCache(delegate, path, depth, this::onMirroredNodeChanged);
+                    caches.add(cache);
+                    cache.start();
+                }
+                cache.addListener(listener);
+                subscriptions.computeIfAbsent(path, p -> new ArrayList<>()).add(new Subscription(cache, listener, child));
+                return cache;
+            }
+        }
+
+        /*
+         * @return the mirror the path can be read from, or null if it has to be read from the registry
+         */
+        private RegistryTreeCache readableCache(String path, boolean children) {
+            for (RegistryTreeCache cache : caches) {
+                if (cache.isAuthoritative()
+                        && (children ? cache.coversChildren(path) : cache.covers(path))
+                        && !isWritePending(cache, path, children)) {
+                    cacheHits.inc();
+                    return cache;
+                }
+            }
+            cacheMisses.inc();
+            return null;
+        }
+
+        /*
+         * A read served from a mirror must reflect the preceding writes of this client, which are not necessarily
+         * mirrored yet by the time the write returns.
+         */
+        private boolean isWritePending(RegistryTreeCache cache, String path, boolean children) {
+            if (pendingWrites.isEmpty()) {
+                return false;
+            }
+            if (!children) {
+                return !isMirrored(cache, path);
+            }
+            for (String pendingPath : pendingWrites.keySet()) {
+                if (path.equals(ZKPaths.getPathAndNode(pendingPath).getPath()) && !isMirrored(cache, pendingPath)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isMirrored(RegistryTreeCache cache, String path) {
+            Long mzxid = pendingWrites.get(path);
+            if (mzxid == null) {
+                return true;
+            }
+            ChildData data = cache.getCurrentData(path);
+            boolean mirrored = (mzxid == DELETED) ? data == null : data != null && data.getStat().getMzxid() >= mzxid;
+            if (mirrored) {
+                pendingWrites.remove(path, mzxid);
+            }
+            return mirrored;
+        }
+
+        private void onMirroredNodeChanged(String path) {
+            for (RegistryTreeCache cache : caches) {
+                if (cache.covers(path)) {
+                    isMirrored(cache, path);
+                }
+            }
+        }
+
+        private void writeCompleted(String path, long mzxid) {
+            for (RegistryTreeCache cache : caches) {
+                if (cache.covers(path)) {
+                    pendingWrites.put(path, mzxid);
+                    return;
+                }
             }
         }
 
@@ -286,7 +452,14 @@ class CuratorClientService implements ZooKeeperClientService {
         public String getEntryData(String path, String encoding) {
             String result = null;
             try {
-                byte[] data = delegate.getData().forPath(path);
+                byte[] data;
+                RegistryTreeCache cache = readableCache(path, false);
+                if (cache != null) {
+                    ChildData current = cache.getCurrentData(path);
+                    data = current != null ? current.getData() : null;
+                } else {
+                    data = delegate.getData().forPath(path);
+                }
                 if (data != null) {
                     result = new String(data, Charset.forName(encoding));
                 }
@@ -317,9 +490,12 @@ class CuratorClientService implements ZooKeeperClientService {
                 } else {
                     dataBytes = data.getBytes(encoding);
                 }
-                if (delegate.checkExists().forPath(path) == null) {
-                    delegate.create().forPath(path, dataBytes);
-                }
+                // Create it right away, rather than checking for its existence first
+                Stat stat = new Stat();
+                delegate.create().storingStatIn(stat).forPath(path, dataBytes);
+                writeCompleted(path, stat.getMzxid());
+            } catch (KeeperException.NodeExistsException e) {
+                // Already exists, leave it as is
             } catch (Exception e) {
                 log.errorInteractingWithRemoteConfigRegistry(e);
             }
@@ -337,6 +513,7 @@ class CuratorClientService implements ZooKeeperClientService {
                 Stat s = delegate.setData().forPath(path, data.getBytes(Charset.forName(encoding)));
                 if (s != null) {
                     version = s.getVersion();
+                    writeCompleted(path, s.getMzxid());
                 }
             } catch (Exception e) {
                 log.errorInteractingWithRemoteConfigRegistry(e);
@@ -348,6 +525,7 @@ class CuratorClientService implements ZooKeeperClientService {
         public void deleteEntry(String path) {
             try {
                 delegate.delete().forPath(path);
+                writeCompleted(path, DELETED);
             } catch (Exception e) {
                 log.errorInteractingWithRemoteConfigRegistry(e);
             }
@@ -355,8 +533,27 @@ class CuratorClientService implements ZooKeeperClientService {
 
         @Override
         public void close() throws Exception {
+            synchronized (subscriptions) {
+                subscriptions.clear();
+                for (RegistryTreeCache cache : caches) {
+                    cache.close();
+                }
+                caches.clear();
+            }
             delegate.close();
         }
+
+        private static final class Subscription {
+            private final RegistryTreeCache cache;
+            private final TreeCacheListener listener;
+            private final boolean child;
+
+            Subscription(RegistryTreeCache cache, TreeCacheListener listener, boolean child) {
+                this.cache = cache;
+                this.listener = listener;
+                this.child = child;
+            }
+        }
     }
 
     /**
@@ -385,71 +582,69 @@ class CuratorClientService implements ZooKeeperClientService {
         }
     }
 
-    private static final class ChildEntryListenerAdapter implements PathChildrenCacheListener {
+    private static final class ChildEntryListenerAdapter implements TreeCacheListener {
         private RemoteConfigurationRegistryClient client;
+        private String parentPath;
         private ChildEntryListener delegate;
 
-        ChildEntryListenerAdapter(RemoteConfigurationRegistryClient client, ChildEntryListener delegate) {
+        ChildEntryListenerAdapter(RemoteConfigurationRegistryClient client, String parentPath, ChildEntryListener delegate) {
             this.client = client;
+            this.parentPath = parentPath;
             this.delegate = delegate;
         }
 
         @Override
-        public void childEvent(CuratorFramework curatorFramework, PathChildrenCacheEvent pathChildrenCacheEvent)
-                throws Exception {
-            ChildData childData = pathChildrenCacheEvent.getData();
-            if (childData != null) {
-                ChildEntryListener.Type eventType = adaptType(pathChildrenCacheEvent.getType());
+        public void childEvent(CuratorFramework curatorFramework, TreeCacheEvent treeCacheEvent) throws Exception {
+            ChildData childData = treeCacheEvent.getData();
+            // The mirror also reports the listened path itself
+            if (childData != null && parentPath.equals(ZKPaths.getPathAndNode(childData.getPath()).getPath())) {
+                ChildEntryListener.Type eventType = adaptType(treeCacheEvent.getType());
                 if (eventType != null) {
                     delegate.childEvent(client, eventType, childData.getPath());
                 }
             }
         }
 
-        private ChildEntryListener.Type adaptType(PathChildrenCacheEvent.Type type) {
+        private ChildEntryListener.Type adaptType(TreeCacheEvent.Type type) {
             ChildEntryListener.Type adapted = null;
 
             switch(type) {
-                case CHILD_ADDED:
+                case NODE_ADDED:
                     adapted = ChildEntryListener.Type.ADDED;
                     break;
-                case CHILD_REMOVED:
+                case NODE_REMOVED:
                     adapted = ChildEntryListener.Type.REMOVED;
                     break;
-                case CHILD_UPDATED:
+                case NODE_UPDATED:
                     adapted = ChildEntryListener.Type.UPDATED;
                     break;
+                default:
+                    break;
             }
 
             return adapted;
         }
     }
 
-    private static final class EntryListenerAdapter implements NodeCacheListener {
+    private static final class EntryListenerAdapter implements TreeCacheListener {
 
         private RemoteConfigurationRegistryClient client;
         private EntryListener delegate;
-        private NodeCache nodeCache;
+        private String path;
 
-        EntryListenerAdapter(RemoteConfigurationRegistryClient client, NodeCache nodeCache, EntryListener delegate) {
+        EntryListenerAdapter(RemoteConfigurationRegistryClient client, String path, EntryListener delegate) {
             this.client = client;
-            this.nodeCache = nodeCache;
+            this.path = path;
             this.delegate = delegate;
         }
 
         @Override
-        public void nodeChanged() throws Exception {
-            String path = null;
-            byte[] data = null;
-
-            ChildData cd = nodeCache.getCurrentData();
-            if (cd != null) {
-                path = cd.getPath();
-                data = cd.getData();
-            }
-
-            if (path != null) {
-                delegate.entryChanged(client, path, data);
+        public void childEvent(CuratorFramework curatorFramework, TreeCacheEvent treeCacheEvent) throws Exception {
+            ChildData cd = treeCacheEvent.getData();
+            if (cd != null && path.equals(cd.getPath())
+                    && (treeCacheEvent.getType() == TreeCacheEvent.Type.NODE_ADDED
+                        || treeCacheEvent.getType() == TreeCacheEvent.Type.NODE_UPDATED)) {
+                delegate.entryChanged(client, path, cd.getData());
             }
         }
     }
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.service.config.remote.zk;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.service.config.remote.RemoteConfigurationMessages;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A local, watch-maintained mirror of a registry subtree. The registry client listeners are attached to it, and reads
+ * of the paths it covers are served from memory while it is in sync with the registry.
+ */
+class RegistryTreeCache implements Closeable {
+
+    private static final RemoteConfigurationMessages log = MessagesFactory.get(RemoteConfigurationMessages.class);
+
+    private final String root;
+
+    private final int maxDepth;
+
+    private final TreeCache cache;
+
+    private final AtomicBoolean authoritative = new AtomicBoolean();
+
+    // the number of registry client listeners attached to this mirror
+    private int listenerCount;
+
+    RegistryTreeCache(CuratorFramework client, String root, int maxDepth, Consumer<String> nodeChangeHandler) {
+        this.root = root;
+        this.maxDepth = maxDepth;
+        this.cache = TreeCache.newBuilder(client, root).setCacheData(true).setMaxDepth(maxDepth).build();
+        this.cache.getListenable().addListener((curatorFramework, event) -> onEvent(event, nodeChangeHandler));
+    }
+
+    private void onEvent(TreeCacheEvent event, Consumer<String> nodeChangeHandler) {
+        switch (event.getType()) {
+            case INITIALIZED:
+            case CONNECTION_RECONNECTED:
+                authoritative.set(true);
+                break;
+            case CONNECTION_SUSPENDED:
+            case CONNECTION_LOST:
+                if (authoritative.getAndSet(false)) {
+                    log.remoteConfigRegistryMirrorDisconnected(root);
+                }
+                break;
+            default:
+                if (event.getData() != null) {
+                    nodeChangeHandler.accept(event.getData().getPath());
+                }
+        }
+    }
+
+    void start() throws Exception {
+        log.mirroringRemoteConfigRegistryEntries(root);
+        cache.start();
+    }
+
+    String getRoot() {
+        return root;
+    }
+
+    /**
+     * @return true if the mirror is in sync with the registry
+     */
+    boolean isAuthoritative() {
+        return authoritative.get();
+    }
+
+    /**
+     * @return true if the data of the given path is mirrored
+     */
+    boolean covers(String path) {
+        final int depth = relativeDepth(path);
+        return depth >= 0 && depth <= maxDepth;
+    }
+
+    /**
+     * @return true if the children of the given path are mirrored
+     */
+    boolean coversChildren(String path) {
+        final int depth = relativeDepth(path);
+        return depth >= 0 && depth < maxDepth;
+    }
+
+    private int relativeDepth(String path) {
+        if (root.equals(path)) {
+            return 0;
+        }
+        final String prefix = ZKPaths.PATH_SEPARATOR.equals(root) ? root : root + ZKPaths.PATH_SEPARATOR;
+        if (!path.startsWith(prefix)) {
+            return -1;
+        }
+        return ZKPaths.split(path).size() - ZKPaths.split(root).size();
+    }
+
+    ChildData getCurrentData(String path) {
+        return cache.getCurrentData(path);
+    }
+
+    Map<String, ChildData> getCurrentChildren(String path) {
+        return cache.getCurrentChildren(path);
+    }
+
+    void addListener(TreeCacheListener listener) {
+        cache.getListenable().addListener(listener);
+        listenerCount++;
+    }
+
+    /**
+     * @return the number of listeners still attached to this mirror
+     */
+    int removeListener(TreeCacheListener listener) {
+        cache.getListenable().removeListener(listener);
+        return --listenerCount;
+    }
+
+    @Override
+    public void close() {
+        authoritative.set(false);
+        cache.close();
+    }
+}
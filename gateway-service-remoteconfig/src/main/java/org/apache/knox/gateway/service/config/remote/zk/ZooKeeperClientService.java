@@ -16,12 +16,20 @@
  */
 package org.apache.knox.gateway.service.config.remote.zk;
 
+import com.codahale.metrics.MetricRegistry;
 import org.apache.knox.gateway.services.config.client.RemoteConfigurationRegistryClientService;
 
+import java.util.function.Supplier;
+
 public interface ZooKeeperClientService extends RemoteConfigurationRegistryClientService {
 
     String TYPE = "ZooKeeper";
 
     String AUTH_TYPE_KERBEROS = "Kerberos";
 
+    /**
+     * @param metricRegistrySupplier supplies the registry the client metrics are recorded in, once the service starts
+     */
+    void setMetricRegistrySupplier(Supplier<MetricRegistry> metricRegistrySupplier);
+
 }
@@ -17,10 +17,18 @@
 package org.apache.knox.gateway.service.config.remote.zk;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.test.TestingCluster;
@@ -112,4 +120,124 @@ public class RemoteConfigurationRegistryClientServiceUnsecureTest extends Remote
             doTestZooKeeperClient(setupClient, REGISTRY_CLIENT_NAME_2, clientService, false);
         }
     }
+
+    /*
+     * Test that reads of the subscribed subtrees are served from the local mirror, and reflect the preceding writes.
+     */
+    @Test
+    public void testReadsServedFromMirror() throws Exception {
+        final String REGISTRY_CLIENT_NAME = "mirrored-zk-registry-name";
+        final String DESCRIPTORS = "/knox/config/descriptors";
+        final String DESCRIPTOR = DESCRIPTORS + "/mirrored.json";
+
+        try (TestingCluster zkCluster = setupAndStartSecureTestZooKeeper(null, null)) {
+            CuratorFramework setupClient = initializeTestClientAndZNodes(zkCluster, null);
+
+            GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+            EasyMock.expect(config.getRemoteRegistryConfiguration(REGISTRY_CLIENT_NAME))
+                .andReturn(GatewayConfig.REMOTE_CONFIG_REGISTRY_TYPE + "=" + ZooKeeperClientService.TYPE + ";" +
+                           GatewayConfig.REMOTE_CONFIG_REGISTRY_ADDRESS + "=" + zkCluster.getConnectString())
+                .anyTimes();
+            EasyMock.expect(config.getRemoteRegistryConfigurationNames())
+                .andReturn(Collections.singletonList(REGISTRY_CLIENT_NAME)).anyTimes();
+            EasyMock.replay(config);
+
+            final MetricRegistry metricRegistry = new MetricRegistry();
+            ZooKeeperClientService clientService =
+                (ZooKeeperClientService) RemoteConfigurationRegistryClientServiceFactory.newInstance(config);
+            clientService.setAliasService(null);
+            clientService.setMetricRegistrySupplier(() -> metricRegistry);
+            clientService.init(config, null);
+            clientService.start();
+
+            RemoteConfigurationRegistryClient client = clientService.get(REGISTRY_CLIENT_NAME);
+            final List<String> added = new CopyOnWriteArrayList<>();
+            client.addChildEntryListener(DESCRIPTORS, (c, type, path) -> added.add(type + ":" + path));
+
+            final Counter hits = metricRegistry.counter(CuratorClientService.CACHE_HITS_COUNTER);
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (hits.getCount() == 0 && System.currentTimeMillis() < deadline) {
+                client.listChildEntries(DESCRIPTORS);
+                Thread.sleep(50);
+            }
+            assertTrue("Expected the subscribed subtree to be mirrored", hits.getCount() > 0);
+
+            // Own writes are visible right away
+            client.createEntry(DESCRIPTOR, "v1");
+            assertEquals("v1", client.getEntryData(DESCRIPTOR));
+            assertTrue(client.listChildEntries(DESCRIPTORS).contains("mirrored.json"));
+            client.setEntryData(DESCRIPTOR, "v2");
+            assertEquals("v2", client.getEntryData(DESCRIPTOR));
+
+            // Changes made by others are mirrored
+            setupClient.setData().forPath(DESCRIPTOR, "v3".getBytes(StandardCharsets.UTF_8));
+            while (!"v3".equals(client.getEntryData(DESCRIPTOR)) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals("v3", client.getEntryData(DESCRIPTOR));
+
+            client.deleteEntry(DESCRIPTOR);
+            assertFalse(client.entryExists(DESCRIPTOR));
+            assertFalse(client.listChildEntries(DESCRIPTORS).contains("mirrored.json"));
+            assertTrue(added.contains("ADDED:" + DESCRIPTOR));
+
+            client.removeEntryListener(DESCRIPTORS);
+            clientService.stop();
+        }
+    }
+
+    /*
+     * Test that removing the entry listeners of a path leaves the child listeners of that path attached.
+     */
+    @Test
+    public void testRemoveEntryListenerKeepsChildListeners() throws Exception {
+        final String REGISTRY_CLIENT_NAME = "listened-zk-registry-name";
+        final String DESCRIPTORS = "/knox/config/descriptors";
+
+        try (TestingCluster zkCluster = setupAndStartSecureTestZooKeeper(null, null)) {
+            CuratorFramework setupClient = initializeTestClientAndZNodes(zkCluster, null);
+
+            GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+            EasyMock.expect(config.getRemoteRegistryConfiguration(REGISTRY_CLIENT_NAME))
+                .andReturn(GatewayConfig.REMOTE_CONFIG_REGISTRY_TYPE + "=" + ZooKeeperClientService.TYPE + ";" +
+                           GatewayConfig.REMOTE_CONFIG_REGISTRY_ADDRESS + "=" + zkCluster.getConnectString())
+                .anyTimes();
+            EasyMock.expect(config.getRemoteRegistryConfigurationNames())
+                .andReturn(Collections.singletonList(REGISTRY_CLIENT_NAME)).anyTimes();
+            EasyMock.replay(config);
+
+            ZooKeeperClientService clientService =
+                (ZooKeeperClientService) RemoteConfigurationRegistryClientServiceFactory.newInstance(config);
+            clientService.setAliasService(null);
+            clientService.init(config, null);
+            clientService.start();
+
+            RemoteConfigurationRegistryClient client = clientService.get(REGISTRY_CLIENT_NAME);
+            final List<String> children = new CopyOnWriteArrayList<>();
+            final List<String> entries = new CopyOnWriteArrayList<>();
+            client.addChildEntryListener(DESCRIPTORS, (c, type, path) -> children.add(type + ":" + path));
+            client.addEntryListener(DESCRIPTORS, (c, path, data) -> entries.add(path));
+
+            client.removeEntryListener(DESCRIPTORS);
+
+            setupClient.create().forPath(DESCRIPTORS + "/added.json", "v1".getBytes(StandardCharsets.UTF_8));
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (!children.contains("ADDED:" + DESCRIPTORS + "/added.json") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(children.contains("ADDED:" + DESCRIPTORS + "/added.json"));
+
+            // Only the entry listener was detached
+            final int reported = entries.size();
+            setupClient.setData().forPath(DESCRIPTORS, "changed".getBytes(StandardCharsets.UTF_8));
+            setupClient.setData().forPath(DESCRIPTORS + "/added.json", "v2".getBytes(StandardCharsets.UTF_8));
+            while (!children.contains("UPDATED:" + DESCRIPTORS + "/added.json") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(children.contains("UPDATED:" + DESCRIPTORS + "/added.json"));
+            assertEquals(reported, entries.size());
+
+            clientService.stop();
+        }
+    }
 }
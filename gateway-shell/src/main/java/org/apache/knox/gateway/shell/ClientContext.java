@@ -78,6 +78,19 @@ public class ClientContext {
       configuration.addProperty("max-per-route", reuseaddr);
       return this;
     }
+
+    /**
+     * @return true if asynchronous requests should run on virtual threads where the runtime supports them
+     * @since 3.0.0
+     */
+    public boolean virtualThreads() {
+      return configuration.getBoolean("virtual-threads", false);
+    }
+
+    public PoolContext virtualThreads(final boolean enabled) {
+      configuration.addProperty("virtual-threads", enabled);
+      return this;
+    }
   }
 
   public static class SocketContext extends Context {
@@ -49,7 +49,6 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -103,6 +102,7 @@ import org.apache.http.ssl.SSLContexts;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.shell.util.ClientTrustStoreHelper;
 import org.apache.knox.gateway.util.JsonUtils;
+import org.apache.knox.gateway.util.VirtualThreads;
 
 public class KnoxSession implements Closeable {
   private static final String DEFAULT_JAAS_FILE = "/jaas.conf";
@@ -155,7 +155,9 @@ public class KnoxSession implements Closeable {
   }
 
   public KnoxSession(final ClientContext clientContext) throws KnoxShellException, URISyntaxException {
-    this.executor = Executors.newCachedThreadPool();
+    // more concurrent requests than pooled connections would only wait for a connection
+    this.executor = VirtualThreads.newCachedExecutor(clientContext.pool().virtualThreads(), "knox-session-",
+        clientContext.pool().maxTotal());
     this.base = clientContext.url();
 
     try {
@@ -36,6 +36,7 @@ import org.apache.knox.gateway.shell.KnoxSession;
 import org.apache.knox.gateway.shell.KnoxShellException;
 import org.apache.knox.gateway.shell.hdfs.Hdfs;
 import org.apache.knox.gateway.shell.hdfs.Status.Response;
+import org.apache.knox.gateway.shell.hdfs.Transfer;
 import org.apache.knox.gateway.shell.table.KnoxShellTable;
 import org.apache.knox.gateway.util.JsonUtils;
 import org.apache.groovy.groovysh.Groovysh;
@@ -50,6 +51,8 @@ public class WebHDFSCommand extends AbstractKnoxShellCommand {
       "  :fs cat {target-path} \n" +
       "  :fs get {from-path} {to-path} \n" +
       "  :fs put {from-path} {tp-path} \n" +
+      "  :fs upload {from-path} {to-path} [concurrency] [verify] \n" +
+      "  :fs download {from-path} {to-path} [concurrency] [verify] \n" +
       "  :fs rm {target-path} \n" +
       "  :fs mkdir {dir-path} \n";
   private Map<String, KnoxSession> sessions = new HashMap<>();
@@ -92,6 +95,17 @@ public class WebHDFSCommand extends AbstractKnoxShellCommand {
 
       return put(mounts, localFile, path, permission);
     }
+    else if (args.get(0).equalsIgnoreCase("upload") || args.get(0).equalsIgnoreCase("download")) {
+      // Hdfs.upload( session ).from( localDir ).to( dataDir ).concurrency( 8 ).verify( true ).now()
+      // :fs upload|download from-path to-path [concurrency] [verify]
+      boolean upload = args.get(0).equalsIgnoreCase("upload");
+      int concurrency = Transfer.DEFAULT_CONCURRENCY;
+      if (args.size() >= 4) {
+        concurrency = Integer.parseInt(args.get(3));
+      }
+      boolean verify = args.size() >= 5 && args.get(4).equalsIgnoreCase("verify");
+      return transfer(mounts, upload, args.get(1), args.get(2), concurrency, verify);
+    }
     else if (args.get(0).equalsIgnoreCase("rm")) {
       // Hdfs.rm( session ).file( dataFile ).now()
       // :fs rm target-path
@@ -248,6 +262,38 @@ public class WebHDFSCommand extends AbstractKnoxShellCommand {
     return "Successfully put: " + localFile + " to: " + path;
   }
 
+  private String transfer(Map<String, String> mounts, boolean upload, String from, String to, int concurrency,
+                          boolean verify) {
+    String path = upload ? to : from;
+    String mountPoint = determineMountPoint(path);
+    KnoxSession session = getSessionForMountPoint(mounts, mountPoint);
+    if (session == null) {
+      return "No session established for mountPoint: " + mountPoint + " Use :fs mount {topology-url} {mountpoint-name}";
+    }
+    String targetPath = determineTargetPath(path, mountPoint);
+    Transfer.Listener listener = progress -> System.out.println(progress);
+    Transfer.Response response;
+    try {
+      if (upload) {
+        response = Hdfs.upload(session).from(from).to(targetPath).concurrency(concurrency)
+            .verify(verify).progress(listener).now();
+      } else {
+        response = Hdfs.download(session).from(targetPath).to(to).concurrency(concurrency)
+            .resume(true).verify(verify).progress(listener).now();
+      }
+    } catch (KnoxShellException e) {
+      e.printStackTrace();
+      return "Exception ocurred: " + e.getMessage();
+    }
+    for (Map.Entry<String, Exception> failure : response.getFailures().entrySet()) {
+      System.out.println("Failed to transfer " + failure.getKey() + ": " + failure.getValue().getMessage());
+    }
+    for (String unverified : response.getUnverified()) {
+      System.out.println("Could not verify the checksum of " + unverified);
+    }
+    return "Transferred " + response.getProgress() + " from: " + from + " to: " + to;
+  }
+
   private boolean exists(KnoxSession session, String path) {
     boolean rc = false;
     try {
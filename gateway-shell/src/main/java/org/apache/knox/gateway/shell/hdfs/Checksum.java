@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.hdfs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.knox.gateway.shell.AbstractRequest;
+import org.apache.knox.gateway.shell.BasicResponse;
+import org.apache.knox.gateway.shell.KnoxSession;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Retrieves the checksum of a file (op=GETFILECHECKSUM) and compares it with a local copy.
+ * <p>
+ * HDFS reports an MD5 of the per-block MD5s of the chunk CRCs; the same digest is
+ * computed over the local file so that a transfer can be verified end to end without
+ * reading the remote file a second time. Composite CRCs and the checksums of erasure
+ * coded files are computed differently and cannot be compared this way.
+ */
+public class Checksum {
+
+  private static final Pattern MD5_MD5_CRC = Pattern.compile("MD5-of-(\\d+)MD5-of-(\\d+)(CRC32C?)");
+
+  /* the initial capacity of the Hadoop DataOutputBuffer the block digests are collected in */
+  private static final int BLOCK_DIGESTS_CAPACITY = 32;
+
+  public static class Request extends AbstractRequest<Response> {
+
+    private String file;
+
+    Request( KnoxSession session ) {
+      super( session );
+    }
+
+    public Request file( String file ) {
+      this.file = file;
+      return this;
+    }
+
+    @Override
+    protected Callable<Response> callable() {
+      return new Callable<Response>() {
+        @Override
+        public Response call() throws Exception {
+          URIBuilder uri = uri( Hdfs.SERVICE_PATH, file );
+          addQueryParam( uri, "op", "GETFILECHECKSUM" );
+          HttpGet get = new HttpGet( uri.build() );
+          return new Response( execute( get ) );
+        }
+      };
+    }
+
+  }
+
+  public static class Response extends BasicResponse {
+
+    private final String algorithm;
+    private final String bytes;
+    private final long length;
+
+    Response( HttpResponse response ) throws IOException {
+      super( response );
+      JsonNode checksum = new ObjectMapper().readTree( getStream() ).path( "FileChecksum" );
+      this.algorithm = checksum.path( "algorithm" ).asText( null );
+      this.bytes = checksum.path( "bytes" ).asText( null );
+      this.length = checksum.path( "length" ).asLong();
+    }
+
+    public String getAlgorithm() {
+      return algorithm;
+    }
+
+    public String getChecksum() {
+      return bytes;
+    }
+
+    public long getLength() {
+      return length;
+    }
+
+    /**
+     * @return <code>true</code> if the checksum uses an MD5-of-MD5-of-CRC algorithm the local file can be compared with
+     */
+    public boolean isSupported() {
+      return algorithm != null && MD5_MD5_CRC.matcher( algorithm ).matches();
+    }
+
+    /**
+     * @param file the local copy of the file
+     * @return <code>true</code> if the local file has the same checksum as the remote file
+     * @throws IOException if the local file cannot be read
+     * @throws UnsupportedOperationException if the remote checksum uses an algorithm other than MD5-of-MD5-of-CRC
+     */
+    public boolean matches( File file ) throws IOException {
+      return Arrays.equals( digest(), compute( file, algorithm, bytes ) );
+    }
+
+    private byte[] digest() throws IOException {
+      return Arrays.copyOfRange( decode( bytes ), 12, 28 );
+    }
+
+  }
+
+  /**
+   * Computes the MD5-of-MD5-of-CRC digest of a local file the way a DataNode does for each
+   * block of the file, using the chunk size and block layout described by a remote checksum.
+   * <p>
+   * Like the HDFS client, the final MD5 is taken over the whole buffer the block digests were
+   * written to, including the zeros that pad it to its capacity, which starts at 32 bytes and
+   * doubles whenever it is exhausted.
+   *
+   * @param file the local file
+   * @param algorithm the algorithm name reported by HDFS, e.g. <code>MD5-of-0MD5-of-512CRC32C</code>
+   * @param bytes the hex encoded checksum reported by HDFS
+   * @return the 16 byte MD5 digest
+   * @throws IOException if the local file cannot be read
+   */
+  static byte[] compute( File file, String algorithm, String bytes ) throws IOException {
+    Matcher matcher = algorithm == null ? null : MD5_MD5_CRC.matcher( algorithm );
+    if( matcher == null || !matcher.matches() ) {
+      throw new UnsupportedOperationException( "Unsupported checksum algorithm: " + algorithm );
+    }
+    ByteBuffer header = ByteBuffer.wrap( decode( bytes ) );
+    // Empty files report zero bytes per CRC; any chunk size tells a non-empty local copy apart from them.
+    int bytesPerCrc = Math.max( header.getInt(), 1 );
+    long crcPerBlock = header.getLong();
+    // Single block files report zero CRCs per block since there is no block boundary to describe.
+    long blockSize = crcPerBlock > 0 ? crcPerBlock * bytesPerCrc : Long.MAX_VALUE;
+    return compute( file, blockSize, bytesPerCrc, "CRC32C".equals( matcher.group( 3 ) ) );
+  }
+
+  static byte[] compute( File file, long blockSize, int bytesPerCrc, boolean castagnoli ) throws IOException {
+    java.util.zip.Checksum crc = castagnoli ? new CRC32C() : new CRC32();
+    ByteArrayOutputStream blockDigests = new ByteArrayOutputStream();
+    MessageDigest blockDigest = DigestUtils.getMd5Digest();
+    byte[] chunk = new byte[ bytesPerCrc ];
+    ByteBuffer value = ByteBuffer.allocate( Integer.BYTES );
+    long blockBytes = 0;
+    try( InputStream in = new BufferedInputStream( Files.newInputStream( file.toPath() ) ) ) {
+      int read;
+      while( ( read = IOUtils.read( in, chunk ) ) > 0 ) {
+        crc.reset();
+        crc.update( chunk, 0, read );
+        value.clear();
+        value.putInt( (int) crc.getValue() );
+        blockDigest.update( value.array() );
+        blockBytes += read;
+        if( blockBytes >= blockSize ) {
+          blockDigests.write( blockDigest.digest() );
+          blockBytes = 0;
+        }
+      }
+    }
+    if( blockBytes > 0 ) {
+      blockDigests.write( blockDigest.digest() );
+    }
+    int capacity = BLOCK_DIGESTS_CAPACITY;
+    while( capacity < blockDigests.size() ) {
+      capacity <<= 1;
+    }
+    return DigestUtils.md5( Arrays.copyOf( blockDigests.toByteArray(), capacity ) );
+  }
+
+  private static byte[] decode( String bytes ) throws IOException {
+    try {
+      byte[] decoded = bytes == null ? new byte[ 0 ] : Hex.decodeHex( bytes );
+      if( decoded.length != 28 ) {
+        throw new IOException( "Invalid checksum: " + bytes );
+      }
+      return decoded;
+    } catch( DecoderException e ) {
+      throw new IOException( "Invalid checksum: " + bytes, e );
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.hdfs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.IOUtils;
+import org.apache.knox.gateway.shell.KnoxSession;
+import org.apache.knox.gateway.shell.KnoxShellException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies a file or a directory tree from HDFS to the local file system.
+ * <p>
+ * When resuming, a local file that is shorter than its remote counterpart is assumed to be
+ * the head of an interrupted download and only the remaining bytes are read, using the
+ * offset parameter of op=OPEN. Files that are already complete are not read at all.
+ */
+public class Download {
+
+  public static class Request extends Transfer.Request<Request> {
+
+    private boolean resume;
+
+    Request( KnoxSession session ) {
+      super( session );
+    }
+
+    /**
+     * @param resume whether to continue partially downloaded files instead of replacing them
+     * @return this request
+     */
+    public Request resume( boolean resume ) {
+      this.resume = resume;
+      return this;
+    }
+
+    @Override
+    List<Transfer.Item> plan() throws Exception {
+      List<Transfer.Item> items = new ArrayList<>();
+      list( from, new File( to ), items );
+      return items;
+    }
+
+    private void list( String dir, File target, List<Transfer.Item> items ) throws IOException {
+      JsonNode statuses;
+      try( Ls.Response ls = Hdfs.ls( hadoop() ).dir( dir ).now() ) {
+        statuses = new ObjectMapper().readTree( ls.getStream() ).path( "FileStatuses" ).path( "FileStatus" );
+      }
+      if( statuses.size() == 1 && statuses.get( 0 ).path( "pathSuffix" ).asText().isEmpty() ) {
+        // Listing a file returns the status of the file itself.
+        items.add( new Transfer.Item( dir, target.getPath(), statuses.get( 0 ).path( "length" ).asLong() ) );
+        return;
+      }
+      Files.createDirectories( target.toPath() );
+      for( JsonNode status : statuses ) {
+        String suffix = status.path( "pathSuffix" ).asText();
+        File local = new File( target, suffix );
+        if( "DIRECTORY".equals( status.path( "type" ).asText() ) ) {
+          list( dir + "/" + suffix, local, items );
+        } else {
+          items.add( new Transfer.Item( dir + "/" + suffix, local.getPath(), status.path( "length" ).asLong() ) );
+        }
+      }
+    }
+
+    @Override
+    void transfer( Transfer.Item item, Transfer.Tracker tracker ) throws Exception {
+      File local = new File( item.target );
+      long offset = resume && local.isFile() && local.length() <= item.length ? local.length() : 0;
+      tracker.skipped( offset );
+      if( offset < item.length || !local.isFile() ) {
+        File parent = local.getAbsoluteFile().getParentFile();
+        if( parent != null ) {
+          Files.createDirectories( parent.toPath() );
+        }
+        StandardOpenOption mode = offset > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try( Get.Response get = Hdfs.get( hadoop() ).from( item.source ).offset( offset > 0 ? offset : null ).now();
+             InputStream in = tracker.count( item.source, get.getStream() );
+             OutputStream out = Files.newOutputStream( local.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, mode ) ) {
+          IOUtils.copyLarge( in, out );
+        }
+      }
+      if( local.length() != item.length ) {
+        throw new KnoxShellException( "Expected " + item.length + " bytes in " + local + " but found " + local.length() );
+      }
+      if( verify ) {
+        try {
+          if( !verify( item.source, local ) ) {
+            tracker.unverified( item.source );
+          }
+        } catch( KnoxShellException e ) {
+          // A corrupt copy must not be resumed from.
+          Files.deleteIfExists( local.toPath() );
+          throw e;
+        }
+      }
+    }
+
+  }
+
+}
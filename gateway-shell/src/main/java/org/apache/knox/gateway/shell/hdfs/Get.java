@@ -35,6 +35,8 @@ public class Get {
 
     private String from;
     private String to;
+    private Long offset;
+    private Long length;
 
     Request( KnoxSession session ) {
       super( session );
@@ -50,6 +52,15 @@ public class Get {
       return this;
     }
 
+    public Request offset( Long offset ) {
+      this.offset = offset;
+      return this;
+    }
+
+    public Request length( Long length ) {
+      this.length = length;
+      return this;
+    }
 
     @Override
     protected Callable<Response> callable() {
@@ -58,6 +69,8 @@ public class Get {
         public Response call() throws Exception {
           URIBuilder uri = uri( Hdfs.SERVICE_PATH, from );
           addQueryParam( uri, "op", "OPEN" );
+          addQueryParam( uri, "offset", offset );
+          addQueryParam( uri, "length", length );
           HttpGet request = new HttpGet( uri.build() );
           return new Response( execute( request ), to );
         }
@@ -51,4 +51,16 @@ public class Hdfs {
     return new Mkdir.Request( session );
   }
 
+  public static Checksum.Request checksum( KnoxSession session ) {
+    return new Checksum.Request( session );
+  }
+
+  public static Upload.Request upload( KnoxSession session ) {
+    return new Upload.Request( session );
+  }
+
+  public static Download.Request download( KnoxSession session ) {
+    return new Download.Request( session );
+  }
+
 }
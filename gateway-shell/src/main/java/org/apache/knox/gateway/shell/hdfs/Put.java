@@ -46,6 +46,7 @@ public class Put {
     private Integer blocksize;
     private Integer buffersize;
     private Short replication;
+    private HttpEntity entity;
 
     Request( KnoxSession session ) {
       super( session );
@@ -91,6 +92,11 @@ public class Put {
       return this;
     }
 
+    Request entity( HttpEntity entity ) {
+      this.entity = entity;
+      return this;
+    }
+
     @Override
     protected Callable<Response> callable() {
       return new Callable<Response>() {
@@ -115,7 +121,7 @@ public class Put {
           }
           String loc = h[0].getValue();
           HttpPut dn = new HttpPut( loc );
-          HttpEntity e = null;
+          HttpEntity e = entity;
           if( text != null ) {
             e = new StringEntity( text );
           } else if( file != null ) {
@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.hdfs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.apache.knox.gateway.shell.AbstractRequest;
+import org.apache.knox.gateway.shell.KnoxSession;
+import org.apache.knox.gateway.shell.KnoxShellException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Common support for the bulk {@link Upload} and {@link Download} requests.
+ * <p>
+ * A transfer first plans the set of files to move and then hands them to a number of
+ * workers running on the session's executor. Each worker takes the next file from a
+ * shared queue, so the number of files in flight, and therefore the number of pooled
+ * connections in use, never exceeds the configured concurrency.
+ */
+public class Transfer {
+
+  public static final int DEFAULT_CONCURRENCY = 4;
+
+  static final long PROGRESS_INTERVAL_MILLIS = 1000L;
+
+  /**
+   * Receives progress reports while a transfer is running; invoked once per completed file
+   * and at most once per second while data is streaming.
+   */
+  public interface Listener {
+    void progress( Progress progress );
+  }
+
+  /**
+   * A snapshot of the state of a transfer.
+   */
+  public static class Progress {
+
+    private final String path;
+    private final int filesCompleted;
+    private final int filesTotal;
+    private final long bytesCompleted;
+    private final long bytesTransferred;
+    private final long bytesTotal;
+    private final long elapsedMillis;
+
+    Progress( String path, int filesCompleted, int filesTotal, long bytesCompleted, long bytesTransferred,
+              long bytesTotal, long elapsedMillis ) {
+      this.path = path;
+      this.filesCompleted = filesCompleted;
+      this.filesTotal = filesTotal;
+      this.bytesCompleted = bytesCompleted;
+      this.bytesTransferred = bytesTransferred;
+      this.bytesTotal = bytesTotal;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return the file the report was triggered by
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public int getFilesCompleted() {
+      return filesCompleted;
+    }
+
+    public int getFilesTotal() {
+      return filesTotal;
+    }
+
+    /**
+     * @return the number of bytes that are in place at the target, including resumed data
+     */
+    public long getBytesCompleted() {
+      return bytesCompleted;
+    }
+
+    /**
+     * @return the number of bytes actually sent or received by this transfer
+     */
+    public long getBytesTransferred() {
+      return bytesTransferred;
+    }
+
+    public long getBytesTotal() {
+      return bytesTotal;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    public double getBytesPerSecond() {
+      return elapsedMillis == 0 ? 0 : bytesTransferred * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+      return String.format( Locale.ROOT, "%d/%d files, %d/%d bytes, %.1f KB/s",
+          filesCompleted, filesTotal, bytesCompleted, bytesTotal, getBytesPerSecond() / 1024 );
+    }
+  }
+
+  public static class Response {
+
+    private final Progress progress;
+    private final Map<String, Exception> failures;
+    private final List<String> unverified;
+
+    Response( Progress progress, Map<String, Exception> failures, List<String> unverified ) {
+      this.progress = progress;
+      this.failures = Collections.unmodifiableMap( failures );
+      this.unverified = Collections.unmodifiableList( unverified );
+    }
+
+    public Progress getProgress() {
+      return progress;
+    }
+
+    /**
+     * @return the source paths of the files that could not be transferred mapped to the cause
+     */
+    public Map<String, Exception> getFailures() {
+      return failures;
+    }
+
+    /**
+     * @return the source paths of the transferred files whose checksum could not be compared, e.g. because
+     *         HDFS reports a composite CRC or the file is erasure coded
+     */
+    public List<String> getUnverified() {
+      return unverified;
+    }
+
+    public boolean isSuccessful() {
+      return failures.isEmpty();
+    }
+  }
+
+  /**
+   * A single file to move from <code>source</code> to <code>target</code>.
+   */
+  static class Item {
+    final String source;
+    final String target;
+    final long length;
+
+    Item( String source, String target, long length ) {
+      this.source = source;
+      this.target = target;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Tracks the counters of a running transfer and rate limits the progress reports.
+   */
+  static class Tracker {
+    private final Listener listener;
+    private final int filesTotal;
+    private final long bytesTotal;
+    private final long start = System.nanoTime();
+    private final AtomicInteger filesCompleted = new AtomicInteger();
+    private final AtomicLong bytesCompleted = new AtomicLong();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    private final AtomicLong lastReport = new AtomicLong();
+    private final Queue<String> unverified = new ConcurrentLinkedQueue<>();
+
+    Tracker( Listener listener, List<Item> items ) {
+      this.listener = listener;
+      this.filesTotal = items.size();
+      this.bytesTotal = items.stream().mapToLong( item -> item.length ).sum();
+    }
+
+    /**
+     * Records data that was already present at the target, e.g. the head of a resumed download.
+     */
+    void skipped( long bytes ) {
+      bytesCompleted.addAndGet( bytes );
+    }
+
+    void transferred( String path, long bytes ) {
+      bytesCompleted.addAndGet( bytes );
+      bytesTransferred.addAndGet( bytes );
+      long now = System.nanoTime();
+      long last = lastReport.get();
+      if( listener != null && now - last >= TimeUnit.MILLISECONDS.toNanos( PROGRESS_INTERVAL_MILLIS )
+          && lastReport.compareAndSet( last, now ) ) {
+        listener.progress( snapshot( path ) );
+      }
+    }
+
+    void unverified( String path ) {
+      unverified.add( path );
+    }
+
+    List<String> getUnverified() {
+      return new ArrayList<>( unverified );
+    }
+
+    void completed( String path ) {
+      filesCompleted.incrementAndGet();
+      if( listener != null ) {
+        listener.progress( snapshot( path ) );
+      }
+    }
+
+    Progress snapshot( String path ) {
+      return new Progress( path, filesCompleted.get(), filesTotal, bytesCompleted.get(), bytesTransferred.get(),
+          bytesTotal, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+    }
+
+    InputStream count( String path, InputStream in ) {
+      return new ProxyInputStream( in ) {
+        @Override
+        protected void afterRead( int n ) {
+          if( n > 0 ) {
+            transferred( path, n );
+          }
+        }
+      };
+    }
+
+    OutputStream count( String path, OutputStream out ) {
+      return new ProxyOutputStream( out ) {
+        @Override
+        protected void afterWrite( int n ) {
+          transferred( path, n );
+        }
+      };
+    }
+  }
+
+  abstract static class Request<T extends Request<T>> extends AbstractRequest<Response> {
+
+    String from;
+    String to;
+    int concurrency = DEFAULT_CONCURRENCY;
+    boolean verify;
+    Listener listener;
+
+    Request( KnoxSession session ) {
+      super( session );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private T self() {
+      return (T) this;
+    }
+
+    public T from( String from ) {
+      this.from = from;
+      return self();
+    }
+
+    public T to( String to ) {
+      this.to = to;
+      return self();
+    }
+
+    /**
+     * @param concurrency the maximum number of files transferred at the same time; should not
+     *                    exceed the session's maximum number of connections per route
+     * @return this request
+     */
+    public T concurrency( int concurrency ) {
+      if( concurrency < 1 ) {
+        throw new IllegalArgumentException( "Concurrency must be positive: " + concurrency );
+      }
+      this.concurrency = concurrency;
+      return self();
+    }
+
+    /**
+     * @param verify whether to compare the checksum of every transferred file with HDFS; files whose
+     *               checksum cannot be compared are reported by {@link Response#getUnverified()}
+     * @return this request
+     */
+    public T verify( boolean verify ) {
+      this.verify = verify;
+      return self();
+    }
+
+    public T progress( Listener listener ) {
+      this.listener = listener;
+      return self();
+    }
+
+    /**
+     * @return the files to transfer; directories needed at the target must exist when this returns
+     * @throws Exception if the source cannot be listed
+     */
+    abstract List<Item> plan() throws Exception;
+
+    abstract void transfer( Item item, Tracker tracker ) throws Exception;
+
+    /**
+     * @return <code>false</code> if the checksums cannot be compared
+     * @throws KnoxShellException if the checksums differ
+     */
+    boolean verify( String remote, File local ) throws IOException {
+      try( Checksum.Response checksum = Hdfs.checksum( hadoop() ).file( remote ).now() ) {
+        if( !checksum.isSupported() ) {
+          return false;
+        }
+        if( !checksum.matches( local ) ) {
+          if( isErasureCoded( remote ) ) {
+            // the checksum of an erasure coded file covers its block groups, not the file contents
+            return false;
+          }
+          throw new KnoxShellException( "Checksum mismatch between " + remote + " and " + local );
+        }
+        return true;
+      }
+    }
+
+    private boolean isErasureCoded( String remote ) throws IOException {
+      JsonNode status;
+      try( Ls.Response ls = Hdfs.ls( hadoop() ).dir( remote ).now() ) {
+        status = new ObjectMapper().readTree( ls.getStream() ).path( "FileStatuses" ).path( "FileStatus" ).path( 0 );
+      }
+      return status.path( "ecBit" ).asBoolean() || !status.path( "ecPolicy" ).asText().isEmpty();
+    }
+
+    @Override
+    protected Callable<Response> callable() {
+      return new Callable<Response>() {
+        @Override
+        public Response call() throws Exception {
+          List<Item> items = plan();
+          Tracker tracker = new Tracker( listener, items );
+          Queue<Item> queue = new ConcurrentLinkedQueue<>( items );
+          Map<String, Exception> failures = Collections.synchronizedMap( new LinkedHashMap<>() );
+          int workers = Math.min( concurrency, items.size() );
+          List<Future<Void>> futures = new ArrayList<>( workers );
+          for( int i = 0; i < workers; i++ ) {
+            futures.add( hadoop().executeLater( () -> {
+              Item item;
+              while( ( item = queue.poll() ) != null ) {
+                try {
+                  transfer( item, tracker );
+                  tracker.completed( item.source );
+                } catch( Exception e ) {
+                  failures.put( item.source, e );
+                }
+              }
+              return null;
+            } ) );
+          }
+          hadoop().waitFor( futures.toArray( new Future<?>[ 0 ] ) );
+          return new Response( tracker.snapshot( from ), new LinkedHashMap<>( failures ), tracker.getUnverified() );
+        }
+      };
+    }
+  }
+
+}
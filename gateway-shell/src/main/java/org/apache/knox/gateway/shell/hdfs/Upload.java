@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.hdfs;
+
+import org.apache.knox.gateway.shell.KnoxSession;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Copies a local file or directory tree to HDFS.
+ * <p>
+ * The directories of the tree are created up front, one request each, after which the
+ * files are written concurrently with op=CREATE.
+ */
+public class Upload {
+
+  public static class Request extends Transfer.Request<Request> {
+
+    private boolean overwrite;
+    private int permission = 755;
+
+    Request( KnoxSession session ) {
+      super( session );
+    }
+
+    public Request overwrite( boolean overwrite ) {
+      this.overwrite = overwrite;
+      return this;
+    }
+
+    public Request permission( int permission ) {
+      this.permission = permission;
+      return this;
+    }
+
+    @Override
+    List<Transfer.Item> plan() throws Exception {
+      Path root = Paths.get( from );
+      List<Transfer.Item> items = new ArrayList<>();
+      if( !Files.isDirectory( root ) ) {
+        items.add( new Transfer.Item( root.toString(), to, Files.size( root ) ) );
+        return items;
+      }
+      List<Path> paths;
+      try( Stream<Path> tree = Files.walk( root ) ) {
+        paths = tree.sorted().collect( Collectors.toList() );
+      }
+      for( Path path : paths ) {
+        String target = remote( root.relativize( path ) );
+        if( Files.isDirectory( path ) ) {
+          Hdfs.mkdir( hadoop() ).dir( target ).now().close();
+        } else {
+          items.add( new Transfer.Item( path.toString(), target, Files.size( path ) ) );
+        }
+      }
+      return items;
+    }
+
+    private String remote( Path relative ) {
+      StringBuilder path = new StringBuilder( to );
+      for( Path name : relative ) {
+        if( !name.toString().isEmpty() ) {
+          path.append( '/' ).append( name );
+        }
+      }
+      return path.toString();
+    }
+
+    @Override
+    void transfer( Transfer.Item item, Transfer.Tracker tracker ) throws Exception {
+      File local = new File( item.source );
+      HttpEntityWrapper entity = new HttpEntityWrapper( new FileEntity( local ) ) {
+        @Override
+        public void writeTo( OutputStream out ) throws IOException {
+          super.writeTo( tracker.count( item.source, out ) );
+        }
+      };
+      Hdfs.put( hadoop() ).entity( entity ).to( item.target ).overwrite( overwrite ).permission( permission )
+          .now().close();
+      if( verify && !verify( item.target, local ) ) {
+        tracker.unverified( item.source );
+      }
+    }
+
+  }
+
+}
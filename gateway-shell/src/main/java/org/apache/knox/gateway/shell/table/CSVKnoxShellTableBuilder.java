@@ -18,18 +18,21 @@
 package org.apache.knox.gateway.shell.table;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class CSVKnoxShellTableBuilder extends KnoxShellTableBuilder {
 
   private boolean withHeaders;
+  private int pageSize = KnoxShellTablePager.DEFAULT_PAGE_SIZE;
 
   CSVKnoxShellTableBuilder(KnoxShellTable table) {
     super(table);
@@ -40,48 +43,95 @@ public class CSVKnoxShellTableBuilder extends KnoxShellTableBuilder {
     return this;
   }
 
+  /**
+   * Sets the number of rows per page handed to the consumer of
+   * {@link #url(String, Consumer)} and {@link #string(String, Consumer)}.
+   */
+  public CSVKnoxShellTableBuilder pageSize(int pageSize) {
+    this.pageSize = pageSize;
+    return this;
+  }
+
   public KnoxShellTable url(String url) throws IOException {
-    URL urlToCsv = new URL(url);
-    URLConnection connection = urlToCsv.openConnection();
-    try (Reader urlConnectionStreamReader = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8);
-        BufferedReader csvReader = new BufferedReader(urlConnectionStreamReader);) {
+    try (Reader csvReader = openUrl(url)) {
       buildTableFromCSVReader(csvReader);
     }
     return this.table;
   }
 
   public KnoxShellTable string(String csvString) throws IOException {
-    try (InputStream is = new ByteArrayInputStream(csvString.getBytes(StandardCharsets.UTF_8));
-        Reader stringStreamReader = new InputStreamReader(is, StandardCharsets.UTF_8);
-        BufferedReader csvReader = new BufferedReader(stringStreamReader);) {
+    try (Reader csvReader = new StringReader(csvString)) {
       buildTableFromCSVReader(csvReader);
     }
     return this.table;
   }
 
-  private void buildTableFromCSVReader(BufferedReader csvReader) throws IOException {
-    int rowIndex = 0;
+  /**
+   * Streams the CSV at the given URL as consecutive tables of at most
+   * <code>pageSize</code> rows, so files larger than the heap can be scanned.
+   *
+   * @return the number of rows read
+   */
+  public long url(String url, Consumer<KnoxShellTable> pageConsumer) throws IOException {
+    try (Reader csvReader = openUrl(url)) {
+      return streamPagesFromCSVReader(csvReader, pageConsumer);
+    }
+  }
+
+  /**
+   * Streams the given CSV as consecutive tables of at most <code>pageSize</code> rows.
+   *
+   * @return the number of rows read
+   */
+  public long string(String csvString, Consumer<KnoxShellTable> pageConsumer) throws IOException {
+    try (Reader csvReader = new StringReader(csvString)) {
+      return streamPagesFromCSVReader(csvReader, pageConsumer);
+    }
+  }
+
+  private Reader openUrl(String url) throws IOException {
+    URL urlToCsv = new URL(url);
+    URLConnection connection = urlToCsv.openConnection();
+    return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  private void buildTableFromCSVReader(Reader csvReader) throws IOException {
     if (title != null) {
       this.table.title(title);
     }
-    String row = null;
-    while ((row = csvReader.readLine()) != null) {
-      boolean addingHeaders = (withHeaders && rowIndex == 0);
-      if (!addingHeaders) {
-        this.table.row();
-      }
-      // handle comma's within quoted string values for single col
-      String[] data = row.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)", -1);
+    KnoxShellTableCSV.read(csvReader, new KnoxShellTableCSV.RecordHandler() {
+      private boolean addingHeaders = withHeaders;
 
-      for (String value : data) {
+      @Override
+      public void record(List<String> fields) {
         if (addingHeaders) {
-          this.table.header(value);
+          fields.forEach(table::header);
+          addingHeaders = false;
         } else {
-          this.table.value(value);
+          table.row();
+          fields.forEach(table::value);
         }
       }
-      rowIndex++;
-    }
+    });
   }
 
+  private long streamPagesFromCSVReader(Reader csvReader, Consumer<KnoxShellTable> pageConsumer) throws IOException {
+    final List<String> headers = new ArrayList<>();
+    final KnoxShellTablePager pager = new KnoxShellTablePager(title, headers, pageSize, pageConsumer);
+    KnoxShellTableCSV.read(csvReader, new KnoxShellTableCSV.RecordHandler() {
+      private boolean addingHeaders = withHeaders;
+
+      @Override
+      public void record(List<String> fields) {
+        if (addingHeaders) {
+          fields.forEach(header -> headers.add(header.trim()));
+          addingHeaders = false;
+        } else {
+          pager.row();
+          fields.forEach(pager::value);
+        }
+      }
+    });
+    return pager.finish();
+  }
 }
@@ -18,12 +18,20 @@
 package org.apache.knox.gateway.shell.table;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.function.Consumer;
 
 import org.apache.knox.gateway.shell.jdbc.JDBCUtils;
 
@@ -35,6 +43,8 @@ public class JDBCKnoxShellTableBuilder extends KnoxShellTableBuilder {
   private boolean tableManagedConnection = true;
   private String username;
   private String pass;
+  private int fetchSize;
+  private int pageSize = KnoxShellTablePager.DEFAULT_PAGE_SIZE;
 
   public JDBCKnoxShellTableBuilder username(String username) {
     this.username = username;
@@ -90,6 +100,24 @@ public class JDBCKnoxShellTableBuilder extends KnoxShellTableBuilder {
     }
   }
 
+  /**
+   * Sets the number of rows the driver fetches from the database per round
+   * trip; by default the driver decides, or the page size is used when streaming.
+   */
+  public JDBCKnoxShellTableBuilder fetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  /**
+   * Sets the number of rows per page handed to the consumer of
+   * {@link #sql(String, Consumer)} and {@link #resultSet(ResultSet, Consumer)}.
+   */
+  public JDBCKnoxShellTableBuilder pageSize(int pageSize) {
+    this.pageSize = pageSize;
+    return this;
+  }
+
   public JDBCKnoxShellTableBuilder connection(Connection connection) {
     this.conn = connection;
     this.tableManagedConnection = false;
@@ -98,16 +126,63 @@ public class JDBCKnoxShellTableBuilder extends KnoxShellTableBuilder {
 
   public KnoxShellTable sql(String sql) throws IOException, SQLException {
     conn = conn == null ? createConnection() : conn;
-    try (Statement statement = conn.createStatement(); ResultSet resultSet = statement.executeQuery(sql);) {
+    try (Statement statement = createStatement(fetchSize); ResultSet resultSet = statement.executeQuery(sql);) {
       processResultSet(resultSet);
     } finally {
-      if (conn != null && tableManagedConnection) {
-        conn.close();
-      }
+      closeConnection();
     }
     return this.table;
   }
 
+  /**
+   * Runs the query and streams its result as consecutive tables of at most
+   * <code>pageSize</code> rows, so results larger than the heap can be
+   * scanned or aggregated.
+   *
+   * @return the number of rows read
+   */
+  public long sql(String sql, Consumer<KnoxShellTable> pageConsumer) throws IOException, SQLException {
+    conn = conn == null ? createConnection() : conn;
+    try (Statement statement = createStatement(fetchSize > 0 ? fetchSize : pageSize);
+         ResultSet resultSet = statement.executeQuery(sql);) {
+      return streamResultSet(resultSet, pageConsumer);
+    } finally {
+      closeConnection();
+    }
+  }
+
+  /**
+   * Runs the query and writes its result, with a header line, to the given
+   * file as CSV without holding it in memory. The file can be read back page by
+   * page with {@link CSVKnoxShellTableBuilder#url(String, Consumer)}.
+   *
+   * @return the number of rows written
+   */
+  public long sqlToCSV(String sql, String filePath) throws IOException, SQLException {
+    conn = conn == null ? createConnection() : conn;
+    try (Statement statement = createStatement(fetchSize > 0 ? fetchSize : pageSize);
+         ResultSet resultSet = statement.executeQuery(sql);
+         Writer csv = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+      return writeResultSet(resultSet, csv);
+    } finally {
+      closeConnection();
+    }
+  }
+
+  private Statement createStatement(int rowsPerFetch) throws SQLException {
+    final Statement statement = conn.createStatement();
+    if (rowsPerFetch > 0) {
+      statement.setFetchSize(rowsPerFetch);
+    }
+    return statement;
+  }
+
+  private void closeConnection() throws SQLException {
+    if (conn != null && tableManagedConnection) {
+      conn.close();
+    }
+  }
+
   private Connection createConnection() throws SQLException {
     return JDBCUtils.createConnection(connectionUrl, username, pass);
   }
@@ -116,31 +191,94 @@ public class JDBCKnoxShellTableBuilder extends KnoxShellTableBuilder {
   // intercept this call
   private void processResultSet(ResultSet resultSet) throws SQLException {
     final ResultSetMetaData metadata = resultSet.getMetaData();
-    final int colCount = metadata.getColumnCount();
     try {
       table.title(metadata.getTableName(1));
     }
     catch (SQLException e) {
       // nop. Apache HiveDriver doesn't support this.
     }
-    for (int i = 1; i < colCount + 1; i++) {
-      this.table.header(metadata.getColumnName(i));
+    final String[] columnNames = getColumnNames(metadata);
+    for (String columnName : columnNames) {
+      this.table.header(columnName);
     }
     while (resultSet.next()) {
       this.table.row();
-      for (int i = 1; i < colCount + 1; i++) {
-        try {
-          table.value(resultSet.getObject(metadata.getColumnName(i), Comparable.class));
-        }
-        catch (SQLException e) {
-          table.value(resultSet.getString(metadata.getColumnName(i)));
-        }
+      for (String columnName : columnNames) {
+        table.value(getValue(resultSet, columnName));
       }
     }
   }
 
+  private long streamResultSet(ResultSet resultSet, Consumer<KnoxShellTable> pageConsumer) throws SQLException {
+    final ResultSetMetaData metadata = resultSet.getMetaData();
+    String pageTitle = title;
+    if (pageTitle == null) {
+      try {
+        pageTitle = metadata.getTableName(1);
+      }
+      catch (SQLException e) {
+        // nop. Apache HiveDriver doesn't support this.
+      }
+    }
+    final String[] columnNames = getColumnNames(metadata);
+    final List<String> headers = new ArrayList<>();
+    for (String columnName : columnNames) {
+      headers.add(columnName.trim());
+    }
+    final KnoxShellTablePager pager = new KnoxShellTablePager(pageTitle, headers, pageSize, pageConsumer);
+    while (resultSet.next()) {
+      pager.row();
+      for (String columnName : columnNames) {
+        pager.value(getValue(resultSet, columnName));
+      }
+    }
+    return pager.finish();
+  }
+
+  private long writeResultSet(ResultSet resultSet, Writer csv) throws SQLException, IOException {
+    final String[] columnNames = getColumnNames(resultSet.getMetaData());
+    final List<Comparable<? extends Object>> record = new ArrayList<>(Arrays.asList(columnNames));
+    KnoxShellTableCSV.appendRecord(csv, record);
+    long rowCount = 0;
+    while (resultSet.next()) {
+      record.clear();
+      for (String columnName : columnNames) {
+        record.add(getValue(resultSet, columnName));
+      }
+      KnoxShellTableCSV.appendRecord(csv, record);
+      rowCount++;
+    }
+    return rowCount;
+  }
+
+  private String[] getColumnNames(ResultSetMetaData metadata) throws SQLException {
+    final String[] columnNames = new String[metadata.getColumnCount()];
+    for (int i = 0; i < columnNames.length; i++) {
+      columnNames[i] = metadata.getColumnName(i + 1);
+    }
+    return columnNames;
+  }
+
+  private Comparable<? extends Object> getValue(ResultSet resultSet, String columnName) throws SQLException {
+    try {
+      return resultSet.getObject(columnName, Comparable.class);
+    }
+    catch (SQLException e) {
+      return resultSet.getString(columnName);
+    }
+  }
+
   public KnoxShellTable resultSet(ResultSet resultSet) throws SQLException {
     processResultSet(resultSet);
     return this.table;
   }
+
+  /**
+   * Streams the given result as consecutive tables of at most <code>pageSize</code> rows.
+   *
+   * @return the number of rows read
+   */
+  public long resultSet(ResultSet resultSet, Consumer<KnoxShellTable> pageConsumer) throws SQLException {
+    return streamResultSet(resultSet, pageConsumer);
+  }
 }
@@ -18,13 +18,46 @@
 package org.apache.knox.gateway.shell.table;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 
+/**
+ * Joins two tables on the equality of a key column of each. Every matching
+ * pair of rows produces a row in the result, ordered by left row and then by
+ * right row; rows with an empty key never match. Inner joins are the default,
+ * {@link #leftOuter()}, {@link #rightOuter()} and {@link #fullOuter()} keep
+ * unmatched rows with empty cells for the other side. Unmatched right rows are
+ * appended after all left rows.
+ * <p>
+ * Keys are matched with a hash join on the right table; with
+ * {@link #sortMerge()}, or when the right table has more than
+ * {@value #SORT_MERGE_THRESHOLD} rows, both tables are instead sorted by key
+ * and merged, which needs no hash table over the right table.
+ */
 public class JoinKnoxShellTableBuilder extends KnoxShellTableBuilder {
+  static final int SORT_MERGE_THRESHOLD = 1_000_000;
+
+  private static final long UNMATCHED = 0xFFFFFFFFL;
+
+  /* Orders keys of different types by type first so mixed key columns can be merged */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Comparator<Comparable<?>> KEY_ORDER = (a, b) -> {
+    if (a.getClass() != b.getClass()) {
+      return a.getClass().getName().compareTo(b.getClass().getName());
+    }
+    return ((Comparable) a).compareTo(b);
+  };
 
   private KnoxShellTable left;
   private KnoxShellTable right;
+  private boolean keepUnmatchedLeft;
+  private boolean keepUnmatchedRight;
+  private boolean sortMerge;
 
   JoinKnoxShellTableBuilder(KnoxShellTable table) {
     super(table);
@@ -46,6 +79,48 @@ public class JoinKnoxShellTableBuilder extends KnoxShellTableBuilder {
     return this;
   }
 
+  /**
+   * Keeps only rows with a match on both sides; this is the default.
+   */
+  public JoinKnoxShellTableBuilder inner() {
+    return type(false, false);
+  }
+
+  /**
+   * Keeps every left row, with empty right cells if it has no match.
+   */
+  public JoinKnoxShellTableBuilder leftOuter() {
+    return type(true, false);
+  }
+
+  /**
+   * Keeps every right row, with empty left cells if it has no match.
+   */
+  public JoinKnoxShellTableBuilder rightOuter() {
+    return type(false, true);
+  }
+
+  /**
+   * Keeps every row of both tables.
+   */
+  public JoinKnoxShellTableBuilder fullOuter() {
+    return type(true, true);
+  }
+
+  /**
+   * Uses a sort-merge join regardless of the size of the tables.
+   */
+  public JoinKnoxShellTableBuilder sortMerge() {
+    this.sortMerge = true;
+    return this;
+  }
+
+  private JoinKnoxShellTableBuilder type(boolean keepUnmatchedLeft, boolean keepUnmatchedRight) {
+    this.keepUnmatchedLeft = keepUnmatchedLeft;
+    this.keepUnmatchedRight = keepUnmatchedRight;
+    return this;
+  }
+
   public KnoxShellTable on(String columnName) {
     final int leftIndex = left.headers.indexOf(columnName);
     final int rightIndex = right.headers.indexOf(columnName);
@@ -62,29 +137,125 @@ public class JoinKnoxShellTableBuilder extends KnoxShellTableBuilder {
     if (title != null) {
       this.table.title(title);
     }
+    if (leftIndex < 0 || rightIndex < 0) {
+      throw new IllegalArgumentException("Join column not found");
+    }
 
-    this.table.headers.addAll(new ArrayList<>(left.headers));
-    for (List<Comparable<? extends Object>> row : left.rows) {
-      this.table.rows.add(new ArrayList<>(row));
+    final Comparable<?>[] leftKeys = keys(left.rows, leftIndex);
+    final Comparable<?>[] rightKeys = keys(right.rows, rightIndex);
+    final BitSet matchedRight = new BitSet(rightKeys.length);
+    final long[] pairs = sortMerge || rightKeys.length > SORT_MERGE_THRESHOLD
+        ? sortMergeJoin(leftKeys, rightKeys, matchedRight)
+        : hashJoin(leftKeys, rightKeys, matchedRight);
+
+    final int unmatchedRight = keepUnmatchedRight ? rightKeys.length - matchedRight.cardinality() : 0;
+    final int[] leftRows = new int[pairs.length + unmatchedRight];
+    final int[] rightRows = new int[pairs.length + unmatchedRight];
+    for (int i = 0; i < pairs.length; i++) {
+      leftRows[i] = (int) (pairs[i] >>> 32);
+      rightRows[i] = (pairs[i] & UNMATCHED) == UNMATCHED ? -1 : (int) pairs[i];
+    }
+    int next = pairs.length;
+    for (int row = matchedRight.nextClearBit(0); next < rightRows.length; row = matchedRight.nextClearBit(row + 1)) {
+      leftRows[next] = -1;
+      rightRows[next++] = row;
     }
-    List<Comparable<? extends Object>> row;
-    Comparable<? extends Object> leftKey;
-    int matchedIndex;
 
+    final int leftWidth = Math.max(left.headers.size(), left.rows.columnCount());
+    final int rightWidth = Math.max(right.headers.size(), right.rows.columnCount());
+    this.table.headers.addAll(new ArrayList<>(left.headers));
     this.table.headers.addAll(new ArrayList<>(right.headers));
-    for (Iterator<List<Comparable<? extends Object>>> it = this.table.rows.iterator(); it.hasNext();) {
-      row = it.next();
-      leftKey = row.get(leftIndex);
-      if (leftKey != null) {
-        matchedIndex = right.values(rightIndex).indexOf(leftKey);
-        if (matchedIndex > -1) {
-          row.addAll(right.rows.get(matchedIndex));
-        } else {
-          it.remove();
+    this.table.rows = KnoxShellTableRows.concat(left.rows, leftWidth, leftRows, right.rows, rightWidth, rightRows);
+    return this.table;
+  }
+
+  /* Builds a chained hash table over the right keys and probes it with each left key */
+  private long[] hashJoin(Comparable<?>[] leftKeys, Comparable<?>[] rightKeys, BitSet matchedRight) {
+    final Map<Comparable<?>, Integer> heads = new HashMap<>();
+    final int[] chain = new int[rightKeys.length];
+    // inserting backwards keeps every chain in ascending row order
+    for (int row = rightKeys.length - 1; row >= 0; row--) {
+      if (rightKeys[row] != null) {
+        final Integer head = heads.put(rightKeys[row], row);
+        chain[row] = head == null ? -1 : head;
+      }
+    }
+
+    final LongStream.Builder pairs = LongStream.builder();
+    for (int row = 0; row < leftKeys.length; row++) {
+      final Integer head = leftKeys[row] == null ? null : heads.get(leftKeys[row]);
+      if (head != null) {
+        for (int match = head; match >= 0; match = chain[match]) {
+          pairs.add(pair(row, match));
+          matchedRight.set(match);
         }
+      } else if (keepUnmatchedLeft) {
+        pairs.add(pair(row, -1));
       }
     }
-    return this.table;
+    return pairs.build().toArray();
+  }
+
+  /* Sorts the row numbers of both sides by key and merges runs of equal keys */
+  private long[] sortMergeJoin(Comparable<?>[] leftKeys, Comparable<?>[] rightKeys, BitSet matchedRight) {
+    final Integer[] leftOrder = sortedByKey(leftKeys);
+    final Integer[] rightOrder = sortedByKey(rightKeys);
+    final LongStream.Builder pairs = LongStream.builder();
+    final BitSet matchedLeft = new BitSet(leftKeys.length);
+    int l = 0;
+    int r = 0;
+    while (l < leftOrder.length && r < rightOrder.length) {
+      final int order = KEY_ORDER.compare(leftKeys[leftOrder[l]], rightKeys[rightOrder[r]]);
+      if (order < 0) {
+        l++;
+      } else if (order > 0) {
+        r++;
+      } else {
+        final int rightStart = r;
+        while (r < rightOrder.length && KEY_ORDER.compare(leftKeys[leftOrder[l]], rightKeys[rightOrder[r]]) == 0) {
+          r++;
+        }
+        final Comparable<?> key = leftKeys[leftOrder[l]];
+        while (l < leftOrder.length && KEY_ORDER.compare(key, leftKeys[leftOrder[l]]) == 0) {
+          matchedLeft.set(leftOrder[l]);
+          for (int match = rightStart; match < r; match++) {
+            pairs.add(pair(leftOrder[l], rightOrder[match]));
+            matchedRight.set(rightOrder[match]);
+          }
+          l++;
+        }
+      }
+    }
+    if (keepUnmatchedLeft) {
+      for (int row = matchedLeft.nextClearBit(0); row < leftKeys.length; row = matchedLeft.nextClearBit(row + 1)) {
+        pairs.add(pair(row, -1));
+      }
+    }
+    final long[] result = pairs.build().toArray();
+    // the same order as the hash join produces: by left row, then by right row
+    Arrays.sort(result);
+    return result;
   }
 
+  /* Row numbers with a non-empty key, sorted by key; the sort is stable */
+  private static Integer[] sortedByKey(Comparable<?>[] keys) {
+    return IntStream.range(0, keys.length)
+        .filter(row -> keys[row] != null)
+        .boxed()
+        .sorted((a, b) -> KEY_ORDER.compare(keys[a], keys[b]))
+        .toArray(Integer[]::new);
+  }
+
+  private static Comparable<?>[] keys(KnoxShellTableRows rows, int col) {
+    final Comparable<?>[] keys = new Comparable<?>[rows.size()];
+    for (int row = 0; row < keys.length; row++) {
+      keys[row] = col < rows.rowLength(row) ? rows.getValue(row, col) : null;
+    }
+    return keys;
+  }
+
+  /* A left row and a matching right row (or -1) in one sortable long */
+  private static long pair(int leftRow, int rightRow) {
+    return ((long) leftRow << 32) | (rightRow & UNMATCHED);
+  }
 }
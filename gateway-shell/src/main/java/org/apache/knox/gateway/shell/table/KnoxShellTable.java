@@ -18,7 +18,9 @@
 package org.apache.knox.gateway.shell.table;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -33,25 +35,17 @@ import org.apache.commons.math3.stat.StatUtils;
 /**
  * Simple table representation and text based rendering of a table via
  * toString(). Headers are optional but when used must have the same count as
- * columns within the rows.
+ * columns within the rows. Cells are stored column by column in typed,
+ * primitive backed columns; {@link #getRows()} exposes them as a list of row
+ * views.
  */
 @JsonFilter("knoxShellTableFilter")
 public class KnoxShellTable {
 
-    private enum Conversions {
-        DOUBLE,
-        INTEGER,
-        FLOAT,
-        BYTE,
-        SHORT,
-        LONG,
-        STRING
-    }
-
   private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
   List<String> headers = new ArrayList<>();
-  List<List<Comparable<? extends Object>>> rows = new ArrayList<>();
+  KnoxShellTableRows rows = new KnoxShellTableRows();
   String title;
   long id;
 
@@ -70,14 +64,13 @@ public class KnoxShellTable {
   }
 
   public KnoxShellTable row() {
-    rows.add(new ArrayList<>());
+    rows.appendRow();
     return this;
   }
 
   public KnoxShellTable value(Comparable<? extends Object> value) {
     final int index = rows.isEmpty() ? 0 : rows.size() - 1;
-    final List<Comparable<? extends Object>> row = rows.get(index);
-    row.add(value);
+    rows.addValue(index, value);
     return this;
   }
 
@@ -85,90 +78,25 @@ public class KnoxShellTable {
     return new KnoxShellTableCell(headers, rows, colIndex, rowIndex);
   }
 
+  /**
+   * @param colIndex the index of the column
+   * @return a copy of the column's values
+   */
   public List<Comparable<? extends Object>> values(int colIndex) {
-    List<Comparable<? extends Object>> col = new ArrayList<>();
-    rows.forEach(row -> col.add(row.get(colIndex)));
-    return col;
+    return new ArrayList<>(rows.column(colIndex));
   }
 
+  /**
+   * @param colName the name of the column
+   * @return a copy of the column's values
+   */
   public List<Comparable<? extends Object>> values(String colName) {
-    int colIndex = headers.indexOf(colName);
-    List<Comparable<? extends Object>> col = new ArrayList<>();
-    rows.forEach(row -> col.add(row.get(colIndex)));
-    return col;
-  }
-
-  private Conversions getConversion(Comparable<? extends Object> colIndex) {
-    Conversions type = null;
-    if (colIndex instanceof Double) {
-      type = Conversions.DOUBLE;
-    }
-    else if (colIndex instanceof Integer) {
-      type = Conversions.INTEGER;
-    }
-    else if (colIndex instanceof Float) {
-      type = Conversions.FLOAT;
-    }
-    else if (colIndex instanceof Byte) {
-      type = Conversions.BYTE;
-    }
-    else if (colIndex instanceof Short) {
-      type = Conversions.SHORT;
-    }
-    else if (colIndex instanceof Long) {
-      type = Conversions.LONG;
-    }
-    else if (colIndex instanceof String) {
-      if (((String) colIndex).matches("-?\\d+(\\.\\d+)?")) {
-          type = Conversions.STRING;
-      }
-      else {
-        throw new IllegalArgumentException("String contains non-numeric characters");
-      }
-    }
-    else {
-        throw new IllegalArgumentException("Unsupported data type");
-    }
-    return type;
+    return values(headers.indexOf(colName));
   }
 
+  /* The returned array is shared with the column and must not be modified */
   private double[] toDoubleArray(String colName) throws IllegalArgumentException {
-    List<Comparable<? extends Object>> col = values(colName);
-    double[] colArray = new double[col.size()];
-    Conversions conversionMethod = null;
-    for (int i = 0; i < col.size(); i++) {
-      Object v = col.get(i);
-      if (v instanceof String && ((String) v).trim().isEmpty()) {
-        col.set(i, "0");
-      }
-      if (i == 0) {
-        conversionMethod = getConversion(col.get(i));
-      }
-      switch (conversionMethod) {
-        case DOUBLE:
-          colArray[i] = (Double) col.get(i);
-          break;
-        case INTEGER:
-          colArray[i] = (Integer) col.get(i);
-          break;
-        case FLOAT:
-          colArray[i] = (Float) col.get(i);
-          break;
-        case BYTE:
-          colArray[i] = (Byte) col.get(i);
-          break;
-        case SHORT:
-          colArray[i] = (Short) col.get(i);
-          break;
-        case LONG:
-          colArray[i] = (double) (Long) col.get(i);
-          break;
-        case STRING:
-          colArray[i] = Double.parseDouble((String) col.get(i));
-          break;
-      }
-    }
-    return colArray;
+    return rows.toDoubleArray(headers.indexOf(colName));
   }
 
   /**
@@ -284,7 +212,7 @@ public class KnoxShellTable {
       headers.set(cell.colIndex, cell.header);
     }
     if (!rows.isEmpty()) {
-      rows.get(cell.rowIndex).set(cell.colIndex, cell.value);
+      rows.setValue(cell.rowIndex, cell.colIndex, cell.value);
     }
     return this;
   }
@@ -307,10 +235,9 @@ public class KnoxShellTable {
    * @return table
    */
   public KnoxShellTable trim(int colIndex) {
-    List<Comparable<? extends Object>> col = values(colIndex);
-    for (int i = 0; i < col.size(); i++) {
-      String v = (String) col.get(i);
-      rows.get(i).set(colIndex, v.trim());
+    for (int i = 0; i < rows.size(); i++) {
+      String v = (String) rows.getValue(i, colIndex);
+      rows.setValue(i, colIndex, v.trim());
     }
     return this;
   }
@@ -389,19 +316,14 @@ public class KnoxShellTable {
 
   public KnoxShellTable select(String cols) {
     KnoxShellTable table = new KnoxShellTable();
-    List<List<Comparable<? extends Object>>> columns = new ArrayList<>();
     cols = cols.trim();
     String[] colnames = cols.split("\\s*,\\s*");
-    for (String colName : colnames) {
-      table.header(colName);
-      columns.add(values(headers.indexOf(colName)));
-    }
-    for (int i = 0; i < rows.size(); i++) {
-      table.row();
-      for (List<Comparable<? extends Object>> col : columns) {
-        table.value(col.get(i));
-      }
+    int[] colIndexes = new int[colnames.length];
+    for (int i = 0; i < colnames.length; i++) {
+      table.header(colnames[i]);
+      colIndexes[i] = headers.indexOf(colnames[i]);
     }
+    table.rows = rows.project(colIndexes);
     return table;
   }
 
@@ -410,58 +332,35 @@ public class KnoxShellTable {
   }
 
   public KnoxShellTable sortNumeric(String colName) {
-    double[] col = toDoubleArray(colName);
-    ArrayList<Comparable<? extends Object>> column = new ArrayList<>();
-    for(double v : col) {
-      column.add(v);
-   }
-    return sort(column, SortOrder.ASCENDING);
+    final double[] col = toDoubleArray(colName);
+    return sort((a, b) -> Double.compare(col[a], col[b]), SortOrder.ASCENDING);
   }
 
   public KnoxShellTable sort(String colName, SortOrder order) {
-    List<Comparable<? extends Object>> col = values(colName);
-    return sort(col, order);
+    final int colIndex = headers.indexOf(colName);
+    return sort((a, b) -> rows.compare(colIndex, a, b), order);
   }
 
+  @SuppressWarnings({"unchecked", "rawtypes"})
   public KnoxShellTable sort(List<Comparable<? extends Object>> col,
       SortOrder order) {
-    KnoxShellTable table = new KnoxShellTable();
+    return sort((a, b) -> ((Comparable) col.get(a)).compareTo(col.get(b)), order);
+  }
 
-    Comparable<? extends Object> value;
-    List<RowIndex> index = new ArrayList<>();
-    for (int i = 0; i < col.size(); i++) {
-      value = col.get(i);
-      index.add(new RowIndex(value, i));
-    }
-    if (SortOrder.ASCENDING.equals(order)) {
-      Collections.sort(index);
-    }
-    else {
-      index.sort(Collections.reverseOrder());
+  /* Sorts row indexes rather than rows and copies the rows, column by column, in the resulting order */
+  private KnoxShellTable sort(Comparator<Integer> comparator, SortOrder order) {
+    final Integer[] index = new Integer[rows.size()];
+    for (int i = 0; i < index.length; i++) {
+      index[i] = i;
     }
+    Arrays.sort(index, SortOrder.ASCENDING.equals(order) ? comparator : comparator.reversed());
+    final int[] sorted = Arrays.stream(index).mapToInt(Integer::intValue).toArray();
+    KnoxShellTable table = new KnoxShellTable();
     table.headers = new ArrayList<>(headers);
-    for (RowIndex i : index) {
-      table.rows.add(new ArrayList<>(this.rows.get(i.index)));
-    }
+    table.rows = rows.gather(sorted);
     return table;
   }
 
-  @SuppressWarnings("PMD.OverrideBothEqualsAndHashCodeOnComparable")
-  private static class RowIndex implements Comparable<RowIndex> {
-    Comparable value;
-    int index;
-
-    RowIndex(Comparable<? extends Object> value, int index) {
-      this.value = value;
-      this.index = index;
-    }
-
-    @Override
-    public int compareTo(RowIndex other) {
-      return this.value.compareTo(other.value);
-    }
-  }
-
   @Override
   public String toString() {
     return new KnoxShellTableRenderer(this).toString();
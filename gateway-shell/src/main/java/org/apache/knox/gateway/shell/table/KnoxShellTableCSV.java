@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.table;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes CSV as described by RFC 4180. Fields are separated by
+ * commas; a field may be enclosed in double quotes, in which case it may
+ * contain commas, line breaks and doubled double quotes. Reading is a single
+ * pass over the input, so the cost is linear in its length however many quotes
+ * it contains.
+ */
+final class KnoxShellTableCSV {
+
+  /**
+   * Receives the records read by {@link #read(Reader, RecordHandler)}.
+   */
+  interface RecordHandler {
+    void record(List<String> fields) throws IOException;
+  }
+
+  private KnoxShellTableCSV() {
+  }
+
+  /**
+   * Reads every record of the given CSV input. A line break ends a record
+   * unless it is quoted; CRLF, LF and CR are all accepted. A line break at the
+   * very end of the input does not start another record.
+   */
+  static void read(Reader reader, RecordHandler handler) throws IOException {
+    final StringBuilder field = new StringBuilder();
+    List<String> fields = new ArrayList<>();
+    boolean quoted = false;
+    boolean inRecord = false;
+    int c = reader.read();
+    while (c != -1) {
+      if (quoted) {
+        if (c == '"') {
+          c = reader.read();
+          if (c == '"') {
+            field.append('"');
+          } else {
+            quoted = false;
+            continue;
+          }
+        } else {
+          field.append((char) c);
+        }
+      } else if (c == '"' && field.length() == 0) {
+        quoted = true;
+        inRecord = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+        inRecord = true;
+      } else if (c == '\n' || c == '\r') {
+        fields.add(field.toString());
+        field.setLength(0);
+        handler.record(fields);
+        fields = new ArrayList<>();
+        inRecord = false;
+        if (c == '\r') {
+          c = reader.read();
+          if (c != '\n') {
+            continue;
+          }
+        }
+      } else {
+        field.append((char) c);
+        inRecord = true;
+      }
+      c = reader.read();
+    }
+    if (inRecord || field.length() > 0) {
+      fields.add(field.toString());
+      handler.record(fields);
+    }
+  }
+
+  /**
+   * Appends the given values as one CSV record, quoting values that contain a
+   * comma, a double quote or a line break.
+   */
+  static void appendRecord(Appendable csv, List<?> values) throws IOException {
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        csv.append(',');
+      }
+      appendField(csv, values.get(i));
+    }
+    csv.append('\n');
+  }
+
+  /* null, such as SQL NULL, is written as an empty field */
+  private static void appendField(Appendable csv, Object value) throws IOException {
+    if (value == null) {
+      return;
+    }
+    final String text = String.valueOf(value);
+    boolean quote = false;
+    for (int i = 0; i < text.length() && !quote; i++) {
+      final char c = text.charAt(i);
+      quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+    }
+    if (!quote) {
+      csv.append(text);
+      return;
+    }
+    csv.append('"');
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '"') {
+        csv.append('"');
+      }
+      csv.append(c);
+    }
+    csv.append('"');
+  }
+}
@@ -0,0 +1,572 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single column of a {@link KnoxShellTable}. Integral and floating point
+ * values are stored in primitive arrays and strings are dictionary encoded, so
+ * large numeric extracts do not hold one boxed object per cell. A column keeps
+ * the class of the values it was given and boxes them back to that class when
+ * read, so callers of the row oriented API see exactly what they stored.
+ * Columns holding any other or mixed types fall back to an object array.
+ */
+abstract class KnoxShellTableColumn {
+  private static final String NUMERIC_PATTERN = "-?\\d+(\\.\\d+)?";
+  private static final int INITIAL_CAPACITY = 16;
+
+  /* null bitmap: a set bit marks a cell holding a value */
+  BitSet present = new BitSet();
+  int size;
+  private int modCount;
+  private int doublesModCount = -1;
+  private double[] doubles;
+
+  /**
+   * @param size the number of rows
+   * @return a column of the given size holding no values
+   */
+  static KnoxShellTableColumn empty(int size) {
+    final KnoxShellTableColumn column = new ObjectColumn();
+    column.resize(size);
+    return column;
+  }
+
+  private static KnoxShellTableColumn forValue(Comparable<?> value, int size) {
+    final KnoxShellTableColumn column;
+    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      column = new LongColumn(value.getClass());
+    } else if (value instanceof Double || value instanceof Float) {
+      column = new DoubleColumn(value.getClass());
+    } else if (value instanceof String) {
+      column = new StringColumn();
+    } else {
+      column = new ObjectColumn();
+    }
+    column.resize(size);
+    return column;
+  }
+
+  Comparable<?> get(int row) {
+    checkIndex(row);
+    return present.get(row) ? box(row) : null;
+  }
+
+  /**
+   * Stores the value in the given row.
+   *
+   * @return the column now holding the value; a new column is returned if this
+   *         column's storage type cannot hold it
+   */
+  KnoxShellTableColumn set(int row, Comparable<?> value) {
+    checkIndex(row);
+    if (value == null) {
+      present.clear(row);
+      modCount++;
+      return this;
+    }
+    KnoxShellTableColumn column = this;
+    if (!accepts(value)) {
+      column = present.isEmpty() ? forValue(value, size) : toObjectColumn();
+    }
+    column.store(row, value);
+    column.present.set(row);
+    column.modCount++;
+    return column;
+  }
+
+  void appendNull() {
+    resize(size + 1);
+  }
+
+  /**
+   * Inserts an empty cell before the given row, moving it and the following rows down.
+   */
+  void insertNull(int row) {
+    if (row < 0 || row > size) {
+      throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+    }
+    final int tail = size - row;
+    resize(size + 1);
+    move(row, row + 1, tail);
+    for (int i = size - 1; i > row; i--) {
+      present.set(i, present.get(i - 1));
+    }
+    present.clear(row);
+    modCount++;
+  }
+
+  void remove(int row) {
+    checkIndex(row);
+    final int tail = size - row - 1;
+    move(row + 1, row, tail);
+    for (int i = row; i < size - 1; i++) {
+      present.set(i, present.get(i + 1));
+    }
+    present.clear(size - 1);
+    size--;
+    modCount++;
+  }
+
+  /**
+   * @param rows the rows to copy, in the order they are to appear; a negative
+   *             row leaves the cell empty
+   * @return a new column holding the values of the given rows
+   */
+  KnoxShellTableColumn gather(int[] rows) {
+    final KnoxShellTableColumn column = newEmpty();
+    column.resize(rows.length);
+    for (int i = 0; i < rows.length; i++) {
+      if (rows[i] < 0) {
+        continue;
+      }
+      checkIndex(rows[i]);
+      if (present.get(rows[i])) {
+        column.copyFrom(this, rows[i], i);
+        column.present.set(i);
+      }
+    }
+    return column;
+  }
+
+  /**
+   * Compares the values of two rows of this column; empty cells sort first.
+   */
+  int compare(int a, int b) {
+    final boolean hasA = present.get(a);
+    final boolean hasB = present.get(b);
+    if (!hasA || !hasB) {
+      return hasA ? 1 : (hasB ? -1 : 0);
+    }
+    return compareValues(a, b);
+  }
+
+  /**
+   * @return the column's values as doubles; the array is cached until the
+   *         column is modified and must not be changed by the caller
+   * @throws IllegalArgumentException if the column holds non-numeric values
+   */
+  double[] toDoubleArray() {
+    if (doubles == null || doublesModCount != modCount) {
+      if (size > 0 && present.nextClearBit(0) < size) {
+        throw new IllegalArgumentException("Unsupported data type");
+      }
+      doubles = computeDoubles();
+      doublesModCount = modCount;
+    }
+    return doubles;
+  }
+
+  void resize(int newSize) {
+    if (newSize > capacity()) {
+      grow(Math.max(newSize, Math.max(INITIAL_CAPACITY, capacity() * 2)));
+    }
+    size = newSize;
+    modCount++;
+  }
+
+  private void checkIndex(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+    }
+  }
+
+  private KnoxShellTableColumn toObjectColumn() {
+    final ObjectColumn column = new ObjectColumn();
+    column.resize(size);
+    for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+      column.values[i] = box(i);
+    }
+    column.present = (BitSet) present.clone();
+    return column;
+  }
+
+  static double parseNumeric(String value, boolean first) {
+    final String trimmed = value.trim();
+    if (trimmed.isEmpty()) {
+      return 0;
+    }
+    if (first && !value.matches(NUMERIC_PATTERN)) {
+      throw new IllegalArgumentException("String contains non-numeric characters");
+    }
+    return Double.parseDouble(value);
+  }
+
+  abstract boolean accepts(Comparable<?> value);
+
+  abstract void store(int row, Comparable<?> value);
+
+  abstract Comparable<?> box(int row);
+
+  abstract int capacity();
+
+  abstract void grow(int capacity);
+
+  abstract void move(int from, int to, int length);
+
+  abstract KnoxShellTableColumn newEmpty();
+
+  abstract void copyFrom(KnoxShellTableColumn source, int sourceRow, int row);
+
+  abstract int compareValues(int a, int b);
+
+  abstract double[] computeDoubles();
+
+  /* Byte, Short, Integer and Long values */
+  static class LongColumn extends KnoxShellTableColumn {
+    private final Class<?> type;
+    private long[] values = new long[0];
+
+    LongColumn(Class<?> type) {
+      this.type = type;
+    }
+
+    @Override
+    boolean accepts(Comparable<?> value) {
+      return value.getClass() == type;
+    }
+
+    @Override
+    void store(int row, Comparable<?> value) {
+      values[row] = ((Number) value).longValue();
+    }
+
+    @Override
+    Comparable<?> box(int row) {
+      final long value = values[row];
+      if (type == Integer.class) {
+        return (int) value;
+      } else if (type == Short.class) {
+        return (short) value;
+      } else if (type == Byte.class) {
+        return (byte) value;
+      }
+      return value;
+    }
+
+    @Override
+    int capacity() {
+      return values.length;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void move(int from, int to, int length) {
+      System.arraycopy(values, from, values, to, length);
+    }
+
+    @Override
+    KnoxShellTableColumn newEmpty() {
+      return new LongColumn(type);
+    }
+
+    @Override
+    void copyFrom(KnoxShellTableColumn source, int sourceRow, int row) {
+      values[row] = ((LongColumn) source).values[sourceRow];
+    }
+
+    @Override
+    int compareValues(int a, int b) {
+      return Long.compare(values[a], values[b]);
+    }
+
+    @Override
+    double[] computeDoubles() {
+      return Arrays.stream(values, 0, size).asDoubleStream().toArray();
+    }
+  }
+
+  /* Float and Double values */
+  static class DoubleColumn extends KnoxShellTableColumn {
+    private final Class<?> type;
+    private double[] values = new double[0];
+
+    DoubleColumn(Class<?> type) {
+      this.type = type;
+    }
+
+    @Override
+    boolean accepts(Comparable<?> value) {
+      return value.getClass() == type;
+    }
+
+    @Override
+    void store(int row, Comparable<?> value) {
+      values[row] = ((Number) value).doubleValue();
+    }
+
+    @Override
+    Comparable<?> box(int row) {
+      if (type == Float.class) {
+        return (float) values[row];
+      }
+      return values[row];
+    }
+
+    @Override
+    int capacity() {
+      return values.length;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void move(int from, int to, int length) {
+      System.arraycopy(values, from, values, to, length);
+    }
+
+    @Override
+    KnoxShellTableColumn newEmpty() {
+      return new DoubleColumn(type);
+    }
+
+    @Override
+    void copyFrom(KnoxShellTableColumn source, int sourceRow, int row) {
+      values[row] = ((DoubleColumn) source).values[sourceRow];
+    }
+
+    @Override
+    int compareValues(int a, int b) {
+      return Double.compare(values[a], values[b]);
+    }
+
+    @Override
+    double[] computeDoubles() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  /*
+   * Dictionary encoded String values. Columns gathered from one another share
+   * their dictionary until either of them needs to add a string to it, at which
+   * point that column rebuilds a dictionary of its own holding only the strings
+   * it uses. The dictionary is also rebuilt when most of its strings are no
+   * longer used by any row.
+   */
+  static class StringColumn extends KnoxShellTableColumn {
+    private List<String> dictionary;
+    private Map<String, Integer> codes;
+    private boolean shared;
+    private int[] values = new int[0];
+
+    StringColumn() {
+      this(new ArrayList<>(), new HashMap<>());
+    }
+
+    private StringColumn(List<String> dictionary, Map<String, Integer> codes) {
+      this.dictionary = dictionary;
+      this.codes = codes;
+    }
+
+    @Override
+    boolean accepts(Comparable<?> value) {
+      return value instanceof String;
+    }
+
+    @Override
+    void store(int row, Comparable<?> value) {
+      Integer code = codes.get(value);
+      if (code == null) {
+        if (shared || isSparse()) {
+          compact();
+        }
+        code = dictionary.size();
+        dictionary.add((String) value);
+        codes.put((String) value, code);
+      }
+      values[row] = code;
+    }
+
+    @Override
+    KnoxShellTableColumn gather(int[] rows) {
+      final StringColumn column = (StringColumn) super.gather(rows);
+      if (column.isSparse()) {
+        column.compact();
+      }
+      return column;
+    }
+
+    int dictionarySize() {
+      return dictionary.size();
+    }
+
+    /* there are more than twice as many strings as rows, so at least half of them are unused */
+    private boolean isSparse() {
+      return dictionary.size() > 2 * size + INITIAL_CAPACITY;
+    }
+
+    /* Replaces the dictionary with a new one holding only the strings of the present cells */
+    private void compact() {
+      final List<String> compacted = new ArrayList<>();
+      final Map<String, Integer> compactedCodes = new HashMap<>();
+      final int[] recoded = new int[dictionary.size()];
+      Arrays.fill(recoded, -1);
+      for (int i = present.nextSetBit(0); i >= 0 && i < size; i = present.nextSetBit(i + 1)) {
+        final int code = values[i];
+        if (recoded[code] < 0) {
+          recoded[code] = compacted.size();
+          compacted.add(dictionary.get(code));
+          compactedCodes.put(dictionary.get(code), recoded[code]);
+        }
+        values[i] = recoded[code];
+      }
+      dictionary = compacted;
+      codes = compactedCodes;
+      shared = false;
+    }
+
+    @Override
+    Comparable<?> box(int row) {
+      return dictionary.get(values[row]);
+    }
+
+    @Override
+    int capacity() {
+      return values.length;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void move(int from, int to, int length) {
+      System.arraycopy(values, from, values, to, length);
+    }
+
+    @Override
+    KnoxShellTableColumn newEmpty() {
+      final StringColumn column = new StringColumn(dictionary, codes);
+      column.shared = true;
+      shared = true;
+      return column;
+    }
+
+    @Override
+    void copyFrom(KnoxShellTableColumn source, int sourceRow, int row) {
+      values[row] = ((StringColumn) source).values[sourceRow];
+    }
+
+    @Override
+    int compareValues(int a, int b) {
+      return dictionary.get(values[a]).compareTo(dictionary.get(values[b]));
+    }
+
+    @Override
+    double[] computeDoubles() {
+      final double[] result = new double[size];
+      if (size > 0) {
+        /* every distinct string is parsed once */
+        final double[] parsed = new double[dictionary.size()];
+        final BitSet isParsed = new BitSet(dictionary.size());
+        parseNumeric(dictionary.get(values[0]), true);
+        for (int i = 0; i < size; i++) {
+          final int code = values[i];
+          if (!isParsed.get(code)) {
+            parsed[code] = parseNumeric(dictionary.get(code), false);
+            isParsed.set(code);
+          }
+          result[i] = parsed[code];
+        }
+      }
+      return result;
+    }
+  }
+
+  /* Values of any other, or of mixed, types */
+  static class ObjectColumn extends KnoxShellTableColumn {
+    private Comparable<?>[] values = new Comparable<?>[0];
+
+    @Override
+    boolean accepts(Comparable<?> value) {
+      return !present.isEmpty();
+    }
+
+    @Override
+    void store(int row, Comparable<?> value) {
+      values[row] = value;
+    }
+
+    @Override
+    Comparable<?> box(int row) {
+      return values[row];
+    }
+
+    @Override
+    int capacity() {
+      return values.length;
+    }
+
+    @Override
+    void grow(int capacity) {
+      values = Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void move(int from, int to, int length) {
+      System.arraycopy(values, from, values, to, length);
+      values[size - 1] = null;
+    }
+
+    @Override
+    KnoxShellTableColumn newEmpty() {
+      return new ObjectColumn();
+    }
+
+    @Override
+    void copyFrom(KnoxShellTableColumn source, int sourceRow, int row) {
+      values[row] = ((ObjectColumn) source).values[sourceRow];
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    int compareValues(int a, int b) {
+      return ((Comparable) values[a]).compareTo(values[b]);
+    }
+
+    @Override
+    double[] computeDoubles() {
+      final double[] result = new double[size];
+      for (int i = 0; i < size; i++) {
+        final Comparable<?> value = values[i];
+        if (value instanceof Number) {
+          result[i] = ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+          result[i] = parseNumeric((String) value, i == 0);
+        } else {
+          throw new IllegalArgumentException("Unsupported data type");
+        }
+      }
+      return result;
+    }
+  }
+}
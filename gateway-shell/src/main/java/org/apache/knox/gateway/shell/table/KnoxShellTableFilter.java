@@ -17,6 +17,7 @@
  */
 package org.apache.knox.gateway.shell.table;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
@@ -58,14 +59,15 @@ public class KnoxShellTableFilter {
   public KnoxShellTable regex(Comparable<String> regex) {
     final Pattern pattern = Pattern.compile((String) regex);
     prepareFilteredTable();
-    for (List<Comparable<?>> row : tableToFilter.rows) {
-      if (pattern.matcher(row.get(index).toString()).matches()) {
-        filteredTable.row();
-        row.forEach(value -> {
-          filteredTable.value(value);
-        });
+    final KnoxShellTableRows rows = tableToFilter.rows;
+    final int[] matches = new int[rows.size()];
+    int count = 0;
+    for (int i = 0; i < rows.size(); i++) {
+      if (pattern.matcher(rows.getValue(i, index).toString()).matches()) {
+        matches[count++] = i;
       }
     }
+    filteredTable.rows = rows.gather(Arrays.copyOf(matches, count));
     return filteredTable;
   }
 
@@ -78,15 +80,16 @@ public class KnoxShellTableFilter {
   private KnoxShellTable filter(Predicate<Comparable> p) throws KnoxShellTableFilterException {
     try {
       prepareFilteredTable();
-      for (List<Comparable<? extends Object>> row : tableToFilter.rows) {
-        if (p.test(row.get(index))) {
-          filteredTable.row(); // Adds a new empty row to filtered table
-          // Add each value to the row
-          row.forEach(value -> {
-            filteredTable.value(value);
-          });
+      // Collect the matching rows first and copy them column by column
+      final KnoxShellTableRows rows = tableToFilter.rows;
+      final int[] matches = new int[rows.size()];
+      int count = 0;
+      for (int i = 0; i < rows.size(); i++) {
+        if (p.test(rows.getValue(i, index))) {
+          matches[count++] = i;
         }
       }
+      filteredTable.rows = rows.gather(Arrays.copyOf(matches, count));
       return filteredTable;
     } catch (Exception e) {
       throw new KnoxShellTableFilterException(e);
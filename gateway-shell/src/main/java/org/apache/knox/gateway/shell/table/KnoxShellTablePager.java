@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.table;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Splits a stream of rows into {@link KnoxShellTable} pages of a fixed number
+ * of rows, handing each page to a consumer as soon as it is full. Only one
+ * page is held in memory at a time.
+ */
+class KnoxShellTablePager {
+  static final int DEFAULT_PAGE_SIZE = 10000;
+
+  private final String title;
+  private final List<String> headers;
+  private final int pageSize;
+  private final Consumer<KnoxShellTable> consumer;
+  private KnoxShellTable page;
+  private long rowCount;
+
+  KnoxShellTablePager(String title, List<String> headers, int pageSize, Consumer<KnoxShellTable> consumer) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+    this.title = title;
+    this.headers = headers;
+    this.pageSize = pageSize;
+    this.consumer = consumer;
+  }
+
+  void row() {
+    if (page != null && page.rows.size() == pageSize) {
+      flush();
+    }
+    if (page == null) {
+      page = new KnoxShellTable();
+      page.title = title;
+      page.headers.addAll(headers);
+    }
+    page.row();
+    rowCount++;
+  }
+
+  void value(Comparable<? extends Object> value) {
+    page.value(value);
+  }
+
+  /**
+   * Hands the last, partially filled page to the consumer.
+   *
+   * @return the number of rows in all pages
+   */
+  long finish() {
+    if (page != null) {
+      flush();
+    }
+    return rowCount;
+  }
+
+  private void flush() {
+    final KnoxShellTable full = page;
+    page = null;
+    consumer.accept(full);
+  }
+}
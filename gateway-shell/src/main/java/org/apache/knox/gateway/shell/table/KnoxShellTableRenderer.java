@@ -18,6 +18,7 @@
 package org.apache.knox.gateway.shell.table;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -44,25 +45,18 @@ class KnoxShellTableRenderer {
 
   String toCSV(String filePath) {
     final StringBuilder csv = new StringBuilder();
-    String header;
-    for (int i = 0; i < tableToRender.headers.size(); i++) {
-      header = tableToRender.headers.get(i);
-      csv.append(header);
-      if (i < tableToRender.headers.size() - 1) {
-        csv.append(',');
-      } else {
-        csv.append('\n');
+    try {
+      if (!tableToRender.headers.isEmpty()) {
+        KnoxShellTableCSV.appendRecord(csv, tableToRender.headers);
       }
-    }
-    for (List<Comparable<? extends Object>> row : tableToRender.rows) {
-      for (int ii = 0; ii < row.size(); ii++) {
-        csv.append(row.get(ii));
-        if (ii < row.size() - 1) {
-          csv.append(',');
-        } else {
-          csv.append('\n');
+      for (List<Comparable<? extends Object>> row : tableToRender.rows) {
+        if (!row.isEmpty()) {
+          KnoxShellTableCSV.appendRecord(csv, row);
         }
       }
+    } catch (IOException e) {
+      // appending to a StringBuilder does not fail
+      throw new UncheckedIOException(e);
     }
     String content = csv.toString();
     if (filePath != null) {
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.table;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage behind {@link KnoxShellTable#getRows()}. The rows are
+ * exposed as a list of live row views so the existing row oriented API keeps
+ * working, while the cells are held in typed {@link KnoxShellTableColumn}s.
+ * Rows may have different lengths, just like the lists they replace.
+ */
+class KnoxShellTableRows extends AbstractList<List<Comparable<? extends Object>>> {
+  private final List<KnoxShellTableColumn> columns = new ArrayList<>();
+  private int[] rowLengths = new int[16];
+  private int size;
+
+  @Override
+  public List<Comparable<? extends Object>> get(int index) {
+    checkRow(index);
+    return new Row(index);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void add(int index, List<Comparable<? extends Object>> row) {
+    if (index == size) {
+      appendRow();
+    } else {
+      insertRow(index);
+    }
+    for (Comparable<? extends Object> value : row) {
+      addValue(index, value);
+    }
+  }
+
+  @Override
+  public List<Comparable<? extends Object>> set(int index, List<Comparable<? extends Object>> row) {
+    final List<Comparable<? extends Object>> previous = new ArrayList<>(get(index));
+    for (int col = 0; col < rowLengths[index]; col++) {
+      setValue(index, col, null);
+    }
+    rowLengths[index] = 0;
+    for (Comparable<? extends Object> value : row) {
+      addValue(index, value);
+    }
+    return previous;
+  }
+
+  @Override
+  public List<Comparable<? extends Object>> remove(int index) {
+    final List<Comparable<? extends Object>> removed = new ArrayList<>(get(index));
+    for (KnoxShellTableColumn column : columns) {
+      column.remove(index);
+    }
+    System.arraycopy(rowLengths, index + 1, rowLengths, index, size - index - 1);
+    size--;
+    modCount++;
+    return removed;
+  }
+
+  void appendRow() {
+    if (size == rowLengths.length) {
+      rowLengths = Arrays.copyOf(rowLengths, size * 2);
+    }
+    rowLengths[size++] = 0;
+    for (KnoxShellTableColumn column : columns) {
+      column.appendNull();
+    }
+    modCount++;
+  }
+
+  private void insertRow(int row) {
+    if (row < 0 || row > size) {
+      throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+    }
+    if (size == rowLengths.length) {
+      rowLengths = Arrays.copyOf(rowLengths, size * 2);
+    }
+    System.arraycopy(rowLengths, row, rowLengths, row + 1, size - row);
+    rowLengths[row] = 0;
+    size++;
+    for (KnoxShellTableColumn column : columns) {
+      column.insertNull(row);
+    }
+    modCount++;
+  }
+
+  /**
+   * Appends a value to the end of the given row.
+   */
+  void addValue(int row, Comparable<? extends Object> value) {
+    checkRow(row);
+    final int col = rowLengths[row];
+    if (col == columns.size()) {
+      columns.add(KnoxShellTableColumn.empty(size));
+    }
+    rowLengths[row]++;
+    setValue(row, col, value);
+  }
+
+  Comparable<? extends Object> getValue(int row, int col) {
+    checkCell(row, col);
+    return columns.get(col).get(row);
+  }
+
+  void setValue(int row, int col, Comparable<? extends Object> value) {
+    checkCell(row, col);
+    columns.set(col, columns.get(col).set(row, value));
+  }
+
+  /**
+   * @return a read-only view of the given column
+   */
+  List<Comparable<? extends Object>> column(int col) {
+    return new AbstractList<Comparable<? extends Object>>() {
+      @Override
+      public Comparable<? extends Object> get(int row) {
+        return getValue(row, col);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * @return the values of the given column as doubles; see {@link KnoxShellTableColumn#toDoubleArray()}
+   */
+  double[] toDoubleArray(int col) {
+    if (size == 0) {
+      return new double[0];
+    }
+    checkColumn(col);
+    return columns.get(col).toDoubleArray();
+  }
+
+  int rowLength(int row) {
+    checkRow(row);
+    return rowLengths[row];
+  }
+
+  int columnCount() {
+    return columns.size();
+  }
+
+  int compare(int col, int rowA, int rowB) {
+    return columns.get(col).compare(rowA, rowB);
+  }
+
+  /**
+   * @param rows the rows to copy, in the order they are to appear
+   * @return new storage holding copies of the given rows
+   */
+  KnoxShellTableRows gather(int[] rows) {
+    final KnoxShellTableRows gathered = new KnoxShellTableRows();
+    for (KnoxShellTableColumn column : columns) {
+      gathered.columns.add(column.gather(rows));
+    }
+    gathered.rowLengths = new int[Math.max(rows.length, 1)];
+    for (int i = 0; i < rows.length; i++) {
+      gathered.rowLengths[i] = rowLengths[rows[i]];
+    }
+    gathered.size = rows.length;
+    return gathered;
+  }
+
+  /**
+   * Places the given rows of two tables side by side.
+   *
+   * @param left       the rows of the left table
+   * @param leftWidth  the number of columns taken by the left table
+   * @param leftRows   the left rows to copy; a negative row leaves the left cells empty
+   * @param right      the rows of the right table
+   * @param rightWidth the number of columns taken by the right table
+   * @param rightRows  the right rows to copy; a negative row leaves the right cells empty
+   * @return new storage holding <code>leftRows.length</code> rows of <code>leftWidth + rightWidth</code> cells
+   */
+  static KnoxShellTableRows concat(KnoxShellTableRows left, int leftWidth, int[] leftRows,
+                                   KnoxShellTableRows right, int rightWidth, int[] rightRows) {
+    final KnoxShellTableRows joined = new KnoxShellTableRows();
+    joined.addColumns(left, leftWidth, leftRows);
+    joined.addColumns(right, rightWidth, rightRows);
+    joined.rowLengths = new int[Math.max(leftRows.length, 1)];
+    Arrays.fill(joined.rowLengths, 0, leftRows.length, leftWidth + rightWidth);
+    joined.size = leftRows.length;
+    return joined;
+  }
+
+  private void addColumns(KnoxShellTableRows source, int width, int[] rows) {
+    for (int col = 0; col < width; col++) {
+      columns.add(col < source.columns.size() ? source.columns.get(col).gather(rows) : KnoxShellTableColumn.empty(rows.length));
+    }
+  }
+
+  /**
+   * @param cols the columns to copy, in the order they are to appear
+   * @return new storage holding copies of the given columns of every row
+   */
+  KnoxShellTableRows project(int[] cols) {
+    final int[] all = new int[size];
+    for (int i = 0; i < size; i++) {
+      all[i] = i;
+    }
+    final KnoxShellTableRows projected = new KnoxShellTableRows();
+    for (int col : cols) {
+      if (size > 0) {
+        checkColumn(col);
+      }
+      projected.columns.add(size > 0 ? columns.get(col).gather(all) : KnoxShellTableColumn.empty(0));
+    }
+    projected.rowLengths = new int[Math.max(size, 1)];
+    Arrays.fill(projected.rowLengths, 0, size, cols.length);
+    projected.size = size;
+    return projected;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+    }
+  }
+
+  private void checkCell(int row, int col) {
+    checkRow(row);
+    if (col < 0 || col >= rowLengths[row]) {
+      throw new IndexOutOfBoundsException("Index: " + col + ", Size: " + rowLengths[row]);
+    }
+  }
+
+  private void checkColumn(int col) {
+    if (col < 0 || col >= columns.size()) {
+      throw new IndexOutOfBoundsException("Index: " + col + ", Size: " + columns.size());
+    }
+  }
+
+  /* A live view of a single row */
+  private class Row extends AbstractList<Comparable<? extends Object>> {
+    private final int index;
+
+    Row(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public Comparable<? extends Object> get(int col) {
+      return getValue(index, col);
+    }
+
+    @Override
+    public Comparable<? extends Object> set(int col, Comparable<? extends Object> value) {
+      final Comparable<? extends Object> previous = getValue(index, col);
+      setValue(index, col, value);
+      return previous;
+    }
+
+    @Override
+    public void add(int col, Comparable<? extends Object> value) {
+      final int length = size();
+      if (col < 0 || col > length) {
+        throw new IndexOutOfBoundsException("Index: " + col + ", Size: " + length);
+      }
+      addValue(index, null);
+      for (int i = length; i > col; i--) {
+        setValue(index, i, getValue(index, i - 1));
+      }
+      setValue(index, col, value);
+      modCount++;
+    }
+
+    @Override
+    public Comparable<? extends Object> remove(int col) {
+      final Comparable<? extends Object> removed = getValue(index, col);
+      final int last = size() - 1;
+      for (int i = col; i < last; i++) {
+        setValue(index, i, getValue(index, i + 1));
+      }
+      setValue(index, last, null);
+      rowLengths[index]--;
+      modCount++;
+      return removed;
+    }
+
+    @Override
+    public int size() {
+      return rowLengths[index];
+    }
+  }
+}
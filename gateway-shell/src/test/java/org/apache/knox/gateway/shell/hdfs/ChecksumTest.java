@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.hdfs;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChecksumTest {
+
+  private static final int BYTES_PER_CRC = 512;
+  private static final int CRC_PER_BLOCK = 2;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLocalChecksumMatchesRemoteChecksum() throws Exception {
+    // Two full blocks and a partial third block ending in a partial chunk.
+    byte[] data = new byte[ 2 * BYTES_PER_CRC * CRC_PER_BLOCK + BYTES_PER_CRC + 100 ];
+    new Random( 42 ).nextBytes( data );
+    File file = folder.newFile();
+    Files.write( file.toPath(), data );
+
+    byte[] expected = md5md5crc( data, BYTES_PER_CRC * CRC_PER_BLOCK );
+    Checksum.Response response = response( "MD5-of-" + CRC_PER_BLOCK + "MD5-of-" + BYTES_PER_CRC + "CRC32C",
+        BYTES_PER_CRC, CRC_PER_BLOCK, expected );
+    assertEquals( 28, response.getLength() );
+    assertTrue( response.matches( file ) );
+
+    data[ data.length - 1 ]++;
+    Files.write( file.toPath(), data );
+    assertFalse( response.matches( file ) );
+  }
+
+  @Test
+  public void testSingleBlockFile() throws Exception {
+    byte[] data = new byte[ 3 * BYTES_PER_CRC ];
+    new Random( 7 ).nextBytes( data );
+    File file = folder.newFile();
+    Files.write( file.toPath(), data );
+
+    // A file with a single block reports zero CRCs per block.
+    byte[] expected = md5md5crc( data, Long.MAX_VALUE );
+    assertArrayEquals( expected, Checksum.compute( file, "MD5-of-0MD5-of-512CRC32C",
+        Hex.encodeHexString( header( BYTES_PER_CRC, 0, expected ) ) ) );
+  }
+
+  @Test
+  public void testEmptyFileMatchesChecksumReportedByHdfs() throws Exception {
+    // The output of "hdfs dfs -checksum" for an empty file: HDFS digests its empty, 32 byte block digest buffer.
+    File file = folder.newFile();
+    Checksum.Response response = response( "MD5-of-0MD5-of-0CRC32",
+        "00000000000000000000000070bc8f4b72a86921468bf8e8441dce51" );
+    assertTrue( response.isSupported() );
+    assertTrue( response.matches( file ) );
+
+    Files.write( file.toPath(), new byte[] { 1 } );
+    assertFalse( response.matches( file ) );
+  }
+
+  @Test( expected = UnsupportedOperationException.class )
+  public void testUnsupportedAlgorithm() throws Exception {
+    File file = folder.newFile();
+    Checksum.Response response = response( "COMPOSITE-CRC32C", BYTES_PER_CRC, 0, new byte[ 16 ] );
+    assertFalse( response.isSupported() );
+    response.matches( file );
+  }
+
+  private static Checksum.Response response( String algorithm, int bytesPerCrc, long crcPerBlock, byte[] md5 )
+      throws Exception {
+    return response( algorithm, Hex.encodeHexString( header( bytesPerCrc, crcPerBlock, md5 ) ) );
+  }
+
+  private static Checksum.Response response( String algorithm, String bytes ) throws Exception {
+    String json = "{\"FileChecksum\":{\"algorithm\":\"" + algorithm + "\",\"bytes\":\""
+        + bytes + "\",\"length\":28}}";
+    HttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+    response.setEntity( new StringEntity( json, ContentType.APPLICATION_JSON ) );
+    return new Checksum.Response( response );
+  }
+
+  private static byte[] header( int bytesPerCrc, long crcPerBlock, byte[] md5 ) {
+    return ByteBuffer.allocate( 28 ).putInt( bytesPerCrc ).putLong( crcPerBlock ).put( md5 ).array();
+  }
+
+  private static byte[] md5md5crc( byte[] data, long blockSize ) {
+    // HDFS digests the whole buffer of block digests, padded with zeros to 32 bytes, 64 bytes, and so on
+    int blocks = blockSize >= data.length ? 1 : (int) ( ( data.length + blockSize - 1 ) / blockSize );
+    ByteBuffer file = ByteBuffer.allocate( Math.max( 32, Integer.highestOneBit( blocks * 16 - 1 ) << 1 ) );
+    for( long block = 0; block < data.length; block += blockSize ) {
+      int end = (int) Math.min( data.length, block + blockSize );
+      ByteBuffer crcs = ByteBuffer.allocate( ( end - (int) block + BYTES_PER_CRC - 1 ) / BYTES_PER_CRC * 4 );
+      for( int chunk = (int) block; chunk < end; chunk += BYTES_PER_CRC ) {
+        CRC32C crc = new CRC32C();
+        crc.update( Arrays.copyOfRange( data, chunk, Math.min( end, chunk + BYTES_PER_CRC ) ) );
+        crcs.putInt( (int) crc.getValue() );
+      }
+      file.put( DigestUtils.md5( crcs.array() ) );
+    }
+    return DigestUtils.md5( file.array() );
+  }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.shell.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import de.thetaphi.forbiddenapis.SuppressForbidden;
+import org.apache.commons.math3.stat.StatUtils;
+
+/**
+ * Compares the memory footprint and aggregation throughput of the columnar
+ * {@link KnoxShellTable} storage with the boxed, row oriented layout it
+ * replaced. This is not a unit test; run it manually with
+ * <code>java ... KnoxShellTableBenchmark [rows]</code>.
+ */
+public class KnoxShellTableBenchmark {
+  private static final int ITERATIONS = 20;
+
+  public static void main(String[] args) throws KnoxShellTableFilterException {
+    final int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+    long before = usedMemory();
+    final List<List<Comparable<? extends Object>>> boxedRows = buildBoxedRows(rowCount);
+    final long boxedBytes = usedMemory() - before;
+
+    before = usedMemory();
+    final KnoxShellTable table = buildTable(rowCount);
+    final long columnarBytes = usedMemory() - before;
+
+    report("memory (MB)", boxedBytes / (1024.0 * 1024.0), columnarBytes / (1024.0 * 1024.0));
+
+    double sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      sink += boxedMean(boxedRows, 1);
+    }
+    final double boxedMillis = (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+
+    start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      sink -= table.mean("value");
+    }
+    final double columnarMillis = (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+
+    report("mean (ms/op)", boxedMillis, columnarMillis);
+
+    start = System.nanoTime();
+    table.filter().name("category").equalTo("c7");
+    report("filter (ms)", Double.NaN, (System.nanoTime() - start) / 1_000_000.0);
+
+    start = System.nanoTime();
+    table.sort("value");
+    report("sort (ms)", Double.NaN, (System.nanoTime() - start) / 1_000_000.0);
+
+    // keeps the aggregations from being optimized away
+    System.out.println(String.format(Locale.ROOT, "(checksum %.1f, rows %d/%d)", sink, boxedRows.size(), table.getRows().size()));
+  }
+
+  private static List<List<Comparable<? extends Object>>> buildBoxedRows(int rowCount) {
+    final List<List<Comparable<? extends Object>>> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      final List<Comparable<? extends Object>> row = new ArrayList<>();
+      row.add((long) i);
+      row.add(i * 0.5d);
+      row.add("c" + (i % 10));
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private static KnoxShellTable buildTable(int rowCount) {
+    final KnoxShellTable table = new KnoxShellTable();
+    table.header("id").header("value").header("category");
+    for (int i = 0; i < rowCount; i++) {
+      table.row().value((long) i).value(i * 0.5d).value("c" + (i % 10));
+    }
+    return table;
+  }
+
+  /* The aggregation path of the row oriented layout: extract, unbox, aggregate */
+  private static double boxedMean(List<List<Comparable<? extends Object>>> rows, int colIndex) {
+    final List<Comparable<? extends Object>> col = new ArrayList<>();
+    rows.forEach(row -> col.add(row.get(colIndex)));
+    final double[] values = new double[col.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (Double) col.get(i);
+    }
+    return StatUtils.mean(values);
+  }
+
+  @SuppressForbidden // the heap is only comparable between two readings after a full collection
+  @SuppressWarnings("PMD.DoNotCallGarbageCollectionExplicitly")
+  private static long usedMemory() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void report(String measure, double boxed, double columnar) {
+    System.out.println(String.format(Locale.ROOT, "%-14s row oriented: %10.2f   columnar: %10.2f", measure, boxed, columnar));
+  }
+}
@@ -44,8 +44,10 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -398,6 +400,68 @@ public class KnoxShellTableTest {
     assertEquals(1, joined3.getRows().size());
   }
 
+  @Test
+  public void testJoinTypesWithOneToManyMatches() throws Exception {
+    KnoxShellTable orders = new KnoxShellTable();
+    orders.header("Customer").header("Order");
+    orders.row().value(1).value("a");
+    orders.row().value(2).value("b");
+    orders.row().value(1).value("c");
+    orders.row().value(null).value("d");
+
+    KnoxShellTable customers = new KnoxShellTable();
+    customers.header("Id").header("Name");
+    customers.row().value(3).value("carol");
+    customers.row().value(1).value("alice");
+    customers.row().value(1).value("alias");
+
+    for (boolean sortMerge : new boolean[] {false, true}) {
+      JoinKnoxShellTableBuilder builder = KnoxShellTable.builder().join().left(orders).right(customers);
+      if (sortMerge) {
+        builder.sortMerge();
+      }
+      KnoxShellTable inner = builder.on(0, 0);
+      assertEquals(Arrays.asList("Customer", "Order", "Id", "Name"), inner.getHeaders());
+      assertEquals(4, inner.getRows().size());
+      assertEquals(Arrays.asList(1, "a", 1, "alice"), inner.getRows().get(0));
+      assertEquals(Arrays.asList(1, "a", 1, "alias"), inner.getRows().get(1));
+      assertEquals(Arrays.asList(1, "c", 1, "alice"), inner.getRows().get(2));
+      assertEquals(Arrays.asList(1, "c", 1, "alias"), inner.getRows().get(3));
+
+      builder = KnoxShellTable.builder().join().left(orders).right(customers).fullOuter();
+      if (sortMerge) {
+        builder.sortMerge();
+      }
+      KnoxShellTable full = builder.on(0, 0);
+      assertEquals(7, full.getRows().size());
+      assertEquals(Arrays.asList(2, "b", null, null), full.getRows().get(2));
+      assertEquals(Arrays.asList(null, "d", null, null), full.getRows().get(5));
+      assertEquals(Arrays.asList(null, null, 3, "carol"), full.getRows().get(6));
+    }
+
+    assertEquals(6, KnoxShellTable.builder().join().left(orders).right(customers).leftOuter().on(0, 0).getRows().size());
+    assertEquals(5, KnoxShellTable.builder().join().left(orders).right(customers).rightOuter().on(0, 0).getRows().size());
+  }
+
+  @Test
+  public void testJoinLargeTables() throws Exception {
+    final int rowCount = 100_000;
+    KnoxShellTable left = new KnoxShellTable();
+    left.header("Key").header("Left");
+    KnoxShellTable right = new KnoxShellTable();
+    right.header("Key").header("Right");
+    for (int i = 0; i < rowCount; i++) {
+      left.row().value((long) i).value(i);
+      right.row().value((long) (rowCount - i - 1)).value(i);
+    }
+
+    final KnoxShellTable hashJoined = KnoxShellTable.builder().join().left(left).right(right).on("Key");
+    final KnoxShellTable sortMergeJoined = KnoxShellTable.builder().join().left(left).right(right).sortMerge().on("Key");
+    assertEquals(rowCount, hashJoined.getRows().size());
+    assertEquals(Arrays.asList(10L, 10, 10L, rowCount - 11), hashJoined.getRows().get(10));
+    assertEquals(hashJoined.getRows(), sortMergeJoined.getRows());
+  }
+
   @Test
   public void testJDBCBuilderUnManagedConnection() throws Exception {
     Connection connection = createMock(Connection.class);
@@ -506,6 +570,60 @@ public class KnoxShellTableTest {
     }
   }
 
+  @Test
+  public void testJDBCBuilderStreamingPagesAndSpillingToCSV() throws Exception {
+    System.setProperty(SYSTEM_PROPERTY_DERBY_STREAM_ERROR_FILE, "/dev/null");
+    final Path derbyDatabaseFolder = Paths.get(testFolder.newFolder().toPath().toString(), SAMPLE_DERBY_DATABASE_NAME);
+    Database derbyDatabase = null;
+    try {
+      derbyDatabase = prepareDerbyDatabase(derbyDatabaseFolder);
+      final List<KnoxShellTable> pages = new ArrayList<>();
+      final long rowCount = KnoxShellTable.builder().jdbc().driver(DerbyDatabase.EMBEDDED_DRIVER).connectTo(DerbyDatabase.PROTOCOL + derbyDatabaseFolder.toString())
+          .fetchSize(1).pageSize(1).title("Books").sql("select * from books order by book_id", pages::add);
+      assertEquals(2, rowCount);
+      assertEquals(2, pages.size());
+      assertEquals("Books", pages.get(0).getTitle());
+      assertEquals(Arrays.asList("BOOK_ID", "TITLE"), pages.get(1).getHeaders());
+      assertEquals("Apache Knox: The Definitive Guide 2nd Edition", pages.get(1).values("TITLE").get(0));
+
+      final File csv = testFolder.newFile("books.csv");
+      assertEquals(2, KnoxShellTable.builder().jdbc().driver(DerbyDatabase.EMBEDDED_DRIVER).connectTo(DerbyDatabase.PROTOCOL + derbyDatabaseFolder.toString())
+          .sqlToCSV("select * from books order by book_id", csv.getAbsolutePath()));
+      final KnoxShellTable fromCsv = KnoxShellTable.builder().csv().withHeaders().url(csv.toURI().toString());
+      assertEquals(Arrays.asList("123", "Apache Knox: The Definitive Guide"), fromCsv.getRows().get(0));
+
+      final File csvWithNulls = testFolder.newFile("notes.csv");
+      KnoxShellTable.builder().jdbc().driver(DerbyDatabase.EMBEDDED_DRIVER).connectTo(DerbyDatabase.PROTOCOL + derbyDatabaseFolder.toString())
+          .sqlToCSV("select book_id, cast(null as varchar(10)) as note from books order by book_id", csvWithNulls.getAbsolutePath());
+      assertEquals(Arrays.asList("BOOK_ID,NOTE", "123,"), Files.readAllLines(csvWithNulls.toPath(), UTF_8).subList(0, 2));
+    } finally {
+      if (derbyDatabase != null) {
+        derbyDatabase.shutdown();
+      }
+      System.clearProperty(SYSTEM_PROPERTY_DERBY_STREAM_ERROR_FILE);
+    }
+  }
+
+  @Test
+  public void testCSVParsingFollowsRFC4180() throws IOException {
+    final String csv = "id,comment\r\n1,\"quoted, with comma\"\r\n2,\"say \"\"hi\"\"\"\n3,\"two\nlines\"\n4,\n";
+    final KnoxShellTable table = KnoxShellTable.builder().csv().withHeaders().string(csv);
+    assertEquals(Arrays.asList("id", "comment"), table.getHeaders());
+    assertEquals(4, table.getRows().size());
+    assertEquals("quoted, with comma", table.values("comment").get(0));
+    assertEquals("say \"hi\"", table.values("comment").get(1));
+    assertEquals("two\nlines", table.values("comment").get(2));
+    assertEquals("", table.values("comment").get(3));
+
+    // values are quoted on writing where needed, so they read back unchanged
+    final KnoxShellTable roundTripped = KnoxShellTable.builder().csv().withHeaders().string(table.toCSV());
+    assertEquals(table.getRows(), roundTripped.getRows());
+
+    final List<Integer> pageSizes = new ArrayList<>();
+    assertEquals(4, KnoxShellTable.builder().csv().withHeaders().pageSize(3).string(csv, page -> pageSizes.add(page.getRows().size())));
+    assertEquals(Arrays.asList(3, 1), pageSizes);
+  }
+
   private Database prepareDerbyDatabase(Path derbyDatabaseFolder) throws SQLException, IOException {
     final Database derbyDatabase = new DerbyDatabase(derbyDatabaseFolder.toString());
     derbyDatabase.create();
@@ -747,4 +865,94 @@ knox:000> test.aggregate() columns "A,B,C" functions "min, max, mean, median, mo
 
     assertEquals(table.headers.get(1).indexOf(' '), -1);
   }
+
+  @Test
+  public void testColumnarStoragePreservesValueTypes() throws Exception {
+    KnoxShellTable table = new KnoxShellTable();
+    table.header("Integer").header("Float").header("String").header("Mixed");
+    table.row().value(1).value(1.5f).value("a").value(1);
+    table.row().value(2).value(null).value("b").value("two");
+    table.row().value(3).value(3.25f).value("a").value(null);
+
+    assertEquals(Arrays.asList(1, 2, 3), table.values("Integer"));
+    assertEquals(Arrays.asList(1.5f, null, 3.25f), table.values("Float"));
+    assertEquals(Arrays.asList("a", "b", "a"), table.values("String"));
+    assertEquals(Arrays.asList(1, "two", null), table.values("Mixed"));
+    assertEquals(Arrays.asList(2, null, "b", "two"), table.getRows().get(1));
+
+    final KnoxShellTable sorted = table.sort("Float", SortOrder.DESCENDING);
+    assertEquals(Arrays.asList(3, 1, 2), sorted.values("Integer"));
+    assertEquals(Arrays.asList(3, "a", null), sorted.select("Integer,String,Mixed").getRows().get(0));
+  }
+
+  @Test
+  public void testAggregationsReflectUpdatedCells() throws Exception {
+    KnoxShellTable table = new KnoxShellTable();
+    table.header("Column A");
+    table.row().value(10L);
+    table.row().value(20L);
+    assertEquals(30, table.sum("Column A"), 0.0);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    final KnoxShellTableCell cell = table.cell(0, 1);
+    table.apply(cell.value(40L));
+    assertEquals(50, table.sum("Column A"), 0.0);
+
+    table.getRows().get(0).set(0, 5L);
+    assertEquals(45, table.sum("Column A"), 0.0);
+    assertEquals(40, table.max("Column A"), 0.0);
+  }
+
+  @Test
+  public void testValuesAndRowsRemainMutableLists() throws Exception {
+    KnoxShellTable table = new KnoxShellTable();
+    table.header("Column A").header("Column B");
+    table.row().value(1L).value("a");
+    table.row().value(3L).value("c");
+
+    final List<Comparable<? extends Object>> values = table.values("Column A");
+    values.add(4L);
+    assertEquals(Arrays.asList(1L, 3L, 4L), values);
+    assertEquals(Arrays.asList(1L, 3L), table.values("Column A"));
+
+    table.getRows().add(1, new ArrayList<>(Arrays.asList(2L, "b")));
+    assertEquals(Arrays.asList(1L, 2L, 3L), table.values("Column A"));
+    assertEquals(Arrays.asList("a", "b", "c"), table.values("Column B"));
+
+    final List<Comparable<? extends Object>> row = table.getRows().get(2);
+    row.add(0, 0L);
+    assertEquals(Arrays.asList(0L, 3L, "c"), table.getRows().get(2));
+    assertEquals("c", row.remove(2));
+    row.remove(0);
+    assertEquals(Arrays.asList(3L), table.getRows().get(2));
+  }
+
+  @Test
+  public void testGatheredStringColumnsShareTheirDictionaryUntilWritten() throws Exception {
+    KnoxShellTableColumn column = KnoxShellTableColumn.empty(3);
+    column = column.set(0, "a").set(1, "b").set(2, "c");
+
+    final KnoxShellTableColumn.StringColumn gathered = (KnoxShellTableColumn.StringColumn) column.gather(new int[] {2, 0});
+    assertEquals(3, gathered.dictionarySize());
+    assertEquals("c", gathered.get(0));
+
+    // the first new string gets each column a dictionary of its own, holding only its strings ("b" is dropped)
+    gathered.set(1, "d");
+    assertEquals(3, gathered.dictionarySize());
+    assertEquals(Arrays.asList("c", "d"), Arrays.asList(gathered.get(0), gathered.get(1)));
+    column.set(1, "e");
+    assertEquals(Arrays.asList("a", "e", "c"), Arrays.asList(column.get(0), column.get(1), column.get(2)));
+    assertEquals(3, gathered.dictionarySize());
+    assertEquals(Arrays.asList("c", "d"), Arrays.asList(gathered.get(0), gathered.get(1)));
+  }
+
+  @Test
+  public void testStringDictionaryDropsUnusedStrings() throws Exception {
+    KnoxShellTableColumn column = KnoxShellTableColumn.empty(1);
+    for (int i = 0; i < 1000; i++) {
+      column = column.set(0, "value" + i);
+    }
+    assertEquals("value999", column.get(0));
+    assertTrue(((KnoxShellTableColumn.StringColumn) column).dictionarySize() < 100);
+  }
 }
@@ -50,6 +50,7 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
   public static final int DEFAULT_WEBSOCKET_ASYNC_WRITE_TIMEOUT = 60000;
   public static final int DEFAULT_WEBSOCKET_IDLE_TIMEOUT = 300000;
   public static final int DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_COUNT = 100;
+  public static final long DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_BYTES = 1024 * 1024;
   private static final boolean DEFAULT_WEBSHELL_FEATURE_ENABLED = false ;
   private static final boolean DEFAULT_WEBSHELL_AUDIT_LOGGING_ENABLED = false;
   public static final int DEFAULT_WEBSHELL_MAX_CONCURRENT_SESSIONS = 3;
@@ -338,6 +339,21 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return true;
   }
 
+  @Override
+  public String getTlsProvider() {
+    return null;
+  }
+
+  @Override
+  public int getTlsSessionCacheSize() {
+    return -1;
+  }
+
+  @Override
+  public int getTlsSessionTimeout() {
+    return -1;
+  }
+
   public void setExcludedSSLCiphers( List<String> list ) {
     excludedSSLCiphers = list;
   }
@@ -453,6 +469,11 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return -1;
   }
 
+  @Override
+  public boolean isDispatchPassthroughStreamingEnabled() {
+    return false;
+  }
+
   @Override
   public String getHttpClientTruststorePath() {
     return null;
@@ -527,6 +548,11 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return 254;
   }
 
+  @Override
+  public boolean isVirtualThreadsEnabled() {
+    return false;
+  }
+
   @Override
   public int getHttpServerRequestBuffer() {
     return 16*1024;
@@ -681,6 +707,11 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_COUNT;
   }
 
+  @Override
+  public long getWebsocketMaxWaitBufferBytes() {
+    return DEFAULT_WEBSOCKET_MAX_WAIT_BUFFER_BYTES;
+  }
+
   @Override
   public boolean isMetricsEnabled() {
     return false;
@@ -711,6 +742,11 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return 0;
   }
 
+  @Override
+  public double getTracingSampleRate() {
+    return 0;
+  }
+
   @Override
   public  boolean isCookieScopingToPathEnabled() {
     return false;
@@ -938,6 +974,11 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return -1;
   }
 
+  @Override
+  public int getClouderaManagerServiceDiscoveryParallelism() {
+    return DEFAULT_CM_SERVICE_DISCOVERY_PARALLELISM;
+  }
+
   @Override
   public Collection<String> getClouderaManagerServiceDiscoveryExcludedServiceTypes() {
     return Collections.emptySet();
@@ -1223,11 +1264,66 @@ public class GatewayTestConfig extends Configuration implements GatewayConfig {
     return 1;
   }
 
+  @Override
+  public boolean isTokenStateWriteBehindEnabled() {
+    return false;
+  }
+
+  @Override
+  public long getTokenStateWriteBehindMaxDelay() {
+    return 5L;
+  }
+
+  @Override
+  public int getTokenStateWriteBehindMaxBatchSize() {
+    return 200;
+  }
+
+  @Override
+  public long getTokenStateWriteBehindAckTimeout() {
+    return 30000L;
+  }
+
+  @Override
+  public boolean isTokenStateCacheEnabled() {
+    return false;
+  }
+
+  @Override
+  public boolean isTokenStateChangeLogEnabled() {
+    return false;
+  }
+
+  @Override
+  public long getTokenStateCacheMaxStaleness() {
+    return 5000L;
+  }
+
+  @Override
+  public long getTokenStateCacheMaxSize() {
+    return 100000L;
+  }
+
   @Override
   public String getHttpClientCookieSpec() {
     return null;
   }
 
+  @Override
+  public boolean isHttpClientConnectionSharingEnabled() {
+    return false;
+  }
+
+  @Override
+  public int getHttpClientPrewarmConnections() {
+    return 0;
+  }
+
+  @Override
+  public long getHttpClientIdleConnectionTimeout() {
+    return TimeUnit.MINUTES.toMillis(1);
+  }
+
   @Override
   public String getBannerText() {
     return null;
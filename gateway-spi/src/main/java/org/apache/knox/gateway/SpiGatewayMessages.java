@@ -37,6 +37,9 @@ public interface SpiGatewayMessages {
   @Message( level = MessageLevel.WARN, text = "Connection exception dispatching request: {0} {1}" )
   void dispatchServiceConnectionException( URI uri, @StackTrace(level=MessageLevel.WARN) Exception e );
 
+  @Message( level = MessageLevel.DEBUG, text = "Passthrough streamed {0} response bytes" )
+  void passthroughResponseStreamed( long bytes );
+
   @Message( level = MessageLevel.DEBUG, text = "Dispatch response status: {0}" )
   void dispatchResponseStatusCode(int statusCode);
 
@@ -154,4 +157,23 @@ public interface SpiGatewayMessages {
 
   @Message( level = MessageLevel.ERROR, text = "Async support is not enabled. SSEDispatch request failed." )
   void asyncSupportNotEnabled();
+
+  @Message( level = MessageLevel.INFO, text = "Dispatch HTTP client for {0} uses the shared {1} connection pool" )
+  void usingSharedConnectionPool(String serviceRole, String pool);
+
+
+  @Message( level = MessageLevel.INFO, text = "The key or trust material of the shared {0} connection pool changed, new dispatch HTTP clients use a new pool" )
+  void replacingSharedConnectionPool(String identity);
+
+  @Message( level = MessageLevel.INFO, text = "The last dispatch HTTP client of the replaced {0} connection pool was closed, shutting the pool down" )
+  void shuttingDownRetiredConnectionPool(String pool);
+
+  @Message( level = MessageLevel.DEBUG, text = "Pre-warmed {0} connections to {1}" )
+  void prewarmedConnections(int connections, String route);
+
+  @Message( level = MessageLevel.WARN, text = "Failed to pre-warm connections to {0}: {1}" )
+  void failedToPrewarmConnections(String route, @StackTrace(level = MessageLevel.DEBUG) Exception e);
+
+  @Message( level = MessageLevel.WARN, text = "Ignoring invalid backend URL {0} while pre-warming connections" )
+  void invalidPrewarmUrl(String url);
 }
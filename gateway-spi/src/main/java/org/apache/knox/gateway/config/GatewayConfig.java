@@ -134,6 +134,8 @@ public interface GatewayConfig {
 
   int DEFAULT_CM_SERVICE_DISCOVERY_MAX_RETRY_ATTEMPTS = 3;
 
+  int DEFAULT_CM_SERVICE_DISCOVERY_PARALLELISM = 8;
+
   String DEFAULT_API_SERVICES_VIEW_VERSION = "v1";
   boolean DEFAULT_GROUP_UI_SERVICES = false;
 
@@ -230,6 +232,23 @@ public interface GatewayConfig {
 
   boolean isSSLRenegotiationAllowed();
 
+  /**
+   * @return the name of the JCA provider, or the class name of a provider on the classpath, which implements TLS for
+   * the gateway's connectors and its outbound connections (e.g. an OpenSSL based provider such as Conscrypt);
+   * <code>null</code> for the JVM default
+   */
+  String getTlsProvider();
+
+  /**
+   * @return the maximum number of TLS sessions to cache for resumption; -1 for the provider default
+   */
+  int getTlsSessionCacheSize();
+
+  /**
+   * @return the number of seconds a cached TLS session can be resumed for; -1 for the provider default
+   */
+  int getTlsSessionTimeout();
+
   boolean isHadoopKerberosSecured();
 
   String getKerberosConfig();
@@ -278,6 +297,13 @@ public interface GatewayConfig {
 
   int getHttpClientSocketTimeout();
 
+  /**
+   * @return true if response bodies that are passed through without rewriting should be handed
+   * to the servlet container's channel based content API instead of being copied into the
+   * servlet output stream's buffer; otherwise false
+   */
+  boolean isDispatchPassthroughStreamingEnabled();
+
   /**
    * Returns the configured value for the path to the truststore to be used by the HTTP client instance
    * connecting to a service from the Gateway.
@@ -361,6 +387,16 @@ public interface GatewayConfig {
 
   int getThreadPoolMax();
 
+  /**
+   * When enabled and the runtime supports virtual threads (Java 21+), requests are handled on
+   * virtual threads instead of a bounded pool of {@link #getThreadPoolMax()} platform threads,
+   * and so are other blocking tasks such as websocket backend connections and token eviction.
+   * The connector acceptors and selectors keep running on platform threads.
+   *
+   * @return true if virtual threads should be used; false by default
+   */
+  boolean isVirtualThreadsEnabled();
+
   int getHttpServerRequestBuffer();
 
   int getHttpServerRequestHeaderBuffer();
@@ -546,6 +582,15 @@ public interface GatewayConfig {
    */
   int getWebsocketMaxWaitBufferCount();
 
+  /**
+   * Max bytes of messages that can be queued per connection and direction, either while the
+   * backend connection is being set up or while the receiving side is slower than the sender.
+   * Once exceeded, reads from the sending side are suspended until the queue drains.
+   * A value less than or equal to zero disables the limit.
+   * @return buffer size in bytes
+   */
+  long getWebsocketMaxWaitBufferBytes();
+
   boolean isMetricsEnabled();
 
   boolean isJmxMetricsReportingEnabled();
@@ -558,6 +603,12 @@ public interface GatewayConfig {
 
   int getGraphiteReportingFrequency();
 
+  /**
+   * @return the fraction (0.0 to 1.0) of requests for which per-filter and dispatch spans are
+   * recorded; 0 disables tracing
+   */
+  double getTracingSampleRate();
+
   /**
    * Enable cookie scoping to gateway path
    *
@@ -846,6 +897,12 @@ public interface GatewayConfig {
    */
   int getClouderaManagerServiceDiscoveryMaximumRetryAttempts();
 
+  /**
+   * @return the maximum number of concurrent Cloudera Manager API calls made while discovering the services of a
+   *         cluster; values lower than 2 fetch service and role configurations sequentially
+   */
+  int getClouderaManagerServiceDiscoveryParallelism();
+
   /**
    * @return a collection of comma separated service types that should be excluded
    *         from CM service discovery (e.g. HDFS, KNOX, RANGER, HIVE, etc...)
@@ -1073,11 +1130,78 @@ public interface GatewayConfig {
    */
   int getTokenMigrationProgressCount();
 
+  /**
+   * @return <code>true</code> if a JDBC-based TSS should persist token state changes
+   *         in batches, from a background writer; <code>false</code> otherwise
+   */
+  boolean isTokenStateWriteBehindEnabled();
+
+  /**
+   * @return the maximum time, in milliseconds, the token state write-behind waits
+   *         for more changes before writing a batch
+   */
+  long getTokenStateWriteBehindMaxDelay();
+
+  /**
+   * @return the maximum number of token state changes written in one batch
+   */
+  int getTokenStateWriteBehindMaxBatchSize();
+
+  /**
+   * @return the maximum time, in milliseconds, a token state change waits for
+   *         the batch that contains it to be committed
+   */
+  long getTokenStateWriteBehindAckTimeout();
+
+  /**
+   * @return <code>true</code> if a JDBC-based TSS should cache token expirations and metadata,
+   *         kept coherent with the other gateway instances through a change log in the database;
+   *         <code>false</code> otherwise. An instance with the cache enabled records its changes in the log.
+   */
+  boolean isTokenStateCacheEnabled();
+
+  /**
+   * @return <code>true</code> if a JDBC-based TSS should record its token changes in the change log
+   *         even though it does not cache token state; <code>false</code> otherwise. It must be enabled
+   *         on the instances without the cache when other instances sharing the database have it enabled.
+   */
+  boolean isTokenStateChangeLogEnabled();
+
+  /**
+   * @return the time, in milliseconds, within which a token state change made by another gateway
+   *         instance is seen by the token state cache
+   */
+  long getTokenStateCacheMaxStaleness();
+
+  /**
+   * @return the maximum number of tokens whose state is cached
+   */
+  long getTokenStateCacheMaxSize();
+
   /**
    * @return CookieSpec for the HTTP client used by the dispatch, see org.apache.http.client.config.CookieSpecs
    */
   String getHttpClientCookieSpec();
 
+  /**
+   * @return true if dispatch HTTP clients that present the same TLS identity and allow the same maximum of connections
+   *         share one connection pool and TLS session cache, so that topologies proxying the same backend reuse each
+   *         other's connections. Clients with a different maximum use a pool of their own.
+   */
+  boolean isHttpClientConnectionSharingEnabled();
+
+  /**
+   * @return the number of connections opened to each backend of a service when its topology is deployed; 0 disables
+   *         pre-warming. Only applies if connection sharing is enabled.
+   */
+  int getHttpClientPrewarmConnections();
+
+  /**
+   * @return the time in milliseconds after which idle shared connections to a backend that has not been used in the
+   *         meantime are closed
+   */
+  long getHttpClientIdleConnectionTimeout();
+
   /**
    * @return a text that should be displayed on all Knox UIs within the banner on the top.
    */
@@ -52,6 +52,8 @@ public abstract class AbstractGatewayDispatch implements Dispatch {
       throws IOException {
     if (response instanceof GatewayResponse) {
       ((GatewayResponse) response).streamResponse(stream);
+    } else if (PassthroughResponseStreamer.isEnabled(request.getServletContext())) {
+      PassthroughResponseStreamer.stream(request.getServletContext(), stream, response.getOutputStream());
     } else {
       try(OutputStream output = response.getOutputStream()) {
         IOUtils.copy(stream, output);
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Hands a response body to a servlet container specific, channel based content API.
+ * <p>
+ * Implementations are loaded using the ServiceLoader mechanism, so the container specific code
+ * stays out of the SPI.
+ */
+public interface ChannelResponseWriter {
+
+  /**
+   * @param output the client response output stream
+   * @return true if this writer can send content to the given output stream
+   */
+  boolean accepts(OutputStream output);
+
+  /**
+   * Writes the complete content to the output and completes the output.
+   *
+   * @param content the response body
+   * @param output  the client response output stream, accepted by this writer
+   * @throws IOException if reading the content or writing to the client fails
+   */
+  void write(ReadableByteChannel content, OutputStream output) throws IOException;
+}
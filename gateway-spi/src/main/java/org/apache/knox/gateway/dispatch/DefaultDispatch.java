@@ -35,8 +35,11 @@ import org.apache.knox.gateway.SpiGatewayMessages;
 import org.apache.knox.gateway.SpiGatewayResources;
 import org.apache.knox.gateway.audit.api.Action;
 import org.apache.knox.gateway.audit.api.ActionOutcome;
+import org.apache.knox.gateway.audit.api.AuditEvent;
 import org.apache.knox.gateway.audit.api.AuditServiceFactory;
 import org.apache.knox.gateway.audit.api.Auditor;
+import org.apache.knox.gateway.audit.api.CorrelationContext;
+import org.apache.knox.gateway.audit.api.CorrelationServiceFactory;
 import org.apache.knox.gateway.audit.api.ResourceType;
 import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.knox.gateway.config.Configure;
@@ -45,6 +48,9 @@ import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.config.Optional;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.i18n.resources.ResourcesFactory;
+import org.apache.knox.gateway.tracing.Span;
+import org.apache.knox.gateway.tracing.TraceContext;
+import org.apache.knox.gateway.tracing.Tracer;
 import org.apache.knox.gateway.util.MimeTypes;
 
 import javax.servlet.http.HttpServletRequest;
@@ -154,16 +160,33 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
       writeOutboundResponse(outboundRequest, inboundRequest, outboundResponse, inboundResponse);
    }
 
+  /* Propagates the correlation id of the request to the backend as a W3C traceparent header, passing on
+     the traceparent copied from the inbound request if the gateway does not trace the request itself */
+  private void addTraceContextToRequest( HttpUriRequest outboundRequest ) {
+    final CorrelationContext correlationContext = CorrelationServiceFactory.getCorrelationService().getContext();
+    final Header inbound = outboundRequest.getFirstHeader( TraceContext.TRACEPARENT_HEADER );
+    outboundRequest.setHeader( TraceContext.TRACEPARENT_HEADER,
+        TraceContext.traceparent( correlationContext == null ? null : correlationContext.getRequestId(),
+            inbound == null ? null : inbound.getValue() ) );
+  }
+
   protected HttpResponse executeOutboundRequest( HttpUriRequest outboundRequest ) throws IOException {
     LOG.dispatchRequest( outboundRequest.getMethod(), outboundRequest.getURI() );
     HttpResponse inboundResponse;
 
+    // Child spans of the HTTP client's request executor cover the exchange with the backend; the
+    // remaining time of this span is spent acquiring the connection
+    final Span span = Tracer.startSpan( "dispatch.execute", Span.Kind.CLIENT )
+        .attribute( "http.request.method", outboundRequest.getMethod() )
+        .attribute( "server.address", outboundRequest.getURI().getAuthority() );
     try {
-      auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.UNAVAILABLE, RES.requestMethod( outboundRequest.getMethod() ) );
+      auditor.audit( AuditEvent.get().action( Action.DISPATCH ).resource( outboundRequest.getURI().toString(), ResourceType.URI )
+          .outcome( ActionOutcome.UNAVAILABLE ).message( RES.requestMethod( outboundRequest.getMethod() ) ) );
       if( !Boolean.parseBoolean(System.getProperty(GatewayConfig.HADOOP_KERBEROS_SECURED))) {
         // Hadoop cluster not Kerberos enabled
         addCredentialsToRequest( outboundRequest );
       }
+      addTraceContextToRequest( outboundRequest );
       inboundResponse = getHttpClient().execute( outboundRequest );
 
       int statusCode = inboundResponse.getStatusLine().getStatusCode();
@@ -177,17 +200,32 @@ public class DefaultDispatch extends AbstractGatewayDispatch {
           LOG.dispatchResponseCreatedStatusCode( statusCode, location.getValue() );
         }
       }
-      auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.SUCCESS, RES.responseStatus( statusCode ) );
+      span.attribute( "http.response.status_code", statusCode );
+      auditor.audit( AuditEvent.get().action( Action.DISPATCH ).resource( outboundRequest.getURI().toString(), ResourceType.URI )
+          .outcome( ActionOutcome.SUCCESS ).message( RES.responseStatus( statusCode ) ) );
     } catch( Exception e ) {
+      span.error( e );
       // We do not want to expose back end host. port end points to clients, see JIRA KNOX-58
-      auditor.audit( Action.DISPATCH, outboundRequest.getURI().toString(), ResourceType.URI, ActionOutcome.FAILURE );
+      auditor.audit( AuditEvent.get().action( Action.DISPATCH ).resource( outboundRequest.getURI().toString(), ResourceType.URI )
+          .outcome( ActionOutcome.FAILURE ) );
       LOG.dispatchServiceConnectionException( outboundRequest.getURI(), e );
       throw new IOException(RES.dispatchConnectionError(), e);
+    } finally {
+      span.close();
     }
     return inboundResponse;
   }
 
   protected void writeOutboundResponse(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse, HttpResponse inboundResponse) throws IOException {
+    final Span span = Tracer.startSpan( "dispatch.response" );
+    try {
+      writeOutboundResponseEntity( outboundRequest, inboundRequest, outboundResponse, inboundResponse );
+    } finally {
+      span.close();
+    }
+  }
+
+  private void writeOutboundResponseEntity(HttpUriRequest outboundRequest, HttpServletRequest inboundRequest, HttpServletResponse outboundResponse, HttpResponse inboundResponse) throws IOException {
     /* in case any changes to outbound response are needed */
     outboundResponseWrapper(outboundRequest, inboundRequest, outboundResponse);
     // Copy the client respond header to the server respond.
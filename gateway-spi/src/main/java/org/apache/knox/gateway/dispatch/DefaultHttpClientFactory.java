@@ -18,15 +18,25 @@
 package org.apache.knox.gateway.dispatch;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.Principal;
+import java.security.cert.Certificate;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.net.ssl.SSLContext;
 import javax.servlet.FilterConfig;
 
+import com.codahale.metrics.MetricRegistry;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.ssl.SSLContextBuilder;
@@ -35,11 +45,15 @@ import org.apache.knox.gateway.fips.FipsUtils;
 import org.apache.knox.gateway.services.ServiceType;
 import org.apache.knox.gateway.services.security.AliasService;
 import org.apache.knox.gateway.services.security.KeystoreService;
+import org.apache.knox.gateway.tracing.TracingRequestExecutor;
+import org.apache.knox.gateway.util.TlsProviderUtils;
 import org.apache.knox.gateway.SpiGatewayMessages;
 import org.apache.knox.gateway.config.GatewayConfig;
 import org.apache.knox.gateway.i18n.messages.MessagesFactory;
 import org.apache.knox.gateway.services.GatewayServices;
 import org.apache.knox.gateway.services.metrics.MetricsService;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
+import org.apache.knox.gateway.services.registry.ServiceRegistry;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolException;
@@ -79,6 +93,12 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
   /* do not retry non-idempotent requests OOTB */
   static final boolean DEFAULT_PARAMETER_RETRY_NON_SAFE_REQUEST = false;
 
+  /* connection pools shared by the dispatch HTTP clients of all topologies, keyed by the TLS identity presented and
+     the maximum of connections per backend */
+  private static final Map<String, SharedConnectionManager> SHARED_CONNECTION_MANAGERS = new ConcurrentHashMap<>();
+  /* pools replaced after their key material changed, until the last client created before the change is closed */
+  private static final Set<SharedConnectionManager> REPLACED_CONNECTION_MANAGERS = ConcurrentHashMap.newKeySet();
+
   @Override
   public HttpClient createHttpClient(FilterConfig filterConfig) {
     final String serviceRole = filterConfig.getInitParameter(PARAMETER_SERVICE_ROLE);
@@ -90,11 +110,20 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
       MetricsService metricsService = services.getService(ServiceType.METRICS_SERVICE);
       builder = metricsService.getInstrumented(HttpClientBuilder.class);
     } else {
-      builder = HttpClients.custom();
+      builder = HttpClients.custom().setRequestExecutor(new TracingRequestExecutor());
     }
 
-    SSLContext sslContext = createSSLContext(services, gatewayConfig, filterConfig, serviceRole);
-    setSSLSocketFactory(sslContext, filterConfig, builder);
+    if (isConnectionSharingEnabled(gatewayConfig)) {
+      final SharedConnectionManager.Lease lease =
+          leaseSharedConnectionManager(services, gatewayConfig, filterConfig, serviceRole);
+      // closing this client releases its lease, but does not shut down the pool of the other clients
+      builder.setConnectionManager(lease);
+      builder.addInterceptorLast(lease.getPool().getRouteTracker());
+      prewarm(lease.getPool(), services, filterConfig, serviceRole);
+    } else {
+      SSLContext sslContext = createSSLContext(services, gatewayConfig, filterConfig, serviceRole);
+      setSSLSocketFactory(sslContext, filterConfig, builder);
+    }
 
     if (Boolean.parseBoolean(System.getProperty(GatewayConfig.HADOOP_KERBEROS_SECURED))) {
       CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
@@ -152,6 +181,83 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     }
   }
 
+  private static boolean isConnectionSharingEnabled(GatewayConfig gatewayConfig) {
+    // the FIPS intercepting socket factories are not shared
+    return gatewayConfig != null && gatewayConfig.isHttpClientConnectionSharingEnabled()
+        && !FipsUtils.isFipsEnabledWithBCProvider();
+  }
+
+  /**
+   * Leases the connection pool shared by all dispatch HTTP clients presenting the same TLS identity and allowing the
+   * same maximum of connections per backend, so that each client is held to its own maximum.
+   * <p>
+   * The pool is replaced by a new one when the key or trust material of its identity changed, e.g. after a
+   * certificate was renewed; the replaced pool keeps serving the clients created before, and is shut down when the
+   * last of them is closed.
+   * <p>
+   * This method is package private to allow access to unit tests
+   */
+  SharedConnectionManager.Lease leaseSharedConnectionManager(GatewayServices services, GatewayConfig gatewayConfig,
+                                                     FilterConfig filterConfig, String serviceRole) {
+    final String identity;
+    if (isTwoWaySsl(gatewayConfig, filterConfig)) {
+      identity = gatewayConfig.isSingleEkuEnabled() ? "client-identity" : "gateway-identity";
+    } else {
+      identity = "default";
+    }
+    final TlsMaterial material = getTlsMaterial(services, gatewayConfig, filterConfig, serviceRole);
+    final String fingerprint = material.fingerprint();
+    final int maxConnections = getMaxConnections(filterConfig);
+    final MetricRegistry registry = MetricsUtils.getMetricRegistry(gatewayConfig, services);
+    final AtomicReference<SharedConnectionManager.Lease> lease = new AtomicReference<>();
+    final SharedConnectionManager connectionManager = SHARED_CONNECTION_MANAGERS.compute(identity + "-" + maxConnections,
+        (key, current) -> {
+          SharedConnectionManager pool = current;
+          if (pool == null || !pool.getFingerprint().equals(fingerprint)) {
+            if (pool != null) {
+              LOG.replacingSharedConnectionPool(key);
+              REPLACED_CONNECTION_MANAGERS.removeIf(SharedConnectionManager::isShutDown);
+              REPLACED_CONNECTION_MANAGERS.add(pool);
+              pool.retire();
+            }
+            pool = new SharedConnectionManager(identity, maxConnections, fingerprint,
+                createSSLContext(material, gatewayConfig), gatewayConfig);
+          }
+          // leased while the pool is mapped, so that a concurrent replacement cannot retire it before
+          lease.set(pool.lease(registry));
+          return pool;
+        });
+    LOG.usingSharedConnectionPool(serviceRole, connectionManager.getName());
+    return lease.get();
+  }
+
+  private void prewarm(SharedConnectionManager connectionManager, GatewayServices services, FilterConfig filterConfig,
+                       String serviceRole) {
+    final String topologyName = (String) filterConfig.getServletContext().getAttribute(GatewayServices.GATEWAY_CLUSTER_ATTRIBUTE);
+    if (services == null || topologyName == null || serviceRole == null) {
+      return;
+    }
+    final ServiceRegistry serviceRegistry = services.getService(ServiceType.SERVICE_REGISTRY_SERVICE);
+    if (serviceRegistry != null) {
+      connectionManager.prewarm(serviceRegistry.lookupServiceURLs(topologyName, serviceRole));
+    }
+  }
+
+  /**
+   * Shuts down the connection pools shared by the dispatch HTTP clients; called when the gateway services stop.
+   */
+  public static void shutdownSharedConnectionManagers() {
+    SHARED_CONNECTION_MANAGERS.values().forEach(SharedConnectionManager::shutdown);
+    SHARED_CONNECTION_MANAGERS.clear();
+    REPLACED_CONNECTION_MANAGERS.forEach(SharedConnectionManager::shutdown);
+    REPLACED_CONNECTION_MANAGERS.clear();
+  }
+
+  private static boolean isTwoWaySsl(GatewayConfig gatewayConfig, FilterConfig filterConfig) {
+    return Boolean.parseBoolean(filterConfig.getInitParameter(PARAMETER_USE_TWO_WAY_SSL))
+        || (gatewayConfig != null && gatewayConfig.isHttpClientTwoWaySslEnabled());
+  }
+
   private boolean doesRetryParamExist(final FilterConfig filterConfig) {
     return filterConfig.getInitParameter(PARAMETER_RETRY_COUNT) != null
         && StringUtils
@@ -180,6 +286,37 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
    * @return a {@link SSLContext} or <code>null</code> if a custom {@link SSLContext} is not needed.
    */
   SSLContext createSSLContext(GatewayServices services, GatewayConfig gatewayConfig, FilterConfig filterConfig, String serviceRole) {
+    return createSSLContext(getTlsMaterial(services, gatewayConfig, filterConfig, serviceRole), gatewayConfig);
+  }
+
+  private static SSLContext createSSLContext(TlsMaterial material, GatewayConfig gatewayConfig) {
+    try {
+      // If an identity keystore or a trust store needs to be set, or the TLS provider or session cache
+      // is configured, create and return a custom SSLContext; else return null.
+      if ((material.identityKeystore != null) || (material.trustKeystore != null) || TlsProviderUtils.isCustomized(gatewayConfig)) {
+        SSLContextBuilder sslContextBuilder = SSLContexts.custom();
+        sslContextBuilder.setProvider(TlsProviderUtils.getTlsProvider(gatewayConfig));
+
+        if (material.identityKeystore != null) {
+          sslContextBuilder.loadKeyMaterial(material.identityKeystore, material.identityKeyPassphrase);
+        }
+
+        if (material.trustKeystore != null) {
+          sslContextBuilder.loadTrustMaterial(material.trustKeystore, null);
+        }
+
+        final SSLContext sslContext = sslContextBuilder.build();
+        TlsProviderUtils.configureSessionContext(sslContext.getClientSessionContext(), gatewayConfig);
+        return sslContext;
+      } else {
+        return null;
+      }
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Unable to create SSLContext", e);
+    }
+  }
+
+  private TlsMaterial getTlsMaterial(GatewayServices services, GatewayConfig gatewayConfig, FilterConfig filterConfig, String serviceRole) {
     KeyStore identityKeystore;
     char[] identityKeyPassphrase;
     KeyStore trustKeystore;
@@ -187,8 +324,7 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
     KeystoreService ks = services.getService(ServiceType.KEYSTORE_SERVICE);
     try {
       boolean singleEku = gatewayConfig != null && gatewayConfig.isSingleEkuEnabled();
-      boolean twoWaySsl = Boolean.parseBoolean(filterConfig.getInitParameter(PARAMETER_USE_TWO_WAY_SSL))
-          || (gatewayConfig != null && gatewayConfig.isHttpClientTwoWaySslEnabled());
+      boolean twoWaySsl = isTwoWaySsl(gatewayConfig, filterConfig);
       if (twoWaySsl) {
         LOG.usingTwoWaySsl(serviceRole);
         AliasService as = services.getService(ServiceType.ALIAS_SERVICE);
@@ -228,25 +364,46 @@ public class DefaultHttpClientFactory implements HttpClientFactory {
         trustKeystore = ks.getTruststoreForHttpClient();
       }
 
-      // If an identity keystore or a trust store needs to be set, create and return a custom
-      // SSLContext; else return null.
-      if ((identityKeystore != null) || (trustKeystore != null)) {
-        SSLContextBuilder sslContextBuilder = SSLContexts.custom();
+      return new TlsMaterial(identityKeystore, identityKeyPassphrase, trustKeystore);
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Unable to create SSLContext", e);
+    }
+  }
 
-        if (identityKeystore != null) {
-          sslContextBuilder.loadKeyMaterial(identityKeystore, identityKeyPassphrase);
-        }
+  /* The key and trust material an SSLContext is built from */
+  private static final class TlsMaterial {
+    private final KeyStore identityKeystore;
+    private final char[] identityKeyPassphrase;
+    private final KeyStore trustKeystore;
 
-        if (trustKeystore != null) {
-          sslContextBuilder.loadTrustMaterial(trustKeystore, null);
-        }
+    TlsMaterial(KeyStore identityKeystore, char[] identityKeyPassphrase, KeyStore trustKeystore) {
+      this.identityKeystore = identityKeystore;
+      this.identityKeyPassphrase = identityKeyPassphrase;
+      this.trustKeystore = trustKeystore;
+    }
 
-        return sslContextBuilder.build();
-      } else {
-        return null;
+    /* Digest of the certificates of both keystores; it changes when a key or a trusted certificate is replaced */
+    String fingerprint() {
+      try {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (KeyStore keystore : new KeyStore[] { identityKeystore, trustKeystore }) {
+          if (keystore != null) {
+            final List<String> aliases = Collections.list(keystore.aliases());
+            Collections.sort(aliases);
+            for (String alias : aliases) {
+              digest.update(alias.getBytes(StandardCharsets.UTF_8));
+              final Certificate certificate = keystore.getCertificate(alias);
+              if (certificate != null) {
+                digest.update(certificate.getEncoded());
+              }
+            }
+          }
+          digest.update((byte) 0);
+        }
+        return Hex.encodeHexString(digest.digest());
+      } catch (GeneralSecurityException e) {
+        throw new IllegalArgumentException("Unable to read the TLS key material", e);
       }
-    } catch (Exception e) {
-      throw new IllegalArgumentException("Unable to create SSLContext", e);
     }
   }
 
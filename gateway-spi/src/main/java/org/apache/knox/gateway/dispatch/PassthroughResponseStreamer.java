@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.commons.io.IOUtils;
+import org.apache.knox.gateway.SpiGatewayMessages;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+import org.apache.knox.gateway.services.metrics.MetricsUtils;
+
+import javax.servlet.ServletContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Streams a backend response body to the client without modification.
+ * <p>
+ * When a {@link ChannelResponseWriter} accepts the client output stream, the body is handed to it as
+ * a channel, so the servlet container can read it into buffers from its own pool and write them to
+ * the endpoint without going through the servlet output stream's aggregation buffer. The backend
+ * body is only available as an {@link InputStream}, so the channel still reads it through a small
+ * heap array; this is not a zero-copy transfer. Otherwise the body is copied to the output stream.
+ * <p>
+ * This is only appropriate if the body is not rewritten on the way out and therefore the backend
+ * Content-Length, Content-Range and Content-Encoding headers remain valid.
+ */
+public class PassthroughResponseStreamer {
+  private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
+
+  static final String BYTES_METRIC = MetricRegistry.name("dispatch", "passthrough", "bytes");
+  static final String TRANSFERS_METRIC = MetricRegistry.name("dispatch", "passthrough", "transfers");
+
+  private static final List<ChannelResponseWriter> WRITERS = loadWriters();
+
+  /**
+   * @param servletContext the context of the deployed topology
+   * @return true if passthrough streaming is enabled in the gateway configuration
+   */
+  public static boolean isEnabled(ServletContext servletContext) {
+    if (servletContext == null) {
+      return false;
+    }
+    final GatewayConfig config = (GatewayConfig) servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
+    return config != null && config.isDispatchPassthroughStreamingEnabled();
+  }
+
+  /**
+   * Writes the complete input to the output and closes the output.
+   *
+   * @param servletContext the context of the deployed topology, used to record transfer metrics
+   * @param input          the backend response body
+   * @param output         the client response output stream
+   * @return the number of bytes transferred
+   * @throws IOException if reading from the backend or writing to the client fails
+   */
+  public static long stream(ServletContext servletContext, InputStream input, OutputStream output) throws IOException {
+    return stream(servletContext, input, output, WRITERS);
+  }
+
+  static long stream(ServletContext servletContext, InputStream input, OutputStream output,
+                     List<ChannelResponseWriter> writers) throws IOException {
+    long transferred = 0;
+    try {
+      final ChannelResponseWriter writer = findWriter(writers, output);
+      if (writer != null) {
+        final CountingReadableByteChannel channel = new CountingReadableByteChannel(Channels.newChannel(input));
+        try {
+          writer.write(channel, output);
+        } finally {
+          transferred = channel.getCount();
+        }
+      } else {
+        try (OutputStream out = output) {
+          transferred = IOUtils.copyLarge(input, out);
+        }
+      }
+    } finally {
+      LOG.passthroughResponseStreamed(transferred);
+      recordTransfer(servletContext, transferred);
+    }
+    return transferred;
+  }
+
+  private static ChannelResponseWriter findWriter(List<ChannelResponseWriter> writers, OutputStream output) {
+    for (ChannelResponseWriter writer : writers) {
+      if (writer.accepts(output)) {
+        return writer;
+      }
+    }
+    return null;
+  }
+
+  private static List<ChannelResponseWriter> loadWriters() {
+    final List<ChannelResponseWriter> writers = new ArrayList<>();
+    ServiceLoader.load(ChannelResponseWriter.class).forEach(writers::add);
+    return Collections.unmodifiableList(writers);
+  }
+
+  private static void recordTransfer(ServletContext servletContext, long transferred) {
+    final MetricRegistry registry = MetricsUtils.getMetricRegistry(servletContext);
+    if (registry != null) {
+      registry.meter(TRANSFERS_METRIC).mark();
+      registry.meter(BYTES_METRIC).mark(transferred);
+    }
+  }
+
+  private static class CountingReadableByteChannel implements ReadableByteChannel {
+    private final ReadableByteChannel delegate;
+    private long count;
+
+    CountingReadableByteChannel(ReadableByteChannel delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      final int read = delegate.read(dst);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return delegate.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLContext;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.knox.gateway.SpiGatewayMessages;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+/**
+ * A connection pool shared by all dispatch HTTP clients that present the same TLS identity and allow the same
+ * maximum of connections per backend, so that topologies proxying the same backend reuse each other's connections
+ * and TLS sessions.
+ * <p>
+ * Idle connections are evicted per route: connections of a route that has not been used within the idle timeout are
+ * closed once they have been idle for that long, while a route that is in use keeps its idle connections four times
+ * as long and is topped up to the configured number of pre-warmed connections.
+ * <p>
+ * Each client holds a {@link Lease} on the pool, which it releases when it is closed. A pool that was retired, because
+ * the key material of its identity changed, is shut down when the last of its clients releases its lease.
+ */
+public class SharedConnectionManager extends PoolingHttpClientConnectionManager {
+  private static final SpiGatewayMessages LOG = MessagesFactory.get(SpiGatewayMessages.class);
+
+  static final String METRICS_PREFIX = "httpclient.pool";
+  static final int ACTIVE_ROUTE_IDLE_FACTOR = 4;
+
+  private final String identity;
+  private final int maxPerRoute;
+  private final String fingerprint;
+  private final long idleTimeout;
+  private final int prewarmConnections;
+  private final int connectTimeout;
+  private final AtomicInteger clients = new AtomicInteger();
+  private final AtomicBoolean retired = new AtomicBoolean();
+  private final AtomicBoolean shutDown = new AtomicBoolean();
+  private final Map<HttpRoute, AtomicLong> lastUsed = new ConcurrentHashMap<>();
+  private final AtomicReference<MetricRegistry> metricRegistry = new AtomicReference<>();
+  private final ScheduledExecutorService maintenance;
+
+  SharedConnectionManager(String identity, int maxConnections, String fingerprint, SSLContext sslContext,
+                          GatewayConfig config) {
+    super(RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+        .register("https", sslContext == null ? SSLConnectionSocketFactory.getSocketFactory()
+            : new SSLConnectionSocketFactory(sslContext))
+        .build());
+    this.identity = identity;
+    this.maxPerRoute = Math.max(maxConnections, 1);
+    this.fingerprint = fingerprint;
+    this.idleTimeout = Math.max(config.getHttpClientIdleConnectionTimeout(), 1L);
+    this.prewarmConnections = Math.max(config.getHttpClientPrewarmConnections(), 0);
+    this.connectTimeout = Math.max(config.getHttpClientConnectionTimeout(), 0);
+    setDefaultMaxPerRoute(maxPerRoute);
+    setMaxTotal(maxPerRoute);
+    final long sweepInterval = Math.max(idleTimeout / 2, 1000L);
+    this.maintenance = Executors.newSingleThreadScheduledExecutor(
+        new BasicThreadFactory.Builder().namingPattern("SharedConnectionManager-" + getName() + "-%d").daemon(true).build());
+    maintenance.scheduleWithFixedDelay(this::evictIdleConnections, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+  }
+
+  String getIdentity() {
+    return identity;
+  }
+
+  /**
+   * @return the name of the pool, made of its identity and its maximum of connections per backend
+   */
+  String getName() {
+    return identity + "-" + maxPerRoute;
+  }
+
+  /**
+   * @return the fingerprint of the key and trust material the pool's connections are made with
+   */
+  String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Leases this pool to a dispatch HTTP client; the lease is released when the client is closed.
+   *
+   * @param registry the registry of the gateway's metrics; <code>null</code> if metrics are disabled
+   * @return the connection manager of the client
+   */
+  Lease lease(MetricRegistry registry) {
+    clients.incrementAndGet();
+    if (registry != null && metricRegistry.compareAndSet(null, registry)) {
+      lastUsed.keySet().forEach(this::registerMetrics);
+    }
+    return new Lease();
+  }
+
+  /**
+   * @return the number of dispatch HTTP clients holding a lease on this pool
+   */
+  int getClients() {
+    return clients.get();
+  }
+
+  /**
+   * Retires this pool after it was replaced by a new one: it keeps serving the clients holding a lease, and is shut
+   * down as soon as none is left.
+   */
+  void retire() {
+    retired.set(true);
+    if (clients.get() == 0) {
+      shutdown();
+    }
+  }
+
+  boolean isShutDown() {
+    return shutDown.get();
+  }
+
+  private void release() {
+    if (clients.decrementAndGet() == 0 && retired.get()) {
+      LOG.shuttingDownRetiredConnectionPool(getName());
+      shutdown();
+    }
+  }
+
+  /**
+   * @return an interceptor recording the route of each request executed on this pool
+   */
+  HttpRequestInterceptor getRouteTracker() {
+    return (request, context) -> {
+      final RouteInfo route = HttpClientContext.adapt(context).getHttpRoute();
+      if (route instanceof HttpRoute) {
+        touch((HttpRoute) route);
+      }
+    };
+  }
+
+  /**
+   * Asynchronously opens the configured number of connections to each of the given backends.
+   *
+   * @param urls the URLs of the backends of a service
+   */
+  void prewarm(Collection<String> urls) {
+    if (prewarmConnections == 0 || urls == null) {
+      return;
+    }
+    for (String url : urls) {
+      final HttpRoute route = toRoute(url);
+      if (route != null) {
+        touch(route);
+        maintenance.execute(() -> warm(route));
+      }
+    }
+  }
+
+  static HttpRoute toRoute(String url) {
+    try {
+      final URI uri = URI.create(url);
+      final String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+      if (uri.getHost() == null || !("http".equals(scheme) || "https".equals(scheme))) {
+        LOG.invalidPrewarmUrl(url);
+        return null;
+      }
+      // same normalization as the client's route planner, so that the pre-warmed connections are found
+      final int port = uri.getPort() > 0 ? uri.getPort() : ("https".equals(scheme) ? 443 : 80);
+      return new HttpRoute(new HttpHost(uri.getHost(), port, scheme), null, "https".equals(scheme));
+    } catch (IllegalArgumentException e) {
+      LOG.invalidPrewarmUrl(url);
+      return null;
+    }
+  }
+
+  void warm(HttpRoute route) {
+    final PoolStats stats = getStats(route);
+    final int missing = Math.min(prewarmConnections, maxPerRoute) - stats.getAvailable() - stats.getLeased();
+    final List<HttpClientConnection> connections = new ArrayList<>();
+    try {
+      // lease all connections before releasing any of them, otherwise the same connection is leased over and over
+      for (int i = 0; i < missing; i++) {
+        final HttpClientConnection connection = requestConnection(route, null)
+            .get(connectTimeout > 0 ? connectTimeout : idleTimeout, TimeUnit.MILLISECONDS);
+        connections.add(connection);
+        if (!connection.isOpen()) {
+          final HttpClientContext context = HttpClientContext.create();
+          connect(connection, route, connectTimeout, context);
+          routeComplete(connection, route, context);
+        }
+      }
+      if (missing > 0) {
+        LOG.prewarmedConnections(missing, route.getTargetHost().toHostString());
+      }
+    } catch (Exception e) {
+      LOG.failedToPrewarmConnections(route.getTargetHost().toHostString(), e);
+    } finally {
+      for (HttpClientConnection connection : connections) {
+        releaseConnection(connection, null, -1, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  void evictIdleConnections() {
+    closeExpiredConnections();
+    final long now = System.currentTimeMillis();
+    enumAvailable(entry -> {
+      final long threshold = isActive(entry.getRoute(), now) ? idleTimeout * ACTIVE_ROUTE_IDLE_FACTOR : idleTimeout;
+      if (now - entry.getUpdated() > threshold) {
+        entry.close();
+      }
+    });
+    for (HttpRoute route : lastUsed.keySet()) {
+      if (isActive(route, now)) {
+        if (prewarmConnections > 0) {
+          warm(route);
+        }
+      } else {
+        final PoolStats stats = getStats(route);
+        if (stats.getAvailable() == 0 && stats.getLeased() == 0 && stats.getPending() == 0) {
+          lastUsed.remove(route);
+          removeMetrics(route);
+          updateMaxTotal();
+        }
+      }
+    }
+  }
+
+  private boolean isActive(HttpRoute route, long now) {
+    final AtomicLong used = lastUsed.get(route);
+    return used != null && now - used.get() < idleTimeout;
+  }
+
+  private void touch(HttpRoute route) {
+    AtomicLong used = lastUsed.get(route);
+    if (used == null) {
+      final AtomicLong added = new AtomicLong();
+      used = lastUsed.putIfAbsent(route, added);
+      if (used == null) {
+        used = added;
+        updateMaxTotal();
+        registerMetrics(route);
+      }
+    }
+    used.set(System.currentTimeMillis());
+  }
+
+  private void updateMaxTotal() {
+    setMaxTotal(maxPerRoute * Math.max(lastUsed.size(), 1));
+  }
+
+  private String metricName(HttpRoute route, String metric) {
+    return MetricRegistry.name(METRICS_PREFIX, getName(), route.getTargetHost().toHostString(), metric);
+  }
+
+  private void registerMetrics(HttpRoute route) {
+    final MetricRegistry registry = metricRegistry.get();
+    if (registry != null) {
+      registry.gauge(metricName(route, "leased"), () -> (Gauge<Integer>) () -> getStats(route).getLeased());
+      registry.gauge(metricName(route, "available"), () -> (Gauge<Integer>) () -> getStats(route).getAvailable());
+      registry.gauge(metricName(route, "pending"), () -> (Gauge<Integer>) () -> getStats(route).getPending());
+      registry.gauge(metricName(route, "max"), () -> (Gauge<Integer>) () -> getStats(route).getMax());
+    }
+  }
+
+  private void removeMetrics(HttpRoute route) {
+    final MetricRegistry registry = metricRegistry.get();
+    if (registry != null) {
+      registry.remove(metricName(route, "leased"));
+      registry.remove(metricName(route, "available"));
+      registry.remove(metricName(route, "pending"));
+      registry.remove(metricName(route, "max"));
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    if (!shutDown.compareAndSet(false, true)) {
+      return;
+    }
+    maintenance.shutdown();
+    lastUsed.keySet().forEach(this::removeMetrics);
+    lastUsed.clear();
+    super.shutdown();
+  }
+
+  /**
+   * The connection manager of a single dispatch HTTP client, delegating to the shared pool. Shutting it down, as the
+   * client does when it is closed, releases the client's lease instead of shutting down the pool of the others.
+   */
+  final class Lease implements HttpClientConnectionManager {
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    SharedConnectionManager getPool() {
+      return SharedConnectionManager.this;
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+      return SharedConnectionManager.this.requestConnection(route, state);
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit) {
+      SharedConnectionManager.this.releaseConnection(conn, newState, validDuration, timeUnit);
+    }
+
+    @Override
+    public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+        throws IOException {
+      SharedConnectionManager.this.connect(conn, route, connectTimeout, context);
+    }
+
+    @Override
+    public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+      SharedConnectionManager.this.upgrade(conn, route, context);
+    }
+
+    @Override
+    public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+      SharedConnectionManager.this.routeComplete(conn, route, context);
+    }
+
+    @Override
+    public void closeIdleConnections(long idletime, TimeUnit timeUnit) {
+      SharedConnectionManager.this.closeIdleConnections(idletime, timeUnit);
+    }
+
+    @Override
+    public void closeExpiredConnections() {
+      SharedConnectionManager.this.closeExpiredConnections();
+    }
+
+    @Override
+    public void shutdown() {
+      if (released.compareAndSet(false, true)) {
+        release();
+      }
+    }
+  }
+}
@@ -117,4 +117,13 @@ public interface GatewaySpiMessages {
 
   @Message(level=MessageLevel.ERROR, text="No proxy user or group configuration exists.")
   void noProxyUserOrGroupConfigExists();
+
+  @Message( level = MessageLevel.INFO, text = "Using the {0} TLS provider" )
+  void usingTlsProvider( String provider );
+
+  @Message( level = MessageLevel.WARN, text = "The {0} TLS provider is unavailable, falling back to the JVM default: {1}" )
+  void tlsProviderUnavailable( String provider, @StackTrace( level = MessageLevel.DEBUG ) Throwable t );
+
+  @Message( level = MessageLevel.WARN, text = "Ignoring the {0} TLS provider because FIPS mode is enabled" )
+  void ignoringTlsProviderInFipsMode( String provider );
 }
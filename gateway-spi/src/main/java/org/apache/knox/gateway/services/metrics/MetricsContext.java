@@ -19,6 +19,11 @@ package org.apache.knox.gateway.services.metrics;
 
 public interface MetricsContext {
 
+  /**
+   * Name of the property holding the {@link com.codahale.metrics.MetricRegistry} backing the context.
+   */
+  String METRICS_REGISTRY = "metrics-registry";
+
   MetricsService getMetricsService();
 
   void setProperty(String name, Object value);
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.services.GatewayServices;
+import org.apache.knox.gateway.services.ServiceType;
+
+import javax.servlet.ServletContext;
+
+/**
+ * Provides access to the gateway's {@link MetricRegistry} for components that record their own metrics.
+ */
+public class MetricsUtils {
+
+  /**
+   * @param servletContext the context of a deployed topology
+   * @return the registry of the gateway's metrics service; or <code>null</code> if metrics are disabled
+   */
+  public static MetricRegistry getMetricRegistry(ServletContext servletContext) {
+    if (servletContext == null) {
+      return null;
+    }
+    final GatewayConfig config = (GatewayConfig) servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE);
+    final GatewayServices services = (GatewayServices) servletContext.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE);
+    return getMetricRegistry(config, services);
+  }
+
+  /**
+   * @param config   the gateway configuration
+   * @param services the gateway services
+   * @return the registry of the gateway's metrics service; or <code>null</code> if metrics are disabled
+   */
+  public static MetricRegistry getMetricRegistry(GatewayConfig config, GatewayServices services) {
+    if (config == null || services == null || !config.isMetricsEnabled()) {
+      return null;
+    }
+    final MetricsService metricsService = services.getService(ServiceType.METRICS_SERVICE);
+    if (metricsService == null || metricsService.getContext() == null) {
+      return null;
+    }
+    return (MetricRegistry) metricsService.getContext().getProperty(MetricsContext.METRICS_REGISTRY);
+  }
+}
@@ -36,4 +36,6 @@ public interface ServiceDefinitionRegistry {
 
   void addServiceDefinitionChangeListener(ServiceDefinitionChangeListener listener);
 
+  void removeServiceDefinitionChangeListener(ServiceDefinitionChangeListener listener);
+
 }
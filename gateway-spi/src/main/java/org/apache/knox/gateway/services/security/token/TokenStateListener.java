@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.services.security.token;
+
+/**
+ * Receives notifications of token state changes from a {@link TokenStateService}, allowing components that keep their
+ * own record of tokens (e.g., caches of verified tokens) to discard it.
+ */
+public interface TokenStateListener {
+
+  /**
+   * Invoked after the specified token has been revoked.
+   *
+   * @param tokenId The unique identifier of the revoked token.
+   */
+  void onTokenRevoked(String tokenId);
+}
@@ -217,4 +217,20 @@ public interface TokenStateService extends Service {
    */
   Collection<KnoxToken> getDoAsTokens(String createdBy);
 
+  /**
+   * Register a listener to be notified of token state changes made by this service.
+   * Registering the same listener more than once has no effect.
+   *
+   * @param listener The listener to register.
+   */
+  default void addTokenStateListener(TokenStateListener listener) {
+  }
+
+  /**
+   * Unregister a listener previously registered with {@link #addTokenStateListener(TokenStateListener)}.
+   *
+   * @param listener The listener to unregister.
+   */
+  default void removeTokenStateListener(TokenStateListener listener) {
+  }
 }
@@ -41,6 +41,8 @@ public interface TopologyService extends Service, ServiceDefinitionChangeListene
 
   void addTopologyChangeListener(TopologyListener listener);
 
+  void removeTopologyChangeListener(TopologyListener listener);
+
   void startMonitor() throws Exception;
 
   void stopMonitor() throws Exception;
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.tracing;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes each trace as a single line of OTLP/JSON (an <code>ExportTraceServiceRequest</code>) to the
+ * <code>org.apache.knox.gateway.tracing</code> logger, so the file it is routed to can be shipped to
+ * any OpenTelemetry collector that reads OTLP/JSON files.
+ */
+public class LogSpanExporter implements SpanExporter {
+
+  private static final TracingMessages LOG = MessagesFactory.get(TracingMessages.class);
+
+  private static final int STATUS_CODE_ERROR = 2;
+
+  private final String serviceName;
+
+  public LogSpanExporter(String serviceName) {
+    this.serviceName = serviceName;
+  }
+
+  @Override
+  public void export(List<Span> spans) {
+    if (spans.isEmpty()) {
+      return;
+    }
+    LOG.trace(toOtlp(spans).toString());
+  }
+
+  ObjectNode toOtlp(List<Span> spans) {
+    final ObjectNode request = JsonNodeFactory.instance.objectNode();
+    final ObjectNode resourceSpans = request.putArray("resourceSpans").addObject();
+    addAttribute(resourceSpans.putObject("resource").putArray("attributes"), "service.name", serviceName);
+    final ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+    scopeSpans.putObject("scope").put("name", Tracer.class.getPackage().getName());
+    final ArrayNode array = scopeSpans.putArray("spans");
+    for (Span span : spans) {
+      final ObjectNode node = array.addObject();
+      node.put("traceId", span.getTraceId());
+      node.put("spanId", span.getSpanId());
+      if (!span.getParentSpanId().isEmpty()) {
+        node.put("parentSpanId", span.getParentSpanId());
+      }
+      node.put("name", span.getName());
+      node.put("kind", span.getKind().getCode());
+      // OTLP/JSON encodes 64 bit integers as strings
+      node.put("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+      node.put("endTimeUnixNano", Long.toString(span.getEndEpochNanos()));
+      final ArrayNode attributes = node.putArray("attributes");
+      for (Map.Entry<String, String> attribute : span.getAttributes().entrySet()) {
+        addAttribute(attributes, attribute.getKey(), attribute.getValue());
+      }
+      if (span.getError() != null) {
+        node.putObject("status").put("code", STATUS_CODE_ERROR).put("message", span.getError());
+      }
+    }
+    return request;
+  }
+
+  private static void addAttribute(ArrayNode attributes, String key, String value) {
+    final ObjectNode attribute = attributes.addObject();
+    attribute.put("key", key);
+    attribute.putObject("value").put("stringValue", value);
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timed phase of the processing of a single request, e.g. one filter of a topology's provider
+ * chain or the exchange with the backend. Spans are started through {@link Tracer} and are closed,
+ * typically with try-with-resources, on the thread that started them; closing the root span of a
+ * trace hands all spans of the request to the configured {@link SpanExporter}.
+ * <p>
+ * Requests that were not sampled get {@link #NOOP}, whose methods do nothing.
+ */
+public class Span implements AutoCloseable {
+
+  /**
+   * The span returned for requests that are not traced.
+   */
+  public static final Span NOOP = new Span();
+
+  /**
+   * The role of the span in the request, using the OpenTelemetry numbering.
+   */
+  public enum Kind {
+    INTERNAL(1), SERVER(2), CLIENT(3);
+
+    private final int code;
+
+    Kind(int code) {
+      this.code = code;
+    }
+
+    public int getCode() {
+      return code;
+    }
+  }
+
+  private final Trace trace;
+  private final Span parent;
+  private final String name;
+  private final Kind kind;
+  private final String spanId;
+  private final long startEpochNanos;
+  private final long startNanos;
+  private final Map<String, String> attributes;
+  private long durationNanos;
+  private long childNanos;
+  private String error;
+  private boolean closed;
+
+  private Span() {
+    this.trace = null;
+    this.parent = null;
+    this.name = "";
+    this.kind = Kind.INTERNAL;
+    this.spanId = "";
+    this.startEpochNanos = 0;
+    this.startNanos = 0;
+    this.attributes = Collections.emptyMap();
+  }
+
+  Span(Trace trace, Span parent, String name, Kind kind, String spanId) {
+    this.trace = trace;
+    this.parent = parent;
+    this.name = name;
+    this.kind = kind;
+    this.spanId = spanId;
+    this.startNanos = System.nanoTime();
+    this.startEpochNanos = trace.epochNanos(startNanos);
+    this.attributes = new LinkedHashMap<>();
+  }
+
+  /**
+   * @return <code>true</code> if this span is recorded, <code>false</code> for {@link #NOOP}
+   */
+  public boolean isRecording() {
+    return trace != null;
+  }
+
+  /**
+   * Adds an attribute to the span, e.g. the HTTP method or the backend host.
+   *
+   * @param key   the attribute name; OpenTelemetry semantic convention names are preferred
+   * @param value the attribute value; ignored if <code>null</code>
+   * @return this span
+   */
+  public Span attribute(String key, Object value) {
+    if (isRecording() && value != null) {
+      attributes.put(key, String.valueOf(value));
+    }
+    return this;
+  }
+
+  /**
+   * Marks the span as failed.
+   *
+   * @param e the failure
+   * @return this span
+   */
+  public Span error(Throwable e) {
+    if (isRecording()) {
+      error = e.getClass().getName() + (e.getMessage() == null ? "" : ": " + e.getMessage());
+    }
+    return this;
+  }
+
+  /**
+   * Ends the span. If this is the root span the trace is exported.
+   */
+  @Override
+  public void close() {
+    if (!isRecording() || closed) {
+      return;
+    }
+    closed = true;
+    durationNanos = System.nanoTime() - startNanos;
+    if (parent != null) {
+      parent.childNanos += durationNanos;
+    }
+    Tracer.ended(this);
+  }
+
+  Trace getTrace() {
+    return trace;
+  }
+
+  Span getParent() {
+    return parent;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public String getTraceId() {
+    return trace == null ? "" : trace.traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  public String getParentSpanId() {
+    return parent == null ? "" : parent.spanId;
+  }
+
+  public long getStartEpochNanos() {
+    return startEpochNanos;
+  }
+
+  public long getEndEpochNanos() {
+    return startEpochNanos + durationNanos;
+  }
+
+  public long getDuration(TimeUnit unit) {
+    return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param unit the unit of the returned value
+   * @return the time spent in this span excluding the time spent in its child spans
+   */
+  public long getSelfDuration(TimeUnit unit) {
+    return unit.convert(Math.max(0, durationNanos - childNanos), TimeUnit.NANOSECONDS);
+  }
+
+  public Map<String, String> getAttributes() {
+    return Collections.unmodifiableMap(attributes);
+  }
+
+  /**
+   * @return a description of the failure recorded with {@link #error(Throwable)}; or <code>null</code>
+   */
+  public String getError() {
+    return error;
+  }
+
+  /**
+   * The spans of one sampled request. Spans are only touched by the request thread.
+   */
+  static final class Trace {
+    final String traceId;
+    final List<Span> ended = new ArrayList<>();
+    private final long epochNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    private final long originNanos = System.nanoTime();
+
+    Trace(String traceId) {
+      this.traceId = traceId;
+    }
+
+    long epochNanos(long nanoTime) {
+      return epochNanos + (nanoTime - originNanos);
+    }
+  }
+}
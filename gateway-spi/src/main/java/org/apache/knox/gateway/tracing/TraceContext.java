@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.tracing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Maps correlation ids to and from W3C Trace Context <code>traceparent</code> headers.
+ * <p>
+ * The trace id of a request is its correlation id without dashes, so backends that log the
+ * <code>traceparent</code> they receive can be matched with the gateway's audit and trace logs.
+ * Correlation ids that are not UUIDs are hashed into a trace id, so it is the same for every
+ * request dispatched on behalf of the same inbound request.
+ */
+public final class TraceContext {
+
+  public static final String TRACEPARENT_HEADER = "traceparent";
+
+  private static final String VERSION = "00";
+  private static final String SAMPLED = "01";
+  private static final String NOT_SAMPLED = "00";
+  private static final int TRACE_ID_LENGTH = 32;
+  private static final int TRACEPARENT_LENGTH = 55;
+
+  private TraceContext() {
+  }
+
+  /**
+   * Formats the <code>traceparent</code> of an outbound request. When the request is traced, it
+   * names the span current on this thread as parent; otherwise it carries a random parent id and
+   * is flagged as not sampled.
+   *
+   * @param correlationId the correlation id of the request
+   * @return the <code>traceparent</code> header value
+   */
+  public static String traceparent(String correlationId) {
+    return traceparent(correlationId, null);
+  }
+
+  /**
+   * Formats the <code>traceparent</code> of an outbound request. When the request is traced, it
+   * names the span current on this thread as parent. Otherwise a valid inbound <code>traceparent</code>
+   * is passed on with its trace id, parent id and flags, so traces started upstream stay intact.
+   * Without either, it carries a random parent id and is flagged as not sampled.
+   *
+   * @param correlationId      the correlation id of the request
+   * @param inboundTraceparent the <code>traceparent</code> the request was received with; may be <code>null</code>
+   * @return the <code>traceparent</code> header value
+   */
+  public static String traceparent(String correlationId, String inboundTraceparent) {
+    final Span span = Tracer.current();
+    if (span.isRecording()) {
+      return VERSION + '-' + span.getTraceId() + '-' + span.getSpanId() + '-' + SAMPLED;
+    }
+    if (isValid(inboundTraceparent)) {
+      return VERSION + '-' + inboundTraceparent.substring(3, TRACEPARENT_LENGTH).toLowerCase(Locale.ROOT);
+    }
+    return VERSION + '-' + traceId(correlationId) + '-' + spanId() + '-' + NOT_SAMPLED;
+  }
+
+  /**
+   * @param traceparent a <code>traceparent</code> header value; may be <code>null</code>
+   * @return the trace id of a valid <code>traceparent</code> formatted as a UUID; or <code>null</code>
+   */
+  public static String correlationId(String traceparent) {
+    if (!isValid(traceparent)) {
+      return null;
+    }
+    final String traceId = traceparent.substring(3, 35).toLowerCase(Locale.ROOT);
+    return traceId.substring(0, 8) + '-' + traceId.substring(8, 12) + '-' + traceId.substring(12, 16) + '-'
+        + traceId.substring(16, 20) + '-' + traceId.substring(20);
+  }
+
+  private static boolean isValid(String traceparent) {
+    if (traceparent == null || traceparent.length() < TRACEPARENT_LENGTH
+        || traceparent.charAt(2) != '-' || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-'
+        || (traceparent.length() > TRACEPARENT_LENGTH && traceparent.charAt(TRACEPARENT_LENGTH) != '-')
+        || "ff".equals(traceparent.substring(0, 2))) {
+      return false;
+    }
+    final String traceId = traceparent.substring(3, 35);
+    final String parentId = traceparent.substring(36, 52);
+    return isHex(traceId) && isHex(parentId) && isHex(traceparent.substring(0, 2))
+        && isHex(traceparent.substring(53, TRACEPARENT_LENGTH)) && !isZero(traceId) && !isZero(parentId);
+  }
+
+  /**
+   * @param correlationId a correlation id; may be <code>null</code>
+   * @return the correlation id without dashes if it is a UUID; a trace id derived from any other
+   *         correlation id; or a random trace id if there is none
+   */
+  static String traceId(String correlationId) {
+    if (correlationId != null) {
+      final String id = correlationId.replace("-", "");
+      if (id.length() == TRACE_ID_LENGTH && isHex(id) && !isZero(id)) {
+        return id.toLowerCase(Locale.ROOT);
+      }
+      final UUID derived = UUID.nameUUIDFromBytes(correlationId.getBytes(StandardCharsets.UTF_8));
+      return hex(derived.getMostSignificantBits()) + hex(derived.getLeastSignificantBits());
+    }
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    return hex(random.nextLong()) + hex(random.nextLong() | 1L);
+  }
+
+  static String spanId() {
+    return hex(ThreadLocalRandom.current().nextLong() | 1L);
+  }
+
+  private static boolean isHex(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (Character.digit(s.charAt(i), 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isZero(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) != '0') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String hex(long value) {
+    final String hex = Long.toHexString(value);
+    return "0000000000000000".substring(hex.length()) + hex;
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.tracing;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Starts and collects the {@link Span}s of sampled requests.
+ * <p>
+ * The gateway starts a trace for each request it receives; filters and dispatches then open child
+ * spans with {@link #startSpan(String)}, which attach to the span current on the calling thread. For
+ * requests that are not sampled, or when tracing is disabled, every call returns {@link Span#NOOP}
+ * so the cost of an untraced request is a thread local lookup per span.
+ * <p>
+ * When a metric registry is configured, the duration of each sampled span is recorded in the timer
+ * <code>spans.{name}</code> and its duration excluding child spans in <code>spans.{name}.self</code>.
+ */
+public final class Tracer {
+
+  private static final TracingMessages LOG = MessagesFactory.get(TracingMessages.class);
+
+  private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+  private static final AtomicReference<Settings> SETTINGS = new AtomicReference<>(Settings.DISABLED);
+
+  private Tracer() {
+  }
+
+  /**
+   * @param sampleRate the fraction of requests to trace, from 0 (disabled) to 1 (every request)
+   * @param exporter   receives the spans of each sampled request
+   * @param registry   the registry span timers are recorded in; or <code>null</code>
+   */
+  public static void configure(double sampleRate, SpanExporter exporter, MetricRegistry registry) {
+    SETTINGS.set(sampleRate > 0 && exporter != null
+        ? new Settings(Math.min(sampleRate, 1.0d), exporter, registry) : Settings.DISABLED);
+  }
+
+  /**
+   * Disables tracing.
+   */
+  public static void reset() {
+    SETTINGS.set(Settings.DISABLED);
+  }
+
+  public static boolean isEnabled() {
+    return SETTINGS.get() != Settings.DISABLED;
+  }
+
+  /**
+   * Starts the root span of a request, subject to sampling. If a span is already current on this
+   * thread, e.g. for a request forwarded within the gateway, a child span is started instead.
+   *
+   * @param name          the span name
+   * @param correlationId the correlation id of the request; used as trace id when it is a UUID
+   * @return the root span; or {@link Span#NOOP} if the request is not sampled
+   */
+  public static Span startTrace(String name, String correlationId) {
+    if (CURRENT.get() != null) {
+      return startSpan(name, Span.Kind.SERVER);
+    }
+    final Settings settings = SETTINGS.get();
+    if (!settings.sample()) {
+      return Span.NOOP;
+    }
+    final Span span = new Span(new Span.Trace(TraceContext.traceId(correlationId)), null, name, Span.Kind.SERVER,
+        TraceContext.spanId());
+    CURRENT.set(span);
+    return span;
+  }
+
+  /**
+   * @param name the span name
+   * @return a child of the span current on this thread; or {@link Span#NOOP} if the request is not traced
+   */
+  public static Span startSpan(String name) {
+    return startSpan(name, Span.Kind.INTERNAL);
+  }
+
+  /**
+   * @param name the span name
+   * @param kind the span kind
+   * @return a child of the span current on this thread; or {@link Span#NOOP} if the request is not traced
+   */
+  public static Span startSpan(String name, Span.Kind kind) {
+    final Span parent = CURRENT.get();
+    if (parent == null) {
+      return Span.NOOP;
+    }
+    final Span span = new Span(parent.getTrace(), parent, name, kind, TraceContext.spanId());
+    CURRENT.set(span);
+    return span;
+  }
+
+  /**
+   * @return the span current on this thread; or {@link Span#NOOP} if the request is not traced
+   */
+  public static Span current() {
+    final Span span = CURRENT.get();
+    return span == null ? Span.NOOP : span;
+  }
+
+  static void ended(Span span) {
+    final Span parent = span.getParent();
+    if (parent == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(parent);
+    }
+    final Span.Trace trace = span.getTrace();
+    trace.ended.add(span);
+
+    final Settings settings = SETTINGS.get();
+    settings.record(span);
+    if (parent == null) {
+      try {
+        settings.exporter.export(trace.ended);
+      } catch (RuntimeException e) {
+        LOG.failedToExportTrace(trace.traceId, e);
+      }
+    }
+  }
+
+  private static final class Settings {
+    static final Settings DISABLED = new Settings(0, spans -> { }, null);
+
+    final double sampleRate;
+    final SpanExporter exporter;
+    final MetricRegistry registry;
+    final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    Settings(double sampleRate, SpanExporter exporter, MetricRegistry registry) {
+      this.sampleRate = sampleRate;
+      this.exporter = exporter;
+      this.registry = registry;
+    }
+
+    boolean sample() {
+      return sampleRate >= 1.0d || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    void record(Span span) {
+      if (registry == null) {
+        return;
+      }
+      final Timer[] timer = timers.computeIfAbsent(span.getName(), name -> new Timer[] {
+          registry.timer(MetricRegistry.name("spans", name)),
+          registry.timer(MetricRegistry.name("spans", name, "self")) });
+      timer[0].update(span.getDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+      timer[1].update(span.getSelfDuration(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.tracing;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+
+/**
+ * Records the exchange with the backend, from sending the request over an already leased and
+ * connected connection until the response head is received, as a <code>dispatch.exchange</code>
+ * span. The self time of the enclosing <code>dispatch.execute</code> span is thereby the time spent
+ * acquiring and establishing the connection.
+ */
+public class TracingRequestExecutor extends HttpRequestExecutor {
+
+  public static final String SPAN_NAME = "dispatch.exchange";
+
+  @Override
+  public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+      throws IOException, HttpException {
+    final Span span = Tracer.startSpan(SPAN_NAME, Span.Kind.CLIENT);
+    try {
+      if (span.isRecording()) {
+        final HttpHost target = HttpCoreContext.adapt(context).getTargetHost();
+        span.attribute("server.address", target == null ? null : target.toHostString());
+      }
+      final HttpResponse response = super.execute(request, conn, context);
+      span.attribute("http.response.status_code", response.getStatusLine().getStatusCode());
+      return response;
+    } catch (IOException | HttpException | RuntimeException e) {
+      span.error(e);
+      throw e;
+    } finally {
+      span.close();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.util;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.fips.FipsUtils;
+import org.apache.knox.gateway.i18n.GatewaySpiMessages;
+import org.apache.knox.gateway.i18n.messages.MessagesFactory;
+
+/**
+ * Resolves the TLS provider configured for the gateway's connectors and outbound connections.
+ */
+public class TlsProviderUtils {
+  private static final GatewaySpiMessages LOGGER = MessagesFactory.get(GatewaySpiMessages.class);
+
+  static final String TLS_PROTOCOL = "TLS";
+
+  // resolved once per configured value, so an unavailable provider is reported only once
+  private static final Map<String, Optional<Provider>> PROVIDERS = new ConcurrentHashMap<>();
+
+  private TlsProviderUtils() {
+  }
+
+  /**
+   * The configured value is either the name of a registered JCA provider, or the class name of a provider on the
+   * classpath, which gets registered with the lowest preference so that it is only used when asked for explicitly.
+   *
+   * @param config the gateway configuration
+   * @return the configured TLS provider; or <code>null</code> for the JVM default, which is also used if the provider
+   * cannot be loaded (e.g. the native library of an OpenSSL based provider is missing) or FIPS mode is enabled
+   */
+  public static Provider getTlsProvider(GatewayConfig config) {
+    final String configured = config == null ? null : StringUtils.trimToNull(config.getTlsProvider());
+    if (configured == null) {
+      return null;
+    }
+    if (FipsUtils.isFipsEnabledWithBCProvider()) {
+      LOGGER.ignoringTlsProviderInFipsMode(configured);
+      return null;
+    }
+    return PROVIDERS.computeIfAbsent(configured, TlsProviderUtils::loadProvider).orElse(null);
+  }
+
+  private static Optional<Provider> loadProvider(String nameOrClass) {
+    try {
+      Provider provider = Security.getProvider(nameOrClass);
+      if (provider == null) {
+        provider = (Provider) Class.forName(nameOrClass).getDeclaredConstructor().newInstance();
+        if (Security.getProvider(provider.getName()) == null) {
+          Security.addProvider(provider);
+        }
+      }
+      // fails if the provider does not implement TLS, or its native library cannot be loaded
+      SSLContext.getInstance(TLS_PROTOCOL, provider).init(null, null, null);
+      LOGGER.usingTlsProvider(provider.getName());
+      return Optional.of(provider);
+    } catch (ReflectiveOperationException | ClassCastException | LinkageError | GeneralSecurityException e) {
+      LOGGER.tlsProviderUnavailable(nameOrClass, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Applies the configured session cache size and timeout to the given sessions.
+   *
+   * @param sessionContext the client or server sessions of an {@link SSLContext}
+   * @param config         the gateway configuration
+   */
+  public static void configureSessionContext(SSLSessionContext sessionContext, GatewayConfig config) {
+    if (sessionContext == null || config == null) {
+      return;
+    }
+    if (config.getTlsSessionCacheSize() > -1) {
+      sessionContext.setSessionCacheSize(config.getTlsSessionCacheSize());
+    }
+    if (config.getTlsSessionTimeout() > -1) {
+      sessionContext.setSessionTimeout(config.getTlsSessionTimeout());
+    }
+  }
+
+  /**
+   * @param config the gateway configuration
+   * @return true if TLS contexts have to be customized, even when the default key and trust material is used
+   */
+  public static boolean isCustomized(GatewayConfig config) {
+    return config != null && (getTlsProvider(config) != null
+        || config.getTlsSessionCacheSize() > -1 || config.getTlsSessionTimeout() > -1);
+  }
+
+  static void reset() {
+    PROVIDERS.clear();
+  }
+}
@@ -43,6 +43,9 @@ public class DefaultHttpAsyncClientFactoryTest {
         expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).once();
 
         GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+        expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+        expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+        expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
         expect(gatewayConfig.isMetricsEnabled()).andReturn(false).once();
         expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).once();
         expect(gatewayConfig.getHttpClientConnectionTimeout()).andReturn(20000).once();
@@ -21,11 +21,17 @@ package org.apache.knox.gateway.dispatch;
 import static org.apache.knox.gateway.dispatch.DefaultHttpClientFactory.PARAMETER_USE_TWO_WAY_SSL;
 
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -59,9 +65,13 @@ public class DefaultHttpClientFactoryTest {
     expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
     expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(false).once();
     expect(gatewayConfig.isMetricsEnabled()).andReturn(false).once();
+    expect(gatewayConfig.isHttpClientConnectionSharingEnabled()).andReturn(false).once();
     expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).once();
     expect(gatewayConfig.getHttpClientConnectionTimeout()).andReturn(20000).once();
     expect(gatewayConfig.getHttpClientSocketTimeout()).andReturn(20000).once();
@@ -102,6 +112,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
     expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(false).once();
 
@@ -117,6 +130,156 @@ public class DefaultHttpClientFactoryTest {
     verify(keystoreService, gatewayServices, gatewayConfig, filterConfig);
   }
 
+  @Test
+  public void testCreateSSLContextWithTlsProvider() throws Exception {
+    KeystoreService keystoreService = createMock(KeystoreService.class);
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).once();
+
+    GatewayServices gatewayServices = createMock(GatewayServices.class);
+    expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).once();
+
+    GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
+    expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(false).once();
+    expect(gatewayConfig.getTlsProvider()).andReturn("SunJSSE").atLeastOnce();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(500).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(600).anyTimes();
+
+    FilterConfig filterConfig = createMock(FilterConfig.class);
+    expect(filterConfig.getInitParameter(PARAMETER_USE_TWO_WAY_SSL)).andReturn("false").once();
+
+    replay(keystoreService, gatewayServices, gatewayConfig, filterConfig);
+
+    DefaultHttpClientFactory factory = new DefaultHttpClientFactory();
+    SSLContext context = factory.createSSLContext(gatewayServices, gatewayConfig, filterConfig, "service");
+    assertNotNull(context);
+    assertEquals("SunJSSE", context.getProvider().getName());
+    assertEquals(500, context.getClientSessionContext().getSessionCacheSize());
+    assertEquals(600, context.getClientSessionContext().getSessionTimeout());
+
+    verify(keystoreService, gatewayServices, gatewayConfig, filterConfig);
+  }
+
+  @Test
+  public void testSharedConnectionManagerPerIdentity() throws Exception {
+    KeystoreService keystoreService = createMock(KeystoreService.class);
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).times(2);
+
+    GatewayServices gatewayServices = createMock(GatewayServices.class);
+    expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).times(2);
+
+    GatewayConfig gatewayConfig = createNiceMock(GatewayConfig.class);
+    expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).anyTimes();
+    expect(gatewayConfig.getHttpClientIdleConnectionTimeout()).andReturn(60000L).anyTimes();
+
+    ServletContext servletContext = createNiceMock(ServletContext.class);
+    expect(servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+
+    FilterConfig filterConfig = createNiceMock(FilterConfig.class);
+    expect(filterConfig.getServletContext()).andReturn(servletContext).anyTimes();
+    expect(filterConfig.getInitParameter(PARAMETER_USE_TWO_WAY_SSL)).andReturn("false").anyTimes();
+
+    replay(keystoreService, gatewayServices, gatewayConfig, servletContext, filterConfig);
+
+    DefaultHttpClientFactory factory = new DefaultHttpClientFactory();
+    try {
+      SharedConnectionManager webhdfs = factory.leaseSharedConnectionManager(gatewayServices, gatewayConfig, filterConfig, "WEBHDFS").getPool();
+      SharedConnectionManager hive = factory.leaseSharedConnectionManager(gatewayServices, gatewayConfig, filterConfig, "HIVE").getPool();
+      assertSame(webhdfs, hive);
+      assertEquals("default", webhdfs.getIdentity());
+      assertEquals(2, webhdfs.getClients());
+    } finally {
+      DefaultHttpClientFactory.shutdownSharedConnectionManagers();
+    }
+
+    // the key material is checked for every client, but the pool is not replaced while it does not change
+    verify(keystoreService, gatewayServices);
+  }
+
+  @Test
+  public void testSharedConnectionManagerPerMaxConnections() throws Exception {
+    KeystoreService keystoreService = createMock(KeystoreService.class);
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).times(2);
+
+    GatewayServices gatewayServices = createMock(GatewayServices.class);
+    expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).times(2);
+
+    GatewayConfig gatewayConfig = createNiceMock(GatewayConfig.class);
+    expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).anyTimes();
+    expect(gatewayConfig.getHttpClientIdleConnectionTimeout()).andReturn(60000L).anyTimes();
+
+    ServletContext servletContext = createNiceMock(ServletContext.class);
+    expect(servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+
+    FilterConfig defaultFilterConfig = createNiceMock(FilterConfig.class);
+    expect(defaultFilterConfig.getServletContext()).andReturn(servletContext).anyTimes();
+
+    FilterConfig limitedFilterConfig = createNiceMock(FilterConfig.class);
+    expect(limitedFilterConfig.getServletContext()).andReturn(servletContext).anyTimes();
+    expect(limitedFilterConfig.getInitParameter("httpclient.maxConnections")).andReturn("4").anyTimes();
+
+    replay(keystoreService, gatewayServices, gatewayConfig, servletContext, defaultFilterConfig, limitedFilterConfig);
+
+    DefaultHttpClientFactory factory = new DefaultHttpClientFactory();
+    try {
+      SharedConnectionManager webhdfs = factory.leaseSharedConnectionManager(gatewayServices, gatewayConfig, defaultFilterConfig, "WEBHDFS").getPool();
+      SharedConnectionManager hive = factory.leaseSharedConnectionManager(gatewayServices, gatewayConfig, limitedFilterConfig, "HIVE").getPool();
+      // the lower limit of one client is neither raised by nor imposed on the other
+      assertNotSame(webhdfs, hive);
+      assertEquals(32, webhdfs.getDefaultMaxPerRoute());
+      assertEquals(4, hive.getDefaultMaxPerRoute());
+    } finally {
+      DefaultHttpClientFactory.shutdownSharedConnectionManagers();
+    }
+
+    verify(keystoreService, gatewayServices);
+  }
+
+  @Test
+  public void testSharedConnectionManagerIsReplacedWhenTrustMaterialChanges() throws Exception {
+    KeyStore trustStore = loadKeyStore("target/test-classes/keystores/server-truststore.jks", "horton", "JKS");
+
+    KeystoreService keystoreService = createMock(KeystoreService.class);
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).once();
+    expect(keystoreService.getTruststoreForHttpClient()).andReturn(trustStore).once();
+
+    GatewayServices gatewayServices = createMock(GatewayServices.class);
+    expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).times(2);
+
+    GatewayConfig gatewayConfig = createNiceMock(GatewayConfig.class);
+    expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).anyTimes();
+    expect(gatewayConfig.getHttpClientIdleConnectionTimeout()).andReturn(60000L).anyTimes();
+
+    ServletContext servletContext = createNiceMock(ServletContext.class);
+    expect(servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(gatewayConfig).anyTimes();
+
+    FilterConfig filterConfig = createNiceMock(FilterConfig.class);
+    expect(filterConfig.getServletContext()).andReturn(servletContext).anyTimes();
+    expect(filterConfig.getInitParameter(PARAMETER_USE_TWO_WAY_SSL)).andReturn("false").anyTimes();
+
+    replay(keystoreService, gatewayServices, gatewayConfig, servletContext, filterConfig);
+
+    DefaultHttpClientFactory factory = new DefaultHttpClientFactory();
+    try {
+      SharedConnectionManager.Lease lease = factory.leaseSharedConnectionManager(gatewayServices, gatewayConfig, filterConfig, "WEBHDFS");
+      SharedConnectionManager before = lease.getPool();
+      SharedConnectionManager after = factory.leaseSharedConnectionManager(gatewayServices, gatewayConfig, filterConfig, "WEBHDFS").getPool();
+      assertNotSame(before, after);
+      assertNotEquals(before.getFingerprint(), after.getFingerprint());
+      assertEquals("default", after.getIdentity());
+
+      // the replaced pool serves its client until the client is closed
+      assertFalse(before.isShutDown());
+      lease.shutdown();
+      assertTrue(before.isShutDown());
+      assertFalse(after.isShutDown());
+    } finally {
+      DefaultHttpClientFactory.shutdownSharedConnectionManagers();
+    }
+
+    verify(keystoreService, gatewayServices);
+  }
+
   @Test
   public void testCreateSSLContextTwoWaySslNoCustomTrustStore() throws Exception {
     KeyStore gatewayIdentityKeyStore = loadKeyStore("target/test-classes/keystores/server-keystore.jks", "horton", "JKS");
@@ -133,6 +296,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.ALIAS_SERVICE)).andReturn(aliasService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
 
     FilterConfig filterConfig = createMock(FilterConfig.class);
@@ -164,6 +330,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.ALIAS_SERVICE)).andReturn(aliasService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
 
     FilterConfig filterConfig = createMock(FilterConfig.class);
@@ -187,6 +356,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
     expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(false).once();
 
@@ -213,6 +385,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
     expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(false).once();
 
@@ -244,6 +419,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.ALIAS_SERVICE)).andReturn(aliasService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(true).anyTimes();
 
     FilterConfig filterConfig = createMock(FilterConfig.class);
@@ -268,6 +446,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.KEYSTORE_SERVICE)).andReturn(keystoreService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(true).anyTimes();
     expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(false).once();
 
@@ -301,6 +482,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.ALIAS_SERVICE)).andReturn(aliasService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(true).anyTimes();
     expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(true).once();
 
@@ -333,6 +517,9 @@ public class DefaultHttpClientFactoryTest {
     expect(gatewayServices.getService(ServiceType.ALIAS_SERVICE)).andReturn(aliasService).once();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(true).anyTimes();
 
     FilterConfig filterConfig = createMock(FilterConfig.class);
@@ -355,6 +542,9 @@ public class DefaultHttpClientFactoryTest {
   @Test
   public void testHttpClientPathNormalization() {
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.getHttpClientConnectionTimeout()).andReturn(20000).once();
     expect(gatewayConfig.getHttpClientSocketTimeout()).andReturn(20000).once();
     expect(gatewayConfig.getHttpClientCookieSpec()).andReturn(CookieSpecs.STANDARD).anyTimes();
@@ -392,9 +582,13 @@ public class DefaultHttpClientFactoryTest {
     expect(keystoreService.getTruststoreForHttpClient()).andReturn(null).anyTimes();
 
     GatewayConfig gatewayConfig = createMock(GatewayConfig.class);
+    expect(gatewayConfig.getTlsProvider()).andReturn(null).anyTimes();
+    expect(gatewayConfig.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(gatewayConfig.getTlsSessionTimeout()).andReturn(-1).anyTimes();
     expect(gatewayConfig.isSingleEkuEnabled()).andReturn(false).anyTimes();
     expect(gatewayConfig.isHttpClientTwoWaySslEnabled()).andReturn(false).anyTimes();
     expect(gatewayConfig.isMetricsEnabled()).andReturn(false).anyTimes();
+    expect(gatewayConfig.isHttpClientConnectionSharingEnabled()).andReturn(false).anyTimes();
     expect(gatewayConfig.getHttpClientMaxConnections()).andReturn(32).anyTimes();
     expect(gatewayConfig.getHttpClientConnectionTimeout()).andReturn(20000).anyTimes();
     expect(gatewayConfig.getHttpClientSocketTimeout()).andReturn(20000).anyTimes();
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.apache.knox.gateway.services.GatewayServices;
+import org.apache.knox.gateway.services.ServiceType;
+import org.apache.knox.gateway.services.metrics.MetricsContext;
+import org.apache.knox.gateway.services.metrics.MetricsService;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.servlet.ServletContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PassthroughResponseStreamerTest {
+
+  private static final byte[] CONTENT = "passthrough response body".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void testIsEnabled() {
+    assertFalse(PassthroughResponseStreamer.isEnabled(null));
+    assertFalse(PassthroughResponseStreamer.isEnabled(createServletContext(false, null)));
+    assertTrue(PassthroughResponseStreamer.isEnabled(createServletContext(true, null)));
+  }
+
+  @Test
+  public void testStreamToGenericOutputStream() throws Exception {
+    final MetricRegistry registry = new MetricRegistry();
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    final long transferred = PassthroughResponseStreamer.stream(createServletContext(true, registry),
+        new ByteArrayInputStream(CONTENT), output);
+
+    assertEquals(CONTENT.length, transferred);
+    assertEquals(new String(CONTENT, StandardCharsets.UTF_8), output.toString(StandardCharsets.UTF_8.name()));
+    assertEquals(1, registry.meter(PassthroughResponseStreamer.TRANSFERS_METRIC).getCount());
+    assertEquals(CONTENT.length, registry.meter(PassthroughResponseStreamer.BYTES_METRIC).getCount());
+  }
+
+  @Test
+  public void testStreamToAcceptedOutputUsesChannel() throws Exception {
+    final MetricRegistry registry = new MetricRegistry();
+    final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    final OutputStream output = new ByteArrayOutputStream();
+    final ChannelResponseWriter writer = EasyMock.createMock(ChannelResponseWriter.class);
+    EasyMock.expect(writer.accepts(output)).andReturn(true);
+    writer.write(EasyMock.anyObject(ReadableByteChannel.class), EasyMock.same(output));
+    EasyMock.expectLastCall().andAnswer(() -> {
+      final ReadableByteChannel channel = (ReadableByteChannel) EasyMock.getCurrentArguments()[0];
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          sent.write(buffer.get());
+        }
+        buffer.clear();
+      }
+      return null;
+    });
+    EasyMock.replay(writer);
+
+    final long transferred = PassthroughResponseStreamer.stream(createServletContext(true, registry),
+        new ByteArrayInputStream(CONTENT), output, Collections.singletonList(writer));
+
+    EasyMock.verify(writer);
+    assertEquals(CONTENT.length, transferred);
+    assertEquals(new String(CONTENT, StandardCharsets.UTF_8), sent.toString(StandardCharsets.UTF_8.name()));
+    assertEquals(0, ((ByteArrayOutputStream) output).size());
+    assertEquals(CONTENT.length, registry.meter(PassthroughResponseStreamer.BYTES_METRIC).getCount());
+  }
+
+  private ServletContext createServletContext(boolean passthroughEnabled, MetricRegistry registry) {
+    final GatewayConfig config = EasyMock.createNiceMock(GatewayConfig.class);
+    EasyMock.expect(config.isDispatchPassthroughStreamingEnabled()).andReturn(passthroughEnabled).anyTimes();
+    EasyMock.expect(config.isMetricsEnabled()).andReturn(registry != null).anyTimes();
+
+    final MetricsContext metricsContext = EasyMock.createNiceMock(MetricsContext.class);
+    EasyMock.expect(metricsContext.getProperty(MetricsContext.METRICS_REGISTRY)).andReturn(registry).anyTimes();
+    final MetricsService metricsService = EasyMock.createNiceMock(MetricsService.class);
+    EasyMock.expect(metricsService.getContext()).andReturn(metricsContext).anyTimes();
+    final GatewayServices services = EasyMock.createNiceMock(GatewayServices.class);
+    EasyMock.expect(services.getService(ServiceType.METRICS_SERVICE)).andReturn(metricsService).anyTimes();
+
+    final ServletContext servletContext = EasyMock.createNiceMock(ServletContext.class);
+    EasyMock.expect(servletContext.getAttribute(GatewayConfig.GATEWAY_CONFIG_ATTRIBUTE)).andReturn(config).anyTimes();
+    EasyMock.expect(servletContext.getAttribute(GatewayServices.GATEWAY_SERVICES_ATTRIBUTE)).andReturn(services).anyTimes();
+    EasyMock.replay(config, metricsContext, metricsService, services, servletContext);
+    return servletContext;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.dispatch;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedConnectionManagerTest {
+  private ServerSocket backend;
+  private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+  private SharedConnectionManager connectionManager;
+
+  @Before
+  public void setUp() throws Exception {
+    backend = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    final Thread acceptor = new Thread(() -> {
+      try {
+        while (!backend.isClosed()) {
+          accepted.add(backend.accept());
+        }
+      } catch (IOException e) {
+        // closed
+      }
+    });
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (connectionManager != null) {
+      connectionManager.shutdown();
+    }
+    backend.close();
+    for (Socket socket : accepted) {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testToRoute() {
+    final HttpRoute https = SharedConnectionManager.toRoute("https://namenode.example.com/webhdfs");
+    assertEquals("namenode.example.com:443", https.getTargetHost().toHostString());
+    assertTrue(https.isSecure());
+    assertEquals(10001, SharedConnectionManager.toRoute("http://hs2.example.com:10001/cliservice").getTargetHost().getPort());
+    assertNull(SharedConnectionManager.toRoute("thrift://hms.example.com:9083"));
+    assertNull(SharedConnectionManager.toRoute("not a url"));
+  }
+
+  @Test
+  public void testLimitIsTheMaximumOfItsClients() {
+    connectionManager = new SharedConnectionManager("default", 8, "", null, createConfig(0, 60000L));
+    connectionManager.lease(null);
+    connectionManager.lease(null);
+    assertEquals(8, connectionManager.getDefaultMaxPerRoute());
+    assertEquals("default-8", connectionManager.getName());
+  }
+
+  @Test
+  public void testClosingAClientReleasesItsLease() {
+    connectionManager = new SharedConnectionManager("default", 8, "", null, createConfig(0, 60000L));
+    final SharedConnectionManager.Lease first = connectionManager.lease(null);
+    connectionManager.lease(null);
+
+    first.shutdown();
+    first.shutdown();
+    assertEquals(1, connectionManager.getClients());
+    // the pool keeps serving the other clients
+    assertFalse(connectionManager.isShutDown());
+  }
+
+  @Test
+  public void testRetiredPoolIsShutDownWithItsLastClient() {
+    connectionManager = new SharedConnectionManager("default", 8, "", null, createConfig(0, 60000L));
+    final SharedConnectionManager.Lease first = connectionManager.lease(null);
+    final SharedConnectionManager.Lease second = connectionManager.lease(null);
+
+    connectionManager.retire();
+    first.shutdown();
+    assertFalse(connectionManager.isShutDown());
+    second.shutdown();
+    assertTrue(connectionManager.isShutDown());
+  }
+
+  @Test
+  public void testRetiredPoolWithoutClientsIsShutDown() {
+    connectionManager = new SharedConnectionManager("default", 8, "", null, createConfig(0, 60000L));
+    connectionManager.retire();
+    assertTrue(connectionManager.isShutDown());
+  }
+
+  @Test(timeout = 30000)
+  public void testPrewarmAndRouteMetrics() throws Exception {
+    final MetricRegistry registry = new MetricRegistry();
+    connectionManager = new SharedConnectionManager("default", 8, "", null, createConfig(2, 60000L));
+    connectionManager.lease(registry);
+
+    final String url = "http://" + backendAddress() + "/webhdfs/v1";
+    connectionManager.prewarm(Collections.singletonList(url));
+
+    final HttpRoute route = SharedConnectionManager.toRoute(url);
+    while (connectionManager.getStats(route).getAvailable() < 2) {
+      Thread.sleep(50);
+    }
+    assertEquals(2, accepted.size());
+    assertEquals(0, connectionManager.getStats(route).getLeased());
+    assertEquals(2, registry.getGauges().get(metricName("available")).getValue());
+    assertEquals(8, registry.getGauges().get(metricName("max")).getValue());
+  }
+
+  @Test(timeout = 30000)
+  public void testIdleConnectionsOfUnusedRoutesAreEvicted() throws Exception {
+    final MetricRegistry registry = new MetricRegistry();
+    connectionManager = new SharedConnectionManager("default", 8, "", null, createConfig(1, 100L));
+    connectionManager.lease(registry);
+
+    final String url = "http://" + backendAddress() + "/hive";
+    connectionManager.prewarm(Collections.singletonList(url));
+
+    final HttpRoute route = SharedConnectionManager.toRoute(url);
+    while (connectionManager.getStats(route).getAvailable() < 1) {
+      Thread.sleep(10);
+    }
+
+    // the route has not been used since, so its idle connection is closed and its metrics are dropped
+    Thread.sleep(300);
+    connectionManager.evictIdleConnections();
+    assertEquals(0, connectionManager.getStats(route).getAvailable());
+    assertNull(registry.getGauges().get(metricName("available")));
+  }
+
+  private String backendAddress() {
+    return backend.getInetAddress().getHostAddress() + ":" + backend.getLocalPort();
+  }
+
+  private String metricName(String metric) {
+    return MetricRegistry.name(SharedConnectionManager.METRICS_PREFIX, "default-8", backendAddress(), metric);
+  }
+
+  private GatewayConfig createConfig(int prewarmConnections, long idleTimeout) {
+    final GatewayConfig config = createNiceMock(GatewayConfig.class);
+    expect(config.getHttpClientPrewarmConnections()).andReturn(prewarmConnections).anyTimes();
+    expect(config.getHttpClientIdleConnectionTimeout()).andReturn(idleTimeout).anyTimes();
+    expect(config.getHttpClientConnectionTimeout()).andReturn(5000).anyTimes();
+    replay(config);
+    return config;
+  }
+}
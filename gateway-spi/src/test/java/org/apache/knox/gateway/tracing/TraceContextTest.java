@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.tracing;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TraceContextTest {
+
+  private static final String CORRELATION_ID = "4bf92f35-77b3-4da6-a3ce-929d0e0e4736";
+
+  @After
+  public void tearDown() {
+    Tracer.reset();
+  }
+
+  @Test
+  public void testTraceparentOfUntracedRequest() {
+    final String traceparent = TraceContext.traceparent(CORRELATION_ID);
+    assertTrue(traceparent, traceparent.matches("00-4bf92f3577b34da6a3ce929d0e0e4736-[0-9a-f]{16}-00"));
+    assertNotEquals(traceparent, TraceContext.traceparent(CORRELATION_ID));
+    assertEquals(CORRELATION_ID, TraceContext.correlationId(traceparent));
+  }
+
+  @Test
+  public void testTraceparentNamesCurrentSpanAsParent() {
+    final List<List<Span>> exported = new ArrayList<>();
+    Tracer.configure(1.0d, exported::add, null);
+    try (Span root = Tracer.startTrace("gateway.request", CORRELATION_ID);
+         Span dispatch = Tracer.startSpan("dispatch.execute", Span.Kind.CLIENT)) {
+      assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-" + dispatch.getSpanId() + "-01",
+          TraceContext.traceparent(CORRELATION_ID));
+    }
+    assertEquals(1, exported.size());
+  }
+
+  @Test
+  public void testTraceparentWithoutCorrelationId() {
+    assertTrue(TraceContext.traceparent(null).matches("00-[0-9a-f]{32}-[0-9a-f]{16}-00"));
+    assertTrue(TraceContext.traceparent("not-a-uuid").matches("00-[0-9a-f]{32}-[0-9a-f]{16}-00"));
+  }
+
+  @Test
+  public void testTraceIdOfNonUuidCorrelationIdIsStable() {
+    final String traceId = TraceContext.traceparent("not-a-uuid").substring(3, 35);
+    assertEquals(traceId, TraceContext.traceparent("not-a-uuid").substring(3, 35));
+    assertNotEquals(traceId, TraceContext.traceparent("another-id").substring(3, 35));
+  }
+
+  @Test
+  public void testInboundTraceparentIsPassedOnWhenNotTraced() {
+    final String inbound = "00-0AF7651916CD43DD8448EB211C80319C-b7ad6b7169203331-01";
+    assertEquals(inbound.toLowerCase(Locale.ROOT), TraceContext.traceparent(CORRELATION_ID, inbound));
+    // An invalid inbound traceparent is not passed on
+    assertTrue(TraceContext.traceparent(CORRELATION_ID, "00-0af7651916cd43dd8448eb211c80319c-0000000000000000-01")
+        .matches("00-4bf92f3577b34da6a3ce929d0e0e4736-[0-9a-f]{16}-00"));
+  }
+
+  @Test
+  public void testCurrentSpanTakesPrecedenceOverInboundTraceparent() {
+    Tracer.configure(1.0d, spans -> { }, null);
+    try (Span root = Tracer.startTrace("gateway.request", CORRELATION_ID)) {
+      assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-" + root.getSpanId() + "-01",
+          TraceContext.traceparent(CORRELATION_ID, "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-00"));
+    }
+  }
+
+  @Test
+  public void testCorrelationIdOfInvalidTraceparent() {
+    assertNull(TraceContext.correlationId(null));
+    assertNull(TraceContext.correlationId(""));
+    assertNull(TraceContext.correlationId("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7"));
+    assertNull(TraceContext.correlationId("00-00000000000000000000000000000000-00f067aa0ba902b7-01"));
+    assertNull(TraceContext.correlationId("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01"));
+    assertNull(TraceContext.correlationId("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+    assertNull(TraceContext.correlationId("00-4bf92f3577b34da6a3ce929d0e0e473x-00f067aa0ba902b7-01"));
+    assertEquals(CORRELATION_ID,
+        TraceContext.correlationId("00-4BF92F3577B34DA6A3CE929D0E0E4736-00f067aa0ba902b7-01"));
+  }
+}
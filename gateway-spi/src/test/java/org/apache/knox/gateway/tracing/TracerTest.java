@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.tracing;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+  private final List<List<Span>> exported = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    Tracer.reset();
+  }
+
+  @Test
+  public void testNotTracedWhenDisabled() {
+    Tracer.reset();
+    try (Span root = Tracer.startTrace("gateway.request", UUID.randomUUID().toString())) {
+      assertSame(Span.NOOP, root);
+      assertSame(Span.NOOP, Tracer.startSpan("filter.identity"));
+      assertFalse(root.attribute("url.path", "/").isRecording());
+    }
+    assertSame(Span.NOOP, Tracer.current());
+  }
+
+  @Test
+  public void testChildSpansAreExportedWithRoot() throws Exception {
+    final MetricRegistry registry = new MetricRegistry();
+    Tracer.configure(1.0d, exported::add, registry);
+
+    final String correlationId = UUID.randomUUID().toString();
+    final Span root = Tracer.startTrace("gateway.request", correlationId);
+    final Span filter = Tracer.startSpan("filter.identity");
+    final Span dispatch = Tracer.startSpan("dispatch.execute", Span.Kind.CLIENT);
+    assertSame(dispatch, Tracer.current());
+    TimeUnit.MILLISECONDS.sleep(5);
+    dispatch.error(new IllegalStateException("refused")).close();
+    assertSame(filter, Tracer.current());
+    filter.close();
+    assertTrue(exported.isEmpty());
+    root.close();
+    assertSame(Span.NOOP, Tracer.current());
+
+    assertEquals(1, exported.size());
+    final List<Span> spans = exported.get(0);
+    assertEquals(3, spans.size());
+    assertSame(root, spans.get(2));
+    assertEquals(correlationId.replace("-", ""), root.getTraceId());
+    assertEquals(root.getTraceId(), dispatch.getTraceId());
+    assertEquals(filter.getSpanId(), dispatch.getParentSpanId());
+    assertEquals(root.getSpanId(), filter.getParentSpanId());
+    assertNotEquals(root.getSpanId(), filter.getSpanId());
+    assertTrue(filter.getDuration(TimeUnit.NANOSECONDS) >= dispatch.getDuration(TimeUnit.NANOSECONDS));
+    assertEquals(filter.getDuration(TimeUnit.NANOSECONDS) - dispatch.getDuration(TimeUnit.NANOSECONDS),
+        filter.getSelfDuration(TimeUnit.NANOSECONDS));
+
+    assertEquals(1, registry.timer("spans.dispatch.execute").getCount());
+    assertEquals(1, registry.timer("spans.filter.identity.self").getCount());
+    assertEquals(1, registry.timer("spans.gateway.request").getCount());
+  }
+
+  @Test
+  public void testSampling() {
+    Tracer.configure(0.5d, exported::add, null);
+    for (int i = 0; i < 1000; i++) {
+      Tracer.startTrace("gateway.request", "not-a-uuid").close();
+    }
+    assertTrue(exported.size() > 350 && exported.size() < 650);
+    assertEquals(32, exported.get(0).get(0).getTraceId().length());
+  }
+
+  @Test
+  public void testOtlpJson() {
+    Tracer.configure(1.0d, exported::add, null);
+    try (Span root = Tracer.startTrace("gateway.request", null)) {
+      root.attribute("http.request.method", "GET");
+      Tracer.startSpan("dispatch.response").close();
+    }
+
+    final JsonNode request = new LogSpanExporter("knox-gateway").toOtlp(exported.get(0));
+    final JsonNode resourceSpans = request.get("resourceSpans").get(0);
+    assertEquals("service.name", resourceSpans.get("resource").get("attributes").get(0).get("key").asText());
+    final JsonNode spans = resourceSpans.get("scopeSpans").get(0).get("spans");
+    assertEquals(2, spans.size());
+    final JsonNode child = spans.get(0);
+    final JsonNode root = spans.get(1);
+    assertEquals("dispatch.response", child.get("name").asText());
+    assertEquals(root.get("spanId").asText(), child.get("parentSpanId").asText());
+    assertFalse(root.has("parentSpanId"));
+    assertEquals(Span.Kind.SERVER.getCode(), root.get("kind").asInt());
+    assertTrue(root.get("startTimeUnixNano").isTextual());
+    assertTrue(Long.parseLong(root.get("endTimeUnixNano").asText()) >= Long.parseLong(root.get("startTimeUnixNano").asText()));
+    assertEquals("GET", root.get("attributes").get(0).get("value").get("stringValue").asText());
+  }
+}
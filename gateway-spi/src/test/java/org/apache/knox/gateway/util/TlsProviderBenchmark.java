@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.util;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Provider;
+import java.security.cert.Certificate;
+import java.util.Locale;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+
+/**
+ * Compares the handshake rate and the bulk throughput of a TLS provider with those of the JVM default JSSE
+ * implementation. Both ends run on in-memory {@link SSLEngine}s, so the network is left out. This is not a unit test;
+ * run it manually from the module directory with
+ * <code>java ... TlsProviderBenchmark [provider name or class] [handshakes] [megabytes]</code>, with the provider to
+ * compare on the classpath.
+ */
+public class TlsProviderBenchmark {
+  private static final char[] PASSWORD = "horton".toCharArray();
+
+  private static final int WARMUP = 200;
+  private static final int CHUNK = 16 * 1024;
+  private static final int MAX_HANDSHAKE_STEPS = 1000;
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  public static void main(String[] args) throws Exception {
+    final String configured = args.length > 0 ? args[0] : "SunJSSE";
+    final int handshakes = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    final long bytes = (args.length > 2 ? Long.parseLong(args[2]) : 256L) * 1024 * 1024;
+
+    // resolved the way the gateway resolves it, so the benchmark runs what the gateway would run
+    final Provider provider = TlsProviderUtils.getTlsProvider(createConfig(configured));
+    if (provider == null) {
+      System.out.println("TLS provider " + configured + " is not available");
+      return;
+    }
+
+    final KeyStore keyStore = newKeyStore();
+    final SSLContext jsseServer = newContext(null, keyStore, true);
+    final SSLContext jsseClient = newContext(null, keyStore, false);
+    final SSLContext server = newContext(provider, keyStore, true);
+    final SSLContext client = newContext(provider, keyStore, false);
+
+    handshakesPerSecond(jsseClient, jsseServer, WARMUP);
+    handshakesPerSecond(client, server, WARMUP);
+    report("handshakes/s", provider, handshakesPerSecond(jsseClient, jsseServer, handshakes),
+        handshakesPerSecond(client, server, handshakes));
+
+    megabytesPerSecond(jsseClient, jsseServer, bytes / 4);
+    megabytesPerSecond(client, server, bytes / 4);
+    report("bulk (MB/s)", provider, megabytesPerSecond(jsseClient, jsseServer, bytes),
+        megabytesPerSecond(client, server, bytes));
+  }
+
+  /**
+   * @return a key store holding a new self-signed key, under the alias "server"
+   */
+  static KeyStore newKeyStore() throws Exception {
+    final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    final KeyPair keyPair = generator.generateKeyPair();
+    final Certificate certificate = X509CertificateUtil.generateCertificate("CN=localhost", keyPair, 1,
+        GatewayConfig.DEFAULT_SELF_SIGNING_CERT_ALG);
+    final KeyStore keyStore = KeyStore.getInstance("JKS");
+    keyStore.load(null, PASSWORD);
+    keyStore.setKeyEntry("server", keyPair.getPrivate(), PASSWORD, new Certificate[] { certificate });
+    return keyStore;
+  }
+
+  /**
+   * @param provider the TLS provider; <code>null</code> for the JVM default
+   * @param keyStore the key store of the server
+   * @param server   true for the server end, presenting the key; false for the client end, trusting it
+   */
+  static SSLContext newContext(Provider provider, KeyStore keyStore, boolean server) throws Exception {
+    final SSLContext context = provider == null ? SSLContext.getInstance(TlsProviderUtils.TLS_PROTOCOL)
+        : SSLContext.getInstance(TlsProviderUtils.TLS_PROTOCOL, provider);
+    if (server) {
+      final KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+      keyManagers.init(keyStore, PASSWORD);
+      context.init(keyManagers.getKeyManagers(), null, null);
+    } else {
+      final TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      trustManagers.init(keyStore);
+      context.init(null, trustManagers.getTrustManagers(), null);
+    }
+    return context;
+  }
+
+  /**
+   * Runs a full handshake between the two engines; engines created without a peer host never resume a session.
+   */
+  static void handshake(SSLEngine client, SSLEngine server) throws SSLException {
+    final ByteBuffer toServer = ByteBuffer.allocate(client.getSession().getPacketBufferSize() * 4);
+    final ByteBuffer toClient = ByteBuffer.allocate(server.getSession().getPacketBufferSize() * 4);
+    final ByteBuffer clientApp = ByteBuffer.allocate(client.getSession().getApplicationBufferSize());
+    final ByteBuffer serverApp = ByteBuffer.allocate(server.getSession().getApplicationBufferSize());
+    client.beginHandshake();
+    server.beginHandshake();
+    for (int i = 0; i < MAX_HANDSHAKE_STEPS; i++) {
+      if (isDone(client) && isDone(server)) {
+        return;
+      }
+      step(client, toServer, toClient, clientApp);
+      step(server, toClient, toServer, serverApp);
+    }
+    throw new SSLException("The handshake did not complete");
+  }
+
+  private static boolean isDone(SSLEngine engine) {
+    final SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+    return status == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING || status == SSLEngineResult.HandshakeStatus.FINISHED;
+  }
+
+  private static void step(SSLEngine engine, ByteBuffer out, ByteBuffer in, ByteBuffer app) throws SSLException {
+    switch (engine.getHandshakeStatus()) {
+      case NEED_WRAP:
+        engine.wrap(EMPTY, out);
+        break;
+      case NEED_UNWRAP:
+      case NEED_UNWRAP_AGAIN:
+        in.flip();
+        app.clear();
+        engine.unwrap(in, app);
+        in.compact();
+        break;
+      case NEED_TASK:
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+          task.run();
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static double handshakesPerSecond(SSLContext client, SSLContext server, int count) throws SSLException {
+    final long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      handshake(newEngine(client, true), newEngine(server, false));
+    }
+    return count / ((System.nanoTime() - start) / 1_000_000_000.0);
+  }
+
+  private static double megabytesPerSecond(SSLContext client, SSLContext server, long bytes) throws SSLException {
+    final SSLEngine sender = newEngine(client, true);
+    final SSLEngine receiver = newEngine(server, false);
+    handshake(sender, receiver);
+    final ByteBuffer plain = ByteBuffer.allocate(CHUNK);
+    final ByteBuffer record = ByteBuffer.allocate(sender.getSession().getPacketBufferSize());
+    final ByteBuffer app = ByteBuffer.allocate(receiver.getSession().getApplicationBufferSize());
+    long sent = 0;
+    final long start = System.nanoTime();
+    while (sent < bytes) {
+      plain.clear();
+      record.clear();
+      sent += sender.wrap(plain, record).bytesConsumed();
+      record.flip();
+      while (record.hasRemaining()) {
+        app.clear();
+        if (receiver.unwrap(record, app).bytesConsumed() == 0) {
+          throw new SSLException("The receiver did not consume the record");
+        }
+      }
+    }
+    return sent / (1024.0 * 1024.0) / ((System.nanoTime() - start) / 1_000_000_000.0);
+  }
+
+  private static SSLEngine newEngine(SSLContext context, boolean client) {
+    final SSLEngine engine = context.createSSLEngine();
+    engine.setUseClientMode(client);
+    return engine;
+  }
+
+  private static GatewayConfig createConfig(String tlsProvider) {
+    final GatewayConfig config = createNiceMock(GatewayConfig.class);
+    expect(config.getTlsProvider()).andReturn(tlsProvider).anyTimes();
+    expect(config.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(config.getTlsSessionTimeout()).andReturn(-1).anyTimes();
+    replay(config);
+    return config;
+  }
+
+  private static void report(String measure, Provider provider, double jsse, double configured) {
+    System.out.println(String.format(Locale.ROOT, "%-14s JSSE: %10.2f   %s: %10.2f", measure, jsse,
+        provider.getName(), configured));
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with this
+ * work for additional information regarding copyright ownership. The ASF
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.knox.gateway.util;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.security.KeyManagementException;
+import java.security.KeyStore;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.Security;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+
+import org.apache.knox.gateway.config.GatewayConfig;
+import org.junit.After;
+import org.junit.Test;
+
+public class TlsProviderUtilsTest {
+
+  @After
+  public void tearDown() {
+    TlsProviderUtils.reset();
+  }
+
+  @Test
+  public void testNoProviderConfigured() {
+    assertNull(TlsProviderUtils.getTlsProvider(createConfig(null)));
+    assertNull(TlsProviderUtils.getTlsProvider(createConfig(" ")));
+  }
+
+  @Test
+  public void testRegisteredProviderByName() {
+    final Provider provider = TlsProviderUtils.getTlsProvider(createConfig("SunJSSE"));
+    assertNotNull(provider);
+    assertEquals("SunJSSE", provider.getName());
+  }
+
+  @Test
+  public void testProviderByClassName() {
+    final Provider provider = TlsProviderUtils.getTlsProvider(createConfig(TestTlsProvider.class.getName()));
+    assertNotNull(provider);
+    assertEquals(TestTlsProvider.NAME, provider.getName());
+    // registered, so that Jetty can look it up by name
+    assertSame(provider, Security.getProvider(TestTlsProvider.NAME));
+    Security.removeProvider(TestTlsProvider.NAME);
+  }
+
+  @Test
+  public void testUnavailableProviderFallsBackToDefault() {
+    assertNull(TlsProviderUtils.getTlsProvider(createConfig("org.conscrypt.NotOnTheClasspath")));
+    // not a provider at all
+    assertNull(TlsProviderUtils.getTlsProvider(createConfig(String.class.getName())));
+    // a provider without TLS support
+    assertNull(TlsProviderUtils.getTlsProvider(createConfig("SUN")));
+  }
+
+  @Test
+  public void testHandshakeWithSecondRegisteredProvider() throws Exception {
+    Security.addProvider(new TestTlsProvider());
+    try {
+      final Provider provider = TlsProviderUtils.getTlsProvider(createConfig(TestTlsProvider.NAME));
+      assertSame(Security.getProvider(TestTlsProvider.NAME), provider);
+      assertNotEquals(TestTlsProvider.NAME, SSLContext.getDefault().getProvider().getName());
+
+      // the client end runs on the second provider, the server end on the JVM default
+      final KeyStore keyStore = TlsProviderBenchmark.newKeyStore();
+      final SSLContext client = TlsProviderBenchmark.newContext(provider, keyStore, false);
+      assertEquals(TestTlsProvider.NAME, client.getProvider().getName());
+      final SSLEngine clientEngine = client.createSSLEngine();
+      clientEngine.setUseClientMode(true);
+      final SSLEngine serverEngine = TlsProviderBenchmark.newContext(null, keyStore, true).createSSLEngine();
+      serverEngine.setUseClientMode(false);
+
+      TlsProviderBenchmark.handshake(clientEngine, serverEngine);
+      assertEquals(serverEngine.getSession().getProtocol(), clientEngine.getSession().getProtocol());
+      assertEquals(serverEngine.getSession().getCipherSuite(), clientEngine.getSession().getCipherSuite());
+    } finally {
+      Security.removeProvider(TestTlsProvider.NAME);
+    }
+  }
+
+  public static class TestTlsProvider extends Provider {
+    static final String NAME = "KnoxTestTLS";
+
+    public TestTlsProvider() {
+      super(NAME, "1.0", "Delegates to the JVM default TLS implementation");
+      putService(new Service(this, "SSLContext", TlsProviderUtils.TLS_PROTOCOL, DelegatingSSLContextSpi.class.getName(), null, null) {
+        @Override
+        public Object newInstance(Object constructorParameter) throws NoSuchAlgorithmException {
+          return new DelegatingSSLContextSpi();
+        }
+      });
+    }
+  }
+
+  private static class DelegatingSSLContextSpi extends SSLContextSpi {
+    private final SSLContext delegate;
+
+    DelegatingSSLContextSpi() throws NoSuchAlgorithmException {
+      delegate = SSLContext.getInstance(TlsProviderUtils.TLS_PROTOCOL, Security.getProvider("SunJSSE"));
+    }
+
+    @Override
+    protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) throws KeyManagementException {
+      delegate.init(km, tm, sr);
+    }
+
+    @Override
+    protected SSLSocketFactory engineGetSocketFactory() {
+      return delegate.getSocketFactory();
+    }
+
+    @Override
+    protected SSLServerSocketFactory engineGetServerSocketFactory() {
+      return delegate.getServerSocketFactory();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine() {
+      return delegate.createSSLEngine();
+    }
+
+    @Override
+    protected SSLEngine engineCreateSSLEngine(String host, int port) {
+      return delegate.createSSLEngine(host, port);
+    }
+
+    @Override
+    protected SSLSessionContext engineGetServerSessionContext() {
+      return delegate.getServerSessionContext();
+    }
+
+    @Override
+    protected SSLSessionContext engineGetClientSessionContext() {
+      return delegate.getClientSessionContext();
+    }
+  }
+
+  private GatewayConfig createConfig(String tlsProvider) {
+    final GatewayConfig config = createNiceMock(GatewayConfig.class);
+    expect(config.getTlsProvider()).andReturn(tlsProvider).anyTimes();
+    expect(config.getTlsSessionCacheSize()).andReturn(-1).anyTimes();
+    expect(config.getTlsSessionTimeout()).andReturn(-1).anyTimes();
+    replay(config);
+    return config;
+  }
+}
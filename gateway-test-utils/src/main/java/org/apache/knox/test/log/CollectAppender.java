@@ -51,6 +51,6 @@ public class CollectAppender extends AbstractAppender {
 
   @Override
   public void append(LogEvent event) {
-    queue.add( event );
+    queue.add( event.toImmutable() );
   }
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.audit.api;
+
+/**
+ * A structured audit record passed to {@link Auditor#audit(AuditEvent)}.
+ * <p>
+ * Events are mutable so that they can be reused: {@link #get()} returns an instance owned by the
+ * current thread, which avoids an allocation per audit record. Such an event must be handed to the
+ * auditor before {@link #get()} is called again on the same thread.
+ * <pre>
+ * auditor.audit( AuditEvent.get()
+ *     .action( Action.DISPATCH ).resource( url, ResourceType.URI ).outcome( ActionOutcome.SUCCESS ) );
+ * </pre>
+ */
+public class AuditEvent {
+
+  private static final ThreadLocal<AuditEvent> EVENTS = ThreadLocal.withInitial( AuditEvent::new );
+
+  private CorrelationContext correlationContext;
+  private AuditContext auditContext;
+  private String action;
+  private String resourceName;
+  private String resourceType;
+  private String outcome;
+  private String message;
+
+  /**
+   * @return the cleared event owned by the current thread
+   */
+  public static AuditEvent get() {
+    return EVENTS.get().reset();
+  }
+
+  /**
+   * Clears all fields of the event.
+   *
+   * @return this event
+   */
+  public AuditEvent reset() {
+    correlationContext = null;
+    auditContext = null;
+    action = null;
+    resourceName = null;
+    resourceType = null;
+    outcome = null;
+    message = null;
+    return this;
+  }
+
+  /**
+   * @param correlationContext the correlation context to record instead of the one of the current thread
+   * @return this event
+   */
+  public AuditEvent correlationContext( CorrelationContext correlationContext ) {
+    this.correlationContext = correlationContext;
+    return this;
+  }
+
+  /**
+   * @param auditContext the audit context to record instead of the one of the current thread
+   * @return this event
+   */
+  public AuditEvent auditContext( AuditContext auditContext ) {
+    this.auditContext = auditContext;
+    return this;
+  }
+
+  /**
+   * @param action the action being recorded, see {@link Action}
+   * @return this event
+   */
+  public AuditEvent action( String action ) {
+    this.action = action;
+    return this;
+  }
+
+  /**
+   * @param resourceName the resource identifier, e.g. a URL
+   * @param resourceType the resource type, see {@link ResourceType}
+   * @return this event
+   */
+  public AuditEvent resource( String resourceName, String resourceType ) {
+    this.resourceName = resourceName;
+    this.resourceType = resourceType;
+    return this;
+  }
+
+  /**
+   * @param outcome the outcome of the action, see {@link ActionOutcome}
+   * @return this event
+   */
+  public AuditEvent outcome( String outcome ) {
+    this.outcome = outcome;
+    return this;
+  }
+
+  /**
+   * @param message an arbitrary message; may be null
+   * @return this event
+   */
+  public AuditEvent message( String message ) {
+    this.message = message;
+    return this;
+  }
+
+  public CorrelationContext getCorrelationContext() {
+    return correlationContext;
+  }
+
+  public AuditContext getAuditContext() {
+    return auditContext;
+  }
+
+  public String getAction() {
+    return action;
+  }
+
+  public String getResourceName() {
+    return resourceName;
+  }
+
+  public String getResourceType() {
+    return resourceType;
+  }
+
+  public String getOutcome() {
+    return outcome;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+}
@@ -57,6 +57,24 @@ public interface Auditor {
    */
   void audit( String action, String resourceName, String resourceType, String outcome );
 
+  /**
+   * Records a single structured audit event. Context information not set on the event is taken
+   * from the current thread.
+   *
+   * @param event The event to record.  May be reused by the caller once this method returns.
+   */
+  default void audit( AuditEvent event ) {
+    if ( event.getCorrelationContext() == null && event.getAuditContext() == null ) {
+      audit( event.getAction(), event.getResourceName(), event.getResourceType(), event.getOutcome(), event.getMessage() );
+    } else {
+      audit( event.getCorrelationContext() != null
+              ? event.getCorrelationContext() : CorrelationServiceFactory.getCorrelationService().getContext(),
+          event.getAuditContext() != null
+              ? event.getAuditContext() : AuditServiceFactory.getAuditService().getContext(),
+          event.getAction(), event.getResourceName(), event.getResourceType(), event.getOutcome(), event.getMessage() );
+    }
+  }
+
   /**
    * The service name established when the Auditor was acquired.
    * Every event logged by auditor instance will contain data about service that generated event.
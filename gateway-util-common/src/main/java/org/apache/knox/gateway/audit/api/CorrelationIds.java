@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.audit.api;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates request ids for correlation contexts.
+ * <p>
+ * Ids have the format of random (version 4) UUIDs but are drawn from {@link ThreadLocalRandom}
+ * rather than from the shared {@link java.security.SecureRandom} behind {@link UUID#randomUUID()},
+ * so generating them never blocks. They identify requests in logs and traces and must not be
+ * used where unpredictability matters.
+ */
+public final class CorrelationIds {
+
+  private static final long VERSION_MASK = 0xffffffffffff0fffL;
+  private static final long VERSION_4 = 0x0000000000004000L;
+  private static final long VARIANT_MASK = 0x3fffffffffffffffL;
+  private static final long VARIANT_IETF = 0x8000000000000000L;
+
+  private CorrelationIds() {
+  }
+
+  /**
+   * @return a new request id
+   */
+  public static String newRequestId() {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final long mostSigBits = (random.nextLong() & VERSION_MASK) | VERSION_4;
+    final long leastSigBits = (random.nextLong() & VARIANT_MASK) | VARIANT_IETF;
+    return new UUID(mostSigBits, leastSigBits).toString();
+  }
+}
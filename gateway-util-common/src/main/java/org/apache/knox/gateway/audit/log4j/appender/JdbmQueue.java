@@ -25,7 +25,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.Properties;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A persistent queue. Access is guarded by a {@link ReentrantLock} rather than the object's monitor
+ * because enqueuing and dequeuing do disk I/O and wait, which would pin the carrier of a virtual thread.
+ */
 public class JdbmQueue<E> {
 
   private static final String STAT_NAME = "stat";
@@ -35,6 +41,8 @@ public class JdbmQueue<E> {
   private long stat;
   private HTree data;
   private boolean open;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
 
   public JdbmQueue( File file ) throws IOException {
     Properties props = new Properties();
@@ -45,8 +53,9 @@ public class JdbmQueue<E> {
     open = true;
   }
 
-  public synchronized void enqueue( E e ) throws IOException {
+  public void enqueue( E e ) throws IOException {
     boolean committed = false;
+    lock.lock();
     try {
       Stat stat = getStat();
       stat.lastEnqueue++;
@@ -54,20 +63,22 @@ public class JdbmQueue<E> {
       data.put( stat.lastEnqueue, e );
       db.commit();
       committed = true;
-      notifyAll();
+      notEmpty.signalAll();
     } finally {
       if( !committed ) {
         db.rollback();
       }
+      lock.unlock();
     }
   }
 
-  public synchronized E dequeue() throws InterruptedException, IOException {
+  public E dequeue() throws InterruptedException, IOException {
     boolean committed = false;
+    lock.lock();
     try {
       Stat s = getStat();
       while( open && s.size() == 0 ) {
-        wait();
+        notEmpty.await();
         if( !open ) {
           return null;
         }
@@ -86,11 +97,13 @@ public class JdbmQueue<E> {
       if( !committed && open ) {
         db.rollback();
       }
+      lock.unlock();
     }
   }
 
-  public synchronized boolean process( Consumer<E> consumer ) throws IOException {
+  public boolean process( Consumer<E> consumer ) throws IOException {
     boolean committed = false;
+    lock.lock();
     try {
       E e = dequeue();
       boolean consumed = consumer.consume( e );
@@ -106,18 +119,29 @@ public class JdbmQueue<E> {
       if( !committed && open ) {
         db.rollback();
       }
+      lock.unlock();
     }
     return committed;
   }
 
-  public synchronized void stop() {
-    open = false;
-    notifyAll();
+  public void stop() {
+    lock.lock();
+    try {
+      open = false;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized void close() throws IOException {
-    stop();
-    db.close();
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      stop();
+      db.close();
+    } finally {
+      lock.unlock();
+    }
   }
 
   long findStat() throws IOException {
@@ -67,7 +67,7 @@ public class JdbmStoreAndForwardAppender extends AbstractAppender {
   @Override
   public void append( LogEvent event ) {
     try {
-      queue.enqueue( event );
+      queue.enqueue( event.toImmutable() );
     } catch ( IOException e ) {
       throw new RuntimeException( e );
     }
@@ -18,36 +18,59 @@
 package org.apache.knox.gateway.audit.log4j.audit;
 
 import org.apache.knox.gateway.audit.api.AuditContext;
+import org.apache.knox.gateway.audit.api.AuditEvent;
 import org.apache.knox.gateway.audit.api.AuditService;
 import org.apache.knox.gateway.audit.api.Auditor;
 import org.apache.knox.gateway.audit.api.CorrelationContext;
 import org.apache.knox.gateway.audit.api.CorrelationService;
 import org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationService;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.ContextDataInjector;
 import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.impl.ContextDataFactory;
+import org.apache.logging.log4j.core.impl.ContextDataInjectorFactory;
+import org.apache.logging.log4j.core.impl.MutableLogEvent;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.ReusableSimpleMessage;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.apache.logging.log4j.util.StringMap;
 
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Records audit events as log events of the auditor's logger. The audit fields are added to the
+ * context data of the event itself rather than to the thread context, and the event, its context
+ * data and its message are reused per thread, so recording an audit event allocates little beyond
+ * the snapshot of the thread context.
+ * Appenders that retain events must, as for any Log4j garbage-free logging, keep
+ * {@link org.apache.logging.log4j.core.LogEvent#toImmutable()} copies.
+ */
 public class Log4jAuditor implements Auditor {
 
   /** Comma seperated list of query parameters who's values will be masked
   * e.g. -Dmasked_params=knoxtoken,ccNumber
   **/
   public static final String MASKED_QUERY_PARAMS_OPTION = "masked_params";
+  private static final String MASKED_VALUE = "***************";
+  private static final Message NO_MESSAGE = new SimpleMessage( (String) null );
+  private static final ContextDataInjector CONTEXT_DATA_INJECTOR = ContextDataInjectorFactory.createInjector();
+  private static final ThreadLocal<ReusableEvent> EVENTS = ThreadLocal.withInitial( ReusableEvent::new );
   private Logger logger;
   private String componentName;
   private String serviceName;
   private AuditService auditService = new Log4jAuditService();
   private CorrelationService correlationService = new Log4jCorrelationService();
   /* List of parameters to be masked */
-  private static List<String> maskedParams = new ArrayList<>();
+  private static final CopyOnWriteArrayList<String> maskedParams = new CopyOnWriteArrayList<>();
+  /* The parameters to be masked followed by '=', as they appear in a query */
+  private static final CopyOnWriteArrayList<String> maskedParamPrefixes = new CopyOnWriteArrayList<>();
 
   static {
     /* add defaults */
-    maskedParams.add("knoxtoken");
+    addMaskedParam("knoxtoken");
   }
 
   public Log4jAuditor( String loggerName, String componentName, String serviceName ) {
@@ -62,13 +85,17 @@ public class Log4jAuditor implements Auditor {
     if(masked_query_params != null) {
       final String[] params = masked_query_params.split(",");
       for(final String s: params) {
-        if(!maskedParams.contains(s)) {
-          maskedParams.add(s);
-        }
+        addMaskedParam(s);
       }
     }
   }
 
+  private static void addMaskedParam( String param ) {
+    if (maskedParams.addIfAbsent(param)) {
+      maskedParamPrefixes.add(param + "=");
+    }
+  }
+
   @Override
   public void audit( CorrelationContext correlationContext, AuditContext auditContext, String action, String resourceName, String resourceType, String outcome, String message ) {
     CorrelationContext previousCorrelationContext = null;
@@ -78,7 +105,7 @@ public class Log4jAuditor implements Auditor {
       previousAuditContext = auditService.getContext();
       auditService.attachContext( auditContext );
       correlationService.attachContext( correlationContext );
-      auditLog( action, resourceName, resourceType, outcome, message );
+      auditLog( null, null, action, resourceName, resourceType, outcome, message );
     } finally {
       if ( previousAuditContext != null ) {
         auditService.attachContext( previousAuditContext );
@@ -91,34 +118,96 @@ public class Log4jAuditor implements Auditor {
 
   @Override
   public void audit( String action, String resourceName, String resourceType, String outcome, String message ) {
-    auditLog( action, resourceName, resourceType, outcome, message );
+    auditLog( null, null, action, resourceName, resourceType, outcome, message );
   }
 
   @Override
   public void audit( String action, String resourceName, String resourceType, String outcome ) {
-    auditLog( action, resourceName, resourceType, outcome, null );
-  }
-
-  private void auditLog( String action, String resourceName, String resourceType, String outcome, String message ) {
-    if ( logger.isInfoEnabled() ) {
-      ThreadContext.put( AuditConstants.MDC_ACTION_KEY, action );
-      ThreadContext.put( AuditConstants.MDC_RESOURCE_NAME_KEY, maskTokenFromURL(resourceName) );
-      ThreadContext.put( AuditConstants.MDC_RESOURCE_TYPE_KEY, resourceType );
-      ThreadContext.put( AuditConstants.MDC_OUTCOME_KEY, outcome );
-      ThreadContext.put( AuditConstants.MDC_SERVICE_KEY, serviceName );
-      ThreadContext.put( AuditConstants.MDC_COMPONENT_KEY, componentName );
-
-      logger.info( message );
-
-      ThreadContext.remove( AuditConstants.MDC_ACTION_KEY );
-      ThreadContext.remove( AuditConstants.MDC_RESOURCE_NAME_KEY );
-      ThreadContext.remove( AuditConstants.MDC_RESOURCE_TYPE_KEY );
-      ThreadContext.remove( AuditConstants.MDC_OUTCOME_KEY );
-      ThreadContext.remove( AuditConstants.MDC_SERVICE_KEY );
-      ThreadContext.remove( AuditConstants.MDC_COMPONENT_KEY );
+    auditLog( null, null, action, resourceName, resourceType, outcome, null );
+  }
+
+  @Override
+  public void audit( AuditEvent event ) {
+    auditLog( event.getCorrelationContext(), event.getAuditContext(), event.getAction(),
+        event.getResourceName(), event.getResourceType(), event.getOutcome(), event.getMessage() );
+  }
+
+  private void auditLog( CorrelationContext correlationContext, AuditContext auditContext, String action,
+                         String resourceName, String resourceType, String outcome, String message ) {
+    // Apply the level and the configuration filters as a log call would, since the event bypasses them
+    if ( !logger.isEnabled( Level.INFO, null, message ) ) {
+      return;
+    }
+    ReusableEvent reusable = EVENTS.get();
+    if ( reusable.inUse ) {
+      // An appender audits while this thread's event is being appended
+      reusable = new ReusableEvent();
+    }
+    reusable.inUse = true;
+    try {
+      // Also clears the context data of the previous record
+      reusable.event.clear();
+      final StringMap contextData = reusable.contextData;
+      contextData.clear();
+      final StringMap threadContextData = CONTEXT_DATA_INJECTOR.injectContextData( null, contextData );
+      if ( threadContextData != contextData ) {
+        contextData.putAll( threadContextData );
+      }
+      if ( correlationContext != null ) {
+        putCorrelationContext( contextData, correlationContext );
+      }
+      if ( auditContext != null ) {
+        putAuditContext( contextData, auditContext );
+      }
+      contextData.putValue( AuditConstants.MDC_ACTION_KEY, action );
+      contextData.putValue( AuditConstants.MDC_RESOURCE_NAME_KEY, maskTokenFromURL( resourceName ) );
+      contextData.putValue( AuditConstants.MDC_RESOURCE_TYPE_KEY, resourceType );
+      contextData.putValue( AuditConstants.MDC_OUTCOME_KEY, outcome );
+      contextData.putValue( AuditConstants.MDC_SERVICE_KEY, serviceName );
+      contextData.putValue( AuditConstants.MDC_COMPONENT_KEY, componentName );
+
+      final MutableLogEvent event = reusable.event;
+      event.setLoggerName( logger.getName() );
+      event.setLoggerFqcn( Log4jAuditor.class.getName() );
+      event.setLevel( Level.INFO );
+      if ( message == null ) {
+        event.setMessage( NO_MESSAGE );
+      } else {
+        reusable.message.set( message );
+        event.setMessage( reusable.message );
+      }
+      event.setContextData( contextData );
+      event.setContextStack( ThreadContext.getImmutableStack() );
+      final Thread thread = Thread.currentThread();
+      event.setThreadName( thread.getName() );
+      event.setThreadId( thread.getId() );
+      event.setThreadPriority( thread.getPriority() );
+      event.setTimeMillis( System.currentTimeMillis() );
+      event.setNanoTime( System.nanoTime() );
+      logger.get().log( event );
+    } finally {
+      reusable.message.clear();
+      reusable.inUse = false;
     }
   }
 
+  private static void putCorrelationContext( StringMap contextData, CorrelationContext context ) {
+    contextData.putValue( Log4jCorrelationService.KEY_CORRELATION_CONTEXT, "true" );
+    contextData.putValue( Log4jCorrelationService.KEY_REQUEST_ID, context.getRequestId() );
+    contextData.putValue( Log4jCorrelationService.KEY_PARENT_REQUEST_ID, context.getParentRequestId() );
+    contextData.putValue( Log4jCorrelationService.KEY_ROOT_REQUEST_ID, context.getRootRequestId() );
+  }
+
+  private static void putAuditContext( StringMap contextData, AuditContext context ) {
+    contextData.putValue( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY, "true" );
+    contextData.putValue( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY + "_username", context.getUsername() );
+    contextData.putValue( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY + "_proxyUsername", context.getProxyUsername() );
+    contextData.putValue( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY + "_systemUsername", context.getSystemUsername() );
+    contextData.putValue( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY + "_targetServiceName", context.getTargetServiceName() );
+    contextData.putValue( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY + "_remoteIp", context.getRemoteIp() );
+    contextData.putValue( Log4jAuditService.MDC_AUDIT_CONTEXT_KEY + "_remoteHostname", context.getRemoteHostname() );
+  }
+
   @Override
   public String getComponentName() {
     return componentName;
@@ -140,6 +229,11 @@ public class Log4jAuditor implements Auditor {
    * @return originalUrl masking token value
    */
   public static String maskTokenFromURL(final String originalUrl) {
+    // Only parse the url if it has a query that may contain a masked parameter, possibly encoded
+    final int queryStart = originalUrl == null ? -1 : originalUrl.indexOf('?');
+    if (queryStart < 0 || (originalUrl.indexOf('%', queryStart) < 0 && !containsMaskedParam(originalUrl))) {
+      return originalUrl;
+    }
     try {
       final URI original = new URI(originalUrl);
 
@@ -150,15 +244,7 @@ public class Log4jAuditor implements Auditor {
         final StringBuilder newQuery = new StringBuilder();
 
         for(int i = 0; i < query.length; i++ ) {
-
-          for(final String s: maskedParams) {
-            /* mask "knoxtoken" param */
-            if(query[i].contains(s+"=")) {
-              newQuery.append(s).append("=***************");
-            } else {
-              newQuery.append(query[i]);
-            }
-          }
+          newQuery.append(maskQueryParam(query[i]));
           if (i < (query.length -1) ) {
             newQuery.append('&');
           }
@@ -176,4 +262,33 @@ public class Log4jAuditor implements Auditor {
     return originalUrl;
   }
 
+  private static boolean containsMaskedParam(String url) {
+    for (final String param : maskedParams) {
+      if (url.contains(param)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String maskQueryParam(String param) {
+    for (final String prefix : maskedParamPrefixes) {
+      /* mask "knoxtoken" param */
+      if (param.contains(prefix)) {
+        return prefix + MASKED_VALUE;
+      }
+    }
+    return param;
+  }
+
+  /**
+   * The log event, its context data and its message reused for the audit records of one thread.
+   */
+  private static final class ReusableEvent {
+    final MutableLogEvent event = new MutableLogEvent();
+    final StringMap contextData = ContextDataFactory.createContextData();
+    final ReusableSimpleMessage message = new ReusableSimpleMessage();
+    boolean inUse;
+  }
+
 }
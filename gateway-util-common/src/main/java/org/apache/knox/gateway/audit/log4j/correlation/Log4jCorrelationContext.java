@@ -22,9 +22,9 @@ import static org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationSe
 import static org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationService.KEY_ROOT_REQUEST_ID;
 
 import java.util.Map;
-import java.util.UUID;
 
 import org.apache.knox.gateway.audit.api.CorrelationContext;
+import org.apache.knox.gateway.audit.api.CorrelationIds;
 import org.apache.logging.log4j.core.LogEvent;
 
 public class Log4jCorrelationContext implements CorrelationContext {
@@ -44,7 +44,7 @@ public class Log4jCorrelationContext implements CorrelationContext {
 
   public static Log4jCorrelationContext random() {
     return new Log4jCorrelationContext(
-            UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString());
+            CorrelationIds.newRequestId(), CorrelationIds.newRequestId(), CorrelationIds.newRequestId());
   }
 
   public Log4jCorrelationContext( String requestId, String parentRequestId,
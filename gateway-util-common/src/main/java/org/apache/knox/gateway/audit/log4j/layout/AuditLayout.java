@@ -18,16 +18,15 @@
 package org.apache.knox.gateway.audit.log4j.layout;
 
 import java.nio.charset.Charset;
-import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-import org.apache.knox.gateway.audit.api.AuditContext;
-import org.apache.knox.gateway.audit.api.CorrelationContext;
 import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
-import org.apache.knox.gateway.audit.log4j.audit.Log4jAuditContext;
-import org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationContext;
+import org.apache.knox.gateway.audit.log4j.audit.Log4jAuditService;
+import org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationService;
 import org.apache.logging.log4j.core.Core;
 import org.apache.logging.log4j.core.Layout;
 import org.apache.logging.log4j.core.LogEvent;
@@ -35,19 +34,29 @@ import org.apache.logging.log4j.core.config.plugins.Plugin;
 import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
 import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 import org.apache.logging.log4j.core.layout.AbstractStringLayout;
+import org.apache.logging.log4j.core.layout.ByteBufferDestination;
+import org.apache.logging.log4j.message.Message;
 import org.apache.logging.log4j.util.ReadOnlyStringMap;
-import org.apache.logging.log4j.util.Strings;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
 
 /**
  * Formats audit record to following output:
  * date time root_request_id|parent_request_id|request_id|channel|target_service|username|proxy_username|system_username|action|resource_type|resource_name|outcome|message
+ * <p>
+ * Records are formatted into a reused per thread buffer and written straight to the destination,
+ * and the formatted date is cached per second, so formatting does not allocate.
  */
 @Plugin(name = "AuditLayout", category = Core.CATEGORY_NAME, elementType = Layout.ELEMENT_TYPE, printObject = true)
 public class AuditLayout extends AbstractStringLayout {
   private static final String DATE_PATTERN = "yy/MM/dd HH:mm:ss ";
-  private final DateFormat dateFormat;
-  private static final Character SEPARATOR = '|';
-  private final StringBuffer sb = new StringBuffer();
+  private static final char SEPARATOR = '|';
+  private static final String AUDIT_CONTEXT_PREFIX = Log4jAuditService.MDC_AUDIT_CONTEXT_KEY + "_";
+  private static final String REMOTE_IP_KEY = AUDIT_CONTEXT_PREFIX + "remoteIp";
+  private static final String TARGET_SERVICE_NAME_KEY = AUDIT_CONTEXT_PREFIX + "targetServiceName";
+  private static final String USERNAME_KEY = AUDIT_CONTEXT_PREFIX + "username";
+  private static final String PROXY_USERNAME_KEY = AUDIT_CONTEXT_PREFIX + "proxyUsername";
+  private static final String SYSTEM_USERNAME_KEY = AUDIT_CONTEXT_PREFIX + "systemUsername";
+  private final AtomicReference<FormattedDate> lastDate = new AtomicReference<>(new FormattedDate(Long.MIN_VALUE, ""));
 
   @PluginFactory
   public static AuditLayout createLayout(@PluginAttribute(value = "charset", defaultString = "UTF-8") Charset charset) {
@@ -56,7 +65,6 @@ public class AuditLayout extends AbstractStringLayout {
 
   public AuditLayout(Charset charset) {
     super(charset);
-    dateFormat = dateFormat();
   }
 
   private SimpleDateFormat dateFormat() {
@@ -67,33 +75,77 @@ public class AuditLayout extends AbstractStringLayout {
 
   @Override
   public String toSerializable(LogEvent event) {
-    sb.setLength( 0 );
-    sb.append(dateFormat.format(event.getTimeMillis()));
-    CorrelationContext cc = Log4jCorrelationContext.of(event);
-    appendParameter( cc == null ? null : cc.getRootRequestId() );
-    appendParameter( cc == null ? null : cc.getParentRequestId() );
-    appendParameter( cc == null ? null : cc.getRequestId() );
-    appendParameter( event.getLoggerName() );
-    AuditContext ac = Log4jAuditContext.of(event);
-    appendParameter( ac == null ? null : ac.getRemoteIp() );
-    appendParameter( ac == null ? null : ac.getTargetServiceName() );
-    appendParameter( ac == null ? null : ac.getUsername() );
-    appendParameter( ac == null ? null : ac.getProxyUsername() );
-    appendParameter( ac == null ? null : ac.getSystemUsername() );
+    return format(event, getStringBuilder()).toString();
+  }
+
+  @Override
+  public void encode(LogEvent event, ByteBufferDestination destination) {
+    final StringBuilder sb = format(event, getStringBuilder());
+    getStringBuilderEncoder().encode(sb, destination);
+    trimToMaxSize(sb);
+  }
+
+  private StringBuilder format(LogEvent event, StringBuilder sb) {
+    sb.append(formatDate(event.getTimeMillis()));
     ReadOnlyStringMap eventContextData = event.getContextData();
-    appendParameter( eventContextData.getValue( AuditConstants.MDC_ACTION_KEY ) );
-    appendParameter( eventContextData.getValue( AuditConstants.MDC_RESOURCE_TYPE_KEY ) );
-    appendParameter( eventContextData.getValue( AuditConstants.MDC_RESOURCE_NAME_KEY ) );
-    appendParameter( eventContextData.getValue( AuditConstants.MDC_OUTCOME_KEY ) );
-    String message = event.getMessage() == null ? null : event.getMessage().getFormattedMessage();
-    sb.append(message == null || "null".equals(message) ? Strings.EMPTY : message).append( System.lineSeparator());
-    return sb.toString();
+    boolean correlated = eventContextData.containsKey(Log4jCorrelationService.KEY_REQUEST_ID);
+    appendParameter(sb, correlated ? eventContextData.getValue(Log4jCorrelationService.KEY_ROOT_REQUEST_ID) : null);
+    appendParameter(sb, correlated ? eventContextData.getValue(Log4jCorrelationService.KEY_PARENT_REQUEST_ID) : null);
+    appendParameter(sb, correlated ? eventContextData.getValue(Log4jCorrelationService.KEY_REQUEST_ID) : null);
+    appendParameter(sb, event.getLoggerName());
+    appendParameter(sb, eventContextData.getValue(REMOTE_IP_KEY));
+    appendParameter(sb, eventContextData.getValue(TARGET_SERVICE_NAME_KEY));
+    appendParameter(sb, eventContextData.getValue(USERNAME_KEY));
+    appendParameter(sb, eventContextData.getValue(PROXY_USERNAME_KEY));
+    appendParameter(sb, eventContextData.getValue(SYSTEM_USERNAME_KEY));
+    appendParameter(sb, eventContextData.getValue(AuditConstants.MDC_ACTION_KEY));
+    appendParameter(sb, eventContextData.getValue(AuditConstants.MDC_RESOURCE_TYPE_KEY));
+    appendParameter(sb, eventContextData.getValue(AuditConstants.MDC_RESOURCE_NAME_KEY));
+    appendParameter(sb, eventContextData.getValue(AuditConstants.MDC_OUTCOME_KEY));
+    appendMessage(sb, event.getMessage());
+    return sb.append(System.lineSeparator());
   }
 
-  private void appendParameter( String parameter ) {
+  private String formatDate(long timeMillis) {
+    final long second = TimeUnit.MILLISECONDS.toSeconds(timeMillis);
+    FormattedDate date = lastDate.get();
+    if (date.second != second) {
+      date = new FormattedDate(second, dateFormat().format(timeMillis));
+      lastDate.set(date);
+    }
+    return date.text;
+  }
+
+  private static void appendMessage(StringBuilder sb, Message message) {
+    if (message == null) {
+      return;
+    }
+    final int start = sb.length();
+    if (message instanceof StringBuilderFormattable) {
+      ((StringBuilderFormattable) message).formatTo(sb);
+    } else {
+      sb.append(message.getFormattedMessage());
+    }
+    // A null message is formatted as "null"
+    if (sb.length() - start == 4 && sb.lastIndexOf("null") == start) {
+      sb.setLength(start);
+    }
+  }
+
+  private static void appendParameter(StringBuilder sb, String parameter) {
     if ( parameter != null ) {
       sb.append( parameter );
     }
     sb.append( SEPARATOR );
   }
+
+  private static final class FormattedDate {
+    final long second;
+    final String text;
+
+    FormattedDate(long second, String text) {
+      this.second = second;
+      this.text = text;
+    }
+  }
 }
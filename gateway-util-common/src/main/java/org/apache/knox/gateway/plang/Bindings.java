@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.plang;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Variables and functions which are specific to a single evaluation of a compiled {@link Expression}, such as the
+ * current user, its groups and accessors of the current request. A single instance can be shared by all the
+ * expressions evaluated for the same request.
+ */
+public class Bindings {
+    private final Map<String, Object> variables = new HashMap<>();
+    private final Map<String, Interpreter.Func> functions = new HashMap<>();
+
+    public Bindings addVariable(String name, Object value) {
+        variables.put(name, value);
+        return this;
+    }
+
+    /**
+     * Functions can only be bound under names which are not built into the language.
+     */
+    public Bindings addFunction(String name, Arity arity, Interpreter.Func func) {
+        functions.put(name, Interpreter.arityChecked(name, arity, func));
+        return this;
+    }
+
+    Object variable(String name) {
+        return variables.get(name);
+    }
+
+    Interpreter.Func function(String name) {
+        return functions.get(name);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.plang;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.knox.gateway.identityasserter.regex.filter.RegexTemplate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The built-in functions of the language. These only depend on their arguments, so a single table is shared by
+ * every {@link Interpreter} and {@link Expression} instead of being registered again for each evaluation.
+ */
+final class Builtins {
+    private static final Logger LOG = LogManager.getLogger(Builtins.class);
+    private static final Map<String, Builtin> FUNCTIONS;
+
+    static final class Builtin {
+        final Arity arity;
+        final Interpreter.Func func;
+        /* false if calling the function has side effects, so it must not be evaluated ahead of time */
+        final boolean pure;
+
+        Builtin(Arity arity, Interpreter.Func func, boolean pure) {
+            this.arity = arity;
+            this.func = func;
+            this.pure = pure;
+        }
+    }
+
+    static {
+        Map<String, Builtin> functions = new HashMap<>();
+        add(functions, "not", Arity.UNARY, args -> !(boolean)args.get(0));
+        add(functions, "=", Arity.BINARY, args -> equalTo(args.get(0), args.get(1)));
+        add(functions, "!=", Arity.BINARY, args -> !equalTo(args.get(0), args.get(1)));
+        // The comparisons are floating point based, we might need proper integer-integer comparison in the future
+        add(functions, "<", Arity.BINARY, args ->  ((Number)args.get(0)).doubleValue() < ((Number)args.get(1)).doubleValue());
+        add(functions, "<=", Arity.BINARY, args ->  ((Number)args.get(0)).doubleValue() <= ((Number)args.get(1)).doubleValue());
+        add(functions, ">", Arity.BINARY, args ->  ((Number)args.get(0)).doubleValue() > ((Number)args.get(1)).doubleValue());
+        add(functions, ">=", Arity.BINARY, args ->  ((Number)args.get(0)).doubleValue() >= ((Number)args.get(1)).doubleValue());
+        add(functions, "+", Arity.BINARY, args -> add((Number)args.get(0), (Number)args.get(1)));
+        add(functions, "-", Arity.BINARY, args -> sub((Number)args.get(0), (Number)args.get(1)));
+        add(functions, "*", Arity.BINARY, args -> mul((Number)args.get(0), (Number)args.get(1)));
+        add(functions, "/", Arity.BINARY, args -> div((Number)args.get(0), (Number)args.get(1)));
+        add(functions, "match", Arity.BINARY, args -> match(args.get(0), Pattern.compile((String)args.get(1))));
+        add(functions, "size", Arity.UNARY, args -> ((Collection<?>) args.get(0)).size());
+        add(functions, "empty", Arity.UNARY, args -> ((Collection<?>) args.get(0)).isEmpty());
+        add(functions, "lowercase", Arity.UNARY, args -> ((String)args.get(0)).toLowerCase(Locale.getDefault()));
+        add(functions, "uppercase", Arity.UNARY, args -> ((String)args.get(0)).toUpperCase(Locale.getDefault()));
+        add(functions, "concat", Arity.min(1), args -> args.stream().map(Object::toString).collect(Collectors.joining()));
+        add(functions, "substr", Arity.min(2), args ->
+                args.size() == 2
+                    ? ((String)args.get(0)).substring(((Number)args.get(1)).intValue())
+                    : ((String)args.get(0)).substring(((Number)args.get(1)).intValue(), ((Number)args.get(2)).intValue())
+        );
+        add(functions, "strlen", Arity.UNARY, args -> ((String)args.get(0)).length());
+        add(functions, "starts-with", Arity.BINARY, args -> ((String)args.get(0)).startsWith((String)args.get(1)));
+        add(functions, "ends-with", Arity.BINARY, args -> ((String)args.get(0)).endsWith((String)args.get(1)));
+        add(functions, "contains", Arity.BINARY, args -> ((String)args.get(1)).contains((String)args.get(0)));
+        add(functions, "index-of", Arity.BINARY, args -> ((String)args.get(1)).indexOf((String)args.get(0)));
+        add(functions, "regex-template", Arity.between(3, 5), args -> regexTemplate(args).apply((String) args.get(0)));
+        functions.put("print", new Builtin(Arity.min(1), args -> { // for debugging
+            args.forEach(arg -> LOG.info(arg == null ? "null" : arg.toString()));
+            return false;
+        }, false));
+        add(functions, "hash", Arity.even(), args -> { // create a hashmap, number of arguments must be an even number, this is needed for the RegExp lookup table
+            Map<Object,Object> map = new HashMap<>();
+            for (int i = 0; i < args.size() -1; i+=2) {
+                map.put(args.get(i), args.get(i +1));
+            }
+            return map;
+        });
+        add(functions, "at", Arity.BINARY, args -> ((Map<Object,Object>)args.get(1)).get(args.get(0)));
+        FUNCTIONS = Collections.unmodifiableMap(functions);
+    }
+
+    private Builtins() {
+    }
+
+    private static void add(Map<String, Builtin> functions, String name, Arity arity, Interpreter.Func func) {
+        functions.put(name, new Builtin(arity, func, true));
+    }
+
+    static Builtin get(String name) {
+        return FUNCTIONS.get(name);
+    }
+
+    static boolean match(Object strOrCollection, Pattern pattern) {
+        return strOrCollection instanceof String
+                ? pattern.matcher((String)strOrCollection).matches()
+                : ((Collection<String>)strOrCollection).stream().anyMatch(each -> pattern.matcher(each).matches());
+    }
+
+    /**
+     * @param args the arguments of a regex-template call; the string to apply the template to is not used
+     */
+    static RegexTemplate regexTemplate(List<Object> args) {
+        String regex = (String) args.get(1);
+        String template = (String) args.get(2);
+        if (args.size() == 3) {
+            return new RegexTemplate(regex, template, null, false);
+        } else {
+            boolean useOriginalOnLookupFailure = args.size() >= 5 && (boolean) args.get(4);
+            return new RegexTemplate(regex, template, (Map)args.get(3), useOriginalOnLookupFailure);
+        }
+    }
+
+    private static Number add(Number a, Number b) {
+        if (isFloatingPoint(a) && isFloatingPoint(b)) {
+            return a.doubleValue() + b.doubleValue();
+        } else if (isInteger(a) && isInteger(b)) {
+            return a.longValue() + b.longValue();
+        } else if (isInteger(a) && isFloatingPoint(b)) {
+            return a.longValue() + b.doubleValue();
+        } else if (isFloatingPoint(a) && isInteger(b)) {
+            return a.doubleValue() + b.longValue();
+        } else {
+            throw new TypeException("Unsupported operands: (+ " + a + " " + b + ")", null);
+        }
+    }
+
+    private static Number sub(Number a, Number b) {
+        if (isFloatingPoint(a) && isFloatingPoint(b)) {
+            return a.doubleValue() - b.doubleValue();
+        } else if (isInteger(a) && isInteger(b)) {
+            return a.longValue() - b.longValue();
+        } else if (isInteger(a) && isFloatingPoint(b)) {
+            return a.longValue() - b.doubleValue();
+        } else if (isFloatingPoint(a) && isInteger(b)) {
+            return a.doubleValue() - b.longValue();
+        } else {
+            throw new TypeException("Unsupported operands: (- " + a + " " + b + ")", null);
+        }
+    }
+
+    private static Number mul(Number a, Number b) {
+        if (isFloatingPoint(a) && isFloatingPoint(b)) {
+            return a.doubleValue() * b.doubleValue();
+        } else if (isInteger(a) && isInteger(b)) {
+            return a.longValue() * b.longValue();
+        } else if (isInteger(a) && isFloatingPoint(b)) {
+            return a.longValue() * b.doubleValue();
+        } else if (isFloatingPoint(a) && isInteger(b)) {
+            return a.doubleValue() * b.longValue();
+        } else {
+            throw new TypeException("Unsupported operands: (* " + a + " " + b + ")", null);
+        }
+    }
+
+    private static Number div(Number a, Number b) {
+        return a.doubleValue() / b.doubleValue(); // div will always result a floating point result to
+    }
+
+    private static boolean isInteger(Number n) {
+        return n instanceof Long || n instanceof Integer;
+    }
+
+    private static boolean isFloatingPoint(Number n) {
+        return n instanceof Double || n instanceof Float;
+    }
+
+    private static boolean equalTo(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number)a).doubleValue(), ((Number)b).doubleValue()) == 0;
+        } else {
+            return a.equals(b);
+        }
+    }
+}
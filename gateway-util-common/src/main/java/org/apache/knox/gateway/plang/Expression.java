@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.plang;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.knox.gateway.identityasserter.regex.filter.RegexTemplate;
+
+/**
+ * An expression compiled ahead of time from its syntax tree. Function names are resolved, arities are checked, regex
+ * literals are compiled and sub expressions made of constants only are evaluated once, at compile time.
+ * <p>
+ * A compiled expression is immutable and can be shared between threads; everything which is specific to a single
+ * evaluation is passed in via {@link Bindings}. Errors are reported at evaluation time, the same way the
+ * {@link Interpreter} reports them.
+ */
+public final class Expression {
+    private final AbstractSyntaxTree ast;
+    private final Node root;
+    private final boolean deterministic;
+
+    private interface Node {
+        Object eval(Bindings bindings);
+    }
+
+    private interface BoundFunc {
+        Object call(Bindings bindings, List<Object> parameters);
+    }
+
+    private Expression(AbstractSyntaxTree ast, Node root, boolean deterministic) {
+        this.ast = ast;
+        this.root = root;
+        this.deterministic = deterministic;
+    }
+
+    public static Expression compile(AbstractSyntaxTree ast) {
+        Compiler compiler = new Compiler();
+        Node root = compiler.compile(ast);
+        return new Expression(ast, root, compiler.deterministic);
+    }
+
+    public Object eval(Bindings bindings) {
+        return root.eval(bindings);
+    }
+
+    /**
+     * @return true if the result only depends on the bound variables; false if the expression calls bound functions
+     * (e.g. request accessors) or functions with side effects
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    public AbstractSyntaxTree getAst() {
+        return ast;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(ast);
+    }
+
+    private static final class Constant implements Node {
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object eval(Bindings bindings) {
+            return value;
+        }
+    }
+
+    private static final class Call implements Node {
+        private final AbstractSyntaxTree ast;
+        private final BoundFunc func;
+        private final Node[] parameters;
+
+        Call(AbstractSyntaxTree ast, BoundFunc func, Node[] parameters) {
+            this.ast = ast;
+            this.func = func;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public Object eval(Bindings bindings) {
+            Object[] values = new Object[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                values[i] = parameters[i].eval(bindings);
+            }
+            try {
+                return func.call(bindings, Arrays.asList(values));
+            } catch (ClassCastException e) {
+                throw new TypeException("Type error at: " + ast, e);
+            }
+        }
+    }
+
+    private static class Compiler {
+        private boolean deterministic = true;
+
+        Node compile(AbstractSyntaxTree ast) {
+            if (ast == null) {
+                return new Constant(null);
+            } else if (ast.isAtom()) {
+                return ast.isStr() ? new Constant(ast.strValue())
+                        : ast.isNumber() ? new Constant(ast.numValue())
+                        : variable(ast.token());
+            } else if (ast.isFunction()) {
+                return function(ast);
+            } else {
+                return bindings -> {
+                    throw new InterpreterException("Unknown token: " + ast.token());
+                };
+            }
+        }
+
+        private Node variable(String name) {
+            if ("true".equals(name)) {
+                return new Constant(true);
+            } else if ("false".equals(name)) {
+                return new Constant(false);
+            }
+            return bindings -> {
+                Object value = bindings.variable(name);
+                if (value == null) {
+                    throw new UndefinedSymbolException(name, "variable");
+                }
+                return value;
+            };
+        }
+
+        private Node function(AbstractSyntaxTree ast) {
+            String name = ast.functionName();
+            List<AbstractSyntaxTree> parameters = ast.functionParameters();
+            switch (name) {
+                case "or":
+                    return specialForm(ast, Arity.min(1), compileAll(parameters), Compiler::or);
+                case "and":
+                    return specialForm(ast, Arity.min(1), compileAll(parameters), Compiler::and);
+                case "if":
+                    return specialForm(ast, Arity.between(2, 3), compileAll(parameters), Compiler::conditional);
+                default:
+                    return call(ast, name, compileAll(parameters));
+            }
+        }
+
+        private Node[] compileAll(List<AbstractSyntaxTree> parameters) {
+            return parameters.stream().map(this::compile).toArray(Node[]::new);
+        }
+
+        private static Node specialForm(AbstractSyntaxTree ast, Arity arity, Node[] children, Function<Node[], Node> form) {
+            String name = ast.functionName();
+            List<AbstractSyntaxTree> parameters = ast.functionParameters();
+            if (!hasArity(arity, name, parameters)) {
+                return bindings -> {
+                    arity.check(name, parameters);
+                    return null;
+                };
+            }
+            Node node = form.apply(children);
+            return fold(bindings -> {
+                try {
+                    return node.eval(bindings);
+                } catch (ClassCastException e) {
+                    throw new TypeException("Type error at: " + ast, e);
+                }
+            }, allConstant(children));
+        }
+
+        private static Node or(Node[] children) {
+            return bindings -> {
+                for (Node each : children) {
+                    if ((boolean)each.eval(bindings)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        private static Node and(Node[] children) {
+            return bindings -> {
+                for (Node each : children) {
+                    if (!(boolean)each.eval(bindings)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        private static Node conditional(Node[] children) {
+            return bindings -> {
+                if ((boolean)children[0].eval(bindings)) {
+                    return children[1].eval(bindings);
+                } else if (children.length == 3) {
+                    return children[2].eval(bindings);
+                }
+                return null;
+            };
+        }
+
+        private Node call(AbstractSyntaxTree ast, String name, Node[] parameters) {
+            Builtins.Builtin builtin = Builtins.get(name);
+            if (builtin == null) {
+                if (!dependsOnVariablesOnly(name)) {
+                    deterministic = false;
+                }
+                return new Call(ast, boundFunction(name), parameters);
+            }
+            List<AbstractSyntaxTree> parameterAsts = ast.functionParameters();
+            boolean arityOk = hasArity(builtin.arity, name, parameterAsts);
+            Interpreter.Func func = arityOk ? builtin.func : Interpreter.arityChecked(name, builtin.arity, builtin.func);
+            if (!builtin.pure) {
+                deterministic = false;
+            }
+            BoundFunc specialized = arityOk ? specialize(name, parameters) : null;
+            Node call = new Call(ast, specialized != null ? specialized : (bindings, args) -> func.call(args), parameters);
+            return builtin.pure && arityOk ? fold(call, allConstant(parameters)) : call;
+        }
+
+        /* username and member read the bound variables, every other function which isn't built in is bound per evaluation */
+        private static boolean dependsOnVariablesOnly(String name) {
+            return "username".equals(name) || "member".equals(name);
+        }
+
+        private static BoundFunc boundFunction(String name) {
+            switch (name) {
+                case "username":
+                    return (bindings, args) -> {
+                        Arity.UNARY.check(name, args);
+                        return bindings.variable("username").equals(args.get(0));
+                    };
+                case "member":
+                    return (bindings, args) -> {
+                        Arity.UNARY.check(name, args);
+                        return ((Collection<String>)bindings.variable("groups")).contains((String)args.get(0));
+                    };
+                default:
+                    return (bindings, args) -> {
+                        Interpreter.Func func = bindings.function(name);
+                        if (func == null) {
+                            throw new UndefinedSymbolException(name, "function");
+                        }
+                        return func.call(args);
+                    };
+            }
+        }
+
+        /**
+         * @return a variant of the builtin with its constant regex parameters pre-compiled, or null if there is none
+         */
+        private static BoundFunc specialize(String name, Node[] parameters) {
+            try {
+                if ("match".equals(name) && parameters[1] instanceof Constant) {
+                    Pattern pattern = Pattern.compile((String)((Constant)parameters[1]).value);
+                    return (bindings, args) -> Builtins.match(args.get(0), pattern);
+                } else if ("regex-template".equals(name) && allConstant(Arrays.copyOfRange(parameters, 1, parameters.length))) {
+                    Object[] values = new Object[parameters.length];
+                    for (int i = 1; i < parameters.length; i++) {
+                        values[i] = ((Constant)parameters[i]).value;
+                    }
+                    RegexTemplate template = Builtins.regexTemplate(Arrays.asList(values));
+                    return (bindings, args) -> template.apply((String)args.get(0));
+                }
+            } catch (RuntimeException e) {
+                // invalid constant parameters are reported at evaluation time, like the interpreter does
+            }
+            return null;
+        }
+
+        private static boolean hasArity(Arity arity, String name, List<?> parameters) {
+            try {
+                arity.check(name, parameters);
+                return true;
+            } catch (ArityException e) {
+                return false;
+            }
+        }
+
+        private static boolean allConstant(Node[] nodes) {
+            return Arrays.stream(nodes).allMatch(Constant.class::isInstance);
+        }
+
+        /**
+         * Evaluates the node at compile time if it doesn't depend on anything but constants. Nodes which fail to evaluate
+         * are kept, so that the error is raised at evaluation time.
+         */
+        private static Node fold(Node node, boolean constantParameters) {
+            if (!constantParameters) {
+                return node;
+            }
+            try {
+                return new Constant(node.eval(null));
+            } catch (RuntimeException e) {
+                return node;
+            }
+        }
+    }
+}
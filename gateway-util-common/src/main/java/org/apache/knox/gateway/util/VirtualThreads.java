@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+/**
+ * Access to virtual threads without requiring a Java 21 compile target.
+ * <p>
+ * All factory methods return <code>null</code> when the runtime does not support virtual
+ * threads (before Java 21, or Java 19/20 without preview features enabled), so callers can
+ * fall back to platform threads.
+ */
+public class VirtualThreads {
+
+  private static final Method OF_VIRTUAL;
+  private static final Method BUILDER_NAME;
+  private static final Method BUILDER_FACTORY;
+  private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+  private static final Method IS_VIRTUAL;
+
+  static {
+    Method ofVirtual = null;
+    Method builderName = null;
+    Method builderFactory = null;
+    Method newThreadPerTaskExecutor = null;
+    Method isVirtual = null;
+    try {
+      final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      builderName = builderClass.getMethod("name", String.class, long.class);
+      builderFactory = builderClass.getMethod("factory");
+      newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      isVirtual = Thread.class.getMethod("isVirtual");
+      // Fails on Java 19/20 unless preview features are enabled
+      ofVirtual.invoke(null);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      ofVirtual = null;
+    }
+    OF_VIRTUAL = ofVirtual;
+    BUILDER_NAME = builderName;
+    BUILDER_FACTORY = builderFactory;
+    NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    IS_VIRTUAL = isVirtual;
+  }
+
+  /**
+   * @return true if the runtime supports virtual threads
+   */
+  public static boolean isSupported() {
+    return OF_VIRTUAL != null;
+  }
+
+  /**
+   * @param thread the thread to check
+   * @return true if the given thread is a virtual thread
+   */
+  public static boolean isVirtual(Thread thread) {
+    if (!isSupported()) {
+      return false;
+    }
+    try {
+      return (Boolean) IS_VIRTUAL.invoke(thread);
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param namePrefix prefix of the thread names, followed by a counter
+   * @return a factory of virtual threads; or <code>null</code> if virtual threads are not supported
+   */
+  public static ThreadFactory newThreadFactory(String namePrefix) {
+    if (!isSupported()) {
+      return null;
+    }
+    try {
+      final Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+      return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param namePrefix prefix of the thread names, followed by a counter
+   * @return an executor that starts a new virtual thread for each task; or <code>null</code> if virtual threads are not supported
+   */
+  public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+    final ThreadFactory threadFactory = newThreadFactory(namePrefix);
+    if (threadFactory == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns an executor that starts a new virtual thread for each task if <code>enabled</code> and supported;
+   * otherwise a pool of at most <code>maxThreads</code> named platform threads, which time out when idle. Tasks
+   * submitted while all platform threads are busy are queued.
+   *
+   * @param enabled    whether virtual threads should be used
+   * @param namePrefix prefix of the thread names, followed by a counter
+   * @param maxThreads the maximum number of platform threads
+   * @return the executor
+   */
+  public static ExecutorService newCachedExecutor(boolean enabled, String namePrefix, int maxThreads) {
+    final ExecutorService executor = enabled ? newThreadPerTaskExecutor(namePrefix) : null;
+    if (executor != null) {
+      return executor;
+    }
+    final ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), newPlatformThreadFactory(namePrefix));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Returns a scheduled executor running on virtual threads if <code>enabled</code> and supported;
+   * otherwise on named platform threads.
+   *
+   * @param enabled    whether virtual threads should be used
+   * @param corePoolSize the number of threads to keep in the pool
+   * @param namePrefix prefix of the thread names, followed by a counter
+   * @return the scheduled executor
+   */
+  public static ScheduledExecutorService newScheduledExecutor(boolean enabled, int corePoolSize, String namePrefix) {
+    final ThreadFactory threadFactory = enabled ? newThreadFactory(namePrefix) : null;
+    return Executors.newScheduledThreadPool(corePoolSize,
+        threadFactory == null ? newPlatformThreadFactory(namePrefix) : threadFactory);
+  }
+
+  private static ThreadFactory newPlatformThreadFactory(String namePrefix) {
+    return new BasicThreadFactory.Builder().namingPattern(namePrefix + "%d").build();
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.audit;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import de.thetaphi.forbiddenapis.SuppressForbidden;
+import org.apache.knox.gateway.audit.api.AuditEvent;
+import org.apache.knox.gateway.audit.api.Auditor;
+import org.apache.knox.gateway.audit.api.CorrelationService;
+import org.apache.knox.gateway.audit.api.CorrelationServiceFactory;
+import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
+import org.apache.knox.gateway.audit.log4j.audit.Log4jAuditor;
+import org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+
+/**
+ * Compares the bytes allocated and the time spent per audit record by the {@link Log4jAuditor}
+ * with those of recording the audit fields in the thread context around each log call, as the
+ * auditor used to do. This is not a unit test; run it manually, with the test classpath so that
+ * the <code>audit.benchmark</code> logger of log4j2-test.xml is enabled, as
+ * <code>java ... AuditAllocationBenchmark [records]</code>.
+ */
+public class AuditAllocationBenchmark {
+  private static final int ROUNDS = 5;
+  private static final String RESOURCE = "/gateway/sandbox/webhdfs/v1/tmp";
+
+  // Allocated bytes per thread are only exposed by the com.sun.management extension
+  @SuppressForbidden
+  public static void main(String[] args) {
+    final int records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final Auditor auditor = new Log4jAuditor("audit.benchmark", AuditConstants.KNOX_COMPONENT_NAME, AuditConstants.KNOX_SERVICE_NAME);
+    final Logger logger = LogManager.getLogger("audit.benchmark");
+    final CorrelationService correlationService = CorrelationServiceFactory.getCorrelationService();
+
+    correlationService.attachContext(Log4jCorrelationContext.random());
+    try {
+      // the first rounds warm up; the last one is reported
+      for (int round = 0; round < ROUNDS; round++) {
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+          auditor.audit(AuditEvent.get().action("access").resource(RESOURCE, "uri").outcome("success"));
+        }
+        final double structuredNanos = (System.nanoTime() - start) / (double) records;
+        final long structuredBytes = (threads.getCurrentThreadAllocatedBytes() - bytes) / records;
+
+        bytes = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+          auditWithThreadContext(logger);
+        }
+        final double threadContextNanos = (System.nanoTime() - start) / (double) records;
+        final long threadContextBytes = (threads.getCurrentThreadAllocatedBytes() - bytes) / records;
+
+        if (round == ROUNDS - 1) {
+          report("bytes/record", structuredBytes, threadContextBytes);
+          report("ns/record", structuredNanos, threadContextNanos);
+        }
+      }
+    } finally {
+      correlationService.detachContext();
+    }
+  }
+
+  private static void auditWithThreadContext(Logger logger) {
+    ThreadContext.put(AuditConstants.MDC_ACTION_KEY, "access");
+    ThreadContext.put(AuditConstants.MDC_RESOURCE_NAME_KEY, RESOURCE);
+    ThreadContext.put(AuditConstants.MDC_RESOURCE_TYPE_KEY, "uri");
+    ThreadContext.put(AuditConstants.MDC_OUTCOME_KEY, "success");
+    ThreadContext.put(AuditConstants.MDC_SERVICE_KEY, AuditConstants.KNOX_SERVICE_NAME);
+    ThreadContext.put(AuditConstants.MDC_COMPONENT_KEY, AuditConstants.KNOX_COMPONENT_NAME);
+    logger.info((String) null);
+    ThreadContext.remove(AuditConstants.MDC_ACTION_KEY);
+    ThreadContext.remove(AuditConstants.MDC_RESOURCE_NAME_KEY);
+    ThreadContext.remove(AuditConstants.MDC_RESOURCE_TYPE_KEY);
+    ThreadContext.remove(AuditConstants.MDC_OUTCOME_KEY);
+    ThreadContext.remove(AuditConstants.MDC_SERVICE_KEY);
+    ThreadContext.remove(AuditConstants.MDC_COMPONENT_KEY);
+  }
+
+  private static void report(String measure, double structured, double threadContext) {
+    System.out.println(String.format(Locale.ROOT, "%-14s event context: %10.2f   thread context: %10.2f", measure, structured, threadContext));
+  }
+}
@@ -25,6 +25,7 @@ import java.io.File;
 import java.util.Iterator;
 
 import org.apache.knox.gateway.audit.api.AuditContext;
+import org.apache.knox.gateway.audit.api.AuditEvent;
 import org.apache.knox.gateway.audit.api.AuditService;
 import org.apache.knox.gateway.audit.api.AuditServiceFactory;
 import org.apache.knox.gateway.audit.api.Auditor;
@@ -35,6 +36,7 @@ import org.apache.knox.gateway.audit.log4j.audit.AuditConstants;
 import org.apache.knox.gateway.audit.log4j.audit.Log4jAuditContext;
 import org.apache.knox.gateway.audit.log4j.correlation.Log4jCorrelationContext;
 import org.apache.knox.test.log.CollectAppender;
+import org.apache.logging.log4j.ThreadContext;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.util.ReadOnlyStringMap;
 import org.junit.After;
@@ -165,6 +167,81 @@ public class AuditServiceTest {
     checkLogEventContexts( event, cc, ac );
   }
 
+  @Test
+  public void testStructuredEventLeavesThreadContextUntouched() {
+    AuditContext ac = new Log4jAuditContext( username, proxyUsername, null, targetServiceName, remoteIp, remoteHostname );
+    CorrelationContext cc = Log4jCorrelationContext.random();
+
+    auditor.audit( AuditEvent.get().correlationContext( cc ).auditContext( ac )
+        .action( "action" ).resource( "/path?knoxtoken=secret&x=1", "uri" ).outcome( "success" ) );
+
+    assertThat( ThreadContext.isEmpty(), is( true ) );
+    assertThat( CollectAppender.queue.size(), is( 1 ) );
+    LogEvent event = CollectAppender.queue.iterator().next();
+    checkLogEventContexts( event, cc, ac );
+    ReadOnlyStringMap eventContextData = event.getContextData();
+    assertThat( eventContextData.getValue( AuditConstants.MDC_ACTION_KEY ), is( "action" ) );
+    assertThat( eventContextData.getValue( AuditConstants.MDC_RESOURCE_NAME_KEY ), is( "/path?knoxtoken=***************&x=1" ) );
+    assertThat( eventContextData.getValue( AuditConstants.MDC_OUTCOME_KEY ), is( "success" ) );
+  }
+
+  @Test
+  public void testAuditEventIsFilteredByConfiguration() {
+    auditor.audit( AuditEvent.get().action( "action" ).resource( "resource", "uri" ).outcome( "success" )
+        .message( "filtered by configuration" ) );
+    assertThat( CollectAppender.queue.size(), is( 0 ) );
+
+    auditor.audit( AuditEvent.get().action( "action" ).resource( "resource", "uri" ).outcome( "success" )
+        .message( "recorded" ) );
+    assertThat( CollectAppender.queue.size(), is( 1 ) );
+  }
+
+  @Test
+  public void testDefaultAuditEventDelegatesToAudit() {
+    final Auditor delegating = new Auditor() {
+      @Override
+      public void audit( CorrelationContext correlationContext, AuditContext auditContext, String action,
+                         String resourceName, String resourceType, String outcome, String message ) {
+        auditor.audit( correlationContext, auditContext, action, resourceName, resourceType, outcome, message );
+      }
+
+      @Override
+      public void audit( String action, String resourceName, String resourceType, String outcome, String message ) {
+        auditor.audit( action, resourceName, resourceType, outcome, message );
+      }
+
+      @Override
+      public void audit( String action, String resourceName, String resourceType, String outcome ) {
+        auditor.audit( action, resourceName, resourceType, outcome );
+      }
+
+      @Override
+      public String getServiceName() {
+        return auditor.getServiceName();
+      }
+
+      @Override
+      public String getComponentName() {
+        return auditor.getComponentName();
+      }
+
+      @Override
+      public String getAuditorName() {
+        return auditor.getAuditorName();
+      }
+    };
+    AuditContext ac = new Log4jAuditContext( username, proxyUsername, null, targetServiceName, remoteIp, remoteHostname );
+    CorrelationContext cc = Log4jCorrelationContext.random();
+
+    delegating.audit( AuditEvent.get().correlationContext( cc ).auditContext( ac )
+        .action( "action" ).resource( "resource", "uri" ).outcome( "success" ) );
+
+    assertThat( CollectAppender.queue.size(), is( 1 ) );
+    LogEvent event = CollectAppender.queue.iterator().next();
+    checkLogEventContexts( event, cc, ac );
+    assertThat( event.getContextData().getValue( AuditConstants.MDC_ACTION_KEY ), is( "action" ) );
+  }
+
   private void checkLogEventContexts( LogEvent event, CorrelationContext expectedCorrelationContext, AuditContext expectedAuditContext ) {
     AuditContext context = Log4jAuditContext.of(event);
     assertThat( context.getUsername(), is( expectedAuditContext.getUsername() ) );
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.plang;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ExpressionTest {
+    private final Parser parser = new Parser();
+
+    @Test
+    public void testSameResultAsInterpreter() {
+        for (String script : asList(
+                "", "true", "'apple'", "12", "-10.33242", "(= 1.0 1)", "(!= '12' 12)", "(< 1 2.5)",
+                "(+ (strlen 'ab') 3)", "(- 5.5 3.2)", "(* 7 2)", "(/ 7 2)",
+                "(and (not false) (or (not (or (not true) (not false) )) true))",
+                "(match 'user12' 'user\\d+')", "(match 'hive1' 'hive|joe')",
+                "(concat 'a' 1 true)", "(substr 'apple' 1 3)", "(index-of 'p' 'apple')",
+                "(regex-template 'nobody@us.example.com' '(.*)@(.*?)\\..*' '{1}_{[2]}' (hash 'us' 'USA') true)",
+                "(at 'a' (hash 'a' 'b'))", "(if (starts-with 'apple' 'ap') (uppercase 'apple') 'none')")) {
+            assertEquals(script, new Interpreter().eval(parser.parse(script)), eval(script, new Bindings()));
+        }
+    }
+
+    @Test
+    public void testVariables() {
+        Bindings bindings = new Bindings()
+                .addVariable("username", "user1")
+                .addVariable("groups", new HashSet<>(asList("grp1", "admin")));
+        assertTrue((boolean)eval("(member 'admin')", bindings));
+        assertFalse((boolean)eval("(member username)", bindings));
+        assertTrue((boolean)eval("(username 'user1')", bindings));
+        assertTrue((boolean)eval("(match groups 'grp\\d+')", bindings));
+        assertEquals(2, eval("(size groups)", bindings));
+    }
+
+    @Test
+    public void testSharedBetweenBindings() {
+        Expression expression = Expression.compile(parser.parse("(and (member 'admin') (match username 'user\\d+'))"));
+        assertTrue(expression.isDeterministic());
+        assertTrue((boolean)expression.eval(new Bindings().addVariable("username", "user1").addVariable("groups", singleton("admin"))));
+        assertFalse((boolean)expression.eval(new Bindings().addVariable("username", "user1").addVariable("groups", singleton("dev"))));
+        assertFalse((boolean)expression.eval(new Bindings().addVariable("username", "joe").addVariable("groups", singleton("admin"))));
+    }
+
+    @Test
+    public void testBoundFunctions() {
+        AtomicInteger calls = new AtomicInteger();
+        Bindings bindings = new Bindings().addFunction("request-header", Arity.UNARY, args -> {
+            calls.incrementAndGet();
+            return "value-of-" + args.get(0);
+        });
+        Expression expression = Expression.compile(parser.parse("(or (= (request-header 'X') 'value-of-X') (request-header 'Y'))"));
+        assertFalse(expression.isDeterministic());
+        assertTrue((boolean)expression.eval(bindings));
+        assertEquals(1, calls.get());
+    }
+
+    @Test(expected = UndefinedSymbolException.class)
+    public void testUnboundFunction() {
+        eval("(request-header 'X')", new Bindings());
+    }
+
+    @Test(expected = UndefinedSymbolException.class)
+    public void testUnboundVariable() {
+        eval("(member username)", new Bindings().addVariable("groups", singleton("admin")));
+    }
+
+    @Test
+    public void testConstantsAreFolded() {
+        Map<Object, Object> expected = new HashMap<>();
+        expected.put("apple123", true);
+        Expression expression = Expression.compile(parser.parse("(hash (lowercase (concat 'Apple' '123')) (and (< 10 12) (> 10 1)))"));
+        assertEquals(expected, expression.eval(null));
+        assertTrue(expression.isDeterministic());
+    }
+
+    @Test
+    public void testPrintIsNotDeterministic() {
+        assertFalse(Expression.compile(parser.parse("(print 'debug')")).isDeterministic());
+    }
+
+    @Test
+    public void testShortCircuitConditionals() {
+        assertTrue((boolean)eval("(or true (invalid-expression 1 2 3))", new Bindings()));
+        assertFalse((boolean)eval("(and false (invalid-expression 1 2 3))", new Bindings()));
+        assertNull(eval("(if false (invalid-expression))", new Bindings()));
+    }
+
+    @Test(expected = TypeException.class)
+    public void testTypeErrorIsRaisedAtEvaluation() {
+        Expression expression = Expression.compile(parser.parse("(size 12)"));
+        expression.eval(new Bindings());
+    }
+
+    @Test(expected = ArityException.class)
+    public void testArityErrorIsRaisedAtEvaluation() {
+        Expression expression = Expression.compile(parser.parse("(if true 1 2 3)"));
+        expression.eval(new Bindings());
+    }
+
+    @Test(expected = TypeException.class)
+    public void testTypeErrorOfVariables() {
+        eval("(match groups 'grp\\d+')", new Bindings().addVariable("groups", 12));
+    }
+
+    private Object eval(String script, Bindings bindings) {
+        return Expression.compile(parser.parse(script)).eval(bindings);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.knox.gateway.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadsTest {
+
+  @Test
+  public void testThreadFactory() throws Exception {
+    final ThreadFactory threadFactory = VirtualThreads.newThreadFactory("test-");
+    if (!VirtualThreads.isSupported()) {
+      assertNull(threadFactory);
+      return;
+    }
+    assertNotNull(threadFactory);
+    final Thread thread = threadFactory.newThread(() -> { });
+    assertTrue(VirtualThreads.isVirtual(thread));
+    assertEquals("test-0", thread.getName());
+  }
+
+  @Test
+  public void testPlatformThreadIsNotVirtual() {
+    assertFalse(VirtualThreads.isVirtual(Thread.currentThread()));
+  }
+
+  @Test
+  public void testExecutorsFallBackToPlatformThreads() throws Exception {
+    final ExecutorService executor = VirtualThreads.newCachedExecutor(false, "test-", 2);
+    try {
+      assertFalse(executor.submit(() -> VirtualThreads.isVirtual(Thread.currentThread())).get());
+      assertTrue(executor.submit(() -> Thread.currentThread().getName()).get().startsWith("test-"));
+      assertEquals(2, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    final ScheduledExecutorService scheduler = VirtualThreads.newScheduledExecutor(false, 1, "test-");
+    try {
+      assertFalse(scheduler.schedule(() -> VirtualThreads.isVirtual(Thread.currentThread()), 1, TimeUnit.MILLISECONDS).get());
+      assertTrue(scheduler.submit(() -> Thread.currentThread().getName()).get().startsWith("test-"));
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testExecutorUsesVirtualThreadsWhenSupported() throws Exception {
+    final ExecutorService executor = VirtualThreads.newCachedExecutor(true, "test-", 2);
+    try {
+      assertEquals(VirtualThreads.isSupported(), executor.submit(() -> VirtualThreads.isVirtual(Thread.currentThread())).get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}